@@ -0,0 +1,40 @@
+package com.boilerplate.aspects;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+import com.boilerplate.framework.UnitOfWork;
+
+/**
+ * This aspect runs every service method annotated with RunInUnitOfWork inside a
+ * unit of work
+ * 
+ * @author ruchi
+ */
+@Aspect
+public class UnitOfWorkAspect {
+
+	/**
+	 * This method begins a unit of work before the method and ends it after
+	 * the method, the unit of work is rolled back if the method throws
+	 * 
+	 * @param proceedingJoinPoint
+	 *            The join point of the method
+	 * @return The return value of the method
+	 * @throws Throwable
+	 *             The exception thrown by the method or by the commit
+	 */
+	@Around("@annotation(com.boilerplate.framework.RunInUnitOfWork)")
+	public Object runInUnitOfWork(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+		UnitOfWork.begin();
+		boolean failed = true;
+		try {
+			Object returnValue = proceedingJoinPoint.proceed();
+			failed = false;
+			return returnValue;
+		} finally {
+			UnitOfWork.end(failed);
+		}
+	}
+}
@@ -67,6 +67,22 @@ public class BoilerplateNonProductionInMemoryCache extends BaseCache implements
 		this.boilerplateMap.put(this.cacheKeyPrefix+":"+key, value);
 	}
 	
+	/**
+	 * @see ICache.addBytes
+	 */
+	@Override
+	public void addBytes(String key,byte[] value, int timeoutInSeconds){
+		this.boilerplateMap.put(this.cacheKeyPrefix+":"+key, value);
+	}
+	
+	/**
+	 * @see ICache.getBytes
+	 */
+	@Override
+	public byte[] getBytes(String key) {
+		return (byte[])this.boilerplateMap.get(this.cacheKeyPrefix+":"+key);
+	}
+	
 	/**
 	 * @see ICache.getInstance
 	 */
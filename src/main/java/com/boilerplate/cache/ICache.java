@@ -29,6 +29,22 @@ public interface ICache {
 	 */
 	public <T extends Base> T get(String key,Class<T> typeOfClass);
 	
+	/**
+	 * Sets bytes on cache with expiry, for values which are not
+	 * saved as XML
+	 * @param key The key of the item
+	 * @param value The bytes of the value
+	 * @param timeoutInSeconds Time out
+	 */
+	public void addBytes(String key,byte[] value, int timeoutInSeconds);
+	
+	/**
+	 * This method is used to read bytes from cache
+	 * @param key This is the key of the item
+	 * @return The bytes associated with the key, null if there are none.
+	 */
+	public byte[] getBytes(String key);
+	
 	/**
 	 * This removes the item from cache. If one is found
 	 * If no items are present in cache then nothing is done.
@@ -131,6 +131,42 @@ public class MemCache  extends BaseCache implements ICache{
 		}
 	}
 
+	/**
+	 * @see ICache.addBytes
+	 */
+	@Override
+	public void addBytes(String key,byte[] value, int timeoutInSeconds){
+		try{
+			this.memcachedClient.set(this.cacheKeyPrefix+":"+key, timeoutInSeconds,value);
+		}
+		catch(Exception ex){
+			//we do not expect cache to fail hence we
+			//this exception is not thrown.
+			MemCache.logger.logException("MemCache", "addBytes"
+					, "Catch Block", "Error setting into cache", ex);
+			MemCache.cacheErrorCount++;
+		}
+	}
+
+	/**
+	 * @see ICache.getBytes
+	 */
+	@Override
+	public byte[] getBytes(String key) {
+		byte[] value =null;
+		try{
+			value = this.memcachedClient.get(this.cacheKeyPrefix+":"+key);
+		}
+		catch(Exception ex){
+			//we do not expect cache to fail hence we
+			//this exception is not thrown.
+			MemCache.logger.logException("MemCache", "getBytes"
+					, "Catch Block", "Error getting from cache", ex);
+			MemCache.cacheErrorCount++;
+		}
+		return value;
+	}
+
 	/**
 	*@see ICache.isCacheEnabled
 	*/
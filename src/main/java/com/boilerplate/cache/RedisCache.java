@@ -10,6 +10,7 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisCommands;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.util.SafeEncoder;
 
 /**
  * This is a singleton access point for the Redis cache.
@@ -217,6 +218,68 @@ public class RedisCache  extends BaseCache implements ICache{
 		return t;
 	}
 
+	/**
+	 * @see ICache.addBytes
+	 */
+	@Override
+	public void addBytes(String key,byte[] value, int timeoutInSeconds){
+		if(this.isCacheEnabled()){
+			Jedis jedis = null;
+			try{
+				jedis = RedisCache.pool.getResource();
+				jedis.setex(SafeEncoder.encode(this.cacheKeyPrefix+":"+key), timeoutInSeconds, value);
+				if(this.cacheExceptionCount>0){
+					this.cacheExceptionCount =0;
+				}
+			}
+			catch(Exception ex){
+				//The reason we do not throw the exceptions is because 
+				//we expect the code to work without cache
+				this.cacheExceptionCount++;
+				this.isCacheEnabled = this.cacheExceptionCount <= this.maximumCacheExceptionCount;
+				logger.logException("RedisCache", "addBytes", "Catch Block"
+						, "Exception in adding a new key", ex);
+			}
+			finally{
+				if(jedis != null){
+					jedis.close();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @see ICache.getBytes
+	 */
+	@Override
+	public byte[] getBytes(String key) {
+		byte[] value = null;
+		if(this.isCacheEnabled()){
+			Jedis jedis = null;
+			try{
+				jedis = RedisCache.pool.getResource();
+				value = jedis.get(SafeEncoder.encode(this.cacheKeyPrefix+":"+key));
+				if(this.cacheExceptionCount>0){
+					this.cacheExceptionCount =0;
+				}
+			}
+			catch(Exception ex){
+				//The reason we do not throw the exceptions is because 
+				//we expect the code to work without cache
+				this.cacheExceptionCount++;
+				this.isCacheEnabled = this.cacheExceptionCount <= this.maximumCacheExceptionCount;
+				logger.logException("RedisCache", "getBytes", "Catch Block"
+						, "Exception in getting", ex);
+			}
+			finally{
+				if(jedis != null){
+					jedis.close();
+				}
+			}
+		}
+		return value;
+	}
+
 	/**
 	 * @see ICache.remove
 	 */
@@ -0,0 +1,78 @@
+package com.boilerplate.database.interfaces;
+
+/**
+ * This enum is the set of fetch profiles a data access call may ask for. The
+ * associations of users and expenses are lazy, a profile names the
+ * associations a use case reads so that only those are loaded with the
+ * entity. The associations of each profile are declared as fetch-profile
+ * elements in the hibernate mappings, the attachments of expenses are loaded
+ * by MySQLExpense in one query for all the expenses read.
+ *
+ * @author ruchi
+ *
+ */
+public enum FetchProfile {
+
+	/**
+	 * No association is loaded, for checks and emails which read only the
+	 * columns of the entity
+	 */
+	SUMMARY("summary", false),
+
+	/**
+	 * Everything is loaded, for entities returned to the client as they are
+	 */
+	DETAIL("detail", true),
+
+	/**
+	 * The roles of users are loaded, for authentication and role changes
+	 */
+	AUTHZ("authz", false),
+
+	/**
+	 * The attachments of expenses are loaded and the roles of users are not,
+	 * for the views of finance
+	 */
+	FINANCE("finance", true);
+
+	/**
+	 * This is the name of the profile in the hibernate mappings
+	 */
+	private final String name;
+
+	/**
+	 * This is true if the attachments of expenses are loaded
+	 */
+	private final boolean loadsAttachments;
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param name
+	 *            The name of the profile in the hibernate mappings
+	 * @param loadsAttachments
+	 *            True if the attachments of expenses are loaded
+	 */
+	private FetchProfile(String name, boolean loadsAttachments) {
+		this.name = name;
+		this.loadsAttachments = loadsAttachments;
+	}
+
+	/**
+	 * This method gets the name of the profile in the hibernate mappings
+	 *
+	 * @return The name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * This method checks if the attachments of expenses are loaded
+	 *
+	 * @return True if they are loaded
+	 */
+	public boolean loadsAttachments() {
+		return loadsAttachments;
+	}
+}
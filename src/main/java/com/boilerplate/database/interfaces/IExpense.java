@@ -1,14 +1,20 @@
 package com.boilerplate.database.interfaces;
 
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import com.boilerplate.exceptions.rest.BadRequestException;
+import com.boilerplate.framework.ExpenseAggregateDeltas;
+import com.boilerplate.framework.ExpenseCursor;
 import com.boilerplate.java.entities.ExpenseEntity;
 import com.boilerplate.java.entities.ExpenseHistoryEntity;
+import com.boilerplate.java.entities.ExpenseListViewEntity;
+import com.boilerplate.java.entities.ExpenseReportEntity;
 import com.boilerplate.java.entities.ExpenseStatusType;
 import com.boilerplate.java.entities.FetchExpenseEntity;
 import com.boilerplate.java.entities.FileMappingEntity;
+import com.boilerplate.java.entities.GenericPageEncapsulationEntity;
 import com.boilerplate.java.entities.UserRoleType;
 
 /**
@@ -20,6 +26,12 @@ import com.boilerplate.java.entities.UserRoleType;
  */
 public interface IExpense {
 
+	/**
+	 * These are the names of the values of the rows read for export
+	 */
+	public static final String[] EXPORT_COLUMNS = { "id", "userId", "userName", "title", "description", "amount",
+			"status", "approverComments", "creationDate", "updationDate" };
+
 	/**
 	 * this method is used to save a new expense in the system
 	 * 
@@ -52,6 +64,20 @@ public interface IExpense {
 	 */
 	public ExpenseEntity getExpense(String id) throws BadRequestException;
 
+	/**
+	 * This method is used to get an expense by id, its attachments are loaded
+	 * only if the fetch profile needs them
+	 * 
+	 * @param id
+	 *            This is the id of the expense
+	 * @param fetchProfile
+	 *            This is the fetch profile of the use case
+	 * @return The expense entity
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends a bad request
+	 */
+	public ExpenseEntity getExpense(String id, FetchProfile fetchProfile) throws BadRequestException;
+
 	/**
 	 * This method is used to save expense history
 	 * 
@@ -64,50 +90,81 @@ public interface IExpense {
 	 */
 	public ExpenseHistoryEntity saveExpenseHistory(ExpenseHistoryEntity expenseHistoryEntity) throws Exception;
 
+	/**
+	 * This method is used to get the histories of an expense saved after a
+	 * date, latest first
+	 * 
+	 * @param expenseId
+	 *            This is the id of the expense
+	 * @param date
+	 *            This is the date after which histories are fetched
+	 * @return The list of histories
+	 * @throws BadRequestException
+	 *             Throw this exception if histories could not be fetched
+	 */
+	public List<ExpenseHistoryEntity> getExpenseHistoriesAfter(String expenseId, Date date)
+			throws BadRequestException;
+
 	/**
 	 * This method is used to get list of expenses for a given user
 	 * 
 	 * @param fetchExpenseEntity
 	 *            This entity contain user id, date range and status for
 	 *            filtration
-	 * @return List of expenses
+	 * @param cursor
+	 *            This is the cursor after which the page starts, null for the
+	 *            first page
+	 * @param pageSize
+	 *            This is the maximum number of expenses in the page
+	 * @return Page of expenses
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
 	 */
-	public List<ExpenseEntity> getExpenses(FetchExpenseEntity fetchExpenseEntity) throws BadRequestException;
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpenses(FetchExpenseEntity fetchExpenseEntity,
+			ExpenseCursor cursor, int pageSize) throws BadRequestException;
 
 	/**
 	 * This method is used to fetch list of expenses filed under an approver
 	 * 
-	 * @param approverId
-	 *            this is the id of the approver
-	 * @return List of expenses
+	 * @param userIds
+	 *            this is the ids of the users of the approver, from the user
+	 *            directory
+	 * @param cursor
+	 *            This is the cursor after which the page starts, null for the
+	 *            first page
+	 * @param pageSize
+	 *            This is the maximum number of expenses in the page
+	 * @return Page of expenses
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
 	 */
-	public List<ExpenseEntity> getExpensesForApprover(String approverId) throws BadRequestException;
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForApprover(List<String> userIds,
+			ExpenseCursor cursor, int pageSize) throws BadRequestException;
 
 	/**
-	 * This method is used to get file mappings
+	 * This method is used to get the active file mappings of a list of
+	 * expenses in a single query
 	 * 
 	 * @param expenseIds
 	 *            This is the list of expense ids
 	 * @return List of file mappings
 	 * @throws BadRequestException
-	 *             Throw this exssception if user sends a bad request
+	 *             Throw this exception if user sends a bad request
 	 */
-	public List<FileMappingEntity> getFileMappingsForExpenses(String expenseIds) throws BadRequestException;
+	public List<FileMappingEntity> getFileMappingsForExpenses(List<String> expenseIds) throws BadRequestException;
 
 	/**
-	 * This method is used to get expenses for finance
+	 * This method is used to get the total amount of the expenses of each user
+	 * in a status for finance. The totals are read from the expense
+	 * aggregates, so the expenses themselves are not scanned.
 	 * 
 	 * @param status
 	 *            This is status
-	 * @return List<Map<String, Object>>
+	 * @return List of reports having the user id, user name and total amount
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends bad request
 	 */
-	public List<Map<String, Object>> getUserAmountsForFinance(String status) throws BadRequestException;
+	public List<ExpenseReportEntity> getUserAmountsForFinance(String status) throws BadRequestException;
 
 	/**
 	 * This method is used to save a list of expenses
@@ -129,13 +186,56 @@ public interface IExpense {
 	 */
 	public void deleteExpense(ExpenseEntity expenseEntity);
 
+	/**
+	 * This method is used to get the list view of the expenses to be approved
+	 * by an approver, only the attributes of the list are read
+	 * 
+	 * @param userIds
+	 *            This is the ids of the users of the approver, from the user
+	 *            directory
+	 * @param cursor
+	 *            This is the cursor after which the page starts, null for the
+	 *            first page
+	 * @param pageSize
+	 *            This is the maximum number of expenses in the page
+	 * @return Page of expense list views
+	 * @throws BadRequestException
+	 *             Throw this exception if any exception occurs while fetching
+	 *             expenses
+	 */
+	public GenericPageEncapsulationEntity<ExpenseListViewEntity> getExpenseListViewsForApprover(
+			List<String> userIds, ExpenseCursor cursor, int pageSize) throws BadRequestException;
+
+	/**
+	 * This method is used to get the list view of all the expenses to be
+	 * approved, only the attributes of the list are read
+	 * 
+	 * @param cursor
+	 *            This is the cursor after which the page starts, null for the
+	 *            first page
+	 * @param pageSize
+	 *            This is the maximum number of expenses in the page
+	 * @return Page of expense list views
+	 * @throws BadRequestException
+	 *             Throw this exception if any exception occurs while fetching
+	 *             expenses
+	 */
+	public GenericPageEncapsulationEntity<ExpenseListViewEntity> getExpenseListViewsForSuper(ExpenseCursor cursor,
+			int pageSize) throws BadRequestException;
+
 	/**
 	 * This method is used to get all active expenses
 	 * 
-	 * @return List of expenses
+	 * @param cursor
+	 *            This is the cursor after which the page starts, null for the
+	 *            first page
+	 * @param pageSize
+	 *            This is the maximum number of expenses in the page
+	 * @return Page of expenses
 	 * @throws BadRequestException
 	 */
-	public List<ExpenseEntity> getExpensesForSuper() throws BadRequestException;
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForSuper(ExpenseCursor cursor, int pageSize)
+			throws BadRequestException;
 
 	/**
 	 * This method is used to get status by expense
@@ -147,4 +247,178 @@ public interface IExpense {
 	 *             throw this exception if user sends bad request
 	 */
 	public List<ExpenseEntity> getExpensesByStatus(ExpenseStatusType status) throws BadRequestException;
+
+	/**
+	 * This method is used to get a page of expenses by status
+	 * 
+	 * @param status
+	 *            This is the status
+	 * @param cursor
+	 *            This is the cursor after which the page starts, null for the
+	 *            first page
+	 * @param pageSize
+	 *            This is the maximum number of expenses in the page
+	 * @return Page of expenses
+	 * @throws BadRequestException
+	 *             throw this exception if user sends bad request
+	 */
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesByStatus(ExpenseStatusType status,
+			ExpenseCursor cursor, int pageSize) throws BadRequestException;
+
+	/**
+	 * This method is used to set the file mappings and attachment ids of a
+	 * list of expenses, all the mappings are fetched in a single query
+	 * 
+	 * @param expenses
+	 *            This is the list of expenses
+	 * @throws BadRequestException
+	 *             throw this exception if user sends bad request
+	 */
+	public void hydrateAttachments(List<ExpenseEntity> expenses) throws BadRequestException;
+
+	/**
+	 * This method is used to read the expenses in a status for finance reports.
+	 * The expenses are read one at a time ordered by user, each row has the
+	 * expense at index 0 and the full name of its user at index 1. Attachments
+	 * of the expenses are not set.
+	 * 
+	 * @param status
+	 *            This is the status
+	 * @param rowHandler
+	 *            This is the handler which is given each row
+	 * @throws BadRequestException
+	 *             throw this exception if user sends bad request
+	 */
+	public void scrollExpensesForReports(ExpenseStatusType status, IRowHandler<Object[]> rowHandler)
+			throws BadRequestException;
+
+	/**
+	 * This method is used to read the expenses in a status for export. The
+	 * expenses are read one at a time, latest first, optionally only those
+	 * created in a date range. Each row has the id, user id, user name, title,
+	 * description, amount, status, approver comments, creation date and
+	 * updation date of an expense in this order, the names of the values are
+	 * in EXPORT_COLUMNS.
+	 * 
+	 * @param fetchExpenseEntity
+	 *            This entity has the status and the optional date range
+	 * @param rowHandler
+	 *            This is the handler which is given each row
+	 * @throws BadRequestException
+	 *             throw this exception if user sends bad request
+	 */
+	public void scrollExpensesForExport(FetchExpenseEntity fetchExpenseEntity, IRowHandler<Object[]> rowHandler)
+			throws BadRequestException;
+
+	/**
+	 * This method is used to read the expenses changed since a date for the
+	 * search index, in the order of their updation date. Each row has the id,
+	 * user id, user name, title, description, amount, status and updation date
+	 * of an expense in this order.
+	 * 
+	 * @param updatedSince
+	 *            This is the date, expenses updated at or after it are read
+	 * @param rowHandler
+	 *            This is the handler which is given each row
+	 * @throws BadRequestException
+	 *             throw this exception if user sends bad request
+	 */
+	public void scrollExpensesForSearchIndex(Date updatedSince, IRowHandler<Object[]> rowHandler)
+			throws BadRequestException;
+
+	/**
+	 * This method is used to get a list of expenses by their ids in a single
+	 * query, attachments of the expenses are not set
+	 * 
+	 * @param expenseIds
+	 *            This is the list of expense ids
+	 * @return List of expenses found, ids which do not exist are skipped
+	 * @throws BadRequestException
+	 *             throw this exception if user sends bad request
+	 */
+	public List<ExpenseEntity> getExpensesByIds(List<String> expenseIds) throws BadRequestException;
+
+	/**
+	 * This method is used to change the status of an expense if it is still in
+	 * one of the given statuses. The change is one conditional update, so if
+	 * the status has been changed by someone else since the expense was read
+	 * nothing is changed. On success the new values are set on the given
+	 * expense.
+	 * 
+	 * @param expenseEntity
+	 *            This is the expense as it was read
+	 * @param sourceStatuses
+	 *            This is the statuses the expense must be in
+	 * @param status
+	 *            This is the new status
+	 * @param approverComments
+	 *            This is the new approver comments
+	 * @return True if the status was changed
+	 */
+	public boolean transitionExpenseStatus(ExpenseEntity expenseEntity, Set<ExpenseStatusType> sourceStatuses,
+			ExpenseStatusType status, String approverComments);
+
+	/**
+	 * This method is used to change the status, approver comments and update
+	 * date of a list of expenses and save their history rows, all in one
+	 * transaction. The status is changed with one conditional update, if any of
+	 * the expenses is no longer in one of the given statuses nothing is saved.
+	 * It must be called in a unit of work, which owns the transaction and is
+	 * marked to be rolled back if nothing is saved.
+	 * 
+	 * @param expenses
+	 *            This is the list of expenses with new values set
+	 * @param sourceStatuses
+	 *            This is the statuses the expenses must be in
+	 * @param expenseHistories
+	 *            This is the list of history rows to be saved
+	 * @return True if all the expenses were changed, false if nothing was
+	 *         saved
+	 * @throws Exception
+	 *             Throw this exception if any exception occurs while saving,
+	 *             nothing is saved in this case
+	 */
+	public boolean transitionExpenseStatuses(List<ExpenseEntity> expenses, Set<ExpenseStatusType> sourceStatuses,
+			List<ExpenseHistoryEntity> expenseHistories) throws Exception;
+
+	/**
+	 * This method is used to save the new details of an expense submitted
+	 * again by its owner, if it is still in one of the given statuses and
+	 * belongs to the user of the expense. The change is one conditional
+	 * update, so nothing is changed if someone else has changed the status.
+	 * 
+	 * @param expenseEntity
+	 *            This is the expense with new title, description, amount,
+	 *            status and update date
+	 * @param sourceStatuses
+	 *            This is the statuses the expense must be in
+	 * @return True if the expense was changed
+	 */
+	public boolean resubmitExpense(ExpenseEntity expenseEntity, Set<ExpenseStatusType> sourceStatuses);
+
+	/**
+	 * This method is used to apply changes to the expense aggregates, which
+	 * have the number and total amount of the expenses of each user in each
+	 * status. It must be called in the unit of work which changes the
+	 * expenses, so the aggregates are changed in the same transaction.
+	 * 
+	 * @param deltas
+	 *            This is the changes to be applied
+	 * @throws Exception
+	 *             Throw this exception if the aggregates could not be changed
+	 */
+	public void updateExpenseAggregates(ExpenseAggregateDeltas deltas) throws Exception;
+
+	/**
+	 * This method is used to correct any drift of the expense aggregates from
+	 * the expenses. The aggregates computed from the expenses are compared
+	 * with the saved ones in one read which locks neither, and the
+	 * differences are added to the saved aggregates.
+	 * 
+	 * @return The number of aggregate rows corrected
+	 * @throws Exception
+	 *             Throw this exception if the aggregates could not be
+	 *             corrected, the old aggregates are kept in this case
+	 */
+	public int rebuildExpenseAggregates() throws Exception;
 }
@@ -0,0 +1,25 @@
+package com.boilerplate.database.interfaces;
+
+/**
+ * This interface is used by the background jobs which must run on one server
+ * of the cluster at a time.
+ * 
+ * @author ruchi
+ *
+ */
+public interface IJobLock {
+
+	/**
+	 * This method takes the lock of a job unless another server holds it. The
+	 * lock is not released, it expires after the given time, so a job which
+	 * takes it for the length of its interval runs once in the interval across
+	 * the cluster.
+	 * 
+	 * @param jobName
+	 *            The name of the job
+	 * @param timeoutInSeconds
+	 *            The seconds after which the lock expires
+	 * @return True if the lock was taken and the job should run
+	 */
+	public boolean tryLock(String jobName, int timeoutInSeconds);
+}
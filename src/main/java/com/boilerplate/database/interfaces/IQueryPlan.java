@@ -0,0 +1,31 @@
+package com.boilerplate.database.interfaces;
+
+import com.boilerplate.java.collections.BoilerplateMap;
+
+/**
+ * This interface has methods to check the plans of the configured queries
+ * 
+ * @author ruchi
+ *
+ */
+public interface IQueryPlan {
+
+	/**
+	 * This is the prefix of the plan of a query which reads a whole table
+	 */
+	public static final String FULL_SCAN = "FULL SCAN";
+
+	/**
+	 * This is the prefix of the plan of a query which could not be explained
+	 */
+	public static final String ERROR = "ERROR";
+
+	/**
+	 * This method explains every configured select query on the primary
+	 * database. The plan of a query which reads a whole table, and is not
+	 * allowed to, starts with FULL_SCAN.
+	 * 
+	 * @return The map of query key and its plan
+	 */
+	public BoilerplateMap<String, String> explainConfiguredQueries();
+}
@@ -0,0 +1,24 @@
+package com.boilerplate.database.interfaces;
+
+/**
+ * This interface is used to consume the rows of a query one at a time, so the
+ * whole result never needs to be held in memory
+ * 
+ * @author ruchi
+ *
+ * @param <T>
+ *            The type of the row
+ */
+public interface IRowHandler<T> {
+
+	/**
+	 * This method is called for every row of the result in order
+	 * 
+	 * @param row
+	 *            This is the row
+	 * @throws Exception
+	 *             Throw this exception if the row could not be handled, it
+	 *             stops reading the result
+	 */
+	public void handle(T row) throws Exception;
+}
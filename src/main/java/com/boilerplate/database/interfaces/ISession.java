@@ -25,11 +25,12 @@ public interface ISession {
 	public Session getSession(String sessionId);
 
 	/**
-	 * Updates a session in the database
+	 * Updates a session in the database, a session which has been deleted is
+	 * not saved again
 	 * 
 	 * @param session
 	 *            session to be updated
-	 * @return The session
+	 * @return The session, null if the session has been deleted
 	 */
 	public Session update(Session session);
 
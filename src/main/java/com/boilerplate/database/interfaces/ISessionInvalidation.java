@@ -0,0 +1,66 @@
+package com.boilerplate.database.interfaces;
+
+/**
+ * This interface tells the other servers that a session has been updated or
+ * deleted, so that they stop using the copy of it they hold in memory.
+ *
+ * @author ruchi
+ *
+ */
+public interface ISessionInvalidation {
+
+	/**
+	 * This interface is implemented by the receiver of the invalidations sent
+	 * by the other servers
+	 */
+	public interface Listener {
+
+		/**
+		 * This method is called when another server has updated or deleted a
+		 * session
+		 *
+		 * @param sessionId
+		 *            The id of the session
+		 * @param isDeleted
+		 *            True if the session has been deleted, as on logout
+		 */
+		public void onInvalidate(String sessionId, boolean isDeleted);
+
+		/**
+		 * This method is called when the invalidations start to be received,
+		 * the ones sent before may have been missed
+		 */
+		public void onSubscribe();
+
+		/**
+		 * This method is called when the invalidations stop being received,
+		 * as when the connection is lost
+		 */
+		public void onUnsubscribe();
+	}
+
+	/**
+	 * This method tells the other servers that a session has been updated or
+	 * deleted
+	 *
+	 * @param sessionId
+	 *            The id of the session
+	 * @param isDeleted
+	 *            True if the session has been deleted
+	 */
+	public void publish(String sessionId, boolean isDeleted);
+
+	/**
+	 * This method starts receiving the invalidations sent by the other
+	 * servers in the background
+	 *
+	 * @param listener
+	 *            The receiver of the invalidations
+	 */
+	public void subscribe(Listener listener);
+
+	/**
+	 * This method stops receiving the invalidations
+	 */
+	public void unsubscribe();
+}
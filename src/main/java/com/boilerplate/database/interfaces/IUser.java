@@ -1,7 +1,6 @@
 package com.boilerplate.database.interfaces;
 
 import java.util.List;
-import java.util.Map;
 
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.java.entities.ExternalFacingUser;
@@ -54,6 +53,37 @@ public interface IUser {
 	 */
 	public ExternalFacingUser updateUser(ExternalFacingUser userEntity) throws Exception;
 
+	/**
+	 * This method is used to change the active flag of a user, no other
+	 * column is written
+	 * 
+	 * @param id
+	 *            This is the id of the user
+	 * @param isActive
+	 *            This is the new value of the active flag
+	 * @return True if the flag has been changed, false if the user is not
+	 *         found or already has the value
+	 * @throws BadRequestException
+	 *             Throw this exception if any exception occurs while saving
+	 *             user
+	 */
+	public boolean updateUserIsActive(String id, boolean isActive) throws BadRequestException;
+
+	/**
+	 * This method is used to change the approver of users, no other column is
+	 * written
+	 * 
+	 * @param ids
+	 *            This is the list of ids of the users
+	 * @param approverId
+	 *            This is the id of the approver
+	 * @return The number of users changed
+	 * @throws BadRequestException
+	 *             Throw this exception if any exception occurs while saving
+	 *             users
+	 */
+	public int updateUserApprover(List<String> ids, String approverId) throws BadRequestException;
+
 	/**
 	 * This method is used to get user by user id
 	 * 
@@ -66,6 +96,20 @@ public interface IUser {
 	 */
 	public ExternalFacingUser getUserById(String userId) throws BadRequestException;
 
+	/**
+	 * This method is used to get user by user id with the associations of a
+	 * fetch profile
+	 * 
+	 * @param userId
+	 *            this is the user d of the user
+	 * @param fetchProfile
+	 *            this is the fetch profile of the use case
+	 * @return User entity
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends bad request
+	 */
+	public ExternalFacingUser getUserById(String userId, FetchProfile fetchProfile) throws BadRequestException;
+
 	/**
 	 * This method is used to get user by id
 	 * 
@@ -78,6 +122,20 @@ public interface IUser {
 	 */
 	public ExternalFacingUser getUser(String id) throws BadRequestException;
 
+	/**
+	 * This method is used to get user by id with the associations of a fetch
+	 * profile
+	 * 
+	 * @param id
+	 *            This is the id of the user
+	 * @param fetchProfile
+	 *            This is the fetch profile of the use case
+	 * @return User entity
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends bad request
+	 */
+	public ExternalFacingUser getUser(String id, FetchProfile fetchProfile) throws BadRequestException;
+
 	/**
 	 * This method is used to get all finance users
 	 * 
@@ -85,10 +143,11 @@ public interface IUser {
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
 	 */
-	public List<Map<String, Object>> getUsersByRole(String role) throws BadRequestException;
+	public List<ExternalFacingUser> getUsersByRole(String role) throws BadRequestException;
 
 	/**
-	 * This method is used to get all users
+	 * This method is used to get all users with their role mappings, the
+	 * users are not attached to a session
 	 * 
 	 * @return List of users
 	 * @throws BadRequestException
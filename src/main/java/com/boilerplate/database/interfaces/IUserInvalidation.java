@@ -0,0 +1,61 @@
+package com.boilerplate.database.interfaces;
+
+/**
+ * This interface tells the other servers that a user or its roles have
+ * changed, so that they read the user again into their user directory.
+ *
+ * @author ruchi
+ *
+ */
+public interface IUserInvalidation {
+
+	/**
+	 * This interface is implemented by the receiver of the invalidations sent
+	 * by the other servers
+	 */
+	public interface Listener {
+
+		/**
+		 * This method is called when another server has changed a user
+		 *
+		 * @param userId
+		 *            The id of the user
+		 */
+		public void onInvalidate(String userId);
+
+		/**
+		 * This method is called when the invalidations start to be received,
+		 * the ones sent before may have been missed
+		 */
+		public void onSubscribe();
+
+		/**
+		 * This method is called when the invalidations stop being received,
+		 * as when the connection is lost
+		 */
+		public void onUnsubscribe();
+	}
+
+	/**
+	 * This method tells the other servers that a user has changed, it is
+	 * called once the change has committed
+	 *
+	 * @param userId
+	 *            The id of the user
+	 */
+	public void publish(String userId);
+
+	/**
+	 * This method starts receiving the invalidations sent by the other
+	 * servers in the background
+	 *
+	 * @param listener
+	 *            The receiver of the invalidations
+	 */
+	public void subscribe(Listener listener);
+
+	/**
+	 * This method stops receiving the invalidations
+	 */
+	public void unsubscribe();
+}
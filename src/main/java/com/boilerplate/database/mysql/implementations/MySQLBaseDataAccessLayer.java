@@ -1,18 +1,39 @@
 package com.boilerplate.database.mysql.implementations;
 
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SQLQuery;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
+import org.hibernate.engine.profile.Association;
+import org.hibernate.engine.profile.Fetch;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.exception.JDBCConnectionException;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.transform.AliasToEntityMapResultTransformer;
+import org.hibernate.transform.ResultTransformer;
 
+import com.boilerplate.database.interfaces.FetchProfile;
+import com.boilerplate.database.interfaces.IRowHandler;
 import com.boilerplate.framework.HibernateUtility;
 import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.ReadReplicaRouter;
+import com.boilerplate.framework.UnitOfWork;
 
 /**
  * This method is a base of data access layer
@@ -28,9 +49,10 @@ public class MySQLBaseDataAccessLayer {
 	private Logger logger = Logger.getInstance(MySQLBaseDataAccessLayer.class);
 
 	/**
-	 * This is the session
+	 * This is the number of rows read by a scroll after which the session is
+	 * cleared
 	 */
-	private Session session = null;
+	private static final int SCROLL_CLEAR_INTERVAL = 500;
 
 	/**
 	 * This method creates an object in the database
@@ -44,23 +66,21 @@ public class MySQLBaseDataAccessLayer {
 	 */
 	public <T> T create(T t) throws Exception {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			// get all the configurations from the DB as a list
-			Transaction transaction = session.beginTransaction();
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
 			session.saveOrUpdate(t);
 			// commit the transaction
-			transaction.commit();
+			this.commit(transaction);
 			return t;
 		} catch (Exception ex) {
 			logger.logException("MySQLBaseDataAccessLayer", "create", "try-catch block", ex.getMessage(), ex);
-			session.getTransaction().rollback();
+			this.rollback(transaction);
 			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		}
 
 	}
@@ -77,25 +97,24 @@ public class MySQLBaseDataAccessLayer {
 	 */
 	public <T> List<T> create(List<T> ts) throws Exception {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			// get all the configurations from the DB as a list
-			Transaction transaction = session.beginTransaction();
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
 			for (T t : ts) {
 				session.saveOrUpdate(t);
 			}
 			// commit the transaction
-			transaction.commit();
+			this.commit(transaction);
 			return ts;
 		} catch (Exception ex) {
 			logger.logException("MySQLBaseDataAccessLayer", "create with list of objects as parameters",
 					"try-catch block", ex.getMessage(), ex);
+			this.rollback(transaction);
 			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		}
 
 	}
@@ -109,19 +128,26 @@ public class MySQLBaseDataAccessLayer {
 	 */
 	public <T> T update(T t) {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			// get all the configurations from the DB as a list
-			Transaction transaction = session.beginTransaction();
-			session.saveOrUpdate(t);
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
+			if (UnitOfWork.isBoundTo(session) && !session.contains(t)) {
+				// the unit of work may already hold another instance with the
+				// same id, copy the state onto it
+				session.merge(t);
+			} else {
+				session.saveOrUpdate(t);
+			}
 			// commit the transaction
-			transaction.commit();
+			this.commit(transaction);
 			return t;
+		} catch (RuntimeException ex) {
+			this.rollback(transaction);
+			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		}
 
 	}
@@ -146,20 +172,22 @@ public class MySQLBaseDataAccessLayer {
 	 */
 	public void delete(List<Object> objects) {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			Transaction transaction = session.beginTransaction();
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
 			// delete the object
 			for (Object object : objects) {
 				session.delete(object);
 			}
 			// commit
-			transaction.commit();
+			this.commit(transaction);
+		} catch (RuntimeException ex) {
+			this.rollback(transaction);
+			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		} // end finally
 	}
 
@@ -179,39 +207,75 @@ public class MySQLBaseDataAccessLayer {
 	 * 
 	 */
 	public List<Map<String, Object>> executeSelectNative(String sqlQuery, Map<String, Object> parameters) {
+		// this function convert the data to column name and value pair
+		return this.executeSelectNative(sqlQuery, parameters, AliasToEntityMapResultTransformer.INSTANCE);
+	}// end method
+
+	/**
+	 * This method executes the select native query and maps each row straight
+	 * to an object of the given class, see NativeRowMapper. No map is built
+	 * for the rows, the columns should be aliased as the properties of the
+	 * class, or the class should be a string, number or date if the query
+	 * selects a single column.
+	 * 
+	 * @param sqlQuery
+	 *            The query to get the data from the database.
+	 * @sqlQuery example: "select user.Id as id, user.EmailId as email from
+	 *           User user where user.Id = :Id"
+	 * @param parameters
+	 *            The parameter map parameter: {"Id":"5425"}
+	 * @param rowClass
+	 *            The class of the rows
+	 * @return The list of rows
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> executeSelectNative(String sqlQuery, Map<String, Object> parameters, Class<T> rowClass) {
+		return this.executeSelectNative(sqlQuery, parameters, new NativeRowMapper<T>(rowClass));
+	}// end method
+
+	/**
+	 * This method executes the select native query and transforms the rows
+	 * with the given transformer
+	 * 
+	 * @param sqlQuery
+	 *            The query to get the data from the database.
+	 * @param parameters
+	 *            The parameter map
+	 * @param resultTransformer
+	 *            The transformer of the rows
+	 * @return The list of transformed rows
+	 */
+	@SuppressWarnings("rawtypes")
+	private List executeSelectNative(String sqlQuery, Map<String, Object> parameters,
+			ResultTransformer resultTransformer) {
 		Session session = null;
-		if (this.session != null) {
-			session = this.session;
-		}
+		Transaction transaction = null;
 		try {
 
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-
+			session = this.acquireReadSession();
+			// native sql does not see changes still held in the session
+			this.flushUnitOfWork(session);
 			// begin a transaction
-			Transaction transaction = session.beginTransaction();
+			transaction = this.beginTransaction(session);
 			// create query
 			SQLQuery query = session.createSQLQuery(sqlQuery);
-			for (String key : parameters.keySet()) {
-				query.setParameter(key, (parameters.get(key)));
-			}
-			// this function convert the data to column name and value pair
-			query.setResultTransformer(AliasToEntityMapResultTransformer.INSTANCE);
+			this.bindParameters(query, parameters);
+			query.setResultTransformer(resultTransformer);
 
-			List<Map<String, Object>> aliasToValueMapList = query.list();
+			List rows = query.list();
 
-			transaction.commit();
+			this.commit(transaction);
 
-			return aliasToValueMapList;
+			return rows;
 		} catch (Exception ex) {
 			logger.logException("MySQLBaseDataAccessLayer", "executeSelectNative", "try-catch block",
 					ex.getMessage() + "~~~" + ex.fillInStackTrace(), ex);
-			session.getTransaction().rollback();
+			this.rollback(transaction);
+			this.reportReadFailure(session, ex);
 			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		} // end finally
 	}// end method
 
@@ -237,23 +301,25 @@ public class MySQLBaseDataAccessLayer {
 	 */
 	public int executeScalorNative(String sqlQuery, Map<String, Object> parameters) throws Exception {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
+			session = this.acquireWriteSession();
+			// native sql does not see changes still held in the session
+			this.flushUnitOfWork(session);
 			// begin a transaction
-			Transaction transaction = session.beginTransaction();
+			transaction = this.beginTransaction(session);
 			// get the user using a hsql query
 			SQLQuery query = session.createSQLQuery(sqlQuery);
-			for (String key : parameters.keySet()) {
-				query.setParameter(key, parameters.get(key));
-			}
+			this.bindParameters(query, parameters);
 			int rowsEffected = query.executeUpdate();
-			transaction.commit();
+			this.commit(transaction);
 			return rowsEffected;
+		} catch (Exception ex) {
+			this.rollback(transaction);
+			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		} // end finally
 	}// end method
 
@@ -267,24 +333,72 @@ public class MySQLBaseDataAccessLayer {
 	 * @return result of query execution
 	 */
 	public <T> List<T> executeSelect(String hSQLQuery, Map<String, Object> queryParameters) {
+		return this.executeSelect(hSQLQuery, queryParameters, null);
+	}// end method
+
+	/**
+	 * This method executes a given query, the result is kept in the given
+	 * query cache region. The result is dropped by hibernate when any table
+	 * of the query is written, so only queries of read mostly tables should be
+	 * cached.
+	 * 
+	 * @param hSQLQuery
+	 *            The query to be executed
+	 * @param queryParameters
+	 *            The query parameters
+	 * @param cacheRegion
+	 *            The query cache region, null if the result must not be cached
+	 * @return result of query execution
+	 */
+	public <T> List<T> executeSelect(String hSQLQuery, Map<String, Object> queryParameters, String cacheRegion) {
+		return this.executeSelect(hSQLQuery, queryParameters, cacheRegion, FetchProfile.SUMMARY);
+	}// end method
+
+	/**
+	 * This method executes a given query and loads the associations of the
+	 * given fetch profile for the entities of the result. A collection of the
+	 * profile is loaded for many entities at once up to its batch size, hql
+	 * does not use the join fetches of a profile.
+	 * 
+	 * @param hSQLQuery
+	 *            The query to be executed
+	 * @param queryParameters
+	 *            The query parameters
+	 * @param cacheRegion
+	 *            The query cache region, null if the result must not be cached
+	 * @param fetchProfile
+	 *            The fetch profile of the use case
+	 * @return result of query execution
+	 */
+	public <T> List<T> executeSelect(String hSQLQuery, Map<String, Object> queryParameters, String cacheRegion,
+			FetchProfile fetchProfile) {
 		Session session = null;
 		try {
 
-			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
+			// open a session, cached results are read from the core database
+			// as the cache is shared with its writes
+			session = cacheRegion == null ? this.acquireReadSession() : this.acquireSession();
 			session.enableFilter("activeFilter").setParameter("activeStatus", new Boolean(true));
 
 			// get the user using a hsql query
 			Query query = session.createQuery(hSQLQuery);
-			for (String key : queryParameters.keySet()) {
-				query.setParameter(key, queryParameters.get(key));
+			this.bindParameters(query, queryParameters);
+			if (cacheRegion != null) {
+				query.setCacheable(true);
+				query.setCacheRegion(cacheRegion);
 			}
 			List<T> ts = query.list();
+			this.applyFetchProfile(session, ts, fetchProfile);
 			return ts;
+		} catch (RuntimeException ex) {
+			this.reportReadFailure(session, ex);
+			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
+			// the filter must not leak into other calls of the unit of work
+			if (UnitOfWork.isBoundTo(session)) {
+				session.disableFilter("activeFilter");
 			}
+			this.releaseSession(session);
 		} // end finally
 	}// end method
 
@@ -299,27 +413,113 @@ public class MySQLBaseDataAccessLayer {
 	 */
 	public int executeUpdate(String hSQLQuery, Map<String, Object> queryParameters) {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
+			session = this.acquireWriteSession();
+			// bulk updates do not see changes still held in the session
+			this.flushUnitOfWork(session);
 			// begin a transaction
-			Transaction transaction = session.beginTransaction();
+			transaction = this.beginTransaction(session);
 			// get the user using a hsql query
 			Query query = session.createQuery(hSQLQuery);
 
-			for (String key : queryParameters.keySet()) {
-				query.setParameter(key, queryParameters.get(key));
-			}
+			this.bindParameters(query, queryParameters);
 			int rowsEffected = query.executeUpdate();
-			transaction.commit();
+			this.commit(transaction);
 			return rowsEffected;
+		} catch (RuntimeException ex) {
+			this.rollback(transaction);
+			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
+			this.releaseSession(session);
+		} // end finally
+	}// end method
+
+	/**
+	 * This method gets an entity by its id with the associations of the given
+	 * fetch profile, the profile is enabled on the session so its associations
+	 * are joined to the select of the entity. The entity is read from the core
+	 * database as the entity cache is shared with its writes.
+	 * 
+	 * @param claz
+	 *            The class of the entity
+	 * @param id
+	 *            The id of the entity
+	 * @param fetchProfile
+	 *            The fetch profile of the use case
+	 * @return The entity, null if it does not exist
+	 */
+	public <T> T getById(Class<T> claz, Serializable id, FetchProfile fetchProfile) {
+		Session session = null;
+		boolean profileEnabled = false;
+		try {
+			session = this.acquireSession();
+			if (isFetchProfileDefined(session, fetchProfile)) {
+				session.enableFetchProfile(fetchProfile.getName());
+				profileEnabled = true;
+			}
+			T t = claz.cast(session.get(claz, id));
+			// an entity read from the cache has its collections still lazy
+			if (t != null)
+				this.applyFetchProfile(session, Collections.singletonList(t), fetchProfile);
+			return t;
+		} catch (RuntimeException ex) {
+			this.reportReadFailure(session, ex);
+			throw ex;
+		} finally {
+			// the profile must not leak into other calls of the unit of work
+			if (profileEnabled && UnitOfWork.isBoundTo(session)) {
+				session.disableFetchProfile(fetchProfile.getName());
 			}
+			this.releaseSession(session);
 		} // end finally
 	}// end method
 
+	/**
+	 * This method loads the associations of a fetch profile for the entities
+	 * of a result. The associations are read from the fetch-profile elements
+	 * of the hibernate mappings, rows which are not entities of their owner are
+	 * skipped.
+	 * 
+	 * @param session
+	 *            The session the entities were read in
+	 * @param results
+	 *            The entities
+	 * @param fetchProfile
+	 *            The fetch profile, nothing is loaded if it is not in the
+	 *            mappings
+	 */
+	protected void applyFetchProfile(Session session, List<?> results, FetchProfile fetchProfile) {
+		if (results.isEmpty() || !isFetchProfileDefined(session, fetchProfile))
+			return;
+		org.hibernate.engine.profile.FetchProfile profile = ((SessionFactoryImplementor) session.getSessionFactory())
+				.getFetchProfile(fetchProfile.getName());
+		for (Fetch fetch : profile.getFetches().values()) {
+			Association association = fetch.getAssociation();
+			EntityPersister owner = association.getOwner();
+			for (Object result : results) {
+				if (owner.getMappedClass().isInstance(result))
+					Hibernate.initialize(owner.getPropertyValue(result, association.getAssociationPath()));
+			}
+		}
+	}
+
+	/**
+	 * This method checks if a fetch profile is declared in the hibernate
+	 * mappings
+	 * 
+	 * @param session
+	 *            The session
+	 * @param fetchProfile
+	 *            The fetch profile, may be null
+	 * @return True if it is declared
+	 */
+	private static boolean isFetchProfileDefined(Session session, FetchProfile fetchProfile) {
+		return fetchProfile != null && ((SessionFactoryImplementor) session.getSessionFactory())
+				.containsFetchProfileDefinition(fetchProfile.getName());
+	}
+
 	/**
 	 * This method get the list of object
 	 * 
@@ -328,20 +528,45 @@ public class MySQLBaseDataAccessLayer {
 	 * @return The object list
 	 */
 	public List get(Class claz) {
+		return this.get(claz, null);
+	}
+
+	/**
+	 * This method get the list of object, the list is kept in the given query
+	 * cache region
+	 * 
+	 * @param claz
+	 *            The class
+	 * @param cacheRegion
+	 *            The query cache region, null if the list must not be cached
+	 * @return The object list
+	 */
+	public List get(Class claz, String cacheRegion) {
 		Session session = null;
+		Transaction transaction = null;
 		try {
-			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
+			// open a session, cached results are read from the core database
+			// as the cache is shared with its writes
+			session = cacheRegion == null ? this.acquireReadSession() : this.acquireSession();
 			// session.enableFilter("activeFilter").setParameter("activeStatus",
 			// new Boolean(true));
 
 			// begin a transaction
-			Transaction transaction = session.beginTransaction();
-			return session.createCriteria(claz).list();
-		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
+			transaction = this.beginTransaction(session);
+			Criteria criteria = session.createCriteria(claz);
+			if (cacheRegion != null) {
+				criteria.setCacheable(true);
+				criteria.setCacheRegion(cacheRegion);
 			}
+			List list = criteria.list();
+			this.commit(transaction);
+			return list;
+		} catch (RuntimeException ex) {
+			this.rollback(transaction);
+			this.reportReadFailure(session, ex);
+			throw ex;
+		} finally {
+			this.releaseSession(session);
 		} // end finally
 	}
 
@@ -371,16 +596,14 @@ public class MySQLBaseDataAccessLayer {
 			session.getTransaction().begin();
 			// create query
 			SQLQuery query = session.createSQLQuery(sqlQuery);
-			for (String key : parameters.keySet()) {
-				query.setParameter(key, (parameters.get(key)));
-			}
+			this.bindParameters(query, parameters);
 			// this function convert the data to column name and value pair
 			query.setResultTransformer(AliasToEntityMapResultTransformer.INSTANCE);
 			List<Map<String, Object>> aliasToValueMapList = query.list();
 			session.getTransaction().commit();
 			return aliasToValueMapList;
 		} catch (JDBCConnectionException jce) {
-			this.reinitializeSessionFactory();
+			HibernateUtility.reportConnectionFailure();
 			throw jce;
 		} catch (Exception ex) {
 			logger.logException("MySQLBaseDataAccessLayer", "executeSelectNative returning list of map",
@@ -420,9 +643,7 @@ public class MySQLBaseDataAccessLayer {
 			session.getTransaction().begin();
 			// get the user using a hsql query
 			SQLQuery query = session.createSQLQuery(sqlQuery);
-			for (String key : parameters.keySet()) {
-				query.setParameter(key, parameters.get(key));
-			}
+			this.bindParameters(query, parameters);
 			int rowsEffected = query.executeUpdate();
 			session.getTransaction().commit();
 			return rowsEffected;
@@ -452,12 +673,10 @@ public class MySQLBaseDataAccessLayer {
 		Session session = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
+			session = this.acquireReadSession();
 			// get the user using a hsql query
 			Query query = session.createQuery(hSQLQuery);
-			for (String key : queryParameters.keySet()) {
-				query.setParameter(key, queryParameters.get(key));
-			}
+			this.bindParameters(query, queryParameters);
 			query.setFirstResult(initialLimit);
 			query.setMaxResults(finalLimit);
 
@@ -466,8 +685,60 @@ public class MySQLBaseDataAccessLayer {
 		} catch (Exception ex) {
 			logger.logException("MySQLBaseDataAccessLayer", "executeScalorNative", "try-catch block", ex.getMessage(),
 					ex);
+			this.reportReadFailure(session, ex);
 			throw ex;
 		} finally {
+			this.releaseSession(session);
+		} // end finally
+	}// end method
+
+	/**
+	 * This method executes a given query and hands the rows to the row handler
+	 * one at a time as they are read from the database, instead of building a
+	 * list of the whole result. The session is cleared periodically so the
+	 * loaded entities do not pile up in it. The scroll always uses a session of
+	 * its own, a streaming result keeps the connection busy until it is closed
+	 * and clearing would detach the entities of a unit of work. The scroll is
+	 * read from the replica when it is allowed.
+	 * 
+	 * @param hSQLQuery
+	 *            The query to be executed
+	 * @param queryParameters
+	 *            The query parameters
+	 * @param rowHandler
+	 *            The handler of the rows, a row is an array of the selected
+	 *            values
+	 * @throws Exception
+	 *             Throw this exception if the query fails or the row handler
+	 *             throws an exception
+	 */
+	public void executeSelectScroll(String hSQLQuery, Map<String, Object> queryParameters,
+			IRowHandler<Object[]> rowHandler) throws Exception {
+		Session session = null;
+		ScrollableResults results = null;
+		try {
+			// open a session
+			session = ReadReplicaRouter.getSessionFactoryForRead().openSession();
+			Query query = session.createQuery(hSQLQuery);
+			this.bindParameters(query, queryParameters);
+			query.setReadOnly(true);
+			// make mysql driver stream the rows instead of reading them all
+			query.setFetchSize(Integer.MIN_VALUE);
+			results = query.scroll(ScrollMode.FORWARD_ONLY);
+			int rowCount = 0;
+			while (results.next()) {
+				rowHandler.handle(results.get());
+				if (++rowCount % SCROLL_CLEAR_INTERVAL == 0)
+					session.clear();
+			}
+		} catch (Exception ex) {
+			logger.logException("MySQLBaseDataAccessLayer", "executeSelectScroll", "try-catch block",
+					ex.getMessage(), ex);
+			throw ex;
+		} finally {
+			if (results != null) {
+				results.close();
+			}
 			if (session != null && session.isOpen()) {
 				session.close();
 			}
@@ -475,14 +746,233 @@ public class MySQLBaseDataAccessLayer {
 	}// end method
 
 	/**
-	 * This method reinitialize the session factory when the jdbc exception
-	 * occurs so that invoking between the java and mysql not affect.
+	 * This method executes native statements as jdbc batches in a single
+	 * transaction. Each statement is prepared once and executed with all its
+	 * rows of parameters in one batch, the statements are executed in the
+	 * iteration order of the map.
+	 * 
+	 * @param batches
+	 *            The map of native sql statement and its rows of positional
+	 *            parameters, use a LinkedHashMap if order matters
+	 * @throws Exception
+	 *             Throw this exception if any statement fails, nothing is
+	 *             written in this case
+	 */
+	public void executeBatchNative(final Map<String, List<Object[]>> batches) throws Exception {
+		Session session = null;
+		Transaction transaction = null;
+		try {
+			// open a session
+			session = this.acquireWriteSession();
+			// the batches do not see changes still held in the session
+			this.flushUnitOfWork(session);
+			transaction = this.beginTransaction(session);
+			session.doWork(new Work() {
+				@Override
+				public void execute(Connection connection) throws SQLException {
+					for (String sqlQuery : batches.keySet()) {
+						PreparedStatement statement = connection.prepareStatement(sqlQuery);
+						try {
+							for (Object[] row : batches.get(sqlQuery)) {
+								for (int index = 0; index < row.length; index++) {
+									statement.setObject(index + 1, toJdbcValue(row[index]));
+								}
+								statement.addBatch();
+							}
+							statement.executeBatch();
+						} finally {
+							statement.close();
+						}
+					}
+				}
+			});
+			this.commit(transaction);
+		} catch (Exception ex) {
+			logger.logException("MySQLBaseDataAccessLayer", "executeBatchNative", "try-catch block",
+					ex.getMessage(), ex);
+			this.rollback(transaction);
+			throw ex;
+		} finally {
+			this.releaseSession(session);
+		} // end finally
+	}// end method
+
+	/**
+	 * This method converts a value to the type expected by jdbc. Dates are
+	 * converted to timestamps and enums to their names, as they are mapped.
+	 * 
+	 * @param value
+	 *            The value
+	 * @return The jdbc value
 	 */
-	private void reinitializeSessionFactory() {
-		logger.logInfo("MySQLBaseDataAccessLayer", "reinitializeSessionFactory", "jdbc connection occurs", "");
-		// rebuild main session factory
-		HibernateUtility.reBuildSessionFactory();
+	private static Object toJdbcValue(Object value) {
+		if (value instanceof java.util.Date && !(value instanceof Timestamp))
+			return new Timestamp(((java.util.Date) value).getTime());
+		if (value instanceof Enum)
+			return ((Enum<?>) value).name();
+		return value;
+	}
 
+	/**
+	 * This method binds the query parameters on the given query. A parameter
+	 * whose value is a collection is bound as a parameter list so that it can
+	 * be used with an IN clause.
+	 * 
+	 * @param query
+	 *            The hibernate query, hql or native
+	 * @param queryParameters
+	 *            The query parameters
+	 */
+	protected void bindParameters(Query query, Map<String, Object> queryParameters) {
+		for (String key : queryParameters.keySet()) {
+			Object value = queryParameters.get(key);
+			if (value instanceof Collection) {
+				query.setParameterList(key, (Collection) value);
+			} else {
+				query.setParameter(key, value);
+			}
+		}
+	}
+
+	/**
+	 * This method gets a session on the core database. The session of the
+	 * unit of work is used if one is active on this thread, else a new session
+	 * is opened which must be released after the call.
+	 * 
+	 * @return The session
+	 */
+	protected Session acquireSession() {
+		Session session = UnitOfWork.getSession();
+		if (session == null) {
+			session = HibernateUtility.getSessionFactory().openSession();
+		}
+		return session;
+	}
+
+	/**
+	 * This method gets the session for a database call that writes, the
+	 * selects made later in the same request are sent to the core database
+	 * 
+	 * @return The session
+	 */
+	protected Session acquireWriteSession() {
+		ReadReplicaRouter.markWrite();
+		return this.acquireSession();
+	}
+
+	/**
+	 * This method gets the session for a select. The session of the unit of
+	 * work is used if one is active, else a new session is opened on the
+	 * replica or on the core database as decided by ReadReplicaRouter.
+	 * 
+	 * @return The session
+	 */
+	protected Session acquireReadSession() {
+		Session session = UnitOfWork.getSession();
+		if (session == null) {
+			session = ReadReplicaRouter.getSessionFactoryForRead().openSession();
+		}
+		return session;
+	}
+
+	/**
+	 * This method releases the session of a database call, the session is
+	 * closed unless it belongs to the unit of work
+	 * 
+	 * @param session
+	 *            The session
+	 */
+	protected void releaseSession(Session session) {
+		if (session != null && session.isOpen() && !UnitOfWork.isBoundTo(session)) {
+			session.close();
+		}
+	}
+
+	/**
+	 * This method detaches an entity read in the unit of work, so that changes
+	 * made to it afterwards are not written when the unit of work ends. It is
+	 * used when the row of the entity has been written by a bulk statement.
+	 * 
+	 * @param entity
+	 *            The entity
+	 */
+	protected void detach(Object entity) {
+		Session session = UnitOfWork.getSession();
+		if (session != null && session.contains(entity))
+			session.evict(entity);
+	}
+
+	/**
+	 * This method begins a transaction for a database call
+	 * 
+	 * @param session
+	 *            The session
+	 * @return The transaction, null if the session belongs to the unit of work
+	 *         which owns the transaction
+	 */
+	protected Transaction beginTransaction(Session session) {
+		if (UnitOfWork.isBoundTo(session))
+			return null;
+		return session.beginTransaction();
+	}
+
+	/**
+	 * This method commits the transaction of a database call, nothing is done
+	 * in a unit of work as it commits when it ends
+	 * 
+	 * @param transaction
+	 *            The transaction
+	 */
+	protected void commit(Transaction transaction) {
+		if (transaction != null)
+			transaction.commit();
+	}
+
+	/**
+	 * This method rolls back the transaction of a database call, in a unit of
+	 * work the whole unit is marked to be rolled back
+	 * 
+	 * @param transaction
+	 *            The transaction
+	 */
+	protected void rollback(Transaction transaction) {
+		if (transaction != null) {
+			if (transaction.isActive())
+				transaction.rollback();
+		} else {
+			UnitOfWork.setRollbackOnly();
+		}
+	}
+
+	/**
+	 * This method stops the use of the replica for a while if a select on it
+	 * could not connect, a select on the core database which could not connect
+	 * is reported to its connection provider
+	 * 
+	 * @param session
+	 *            The session of the select
+	 * @param ex
+	 *            The exception of the select
+	 */
+	private void reportReadFailure(Session session, Exception ex) {
+		if (ex instanceof JDBCConnectionException && session != null) {
+			if (session.getSessionFactory() != HibernateUtility.getSessionFactory())
+				ReadReplicaRouter.markReplicaUnavailable();
+			else
+				HibernateUtility.reportConnectionFailure();
+		}
+	}
+
+	/**
+	 * This method writes the changes held in the session of the unit of work,
+	 * it must be called before statements that bypass the session
+	 * 
+	 * @param session
+	 *            The session
+	 */
+	protected void flushUnitOfWork(Session session) {
+		if (UnitOfWork.isBoundTo(session))
+			session.flush();
 	}
 
 	/**
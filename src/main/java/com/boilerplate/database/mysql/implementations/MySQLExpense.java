@@ -1,26 +1,38 @@
 package com.boilerplate.database.mysql.implementations;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.FetchProfile;
 import com.boilerplate.database.interfaces.IExpense;
+import com.boilerplate.database.interfaces.IRowHandler;
 import com.boilerplate.exceptions.rest.BadRequestException;
-import com.boilerplate.framework.HibernateUtility;
+import com.boilerplate.framework.ExpenseAggregateDeltas;
+import com.boilerplate.framework.ExpenseCursor;
 import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.QueryRegistry;
 import com.boilerplate.framework.RDBMSUtility;
 import com.boilerplate.framework.RequestThreadLocal;
+import com.boilerplate.framework.UnitOfWork;
 import com.boilerplate.java.entities.ExpenseEntity;
 import com.boilerplate.java.entities.ExpenseHistoryEntity;
+import com.boilerplate.java.entities.ExpenseListViewEntity;
+import com.boilerplate.java.entities.ExpenseReportEntity;
 import com.boilerplate.java.entities.ExpenseStatusType;
 import com.boilerplate.java.entities.FetchExpenseEntity;
 import com.boilerplate.java.entities.FileMappingEntity;
+import com.boilerplate.java.entities.GenericPageEncapsulationEntity;
 import com.boilerplate.java.entities.UserRoleType;
 
 /**
@@ -52,6 +64,22 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 		this.configurationManager = configurationManager;
 	}
 
+	/**
+	 * This is the instance of query registry
+	 */
+	@Autowired
+	QueryRegistry queryRegistry;
+
+	/**
+	 * This method is used to set the queryRegistry
+	 * 
+	 * @param queryRegistry
+	 *            the queryRegistry to set
+	 */
+	public void setQueryRegistry(QueryRegistry queryRegistry) {
+		this.queryRegistry = queryRegistry;
+	}
+
 	/**
 	 * @see IExpense.createExpense
 	 */
@@ -87,8 +115,16 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 	 */
 	@Override
 	public ExpenseEntity getExpense(String id) throws BadRequestException {
+		return this.getExpense(id, FetchProfile.DETAIL);
+	}
+
+	/**
+	 * @see IExpense.getExpense
+	 */
+	@Override
+	public ExpenseEntity getExpense(String id, FetchProfile fetchProfile) throws BadRequestException {
 		// Get the SQL query from configurations to get expense
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_EXPENSE_BY_ID");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_EXPENSE_BY_ID");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
@@ -108,6 +144,9 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 		}
 		if (expenses.size() == 0)
 			return null;
+		// set attachments of the expense if the use case reads them
+		if (fetchProfile.loadsAttachments())
+			this.hydrateAttachments(expenses);
 		return expenses.get(0);
 	}
 
@@ -126,116 +165,181 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 		}
 	}
 
+	/**
+	 * @see IExpense.getExpenseHistoriesAfter
+	 */
+	@Override
+	public List<ExpenseHistoryEntity> getExpenseHistoriesAfter(String expenseId, Date date)
+			throws BadRequestException {
+		// Get the SQL query from configurations to get histories
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_EXPENSE_HISTORIES_AFTER");
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		queryParameterMap.put("ExpenseId", expenseId);
+		queryParameterMap.put("Date", date);
+		try {
+			// Execute query
+			return super.executeSelect(hSQLQuery, queryParameterMap);
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "getExpenseHistoriesAfter", "exceptionGetExpenseHistoriesAfter",
+					"While trying to get expense histories, This is the expense id~ " + expenseId
+							+ "This is the query" + hSQLQuery,
+					ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense",
+					"While trying to get expense histories ~ " + ex.toString(), ex);
+		}
+	}
+
 	/**
 	 * @see IExpense.getExpenses
 	 */
 	@Override
-	public List<ExpenseEntity> getExpenses(FetchExpenseEntity fetchExpenseEntity) throws BadRequestException {
-		// Get the SQL query from configurations to get expense
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_EXPENSE_BY_USER_ID");
-		// construct query for filtering expenses
-		hSQLQuery = RDBMSUtility.queryConstructionForGetExpenses(hSQLQuery, fetchExpenseEntity);
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpenses(FetchExpenseEntity fetchExpenseEntity,
+			ExpenseCursor cursor, int pageSize) throws BadRequestException {
+		// This is the key of the SQL query in configurations to get expense
+		String queryKey = "SQL_QUERY_FOR_GETTING_EXPENSE_BY_USER_ID";
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
 		// Put id in query parameter
 		queryParameterMap.put("UserId", RequestThreadLocal.getSession().getExternalFacingUser().getId());
-		// This variable is used to hold the query response
-		List<ExpenseEntity> expenses = new ArrayList<>();
+		// get query fragments for filtering expenses
+		List<String> fragmentKeys = RDBMSUtility.queryFragmentsForGetExpenses(fetchExpenseEntity, queryParameterMap);
 		try {
 			// Execute query
-			expenses = super.executeSelect(hSQLQuery, queryParameterMap);
+			return this.selectPage(queryKey, fragmentKeys, queryParameterMap, cursor, pageSize);
+		} catch (BadRequestException ex) {
+			throw ex;
 		} catch (Exception ex) {
 			// Log exception
 			logger.logException("MySQLExpense", "getExpenses", "exceptionGetExpenses",
 					"While trying to get expense data, This is the user id~ "
 							+ RequestThreadLocal.getSession().getExternalFacingUser().getId() + "This is the query"
-							+ hSQLQuery,
+							+ queryKey,
 					ex);
 			// Throw exception
 			throw new BadRequestException("MySQLExpense", "While trying to get expense data ~ " + ex.toString(), ex);
 		}
-		if (expenses.size() == 0)
-			return null;
-		return expenses;
 	}
 
 	/**
 	 * @see IExpense.getExpensesForApprover
 	 */
 	@Override
-	public List<ExpenseEntity> getExpensesForApprover(String approverId) throws BadRequestException {
-		// Get the SQL query from configurations to get expense
-		String SQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_EXPENSE_BY_APPROVER");
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForApprover(List<String> userIds,
+			ExpenseCursor cursor, int pageSize) throws BadRequestException {
+		// an approver without users has nothing to approve, an empty IN
+		// clause is not valid
+		if (userIds == null || userIds.isEmpty())
+			return new GenericPageEncapsulationEntity<ExpenseEntity>(new ArrayList<ExpenseEntity>(), null);
+		// This is the key of the SQL query in configurations to get expense
+		String queryKey = "SQL_QUERY_FOR_GETTING_EXPENSE_BY_APPROVER";
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
-		// replace approver id
-		SQLQuery = SQLQuery.replace("@ApproverId", approverId);
-		// This variable is used to hold the query response
-		List<ExpenseEntity> expenses = new ArrayList<>();
+		// put user ids in query parameter, bound as a parameter list
+		queryParameterMap.put("UserIds", userIds);
 		try {
 			// Execute query
-			expenses = super.executeSelect(SQLQuery, queryParameterMap);
+			return this.selectPage(queryKey, new ArrayList<String>(), queryParameterMap, cursor, pageSize);
+		} catch (BadRequestException ex) {
+			throw ex;
 		} catch (Exception ex) {
 			// Log exception
 			logger.logException("MySQLExpense", "getExpensesForApprover", "exceptionGetExpensesForApprover",
-					"While trying to get expense data, This is the approverId~ " + approverId + SQLQuery, ex);
+					"While trying to get expense data, This is the userIds~ " + userIds + queryKey, ex);
 			// Throw exception
 			throw new BadRequestException("MySQLExpense",
 					"While trying to get expense data for approver~ " + ex.toString(), ex);
 		}
-		return expenses;
 	}
 
 	/**
 	 * @see IExpense.getFileMappingsForExpenses
 	 */
 	@Override
-	public List<FileMappingEntity> getFileMappingsForExpenses(String expenseIds) throws BadRequestException {
-		// Get the SQL query from configurations to get expense
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_LIST_OF_EXPENSE_IDS");
+	public List<FileMappingEntity> getFileMappingsForExpenses(List<String> expenseIds) throws BadRequestException {
+		// This variable is used to hold the query response
+		List<FileMappingEntity> fileMappings = new ArrayList<>();
+		// nothing to fetch for an empty page, an empty IN clause is not valid
+		if (expenseIds == null || expenseIds.isEmpty())
+			return fileMappings;
+		// Get the SQL query from configurations to get file mappings
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_LIST_OF_EXPENSE_IDS");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
-		// put expense ids in query parameter map
-		// queryParameterMap.put("ExpenseIds", expenseIds);
-		hSQLQuery = hSQLQuery.replaceAll(":ExpenseIds", expenseIds);
-		// This variable is used to hold the query response
-		List<FileMappingEntity> fileMappings = new ArrayList<>();
+		// put expense ids in query parameter map, bound as a parameter list
+		queryParameterMap.put("ExpenseIds", expenseIds);
 		try {
 			// Execute query
 			fileMappings = super.executeSelect(hSQLQuery, queryParameterMap);
 		} catch (Exception ex) {
 			// Log exception
-			logger.logException("MySQLExpense", "getAttachemntsForExpenses", "exceptionGetAttachemntsForExpenses",
+			logger.logException("MySQLExpense", "getFileMappingsForExpenses", "exceptionGetFileMappingsForExpenses",
 					"While trying to get file mappings, This is the list fo expense ids~ " + expenseIds
 							+ "This is the query" + hSQLQuery,
 					ex);
 			// Throw exception
 			throw new BadRequestException("MySQLExpense",
-					"While trying to get expense data for approver~ " + ex.toString(), ex);
+					"While trying to get file mappings for expenses~ " + ex.toString(), ex);
 		}
 		return fileMappings;
 	}
 
+	/**
+	 * @see IExpense.hydrateAttachments
+	 */
+	@Override
+	public void hydrateAttachments(List<ExpenseEntity> expenses) throws BadRequestException {
+		if (expenses == null || expenses.isEmpty())
+			return;
+		// collect the expense ids
+		List<String> expenseIds = new ArrayList<>();
+		for (ExpenseEntity expense : expenses) {
+			expenseIds.add(expense.getId());
+		}
+		// group file mappings by expense id
+		Map<String, List<FileMappingEntity>> mappingsByExpenseId = new HashMap<>();
+		for (FileMappingEntity fileMapping : this.getFileMappingsForExpenses(expenseIds)) {
+			List<FileMappingEntity> mappings = mappingsByExpenseId.get(fileMapping.getExpenseId());
+			if (mappings == null) {
+				mappings = new ArrayList<>();
+				mappingsByExpenseId.put(fileMapping.getExpenseId(), mappings);
+			}
+			mappings.add(fileMapping);
+		}
+		// set the file mappings, this also sets the attachment ids
+		for (ExpenseEntity expense : expenses) {
+			List<FileMappingEntity> mappings = mappingsByExpenseId.get(expense.getId());
+			if (mappings == null) {
+				expense.setFileMappings(new ArrayList<FileMappingEntity>());
+				expense.setAttachmentIds(new ArrayList<String>());
+			} else {
+				expense.setFileMappings(mappings);
+			}
+		}
+	}
+
 	/**
 	 * @see IExpense.getUserAmountsForFinance
 	 */
 	@Override
-	public List<Map<String, Object>> getUserAmountsForFinance(String status) throws BadRequestException {
+	public List<ExpenseReportEntity> getUserAmountsForFinance(String status) throws BadRequestException {
 		// Get the SQL query from configurations to get user amounts for
 		// expenses with finance_approved status
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_USER_AMOUNTS");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_USER_AMOUNTS");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
-		hSQLQuery = hSQLQuery.replaceAll("@Status", status);
+		// put status in query parameter
+		queryParameterMap.put("Status", status);
 		// This variable is used to hold the query response
-		List<Map<String, Object>> expenseMap = new ArrayList<>();
+		List<ExpenseReportEntity> userAmounts = new ArrayList<>();
 		try {
-			// Execute query
-			expenseMap = super.executeSelectNative(hSQLQuery, queryParameterMap);
+			// Execute query, the columns are mapped to the report properties
+			userAmounts = super.executeSelectNative(hSQLQuery, queryParameterMap, ExpenseReportEntity.class);
 		} catch (Exception ex) {
 			// Log exception
 			logger.logException("MySQLExpense", "getUserAmountsForFinance", "exceptionGetUserAmountsForFinance",
@@ -244,7 +348,7 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 			throw new BadRequestException("MySQLExpense",
 					"While trying to get expense data for finance~ " + ex.toString(), ex);
 		}
-		return expenseMap;
+		return userAmounts;
 	}
 
 	/**
@@ -253,25 +357,23 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 	@Override
 	public void saveExpenseList(List<ExpenseEntity> expenses) throws Exception {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			// get all the configurations from the DB as a list
-			Transaction transaction = session.beginTransaction();
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
 			// for each roles
 			for (ExpenseEntity expense : expenses)
 				// save expense in MySQL
 				session.saveOrUpdate(expense);
 			// commit the transaction
-			transaction.commit();
+			this.commit(transaction);
 		} catch (Exception ex) {
 			logger.logException("MySQLExpense", "update/create expenses", "try-catch block", ex.getMessage(), ex);
-			session.getTransaction().rollback();
+			this.rollback(transaction);
 			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		}
 
 	}
@@ -290,12 +392,39 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 	 * @see IExpense.getExpensesForSuper
 	 */
 	@Override
-	public List<ExpenseEntity> getExpensesForSuper() throws BadRequestException {
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForSuper(ExpenseCursor cursor, int pageSize)
+			throws BadRequestException {
+		// This is the key of the SQL query in configurations to get expense
+		String queryKey = "SQL_QUERY_FOR_GETTING_EXPENSE_FOR_SUPER_APPROVER";
+		// Make a new instance of BoilerplateMap ,used to define query
+		// parameters
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		try {
+			// Execute query
+			return this.selectPage(queryKey, new ArrayList<String>(), queryParameterMap, cursor, pageSize);
+		} catch (BadRequestException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "getExpensesForSuper", "exceptionGetExpensesForSuper",
+					"While trying to get expense data, This is the query" + queryKey, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense", "While trying to get expense data ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * @see IExpense.getExpensesByStatus
+	 */
+	@Override
+	public List<ExpenseEntity> getExpensesByStatus(ExpenseStatusType status) throws BadRequestException {
 		// Get the SQL query from configurations to get expense
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_EXPENSE_FOR_SUPER_APPROVER");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_EXPENSE_BY_STATUS");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		// Put id in query parameter
+		queryParameterMap.put("Status", status);
 		// This variable is used to hold the query response
 		List<ExpenseEntity> expenses = new ArrayList<>();
 		try {
@@ -303,13 +432,15 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 			expenses = super.executeSelect(hSQLQuery, queryParameterMap);
 		} catch (Exception ex) {
 			// Log exception
-			logger.logException("MySQLExpense", "getExpensesForSuper", "exceptionGetExpensesForSuper",
+			logger.logException("MySQLExpense", "getExpensesByStatus", "exceptionGetExpensesByStatus",
 					"While trying to get expense data, This is the query" + hSQLQuery, ex);
 			// Throw exception
 			throw new BadRequestException("MySQLExpense", "While trying to get expense data ~ " + ex.toString(), ex);
 		}
 		if (expenses.size() == 0)
 			return null;
+		// set attachments of all the expenses in one go
+		this.hydrateAttachments(expenses);
 		return expenses;
 	}
 
@@ -317,29 +448,448 @@ public class MySQLExpense extends MySQLBaseDataAccessLayer implements IExpense {
 	 * @see IExpense.getExpensesByStatus
 	 */
 	@Override
-	public List<ExpenseEntity> getExpensesByStatus(ExpenseStatusType status) throws BadRequestException {
-		// Get the SQL query from configurations to get expense
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_EXPENSE_BY_STATUS");
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesByStatus(ExpenseStatusType status,
+			ExpenseCursor cursor, int pageSize) throws BadRequestException {
+		// This is the key of the SQL query in configurations to get expense
+		String queryKey = "SQL_QUERY_FOR_GETTING_EXPENSE_BY_STATUS";
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
 		// Put id in query parameter
 		queryParameterMap.put("Status", status);
+		try {
+			// Execute query
+			return this.selectPage(queryKey, new ArrayList<String>(), queryParameterMap, cursor, pageSize);
+		} catch (BadRequestException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "getExpensesByStatus", "exceptionGetExpensesByStatus",
+					"While trying to get expense data, This is the query" + queryKey, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense", "While trying to get expense data ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * This method is used to fetch one page of expenses. The keyset condition
+	 * of the cursor and the page ordering are added to the given query, and
+	 * one extra row is read to know if there is a next page.
+	 * 
+	 * @param queryKey
+	 *            The configuration key of the expense query, it must have a
+	 *            where clause
+	 * @param fragmentKeys
+	 *            The configuration keys of the filter fragments to be added
+	 * @param queryParameterMap
+	 *            The query parameters
+	 * @param cursor
+	 *            The cursor after which the page starts, null for the first
+	 *            page
+	 * @param pageSize
+	 *            The maximum number of expenses in the page
+	 * @return Page of expenses with attachments set
+	 * @throws BadRequestException
+	 *             Throw this exception if attachments could not be fetched
+	 */
+	private GenericPageEncapsulationEntity<ExpenseEntity> selectPage(String queryKey, List<String> fragmentKeys,
+			Map<String, Object> queryParameterMap, ExpenseCursor cursor, int pageSize) throws BadRequestException {
+		String hSQLQuery = this.composePageQuery(queryKey, fragmentKeys, queryParameterMap, cursor);
+		// fetch one row more than the page size
+		List<ExpenseEntity> expenses = super.executeSelectWilthFirstAndMaxResult(hSQLQuery, queryParameterMap, 0,
+				pageSize + 1);
+		String nextPageToken = null;
+		if (expenses.size() > pageSize) {
+			expenses = new ArrayList<>(expenses.subList(0, pageSize));
+			nextPageToken = ExpenseCursor.after(expenses.get(pageSize - 1)).encode();
+		}
+		// set attachments of all the expenses in one go
+		this.hydrateAttachments(expenses);
+		return new GenericPageEncapsulationEntity<ExpenseEntity>(expenses, nextPageToken);
+	}
+
+	/**
+	 * This method is used to fetch one page of the list view of expenses. The
+	 * query selects the id, user name, title, amount and creation date of the
+	 * expenses, so no expense entity or attachment is loaded.
+	 * 
+	 * @param queryKey
+	 *            The configuration key of the list view query, it must have a
+	 *            where clause
+	 * @param queryParameterMap
+	 *            The query parameters
+	 * @param cursor
+	 *            The cursor after which the page starts, null for the first
+	 *            page
+	 * @param pageSize
+	 *            The maximum number of expenses in the page
+	 * @return Page of expense list views
+	 */
+	private GenericPageEncapsulationEntity<ExpenseListViewEntity> selectListViewPage(String queryKey,
+			Map<String, Object> queryParameterMap, ExpenseCursor cursor, int pageSize) {
+		String hSQLQuery = this.composePageQuery(queryKey, new ArrayList<String>(), queryParameterMap, cursor);
+		// fetch one row more than the page size
+		List<Object[]> rows = super.executeSelectWilthFirstAndMaxResult(hSQLQuery, queryParameterMap, 0,
+				pageSize + 1);
+		String nextPageToken = null;
+		if (rows.size() > pageSize) {
+			rows = rows.subList(0, pageSize);
+			Object[] lastRow = rows.get(pageSize - 1);
+			nextPageToken = new ExpenseCursor((Date) lastRow[4], String.valueOf(lastRow[0])).encode();
+		}
+		List<ExpenseListViewEntity> expenses = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			expenses.add(new ExpenseListViewEntity(String.valueOf(row[0]), (String) row[1], (String) row[2],
+					((Number) row[3]).floatValue()));
+		}
+		return new GenericPageEncapsulationEntity<ExpenseListViewEntity>(expenses, nextPageToken);
+	}
+
+	/**
+	 * This method adds the keyset condition of the cursor and the page
+	 * ordering to an expense query
+	 * 
+	 * @param queryKey
+	 *            The configuration key of the expense query
+	 * @param fragmentKeys
+	 *            The configuration keys of the filter fragments to be added
+	 * @param queryParameterMap
+	 *            The query parameters, the cursor parameters are added to it
+	 * @param cursor
+	 *            The cursor after which the page starts, null for the first
+	 *            page
+	 * @return The query text
+	 */
+	private String composePageQuery(String queryKey, List<String> fragmentKeys, Map<String, Object> queryParameterMap,
+			ExpenseCursor cursor) {
+		List<String> pageFragmentKeys = new ArrayList<>(fragmentKeys);
+		// add the keyset condition if this is not the first page
+		if (cursor != null) {
+			pageFragmentKeys.add("SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR");
+			queryParameterMap.put("CursorDate", cursor.getCreationDate());
+			queryParameterMap.put("CursorId", cursor.getId());
+		}
+		pageFragmentKeys.add("SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER");
+		return queryRegistry.compose(queryKey, pageFragmentKeys.toArray(new String[pageFragmentKeys.size()]));
+	}
+
+	/**
+	 * @see IExpense.getExpenseListViewsForApprover
+	 */
+	@Override
+	public GenericPageEncapsulationEntity<ExpenseListViewEntity> getExpenseListViewsForApprover(
+			List<String> userIds, ExpenseCursor cursor, int pageSize) throws BadRequestException {
+		// an approver without users has nothing to approve, an empty IN
+		// clause is not valid
+		if (userIds == null || userIds.isEmpty())
+			return new GenericPageEncapsulationEntity<ExpenseListViewEntity>(new ArrayList<ExpenseListViewEntity>(),
+					null);
+		// This is the key of the SQL query in configurations to get expenses
+		String queryKey = "SQL_QUERY_FOR_GETTING_EXPENSE_LIST_VIEW_BY_APPROVER";
+		// Make a new instance of BoilerplateMap ,used to define query
+		// parameters
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		// put user ids in query parameter, bound as a parameter list
+		queryParameterMap.put("UserIds", userIds);
+		try {
+			// Execute query
+			return this.selectListViewPage(queryKey, queryParameterMap, cursor, pageSize);
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "getExpenseListViewsForApprover",
+					"exceptionGetExpenseListViewsForApprover",
+					"While trying to get expense list, This is the userIds~ " + userIds + queryKey, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense",
+					"While trying to get expense list for approver~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * @see IExpense.getExpenseListViewsForSuper
+	 */
+	@Override
+	public GenericPageEncapsulationEntity<ExpenseListViewEntity> getExpenseListViewsForSuper(ExpenseCursor cursor,
+			int pageSize) throws BadRequestException {
+		// This is the key of the SQL query in configurations to get expenses
+		String queryKey = "SQL_QUERY_FOR_GETTING_EXPENSE_LIST_VIEW_FOR_SUPER_APPROVER";
+		try {
+			// Execute query
+			return this.selectListViewPage(queryKey, new HashMap<String, Object>(), cursor, pageSize);
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "getExpenseListViewsForSuper", "exceptionGetExpenseListViewsForSuper",
+					"While trying to get expense list, This is the query" + queryKey, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense", "While trying to get expense list ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * @see IExpense.scrollExpensesForReports
+	 */
+	@Override
+	public void scrollExpensesForReports(ExpenseStatusType status, IRowHandler<Object[]> rowHandler)
+			throws BadRequestException {
+		// Get the SQL query from configurations to get expense report rows
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_EXPENSE_REPORT_ROWS");
+		// Make a new instance of BoilerplateMap ,used to define query
+		// parameters
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		// Put status in query parameter
+		queryParameterMap.put("Status", status);
+		try {
+			// Execute query
+			super.executeSelectScroll(hSQLQuery, queryParameterMap, rowHandler);
+		} catch (BadRequestException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "scrollExpensesForReports", "exceptionScrollExpensesForReports",
+					"While trying to get expense report data, This is the query" + hSQLQuery, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense",
+					"While trying to get expense report data ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * @see IExpense.scrollExpensesForSearchIndex
+	 */
+	@Override
+	public void scrollExpensesForSearchIndex(Date updatedSince, IRowHandler<Object[]> rowHandler)
+			throws BadRequestException {
+		// Get the SQL query from configurations to get expense search rows
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_EXPENSE_SEARCH_ROWS");
+		// Make a new instance of BoilerplateMap ,used to define query
+		// parameters
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		// Put date in query parameter
+		queryParameterMap.put("UpdatedSince", updatedSince);
+		try {
+			// Execute query, rows are handed over as they are read
+			super.executeSelectScroll(hSQLQuery, queryParameterMap, rowHandler);
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "scrollExpensesForSearchIndex",
+					"exceptionScrollExpensesForSearchIndex",
+					"While trying to read expenses for search, This is the query" + hSQLQuery, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense",
+					"While trying to read expenses for search ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * @see IExpense.scrollExpensesForExport
+	 */
+	@Override
+	public void scrollExpensesForExport(FetchExpenseEntity fetchExpenseEntity, IRowHandler<Object[]> rowHandler)
+			throws BadRequestException {
+		// Make a new instance of BoilerplateMap ,used to define query
+		// parameters
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		// Put status in query parameter
+		queryParameterMap.put("Status", fetchExpenseEntity.getExpenseStatusType());
+		List<String> fragmentKeys = new ArrayList<>();
+		// check if the expenses are to be filtered by date
+		if (fetchExpenseEntity.getStartDate() != null) {
+			RDBMSUtility.addExpenseDateRange(fragmentKeys, queryParameterMap, fetchExpenseEntity.getStartDate(),
+					fetchExpenseEntity.getEndDate());
+		}
+		fragmentKeys.add("SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER");
+		// Get the SQL query from configurations to get expense export rows
+		String hSQLQuery = queryRegistry.compose("SQL_QUERY_FOR_GETTING_EXPENSE_EXPORT_ROWS",
+				fragmentKeys.toArray(new String[fragmentKeys.size()]));
+		try {
+			// Execute query, rows are handed over as they are read
+			super.executeSelectScroll(hSQLQuery, queryParameterMap, rowHandler);
+		} catch (BadRequestException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLExpense", "scrollExpensesForExport", "exceptionScrollExpensesForExport",
+					"While trying to export expenses, This is the query" + hSQLQuery, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLExpense", "While trying to export expenses ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * @see IExpense.getExpensesByIds
+	 */
+	@Override
+	public List<ExpenseEntity> getExpensesByIds(List<String> expenseIds) throws BadRequestException {
 		// This variable is used to hold the query response
 		List<ExpenseEntity> expenses = new ArrayList<>();
+		// an empty IN clause is not valid
+		if (expenseIds == null || expenseIds.isEmpty())
+			return expenses;
+		// Get the SQL query from configurations to get expenses
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_EXPENSES_BY_IDS");
+		// Make a new instance of BoilerplateMap ,used to define query
+		// parameters
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		// put expense ids in query parameter map, bound as a parameter list
+		queryParameterMap.put("ExpenseIds", expenseIds);
 		try {
 			// Execute query
 			expenses = super.executeSelect(hSQLQuery, queryParameterMap);
 		} catch (Exception ex) {
 			// Log exception
-			logger.logException("MySQLExpense", "getExpensesByStatus", "exceptionGetExpensesByStatus",
-					"While trying to get expense data, This is the query" + hSQLQuery, ex);
+			logger.logException("MySQLExpense", "getExpensesByIds", "exceptionGetExpensesByIds",
+					"While trying to get expense data, This is the list fo expense ids~ " + expenseIds
+							+ "This is the query" + hSQLQuery,
+					ex);
 			// Throw exception
 			throw new BadRequestException("MySQLExpense", "While trying to get expense data ~ " + ex.toString(), ex);
 		}
-		if (expenses.size() == 0)
-			return null;
 		return expenses;
 	}
 
+	/**
+	 * @see IExpense.transitionExpenseStatus
+	 */
+	@Override
+	public boolean transitionExpenseStatus(ExpenseEntity expenseEntity, Set<ExpenseStatusType> sourceStatuses,
+			ExpenseStatusType status, String approverComments) {
+		Date updationDate = new Date();
+		// the expense as read must not be written over the conditional update
+		super.detach(expenseEntity);
+		// Get the SQL query from configurations to change the status
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_TRANSITIONING_EXPENSE_STATUS");
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		queryParameterMap.put("Status", status);
+		queryParameterMap.put("ApproverComments", approverComments);
+		queryParameterMap.put("UpdationDate", updationDate);
+		queryParameterMap.put("ExpenseIds", Arrays.asList(expenseEntity.getId()));
+		queryParameterMap.put("SourceStatuses", sourceStatuses);
+		try {
+			// the status is changed only if no one else has changed it
+			if (super.executeUpdate(hSQLQuery, queryParameterMap) == 0)
+				return false;
+		} catch (Exception ex) {
+			logger.logException("MySQLExpense", "transitionExpenseStatus", "exceptionTransitionExpenseStatus",
+					"Exception occurred while changing status of an expense", ex);
+			throw ex;
+		}
+		expenseEntity.setStatus(status);
+		expenseEntity.setApproverComments(approverComments);
+		expenseEntity.setUpdationDate(updationDate);
+		return true;
+	}
+
+	/**
+	 * @see IExpense.transitionExpenseStatuses
+	 */
+	@Override
+	public boolean transitionExpenseStatuses(List<ExpenseEntity> expenses, Set<ExpenseStatusType> sourceStatuses,
+			List<ExpenseHistoryEntity> expenseHistories) throws Exception {
+		List<String> expenseIds = new ArrayList<>();
+		for (ExpenseEntity expense : expenses) {
+			// the new values are written by the conditional update only
+			super.detach(expense);
+			expenseIds.add(expense.getId());
+		}
+		// all the expenses are changed to the same values
+		ExpenseEntity firstExpense = expenses.get(0);
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_TRANSITIONING_EXPENSE_STATUS");
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		queryParameterMap.put("Status", firstExpense.getStatus());
+		queryParameterMap.put("ApproverComments", firstExpense.getApproverComments());
+		queryParameterMap.put("UpdationDate", firstExpense.getUpdationDate());
+		queryParameterMap.put("ExpenseIds", expenseIds);
+		queryParameterMap.put("SourceStatuses", sourceStatuses);
+		try {
+			// if any expense has been changed by someone else nothing is saved,
+			// the expenses already changed by the update are rolled back with
+			// the unit of work
+			if (super.executeUpdate(hSQLQuery, queryParameterMap) != expenseIds.size()) {
+				UnitOfWork.setRollbackOnly();
+				return false;
+			}
+			// history ids are pooled so the inserts go out as one batch, they
+			// are written right after the update rather than at the commit
+			super.create(expenseHistories);
+			super.flushUnitOfWork(UnitOfWork.getSession());
+			return true;
+		} catch (Exception ex) {
+			logger.logException("MySQLExpense", "transitionExpenseStatuses", "exceptionTransitionExpenseStatuses",
+					"Exception occurred while changing status of expenses", ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * @see IExpense.resubmitExpense
+	 */
+	@Override
+	public boolean resubmitExpense(ExpenseEntity expenseEntity, Set<ExpenseStatusType> sourceStatuses) {
+		// Get the SQL query from configurations to save the expense submitted
+		// again
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_RESUBMITTING_EXPENSE");
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		queryParameterMap.put("Title", expenseEntity.getTitle());
+		queryParameterMap.put("Description", expenseEntity.getDescription());
+		queryParameterMap.put("Amount", expenseEntity.getAmount());
+		queryParameterMap.put("Status", expenseEntity.getStatus());
+		queryParameterMap.put("UpdationDate", expenseEntity.getUpdationDate());
+		queryParameterMap.put("ExpenseId", expenseEntity.getId());
+		queryParameterMap.put("UserId", expenseEntity.getUserId());
+		queryParameterMap.put("SourceStatuses", sourceStatuses);
+		try {
+			// the expense is changed only if no one else has changed its status
+			return super.executeUpdate(hSQLQuery, queryParameterMap) == 1;
+		} catch (Exception ex) {
+			logger.logException("MySQLExpense", "resubmitExpense", "exceptionResubmitExpense",
+					"Exception occurred while saving an expense submitted again", ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * @see IExpense.updateExpenseAggregates
+	 */
+	@Override
+	public void updateExpenseAggregates(ExpenseAggregateDeltas deltas) throws Exception {
+		List<Object[]> aggregateRows = deltas.toRows();
+		if (aggregateRows.isEmpty())
+			return;
+		Map<String, List<Object[]>> batches = new LinkedHashMap<>();
+		batches.put(queryRegistry.get("SQL_QUERY_FOR_UPSERT_EXPENSE_AGGREGATE"), aggregateRows);
+		try {
+			super.executeBatchNative(batches);
+		} catch (Exception ex) {
+			logger.logException("MySQLExpense", "updateExpenseAggregates", "exceptionUpdateExpenseAggregates",
+					"Exception occurred while updating expense aggregates", ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * @see IExpense.rebuildExpenseAggregates
+	 */
+	@Override
+	public int rebuildExpenseAggregates() throws Exception {
+		// the drift is read by one select, which sees one snapshot of both
+		// tables and takes no locks. An expense changed after the snapshot
+		// adds its own delta, which the corrections added to the saved
+		// aggregates do not undo.
+		ExpenseAggregateDeltas corrections = new ExpenseAggregateDeltas();
+		try {
+			for (Map<String, Object> row : super.executeSelectNative(
+					queryRegistry.get("SQL_QUERY_FOR_GETTING_EXPENSE_AGGREGATE_DRIFT"),
+					new HashMap<String, Object>())) {
+				corrections.adjust((String) row.get("userId"), ExpenseStatusType.valueOf((String) row.get("status")),
+						((Number) row.get("expenseCount")).intValue(), ((Number) row.get("totalAmount")).doubleValue());
+			}
+			this.updateExpenseAggregates(corrections);
+			return corrections.toRows().size();
+		} catch (Exception ex) {
+			logger.logException("MySQLExpense", "rebuildExpenseAggregates", "exceptionRebuildExpenseAggregates",
+					"Exception occurred while correcting expense aggregates", ex);
+			throw ex;
+		}
+	}
+
 }
@@ -15,6 +15,7 @@ import com.boilerplate.database.interfaces.IFilePointer;
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.framework.HibernateUtility;
 import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.QueryRegistry;
 import com.boilerplate.java.entities.FileDetailsEntity;
 import com.boilerplate.java.entities.FileMappingEntity;
 import com.boilerplate.java.entities.UserRoleEntity;
@@ -33,6 +34,11 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 	 */
 	Logger logger = Logger.getInstance(MySQLFile.class);
 
+	/**
+	 * This is the query cache region of the file details queries
+	 */
+	public static final String FILE_DETAILS_QUERY_REGION = "FileDetailsQueries";
+
 	/**
 	 * This is the instance of configuration manager
 	 */
@@ -49,32 +55,46 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 		this.configurationManager = configurationManager;
 	}
 
+	/**
+	 * This is the instance of query registry
+	 */
+	@Autowired
+	QueryRegistry queryRegistry;
+
+	/**
+	 * This method is used to set the queryRegistry
+	 * 
+	 * @param queryRegistry
+	 *            the queryRegistry to set
+	 */
+	public void setQueryRegistry(QueryRegistry queryRegistry) {
+		this.queryRegistry = queryRegistry;
+	}
+
 	/**
 	 * @see IFilePointer.saveFileMapping
 	 */
 	@Override
 	public void saveFileMapping(List<FileMappingEntity> fileMappings) throws Exception {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			// get all the configurations from the DB as a list
-			Transaction transaction = session.beginTransaction();
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
 			// for each file mapping
 			for (FileMappingEntity fileMapping : fileMappings) {
 				// save file mapping in MySQL
 				session.saveOrUpdate(fileMapping);
 			}
 			// commit the transaction
-			transaction.commit();
+			this.commit(transaction);
 		} catch (Exception ex) {
 			logger.logException("MySQLFile", "create", "try-catch block", ex.getMessage(), ex);
-			session.getTransaction().rollback();
+			this.rollback(transaction);
 			throw ex;
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		}
 
 	}
@@ -85,7 +105,7 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 	@Override
 	public FileMappingEntity getFileMapping(String fileId) throws BadRequestException {
 		// Get the SQL query from configurations to get file mapping
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
@@ -133,7 +153,7 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 	public List<FileMappingEntity> getFileMappingByExpenseId(String expenseId) throws BadRequestException {
 		// Get the SQL query from configurations to get file mapping by expense
 		// id
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_EXPENSE_ID");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_EXPENSE_ID");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
@@ -163,7 +183,7 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 	public FileMappingEntity getFileMappingByAttachmentId(String attachmentId) throws BadRequestException {
 		// Get the SQL query from configurations to get file mapping by expense
 		// id
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_ATTACHMENT_ID");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_ATTACHMENT_ID");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
@@ -197,6 +217,9 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 			logger.logException("MySQLFile", "saveFileDetails", "exeptionSaveFileDetails",
 					"Exeption occurred while saving details of file uploaded", ex);
 			throw ex;
+		} finally {
+			// cached lookups of this attachment may hold an empty result
+			HibernateUtility.evictQueryRegion(FILE_DETAILS_QUERY_REGION);
 		}
 	}
 
@@ -207,7 +230,7 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 	public FileDetailsEntity getFileDetailsByAttachmentId(String attachmentId) throws BadRequestException {
 		// Get the SQL query from configurations to get file details by
 		// attachment id
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_FILE_DETAILS_BY_ATTACHMENT_ID");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_FILE_DETAILS_BY_ATTACHMENT_ID");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
@@ -217,7 +240,7 @@ public class MySQLFile extends MySQLBaseDataAccessLayer implements IFilePointer
 		List<FileDetailsEntity> fileDetails = new ArrayList<>();
 		try {
 			// Execute query
-			fileDetails = super.executeSelect(hSQLQuery, queryParameterMap);
+			fileDetails = super.executeSelect(hSQLQuery, queryParameterMap, FILE_DETAILS_QUERY_REGION);
 		} catch (Exception ex) {
 			// Log exception
 			logger.logException("MySQLFile", "getFileDetailsByAttachmentId", "exceptionGetFileDetailsByAttachmentId",
@@ -21,7 +21,7 @@ public class MySQLPing extends MySQLBaseDataAccessLayer implements IPing {
 	public void checkDatabaseConnection() {
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
 		try {
-			super.executeSelectNative(defaultCheckQuery, queryParameterMap);
+			super.executeSelectNative(defaultCheckQuery, queryParameterMap, Long.class);
 		} catch (Exception ex) {
 			logger.logException("MySQLPing", "checkDatabaseConnection", "checkDatabaseConnection",
 					ex.toString() + "~~~" + ex.fillInStackTrace(), ex);
@@ -0,0 +1,243 @@
+package com.boilerplate.database.mysql.implementations;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.ParameterTranslations;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.hibernate.jdbc.Work;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.IQueryPlan;
+import com.boilerplate.framework.HibernateUtility;
+import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.QueryRegistry;
+import com.boilerplate.java.collections.BoilerplateMap;
+
+/**
+ * This class explains the select queries in configurations on the primary
+ * database, so that a query whose plan has regressed to reading a whole table
+ * is found before it reaches production. It should be run against a database
+ * having a realistic number of rows, on a nearly empty table mysql may prefer
+ * a full scan even when an index exists.
+ *
+ * Every configuration whose key starts with SQL_QUERY_FOR_ and whose text is
+ * a select is explained as it is, and the expense queries are also explained
+ * with the fragments they are used with. Hql queries are translated to sql by
+ * hibernate. Parameters are replaced by sample values of their type, so the
+ * plans show which indexes can be used rather than the choice mysql makes for
+ * particular values.
+ *
+ * @author ruchi
+ *
+ */
+public class MySQLQueryPlan implements IQueryPlan {
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(MySQLQueryPlan.class);
+
+	/**
+	 * This is the prefix of the keys of the queries
+	 */
+	private static final String QUERY_KEY_PREFIX = "SQL_QUERY_FOR_";
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 *
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This is the registry of the queries
+	 */
+	@Autowired
+	QueryRegistry queryRegistry;
+
+	/**
+	 * This method is used to set the queryRegistry
+	 *
+	 * @param queryRegistry
+	 *            the queryRegistry to set
+	 */
+	public void setQueryRegistry(QueryRegistry queryRegistry) {
+		this.queryRegistry = queryRegistry;
+	}
+
+	/**
+	 * @see IQueryPlan.explainConfiguredQueries
+	 */
+	@Override
+	public BoilerplateMap<String, String> explainConfiguredQueries() {
+		Set<String> fullScanAllowed = new HashSet<>(
+				Arrays.asList(configurationManager.get("QUERY_PLAN_FULL_SCAN_ALLOWED").split(",")));
+		BoilerplateMap<String, String> plans = new BoilerplateMap<String, String>();
+		Session session = HibernateUtility.getSessionFactory().openSession();
+		try {
+			for (String queryKey : new TreeSet<String>(configurationManager.getConfigurationKeys())) {
+				if (!queryKey.startsWith(QUERY_KEY_PREFIX) || !isSelect(configurationManager.get(queryKey)))
+					continue;
+				plans.put(queryKey, this.explain(session, queryRegistry.get(queryKey),
+						fullScanAllowed.contains(queryKey)));
+			}
+			for (String[] composedQuery : QueryRegistry.COMPOSED_QUERIES) {
+				String[] fragmentKeys = Arrays.copyOfRange(composedQuery, 1, composedQuery.length);
+				plans.put(String.join("+", composedQuery), this.explain(session,
+						queryRegistry.compose(composedQuery[0], fragmentKeys),
+						fullScanAllowed.contains(composedQuery[0])));
+			}
+		} finally {
+			session.close();
+		}
+		return plans;
+	}
+
+	/**
+	 * This method explains a query
+	 *
+	 * @param session
+	 *            The session of the primary database
+	 * @param query
+	 *            The hql or sql query
+	 * @param fullScanAllowed
+	 *            True if the query is allowed to read a whole table
+	 * @return The plan, the table, access type and index of each step
+	 */
+	private String explain(Session session, String query, boolean fullScanAllowed) {
+		try {
+			final String explainSql = "EXPLAIN " + this.toSampleSql(session, query);
+			final StringBuilder plan = new StringBuilder();
+			final boolean[] fullScan = new boolean[1];
+			session.doWork(new Work() {
+				@Override
+				public void execute(Connection connection) throws SQLException {
+					Statement statement = connection.createStatement();
+					try {
+						ResultSet resultSet = statement.executeQuery(explainSql);
+						while (resultSet.next()) {
+							String accessType = resultSet.getString("type");
+							if (plan.length() > 0)
+								plan.append(", ");
+							plan.append(resultSet.getString("table")).append(':').append(accessType);
+							if (resultSet.getString("key") != null)
+								plan.append('(').append(resultSet.getString("key")).append(')');
+							// access type ALL reads every row of the table
+							if ("ALL".equals(accessType))
+								fullScan[0] = true;
+						}
+					} finally {
+						statement.close();
+					}
+				}
+			});
+			return fullScan[0] && !fullScanAllowed ? FULL_SCAN + " " + plan : plan.toString();
+		} catch (Exception ex) {
+			logger.logException("MySQLQueryPlan", "explain", "try-catch block",
+					"While trying to explain the query " + query, ex);
+			return ERROR + " " + ex.toString();
+		}
+	}
+
+	/**
+	 * This method turns a query into sql having sample values in place of its
+	 * parameters
+	 *
+	 * @param session
+	 *            The session of the primary database
+	 * @param query
+	 *            The hql or sql query
+	 * @return The sql
+	 */
+	private String toSampleSql(Session session, String query) {
+		QueryTranslator translator;
+		try {
+			translator = new ASTQueryTranslatorFactory().createQueryTranslator(query, query, Collections.EMPTY_MAP,
+					(SessionFactoryImplementor) session.getSessionFactory(), null);
+			translator.compile(Collections.EMPTY_MAP, false);
+		} catch (Exception ex) {
+			// not hql, named parameters of native queries are replaced as
+			// strings
+			return query.replaceAll(":[A-Za-z_][A-Za-z0-9_]*", "'1'");
+		}
+		String sql = translator.getSQLString();
+		ParameterTranslations parameterTranslations = translator.getParameterTranslations();
+		int parameterCount = 0;
+		for (int index = 0; index < sql.length(); index++) {
+			if (sql.charAt(index) == '?')
+				parameterCount++;
+		}
+		String[] sampleValues = new String[parameterCount];
+		Arrays.fill(sampleValues, "'1'");
+		for (Object name : parameterTranslations.getNamedParameterNames()) {
+			String sampleValue = sampleValueOf(parameterTranslations.getNamedParameterExpectedType((String) name));
+			for (int location : parameterTranslations.getNamedParameterSqlLocations((String) name)) {
+				sampleValues[location] = sampleValue;
+			}
+		}
+		StringBuilder sampleSql = new StringBuilder();
+		int parameterIndex = 0;
+		for (int index = 0; index < sql.length(); index++) {
+			char character = sql.charAt(index);
+			if (character == '?')
+				sampleSql.append(sampleValues[parameterIndex++]);
+			else
+				sampleSql.append(character);
+		}
+		return sampleSql.toString();
+	}
+
+	/**
+	 * This method gets a sample sql value of a type
+	 *
+	 * @param type
+	 *            The hibernate type, it may be null
+	 * @return The sample value
+	 */
+	private static String sampleValueOf(Type type) {
+		if (type == null)
+			return "'1'";
+		Class<?> returnedClass = type.getReturnedClass();
+		if (java.util.Date.class.isAssignableFrom(returnedClass))
+			return "'2000-01-01 00:00:00'";
+		if (Number.class.isAssignableFrom(returnedClass) || Boolean.class.equals(returnedClass))
+			return "1";
+		if (returnedClass.isEnum() && returnedClass.getEnumConstants().length > 0)
+			return "'" + ((Enum<?>) returnedClass.getEnumConstants()[0]).name() + "'";
+		return "'1'";
+	}
+
+	/**
+	 * This method checks if a query is a select
+	 *
+	 * @param query
+	 *            The query
+	 * @return True if the query is a select
+	 */
+	private static boolean isSelect(String query) {
+		String text = query.trim().toLowerCase();
+		return text.startsWith("select") || text.startsWith("from");
+	}
+}
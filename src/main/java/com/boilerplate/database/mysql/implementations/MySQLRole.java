@@ -9,7 +9,6 @@ import org.hibernate.exception.ConstraintViolationException;
 import com.boilerplate.database.interfaces.IRole;
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
-import com.boilerplate.framework.HibernateUtility;
 import com.boilerplate.framework.Logger;
 import com.boilerplate.java.entities.RoleEntity;
 import com.boilerplate.java.entities.SaveRoleEntity;
@@ -28,13 +27,18 @@ public class MySQLRole extends MySQLBaseDataAccessLayer implements IRole {
 	 */
 	private Logger logger = Logger.getInstance(MySQLRole.class);
 
+	/**
+	 * This is the query cache region of the role queries
+	 */
+	public static final String ROLE_QUERY_REGION = "RoleQueries";
+
 	/**
 	 * @see IRole.getRoleAllRoles
 	 */
 	@Override
 	public List<RoleEntity> getAllRoles() {
 		try {
-			List<RoleEntity> allRoles = super.get(RoleEntity.class);
+			List<RoleEntity> allRoles = super.get(RoleEntity.class, ROLE_QUERY_REGION);
 			return allRoles;
 		} catch (Exception e) {
 			// log the exception
@@ -50,11 +54,11 @@ public class MySQLRole extends MySQLBaseDataAccessLayer implements IRole {
 	@Override
 	public void saveUserRoles(SaveRoleEntity userRoles) throws Exception {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			// get all the configurations from the DB as a list
-			Transaction transaction = session.beginTransaction();
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
 			// for each roles
 			for (String role : userRoles.getRoleIds()) {
 				// save role in MySQL
@@ -62,21 +66,20 @@ public class MySQLRole extends MySQLBaseDataAccessLayer implements IRole {
 				session.saveOrUpdate(userRole);
 			}
 			// commit the transaction
-			transaction.commit();
+			this.commit(transaction);
 		} catch (ConstraintViolationException ex) {
 			logger.logException("MySQLRole", "create", "try-catch block", ex.getMessage(), ex);
-			session.getTransaction().rollback();
+			this.rollback(transaction);
 			throw new ValidationFailedException("UserRoleEntity",
 					"ConstraintViolationException occurred. Might be due to the following reasons: Either th role ids are incorrect or user is trying assign duplicate roles, please check the list of role ids provided in the request",
 					null);
 		} catch (Exception e) {
 			logger.logException("MySQLRole", "create", "try-catch block", e.getMessage(), e);
+			this.rollback(transaction);
 			throw new BadRequestException("MySQLUsers", "Some exception occurred while saving roles, please try again",
 					null);
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		}
 
 	}
@@ -87,26 +90,25 @@ public class MySQLRole extends MySQLBaseDataAccessLayer implements IRole {
 	@Override
 	public void deleteRoles(List<UserRoleEntity> userRoles) throws BadRequestException {
 		Session session = null;
+		Transaction transaction = null;
 		try {
 			// open a session
-			session = HibernateUtility.getSessionFactory().openSession();
-			// get all the configurations from the DB as a list
-			Transaction transaction = session.beginTransaction();
+			session = this.acquireWriteSession();
+			transaction = this.beginTransaction(session);
 			// for each roles
 			for (UserRoleEntity role : userRoles) {
 				// delete role from MySQL
 				session.delete(role);
 			}
 			// commit the transaction
-			transaction.commit();
+			this.commit(transaction);
 		} catch (Exception e) {
 			logger.logException("MySQLRole", "deleteRoles", "try-catch block", e.getMessage(), e);
+			this.rollback(transaction);
 			throw new BadRequestException("MySQLRole", "Some exception occurred while deleting roles, please try again",
 					null);
 		} finally {
-			if (session != null && session.isOpen()) {
-				session.close();
-			}
+			this.releaseSession(session);
 		}
 	}
 
@@ -0,0 +1,258 @@
+package com.boilerplate.database.mysql.implementations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+
+import com.boilerplate.framework.HibernateUtility;
+import com.boilerplate.framework.Logger;
+
+/**
+ * This class brings the schema of the primary database up to date when the
+ * application starts. The schema changes are sql scripts in the
+ * schemaMigrations folder of the class path, named V<version>__<name>.sql, for
+ * example V003__query_indexes.sql. The scripts are applied in the order of
+ * their versions and each applied version is recorded in the SchemaVersion
+ * table, so every script is run once. A named database lock is held while the
+ * scripts are applied so that nodes starting together do not run a script
+ * twice.
+ *
+ * A script must not be changed once it is released, changes are made by adding
+ * a script with the next version and listing it in the spring configuration.
+ *
+ * @author ruchi
+ *
+ */
+public class MySQLSchemaMigrator {
+
+	/**
+	 * This is the folder of the scripts in the class path
+	 */
+	private static final String SCRIPT_FOLDER = "/schemaMigrations/";
+
+	/**
+	 * This is the name of the database lock held while scripts are applied
+	 */
+	private static final String LOCK_NAME = "ExpenseSystemSchemaMigration";
+
+	/**
+	 * This is the number of seconds to wait for another node to finish
+	 */
+	private static final int LOCK_TIMEOUT_IN_SECONDS = 300;
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(MySQLSchemaMigrator.class);
+
+	/**
+	 * This is the list of script names in the order of their versions
+	 */
+	private List<String> migrations = new ArrayList<>();
+
+	/**
+	 * This method is used to set the migrations
+	 *
+	 * @param migrations
+	 *            The list of script names in the order of their versions
+	 */
+	public void setMigrations(List<String> migrations) {
+		this.migrations = migrations;
+	}
+
+	/**
+	 * This method applies the scripts which are not yet applied
+	 *
+	 * @throws Exception
+	 *             Throw this exception if a script fails, the scripts after it
+	 *             are not applied and the application should not start
+	 */
+	public void migrate() throws Exception {
+		Session session = null;
+		try {
+			session = HibernateUtility.getSessionFactory().openSession();
+			session.doWork(new Work() {
+				@Override
+				public void execute(Connection connection) throws SQLException {
+					boolean autoCommit = connection.getAutoCommit();
+					// each statement is committed on its own, ddl commits
+					// anyway
+					connection.setAutoCommit(true);
+					try {
+						migrate(connection);
+					} finally {
+						connection.setAutoCommit(autoCommit);
+					}
+				}
+			});
+		} catch (Exception ex) {
+			logger.logException("MySQLSchemaMigrator", "migrate", "try-catch block", ex.getMessage(), ex);
+			throw ex;
+		} finally {
+			if (session != null && session.isOpen()) {
+				session.close();
+			}
+		}
+	}
+
+	/**
+	 * This method applies the scripts which are not yet applied while holding
+	 * the database lock
+	 *
+	 * @param connection
+	 *            The connection to the primary database
+	 * @throws SQLException
+	 *             Throw this exception if the lock is not got or a script fails
+	 */
+	private void migrate(Connection connection) throws SQLException {
+		PreparedStatement lockStatement = connection.prepareStatement("SELECT GET_LOCK(?, ?)");
+		try {
+			lockStatement.setString(1, LOCK_NAME);
+			lockStatement.setInt(2, LOCK_TIMEOUT_IN_SECONDS);
+			ResultSet lockResult = lockStatement.executeQuery();
+			if (!lockResult.next() || lockResult.getInt(1) != 1)
+				throw new SQLException("Could not get the schema migration lock " + LOCK_NAME);
+		} finally {
+			lockStatement.close();
+		}
+		try {
+			this.execute(connection, "CREATE TABLE IF NOT EXISTS `SchemaVersion` (`Version` int(11) NOT NULL, "
+					+ "`Script` varchar(255) NOT NULL, `AppliedOn` datetime NOT NULL, PRIMARY KEY (`Version`)) "
+					+ "ENGINE=InnoDB DEFAULT CHARSET=latin1");
+			Set<Integer> appliedVersions = this.getAppliedVersions(connection);
+			for (String script : migrations) {
+				int version = versionOf(script);
+				if (appliedVersions.contains(version))
+					continue;
+				for (String statement : this.readStatements(script)) {
+					this.execute(connection, statement);
+				}
+				PreparedStatement versionStatement = connection
+						.prepareStatement("INSERT INTO `SchemaVersion` (`Version`, `Script`, `AppliedOn`) VALUES (?, ?, NOW())");
+				try {
+					versionStatement.setInt(1, version);
+					versionStatement.setString(2, script);
+					versionStatement.executeUpdate();
+				} finally {
+					versionStatement.close();
+				}
+				logger.logInfo("MySQLSchemaMigrator", "migrate", "Applied", "Applied schema migration " + script);
+			}
+		} finally {
+			PreparedStatement releaseStatement = connection.prepareStatement("SELECT RELEASE_LOCK(?)");
+			try {
+				releaseStatement.setString(1, LOCK_NAME);
+				releaseStatement.executeQuery().close();
+			} finally {
+				releaseStatement.close();
+			}
+		}
+	}
+
+	/**
+	 * This method gets the versions already applied
+	 *
+	 * @param connection
+	 *            The connection to the primary database
+	 * @return The set of versions
+	 * @throws SQLException
+	 *             Throw this exception if the versions could not be read
+	 */
+	private Set<Integer> getAppliedVersions(Connection connection) throws SQLException {
+		Set<Integer> versions = new HashSet<>();
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet resultSet = statement.executeQuery("SELECT `Version` FROM `SchemaVersion`");
+			while (resultSet.next()) {
+				versions.add(resultSet.getInt(1));
+			}
+		} finally {
+			statement.close();
+		}
+		return versions;
+	}
+
+	/**
+	 * This method executes a statement
+	 *
+	 * @param connection
+	 *            The connection to the primary database
+	 * @param sql
+	 *            The statement
+	 * @throws SQLException
+	 *             Throw this exception if the statement fails
+	 */
+	private void execute(Connection connection, String sql) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(sql);
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * This method reads the statements of a script. Lines starting with -- are
+	 * comments and statements end with a semicolon.
+	 *
+	 * @param script
+	 *            The name of the script
+	 * @return The list of statements
+	 * @throws SQLException
+	 *             Throw this exception if the script could not be read
+	 */
+	private List<String> readStatements(String script) throws SQLException {
+		InputStream inputStream = MySQLSchemaMigrator.class.getResourceAsStream(SCRIPT_FOLDER + script);
+		if (inputStream == null)
+			throw new SQLException("Schema migration script not found " + script);
+		List<String> statements = new ArrayList<>();
+		StringBuilder statement = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String trimmedLine = line.trim();
+				if (trimmedLine.isEmpty() || trimmedLine.startsWith("--"))
+					continue;
+				statement.append(line).append('\n');
+				if (trimmedLine.endsWith(";")) {
+					statements.add(statement.substring(0, statement.lastIndexOf(";")));
+					statement.setLength(0);
+				}
+			}
+		} catch (IOException ex) {
+			throw new SQLException("Could not read schema migration script " + script, ex);
+		}
+		if (statement.toString().trim().length() > 0)
+			statements.add(statement.toString());
+		return statements;
+	}
+
+	/**
+	 * This method gets the version of a script from its name
+	 *
+	 * @param script
+	 *            The name of the script, V<version>__<name>.sql
+	 * @return The version
+	 */
+	private static int versionOf(String script) {
+		int separator = script.indexOf("__");
+		if (!script.startsWith("V") || separator < 2)
+			throw new IllegalArgumentException("Schema migration script name should be V<version>__<name>.sql : "
+					+ script);
+		return Integer.parseInt(script.substring(1, separator));
+	}
+}
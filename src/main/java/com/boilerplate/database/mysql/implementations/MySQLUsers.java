@@ -11,11 +11,12 @@ import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.FetchProfile;
 import com.boilerplate.database.interfaces.IUser;
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
-import com.boilerplate.framework.HibernateUtility;
 import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.QueryRegistry;
 import com.boilerplate.java.entities.ExternalFacingUser;
 import com.boilerplate.java.entities.SaveRoleEntity;
 import com.boilerplate.java.entities.UserRoleEntity;
@@ -49,6 +50,22 @@ public class MySQLUsers extends MySQLBaseDataAccessLayer implements IUser {
 		this.configurationManager = configurationManager;
 	}
 
+	/**
+	 * This is the instance of query registry
+	 */
+	@Autowired
+	QueryRegistry queryRegistry;
+
+	/**
+	 * This method is used to set the queryRegistry
+	 * 
+	 * @param queryRegistry
+	 *            the queryRegistry to set
+	 */
+	public void setQueryRegistry(QueryRegistry queryRegistry) {
+		this.queryRegistry = queryRegistry;
+	}
+
 	/**
 	 * @see IUser.createUser
 	 */
@@ -71,7 +88,7 @@ public class MySQLUsers extends MySQLBaseDataAccessLayer implements IUser {
 	@Override
 	public ExternalFacingUser getExistingUser(String mobile, String emailId) throws BadRequestException {
 		// Get the SQL query from configurations to get users
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_USERS_BY_MOBILE_OR_EMAIL_ID");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_USERS_BY_MOBILE_OR_EMAIL_ID");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
@@ -112,13 +129,67 @@ public class MySQLUsers extends MySQLBaseDataAccessLayer implements IUser {
 		}
 	}
 
+	/**
+	 * @see IUser.updateUserIsActive
+	 */
+	@Override
+	public boolean updateUserIsActive(String id, boolean isActive) throws BadRequestException {
+		// Get the SQL query from configurations to change the active flag
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_UPDATING_USER_ACTIVE");
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		queryParameterMap.put("Id", id);
+		queryParameterMap.put("IsActive", isActive);
+		try {
+			// only the column is written so a change made by another server to
+			// the other columns is not lost
+			return super.executeUpdate(hSQLQuery, queryParameterMap) == 1;
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLUsers", "updateUserIsActive", "exceptionUpdateUserIsActive",
+					"While trying to change the active flag of user, This is the id~ " + id, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLUsers", "While trying to update user data ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * @see IUser.updateUserApprover
+	 */
+	@Override
+	public int updateUserApprover(List<String> ids, String approverId) throws BadRequestException {
+		// Get the SQL query from configurations to change the approver
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_UPDATING_USER_APPROVER");
+		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		queryParameterMap.put("Ids", ids);
+		queryParameterMap.put("ApproverId", approverId);
+		try {
+			// only the column is written so a change made by another server to
+			// the other columns is not lost
+			return super.executeUpdate(hSQLQuery, queryParameterMap);
+		} catch (Exception ex) {
+			// Log exception
+			logger.logException("MySQLUsers", "updateUserApprover", "exceptionUpdateUserApprover",
+					"While trying to change the approver of users, This is the approver id~ " + approverId, ex);
+			// Throw exception
+			throw new BadRequestException("MySQLUsers", "While trying to update user data ~ " + ex.toString(), ex);
+		}
+	}
+
 	/**
 	 * @see IUser.getUserById
 	 */
 	@Override
 	public ExternalFacingUser getUserById(String userId) throws BadRequestException {
+		return this.getUserById(userId, FetchProfile.SUMMARY);
+	}
+
+	/**
+	 * @see IUser.getUserById
+	 */
+	@Override
+	public ExternalFacingUser getUserById(String userId, FetchProfile fetchProfile) throws BadRequestException {
 		// Get the SQL query from configurations to get users
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_USERS_BY_USER_ID");
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_USERS_BY_USER_ID");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
@@ -128,7 +199,7 @@ public class MySQLUsers extends MySQLBaseDataAccessLayer implements IUser {
 		List<ExternalFacingUser> users = new ArrayList<>();
 		try {
 			// Execute query
-			users = super.executeSelect(hSQLQuery, queryParameterMap);
+			users = super.executeSelect(hSQLQuery, queryParameterMap, null, fetchProfile);
 		} catch (Exception ex) {
 			// Log exception
 			logger.logException("MySQLUsers", "getUserById", "exceptionGetUserById",
@@ -147,47 +218,46 @@ public class MySQLUsers extends MySQLBaseDataAccessLayer implements IUser {
 	 */
 	@Override
 	public ExternalFacingUser getUser(String id) throws BadRequestException {
-		// Get the SQL query from configurations to get users
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_USERS_BY_ID");
-		// Make a new instance of BoilerplateMap ,used to define query
-		// parameters
-		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
-		// Put id in query parameter
-		queryParameterMap.put("Id", id);
-		// This variable is used to hold the query response
-		List<ExternalFacingUser> users = new ArrayList<>();
+		return this.getUser(id, FetchProfile.SUMMARY);
+	}
+
+	/**
+	 * @see IUser.getUser
+	 */
+	@Override
+	public ExternalFacingUser getUser(String id, FetchProfile fetchProfile) throws BadRequestException {
+		if (id == null)
+			return null;
 		try {
-			// Execute query
-			users = super.executeSelect(hSQLQuery, queryParameterMap);
+			// the user is read from the database as other servers change it,
+			// the roles are joined if the profile needs them
+			return super.getById(ExternalFacingUser.class, id, fetchProfile);
 		} catch (Exception ex) {
 			// Log exception
 			logger.logException("MySQLUsers", "getUser", "exceptionGetUser",
-					"While trying to get user data, This is the id~ " + id + "This is the query" + hSQLQuery, ex);
+					"While trying to get user data, This is the id~ " + id, ex);
 			// Throw exception
 			throw new BadRequestException("MySQLUsers", "While trying to get user data ~ " + ex.toString(), ex);
 		}
-		if (users.size() == 0)
-			return null;
-		return users.get(0);
 	}
 
 	/**
 	 * @see IUser.getUsersByRole
 	 */
 	@Override
-	public List<Map<String, Object>> getUsersByRole(String role) throws BadRequestException {
+	public List<ExternalFacingUser> getUsersByRole(String role) throws BadRequestException {
 		// Get the SQL query from configurations to get users
-		String hSQLQuery = configurationManager.get("SQL_QUERY_FOR_GETTING_FINANCE_USERS");
-		// replace role in query
-		hSQLQuery = hSQLQuery.replace("@Role", role);
+		String hSQLQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_FINANCE_USERS");
 		// Make a new instance of BoilerplateMap ,used to define query
 		// parameters
 		Map<String, Object> queryParameterMap = new HashMap<String, Object>();
+		// put role in query parameter
+		queryParameterMap.put("Role", role);
 		// This variable is used to hold the query response
-		List<Map<String, Object>> users = new ArrayList<>();
+		List<ExternalFacingUser> users = new ArrayList<>();
 		try {
-			// Execute query
-			users = super.executeSelectNative(hSQLQuery, queryParameterMap);
+			// Execute query, the columns are mapped to the user properties
+			users = super.executeSelectNative(hSQLQuery, queryParameterMap, ExternalFacingUser.class);
 		} catch (Exception ex) {
 			// Log exception
 			logger.logException("MySQLUsers", "getFinanceUsers", "exceptionGetFinanceUsers",
@@ -205,13 +275,37 @@ public class MySQLUsers extends MySQLBaseDataAccessLayer implements IUser {
 	 */
 	@Override
 	public List<ExternalFacingUser> getAllUsers() throws BadRequestException {
+		// the columns are selected so no entity or role collection is loaded
+		String userQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_USER_DIRECTORY_ROWS");
+		String roleQuery = queryRegistry.get("SQL_QUERY_FOR_GETTING_ROLES_OF_ALL_USERS");
 		try {
-			return super.get(ExternalFacingUser.class);
-		} catch (Exception e) {
+			List<Object[]> userRows = super.executeSelect(userQuery, new HashMap<String, Object>());
+			List<ExternalFacingUser> users = new ArrayList<>(userRows.size());
+			Map<String, ExternalFacingUser> usersById = new HashMap<>();
+			for (Object[] row : userRows) {
+				ExternalFacingUser user = new ExternalFacingUser((String) row[1], (String) row[2], (String) row[3],
+						(String) row[4], new ArrayList<UserRoleEntity>(), Boolean.TRUE.equals(row[5]),
+						(String) row[6], (String) row[7]);
+				user.setId(String.valueOf(row[0]));
+				users.add(user);
+				usersById.put(user.getId(), user);
+			}
+			// set the roles of all the users with one query
+			List<Object[]> roleRows = super.executeSelect(roleQuery, new HashMap<String, Object>());
+			for (Object[] row : roleRows) {
+				ExternalFacingUser user = usersById.get(String.valueOf(row[1]));
+				if (user != null) {
+					UserRoleEntity role = new UserRoleEntity(String.valueOf(row[2]), user.getId());
+					role.setId(String.valueOf(row[0]));
+					user.getRoles().add(role);
+				}
+			}
+			return users;
+		} catch (Exception ex) {
 			// log the exception
-			logger.logException("MySQLUsers", "getAllUsers", "eceptionGetAllUsers",
-					"Exception occurred while getting all users", e);
-			throw new BadRequestException("ExternalFacingUser", "Some exception occurred while getting users", null);
+			logger.logException("MySQLUsers", "getAllUsers", "exceptionGetAllUsers",
+					"While trying to get all users, This is the query" + userQuery, ex);
+			throw new BadRequestException("MySQLUsers", "While trying to get user data ~ " + ex.toString(), ex);
 		}
 	}
 
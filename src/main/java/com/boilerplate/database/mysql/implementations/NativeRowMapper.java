@@ -0,0 +1,318 @@
+package com.boilerplate.database.mysql.implementations;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.transform.ResultTransformer;
+
+/**
+ * This class maps the rows of a native query straight to objects of a class,
+ * without building a map for each row. A column is set through the setter of
+ * the class whose property name matches the column alias, ignoring case, so
+ * the query should alias its columns as the properties, for example
+ * "select user.EmailId as email". Columns without a setter are skipped. If the
+ * class is a string, number, boolean or date the first column of each row is
+ * the value.
+ *
+ * The setters of a class are looked up once and kept as method handles, and
+ * the columns of a query are matched to them on its first row, so each row
+ * only creates the object and sets its values. A new mapper is made for each
+ * query.
+ *
+ * @author ruchi
+ *
+ */
+public class NativeRowMapper<T> implements ResultTransformer {
+
+	/**
+	 * This is the serial version id
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * This is the map of class to the setters of its properties by lower case
+	 * property name
+	 */
+	private static final Map<Class<?>, Map<String, PropertySetter>> settersByClass = new ConcurrentHashMap<>();
+
+	/**
+	 * This is the map of class to its constructor without parameters
+	 */
+	private static final Map<Class<?>, MethodHandle> constructorsByClass = new ConcurrentHashMap<>();
+
+	/**
+	 * This is the class of the rows
+	 */
+	private final Class<T> rowClass;
+
+	/**
+	 * This is true if the class is a single value rather than an object with
+	 * properties
+	 */
+	private final boolean isScalar;
+
+	/**
+	 * This is the setter of each column of the query, null for a column
+	 * without a setter. It is null till the first row is mapped.
+	 */
+	private transient PropertySetter[] columnSetters;
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param rowClass
+	 *            The class of the rows
+	 */
+	public NativeRowMapper(Class<T> rowClass) {
+		this.rowClass = rowClass;
+		this.isScalar = isScalarType(rowClass);
+	}
+
+	/**
+	 * This method maps a row to an object of the class
+	 *
+	 * @see ResultTransformer.transformTuple
+	 */
+	@Override
+	public Object transformTuple(Object[] tuple, String[] aliases) {
+		if (isScalar)
+			return convert(tuple[0], rowClass, aliases[0]);
+		if (columnSetters == null)
+			columnSetters = resolveColumns(rowClass, aliases);
+		Object row;
+		try {
+			row = constructorOf(rowClass).invoke();
+		} catch (Throwable ex) {
+			throw new IllegalStateException("Could not create " + rowClass.getName(), ex);
+		}
+		for (int index = 0; index < tuple.length; index++) {
+			if (columnSetters[index] != null && tuple[index] != null)
+				columnSetters[index].set(row, tuple[index]);
+		}
+		return row;
+	}
+
+	/**
+	 * This method returns the list of mapped rows as it is
+	 *
+	 * @see ResultTransformer.transformList
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public List transformList(List collection) {
+		return collection;
+	}
+
+	/**
+	 * This method matches the columns of a query to the setters of a class
+	 *
+	 * @param rowClass
+	 *            The class of the rows
+	 * @param aliases
+	 *            The column aliases of the query
+	 * @return The setter of each column, null for columns without a setter
+	 */
+	private static PropertySetter[] resolveColumns(Class<?> rowClass, String[] aliases) {
+		Map<String, PropertySetter> setters = settersOf(rowClass);
+		PropertySetter[] columnSetters = new PropertySetter[aliases.length];
+		for (int index = 0; index < aliases.length; index++) {
+			if (aliases[index] != null)
+				columnSetters[index] = setters.get(aliases[index].toLowerCase(Locale.ENGLISH));
+		}
+		return columnSetters;
+	}
+
+	/**
+	 * This method gets the setters of a class, they are looked up on first use
+	 *
+	 * @param rowClass
+	 *            The class
+	 * @return The map of lower case property name to setter
+	 */
+	private static Map<String, PropertySetter> settersOf(Class<?> rowClass) {
+		Map<String, PropertySetter> setters = settersByClass.get(rowClass);
+		if (setters != null)
+			return setters;
+		setters = new HashMap<>();
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		// sort the methods so that the setter picked for an overloaded name
+		// does not depend on the order reflection returns them
+		Method[] methods = rowClass.getMethods();
+		Arrays.sort(methods, (first, second) -> first.toString().compareTo(second.toString()));
+		for (Method method : methods) {
+			if (!method.getName().startsWith("set") || method.getName().length() == 3
+					|| method.getParameterCount() != 1 || Modifier.isStatic(method.getModifiers()))
+				continue;
+			String propertyName = method.getName().substring(3).toLowerCase(Locale.ENGLISH);
+			if (setters.containsKey(propertyName))
+				continue;
+			try {
+				MethodHandle handle = lookup.unreflect(method)
+						.asType(MethodType.methodType(void.class, Object.class, Object.class));
+				setters.put(propertyName, new PropertySetter(method.getName(), method.getParameterTypes()[0], handle));
+			} catch (IllegalAccessException ex) {
+				// setters of classes which are not public can not be used
+			}
+		}
+		settersByClass.put(rowClass, setters);
+		return setters;
+	}
+
+	/**
+	 * This method gets the constructor without parameters of a class
+	 *
+	 * @param rowClass
+	 *            The class
+	 * @return The constructor as a method handle returning an object
+	 */
+	private static MethodHandle constructorOf(Class<?> rowClass) {
+		MethodHandle constructor = constructorsByClass.get(rowClass);
+		if (constructor != null)
+			return constructor;
+		try {
+			Constructor<?> defaultConstructor = rowClass.getConstructor();
+			constructor = MethodHandles.publicLookup().unreflectConstructor(defaultConstructor)
+					.asType(MethodType.methodType(Object.class));
+		} catch (NoSuchMethodException | IllegalAccessException ex) {
+			throw new IllegalArgumentException(
+					rowClass.getName() + " should have a public constructor without parameters to map rows to it", ex);
+		}
+		constructorsByClass.put(rowClass, constructor);
+		return constructor;
+	}
+
+	/**
+	 * This method checks if a class is mapped from a single column
+	 *
+	 * @param type
+	 *            The class
+	 * @return True for strings, numbers, booleans, dates and enums
+	 */
+	private static boolean isScalarType(Class<?> type) {
+		return type == String.class || Number.class.isAssignableFrom(type) || type == Boolean.class
+				|| Date.class.isAssignableFrom(type) || type.isEnum();
+	}
+
+	/**
+	 * This method converts a column value to the type of a property. The
+	 * numbers mysql returns as big integers, big decimals or doubles are
+	 * narrowed to the property type, tiny ints to booleans and strings to
+	 * enums.
+	 *
+	 * @param value
+	 *            The column value, not null
+	 * @param type
+	 *            The type of the property
+	 * @param column
+	 *            The column alias, used in the error message
+	 * @return The converted value
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object convert(Object value, Class<?> type, String column) {
+		if (value == null || type.isInstance(value))
+			return value;
+		if (value instanceof Number) {
+			Number number = (Number) value;
+			if (type == int.class || type == Integer.class)
+				return number.intValue();
+			if (type == long.class || type == Long.class)
+				return number.longValue();
+			if (type == float.class || type == Float.class)
+				return number.floatValue();
+			if (type == double.class || type == Double.class)
+				return number.doubleValue();
+			if (type == short.class || type == Short.class)
+				return number.shortValue();
+			if (type == byte.class || type == Byte.class)
+				return number.byteValue();
+			if (type == boolean.class || type == Boolean.class)
+				return number.intValue() != 0;
+			if (type == BigDecimal.class)
+				return new BigDecimal(number.toString());
+			if (type == BigInteger.class)
+				return new BigInteger(number.toString());
+		}
+		if (type == String.class)
+			return value.toString();
+		if (type.isEnum())
+			return Enum.valueOf((Class<Enum>) type, value.toString());
+		if (type == boolean.class && value instanceof Boolean)
+			return value;
+		if (type == char.class && value instanceof Character)
+			return value;
+		throw new IllegalArgumentException("Column " + column + " of type " + value.getClass().getName()
+				+ " can not be mapped to " + type.getName());
+	}
+
+	/**
+	 * This class is the setter of a property, kept as a method handle taking
+	 * the object and the value
+	 *
+	 * @author ruchi
+	 *
+	 */
+	private static class PropertySetter {
+
+		/**
+		 * This is the name of the setter
+		 */
+		private final String name;
+
+		/**
+		 * This is the type of the property
+		 */
+		private final Class<?> type;
+
+		/**
+		 * This is the method handle of the setter
+		 */
+		private final MethodHandle handle;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param name
+		 *            The name of the setter
+		 * @param type
+		 *            The type of the property
+		 * @param handle
+		 *            The method handle of the setter
+		 */
+		PropertySetter(String name, Class<?> type, MethodHandle handle) {
+			this.name = name;
+			this.type = type;
+			this.handle = handle;
+		}
+
+		/**
+		 * This method sets the property of an object
+		 *
+		 * @param target
+		 *            The object
+		 * @param value
+		 *            The column value, it is converted to the property type
+		 */
+		void set(Object target, Object value) {
+			try {
+				handle.invokeExact(target, convert(value, type, name));
+			} catch (RuntimeException ex) {
+				throw ex;
+			} catch (Throwable ex) {
+				throw new IllegalStateException("While trying to call " + name + " to map a native query row", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.boilerplate.database.mysql.implementations;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.type.LongType;
+import org.hibernate.type.Type;
+
+/**
+ * This is a pooled hi/lo id generator backed by the IdAllocations table. Each
+ * entity that uses it has a row in the table and reserves a block of ids with
+ * one update of its row, the ids of the block are then handed out from memory.
+ * Unlike identity ids the id is known before the insert, so hibernate can send
+ * the inserts of a flush as a jdbc batch.
+ *
+ * The row is read and updated with a compare and set in a transaction of its
+ * own, so several nodes sharing the database never get the same block. The
+ * ids of a block not used before a node stops are skipped.
+ *
+ * It is selected per entity in the mapping, the parameter segment_value is
+ * the name of the row of the entity, for example
+ *
+ * <pre>
+ * &lt;generator class="com.boilerplate.database.mysql.implementations.PooledTableIdGenerator"&gt;
+ * 	&lt;param name="segment_value"&gt;Expenses&lt;/param&gt;
+ * &lt;/generator&gt;
+ * </pre>
+ *
+ * Ids of the entities are strings, the generated number is returned as a
+ * string.
+ *
+ * @author ruchi
+ *
+ */
+public class PooledTableIdGenerator extends TableGenerator {
+
+	/**
+	 * This is the table holding the next id of each entity
+	 */
+	public static final String ALLOCATION_TABLE = "IdAllocations";
+
+	/**
+	 * This is the number of ids reserved with one update
+	 */
+	public static final String DEFAULT_BLOCK_SIZE = "50";
+
+	/**
+	 * This method configures the generator, the table and pooled optimizer
+	 * are used unless the mapping says otherwise
+	 *
+	 * @see TableGenerator.configure
+	 */
+	@Override
+	public void configure(Type type, Properties params, Dialect dialect) throws MappingException {
+		setDefault(params, TABLE_PARAM, ALLOCATION_TABLE);
+		setDefault(params, SEGMENT_COLUMN_PARAM, "EntityName");
+		setDefault(params, VALUE_COLUMN_PARAM, "NextId");
+		setDefault(params, INCREMENT_PARAM, DEFAULT_BLOCK_SIZE);
+		setDefault(params, OPT_PARAM, "pooled");
+		// the numbers are generated as long and converted in generate
+		super.configure(LongType.INSTANCE, params, dialect);
+	}
+
+	/**
+	 * This method generates the id of an entity
+	 *
+	 * @see TableGenerator.generate
+	 */
+	@Override
+	public Serializable generate(SessionImplementor session, Object obj) {
+		return String.valueOf(super.generate(session, obj));
+	}
+
+	/**
+	 * This method sets a parameter if the mapping has not set it
+	 *
+	 * @param params
+	 *            The parameters of the generator
+	 * @param name
+	 *            The name of the parameter
+	 * @param value
+	 *            The default value
+	 */
+	private static void setDefault(Properties params, String name, String value) {
+		if (params.getProperty(name) == null) {
+			params.setProperty(name, value);
+		}
+	}
+}
@@ -14,6 +14,7 @@ import com.boilerplate.java.entities.MethodPermissions;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.util.SafeEncoder;
 
 public class BaseRedisDataAccessLayer {
 
@@ -70,6 +71,18 @@ public class BaseRedisDataAccessLayer {
 		return BaseRedisDataAccessLayer.pool.getResource();
 	}
 
+	/**
+	 * Creates a connection outside the pool which does not time out while it
+	 * waits for a reply, for commands such as subscribe which wait for
+	 * messages as long as the connection is open
+	 * 
+	 * @return A Jedis connection, the caller must close it
+	 */
+	protected Jedis createDedicatedConnection() {
+		String[] hostPort = this.getDatabaseConnectionFormPropertiesFile().split(";")[0].split(":");
+		return new Jedis(hostPort[0].trim(), Integer.parseInt(hostPort[1].trim()), 2000, 0);
+	}
+
 	// THIS IS A VERY BAD WAY TO DO THIS, need to find a better mechanism
 	private void createSeedData() {
 		BoilerplateMap<String, String> v1E1 = new BoilerplateMap<String, String>();
@@ -217,6 +230,75 @@ public class BaseRedisDataAccessLayer {
 
 	}
 
+	/**
+	 * Gets the bytes of a key, for values which are not saved as XML
+	 * 
+	 * @param key
+	 *            The key
+	 * @return The bytes, null if the key does not exist
+	 */
+	public byte[] getBytes(String key) {
+		Jedis jedis = null;
+		try {
+			jedis = this.getConnection();
+			return jedis.get(SafeEncoder.encode(key));
+		} finally {
+			if (jedis != null) {
+				jedis.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Sets the bytes of a key, for values which are not saved as XML
+	 * 
+	 * @param key
+	 *            The key
+	 * @param value
+	 *            The bytes of the value
+	 * @param timeoutInSeconds
+	 *            The seconds after which the key expires
+	 */
+	public void setBytes(String key, byte[] value, int timeoutInSeconds) {
+		Jedis jedis = null;
+		try {
+			jedis = this.getConnection();
+			jedis.setex(SafeEncoder.encode(key), timeoutInSeconds, value);
+		} finally {
+			if (jedis != null) {
+				jedis.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Sets the bytes of a key only if the key exists, for values which are
+	 * not saved as XML
+	 * 
+	 * @param key
+	 *            The key
+	 * @param value
+	 *            The bytes of the value
+	 * @param timeoutInSeconds
+	 *            The seconds after which the key expires
+	 * @return True if the key existed and was set
+	 */
+	public boolean replaceBytes(String key, byte[] value, int timeoutInSeconds) {
+		Jedis jedis = null;
+		try {
+			jedis = this.getConnection();
+			return jedis.set(SafeEncoder.encode(key), value, SafeEncoder.encode("XX"), SafeEncoder.encode("EX"),
+					timeoutInSeconds) != null;
+		} finally {
+			if (jedis != null) {
+				jedis.close();
+			}
+		}
+
+	}
+
 	/**
 	 * Deletes a key
 	 * 
@@ -384,6 +466,54 @@ public class BaseRedisDataAccessLayer {
 		methodPermission.setPublishBusinessSubject("CHECK_SERVER_STATUS");
 		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
 
+		// method permission for cache statistics, only for admin
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getCacheStatistics()");
+		methodPermission.setMethodName(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getCacheStatistics()");
+		methodPermission.setIsAuthenticationRequired(true);
+		methodPermission.setIsLoggingRequired(false);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(false);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
+		// method permission for connection pool statistics, only for admin
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getConnectionPoolStatistics()");
+		methodPermission.setMethodName(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getConnectionPoolStatistics()");
+		methodPermission.setIsAuthenticationRequired(true);
+		methodPermission.setIsLoggingRequired(false);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(false);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
+		// method permission for session write statistics, only for admin
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getSessionWriteStatistics()");
+		methodPermission.setMethodName(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getSessionWriteStatistics()");
+		methodPermission.setIsAuthenticationRequired(true);
+		methodPermission.setIsLoggingRequired(false);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(false);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
+		// method permission for session near cache statistics, only for admin
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getSessionNearCacheStatistics()");
+		methodPermission.setMethodName(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getSessionNearCacheStatistics()");
+		methodPermission.setIsAuthenticationRequired(true);
+		methodPermission.setIsLoggingRequired(false);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(false);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
 		// method permission for create user
 		methodPermission = new MethodPermissions();
 		methodPermission.setId(
@@ -554,9 +684,9 @@ public class BaseRedisDataAccessLayer {
 		// method permission for getExpenses for approvers/super approvers
 		methodPermission = new MethodPermissions();
 		methodPermission.setId(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForApprover()");
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForApprover(java.lang.String,java.lang.Integer)");
 		methodPermission.setMethodName(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForApprover()");
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForApprover(java.lang.String,java.lang.Integer)");
 		methodPermission.setIsAuthenticationRequired(false);
 		methodPermission.setIsLoggingRequired(true);
 		methodPermission.setIsApproverRoleRequired(true);
@@ -566,9 +696,9 @@ public class BaseRedisDataAccessLayer {
 		// method permission for getExpense list for approvers/super approvers
 		methodPermission = new MethodPermissions();
 		methodPermission.setId(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpenseListForApproval()");
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpenseListForApproval(java.lang.String,java.lang.Integer)");
 		methodPermission.setMethodName(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpenseListForApproval()");
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpenseListForApproval(java.lang.String,java.lang.Integer)");
 		methodPermission.setIsAuthenticationRequired(false);
 		methodPermission.setIsLoggingRequired(true);
 		methodPermission.setIsApproverRoleRequired(true);
@@ -590,9 +720,9 @@ public class BaseRedisDataAccessLayer {
 		// method permission for get expenses for finance
 		methodPermission = new MethodPermissions();
 		methodPermission.setId(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForFinance(java.lang.String)");
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForFinance(java.lang.String,java.lang.String,java.lang.Integer)");
 		methodPermission.setMethodName(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForFinance(java.lang.String)");
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getExpensesForFinance(java.lang.String,java.lang.String,java.lang.Integer)");
 		methodPermission.setIsAuthenticationRequired(false);
 		methodPermission.setIsLoggingRequired(true);
 		methodPermission.setIsApproverRoleRequired(false);
@@ -602,9 +732,33 @@ public class BaseRedisDataAccessLayer {
 		// method permission for get expense reports for finance
 		methodPermission = new MethodPermissions();
 		methodPermission.setId(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getReportsForFinance(java.lang.String)");
+				"public void com.boilerplate.java.controllers.ExpenseController.getReportsForFinance(java.lang.String)");
+		methodPermission.setMethodName(
+				"public void com.boilerplate.java.controllers.ExpenseController.getReportsForFinance(java.lang.String)");
+		methodPermission.setIsAuthenticationRequired(false);
+		methodPermission.setIsLoggingRequired(true);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(true);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
+		// method permission for explaining the configured queries
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getQueryPlans()");
+		methodPermission.setMethodName(
+				"public com.boilerplate.java.collections.BoilerplateMap com.boilerplate.java.controllers.HealthController.getQueryPlans()");
+		methodPermission.setIsAuthenticationRequired(true);
+		methodPermission.setIsLoggingRequired(true);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(false);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
+		// method permission for export expenses for finance
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public void com.boilerplate.java.controllers.ExpenseController.exportExpensesForFinance(java.lang.String,java.lang.String,java.lang.String,java.lang.String)");
 		methodPermission.setMethodName(
-				"public java.util.List com.boilerplate.java.controllers.ExpenseController.getReportsForFinance(java.lang.String)");
+				"public void com.boilerplate.java.controllers.ExpenseController.exportExpensesForFinance(java.lang.String,java.lang.String,java.lang.String,java.lang.String)");
 		methodPermission.setIsAuthenticationRequired(false);
 		methodPermission.setIsLoggingRequired(true);
 		methodPermission.setIsApproverRoleRequired(false);
@@ -670,6 +824,30 @@ public class BaseRedisDataAccessLayer {
 		methodPermission.setIsApproverRoleRequired(false);
 		methodPermission.setIsFinanceRoleRequired(false);
 		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
+		// method permission for search expenses
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.searchExpenses(java.lang.String,java.lang.Float,java.lang.Float,java.lang.String,java.lang.Integer)");
+		methodPermission.setMethodName(
+				"public java.util.List com.boilerplate.java.controllers.ExpenseController.searchExpenses(java.lang.String,java.lang.Float,java.lang.Float,java.lang.String,java.lang.Integer)");
+		methodPermission.setIsAuthenticationRequired(false);
+		methodPermission.setIsLoggingRequired(true);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(false);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
+
+		// method permission for get expense as of a date
+		methodPermission = new MethodPermissions();
+		methodPermission.setId(
+				"public com.boilerplate.java.entities.ExpenseEntity com.boilerplate.java.controllers.ExpenseController.getExpenseAsOf(java.lang.String,java.lang.String)");
+		methodPermission.setMethodName(
+				"public com.boilerplate.java.entities.ExpenseEntity com.boilerplate.java.controllers.ExpenseController.getExpenseAsOf(java.lang.String,java.lang.String)");
+		methodPermission.setIsAuthenticationRequired(false);
+		methodPermission.setIsLoggingRequired(true);
+		methodPermission.setIsApproverRoleRequired(false);
+		methodPermission.setIsFinanceRoleRequired(false);
+		methodPermissionMap.put(methodPermission.getMethodName(), methodPermission);
 		// save the method permission map in configuration
 		// in database
 		this.set("METHOD_PERMISSIONS", Base.toXML(methodPermissionMap));
@@ -737,6 +915,11 @@ public class BaseRedisDataAccessLayer {
 		vAllEAll.put("DefaultUserStatus", "1");
 		vAllEAll.put("DefaultAuthenticationProvider", "DEFAULT");
 		vAllEAll.put("HD_CLAIM", "krantitechservices.in");
+		vAllEAll.put("GOOGLE_CLIENT_IDS", "428760649180-n99urcelfgmp4iiab879907qoigsgjkg.apps.googleusercontent.com");
+		vAllEAll.put("GOOGLE_ID_TOKEN_ISSUERS", "accounts.google.com,https://accounts.google.com");
+		vAllEAll.put("GOOGLE_SIGNING_KEYS_URL", "https://www.googleapis.com/oauth2/v3/certs");
+		vAllEAll.put("GOOGLE_SIGNING_KEYS_REFRESH_INTERVAL_IN_SECONDS", "3600");
+		vAllEAll.put("ID_TOKEN_CLOCK_SKEW_IN_SECONDS", "300");
 
 		vAllEAll.put("Offer_Initial_Month_Size", "1");
 		// Admin credentials
@@ -760,6 +943,10 @@ public class BaseRedisDataAccessLayer {
 				"FROM ExternalFacingUser user where user.phoneNumber = :Mobile or user.email = :Email");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_USERS_BY_USER_ID",
 				"FROM ExternalFacingUser user where user.userId = :UserId");
+		vAllEAll.put("SQL_QUERY_FOR_UPDATING_USER_ACTIVE",
+				"update ExternalFacingUser user set user.isActive = :IsActive where user.id = :Id and user.isActive <> :IsActive");
+		vAllEAll.put("SQL_QUERY_FOR_UPDATING_USER_APPROVER",
+				"update ExternalFacingUser user set user.approverId = :ApproverId where user.id in (:Ids)");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_BY_ID", "FROM ExpenseEntity expense where expense.id = :ExpenseId");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_BY_STATUS",
 				"FROM ExpenseEntity expense where expense.status = :Status");
@@ -767,19 +954,67 @@ public class BaseRedisDataAccessLayer {
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_USER_ROLES_BY_ID",
 				"FROM UserRoleEntity userRoles where userRoles.userId = :UserId");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_BY_USER_ID",
-				"FROM ExpenseEntity expense where expense.userId = :UserId and Date(expense.creationDate) >='@StartDate' and Date(expense.creationDate) <= '@EndDate' and expense.status = '@Status'");
+				"FROM ExpenseEntity expense where expense.userId = :UserId");
+		vAllEAll.put("SQL_QUERY_FRAGMENT_FOR_EXPENSE_DATE_RANGE",
+				" and expense.creationDate >= :StartDate and expense.creationDate < :EndDateExclusive");
+		vAllEAll.put("SQL_QUERY_FRAGMENT_FOR_EXPENSE_STATUS", " and expense.status = :Status");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_BY_APPROVER",
-				"FROM ExpenseEntity expense where expense.status in ('Submitted','Re_Submitted') and expense.userId in (select user.id from ExternalFacingUser user where user.approverId = @ApproverId)");
+				"FROM ExpenseEntity expense where expense.status in ('Submitted','Re_Submitted') and expense.userId in (:UserIds)");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_FOR_SUPER_APPROVER",
 				"FROM ExpenseEntity expense where expense.status in ('Submitted','Re_Submitted')");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_LIST_VIEW_BY_APPROVER",
+				"select expense.id, expense.userName, expense.title, expense.amount, expense.creationDate FROM ExpenseEntity expense where expense.status in ('Submitted','Re_Submitted') and expense.userId in (:UserIds)");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_LIST_VIEW_FOR_SUPER_APPROVER",
+				"select expense.id, expense.userName, expense.title, expense.amount, expense.creationDate FROM ExpenseEntity expense where expense.status in ('Submitted','Re_Submitted')");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_ROLES_OF_ALL_USERS",
+				"select userRole.id, userRole.userId, userRole.roleId FROM UserRoleEntity userRole");
+		vAllEAll.put("SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR",
+				" and (expense.creationDate < :CursorDate or (expense.creationDate = :CursorDate and expense.id < :CursorId))");
+		vAllEAll.put("SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER", " order by expense.creationDate desc, expense.id desc");
+		vAllEAll.put("DEFAULT_EXPENSE_PAGE_SIZE", "50");
+		vAllEAll.put("MAX_EXPENSE_PAGE_SIZE", "500");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_FILE_MAPPING",
 				"FROM FileMappingEntity mapping where mapping.fileId = :FileId");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_EXPENSE_ID",
 				"FROM FileMappingEntity mapping where mapping.expenseId = :ExpenseId and mapping.isActive = true");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_LIST_OF_EXPENSE_IDS",
 				"FROM FileMappingEntity mapping where mapping.expenseId in (:ExpenseIds) and mapping.isActive = true");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSES_BY_IDS",
+				"FROM ExpenseEntity expense where expense.id in (:ExpenseIds)");
+		vAllEAll.put("SQL_QUERY_FOR_TRANSITIONING_EXPENSE_STATUS",
+				"update ExpenseEntity expense set expense.status = :Status, expense.approverComments = :ApproverComments, expense.updationDate = :UpdationDate where expense.id in (:ExpenseIds) and expense.status in (:SourceStatuses)");
+		vAllEAll.put("SQL_QUERY_FOR_RESUBMITTING_EXPENSE",
+				"update ExpenseEntity expense set expense.title = :Title, expense.description = :Description, expense.amount = :Amount, expense.status = :Status, expense.approverComments = null, expense.updationDate = :UpdationDate where expense.id = :ExpenseId and expense.userId = :UserId and expense.status in (:SourceStatuses)");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_HISTORIES_AFTER",
+				"FROM ExpenseHistoryEntity history where history.previousId = :ExpenseId and history.creationDate > :Date order by history.creationDate desc, history.id desc");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_REPORT_ROWS",
+				"select expense, concat(user.firstName, ' ', user.lastName) FROM ExpenseEntity expense, ExternalFacingUser user where user.id = expense.userId and expense.status = :Status order by expense.userId, expense.creationDate, expense.id");
+		vAllEAll.put("EXPENSE_REPORT_BATCH_SIZE", "500");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_EXPORT_ROWS",
+				"select expense.id, expense.userId, expense.userName, expense.title, expense.description, expense.amount, expense.status, expense.approverComments, expense.creationDate, expense.updationDate FROM ExpenseEntity expense where expense.status = :Status");
+		vAllEAll.put("EXPENSE_EXPORT_FLUSH_INTERVAL", "500");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_SEARCH_ROWS",
+				"select expense.id, expense.userId, expense.userName, expense.title, expense.description, expense.amount, expense.status, expense.updationDate FROM ExpenseEntity expense where expense.updationDate >= :UpdatedSince order by expense.updationDate, expense.id");
+		vAllEAll.put("EXPENSE_SEARCH_REFRESH_INTERVAL_IN_SECONDS", "60");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_USER_DIRECTORY_ROWS",
+				"select user.id, user.userId, user.email, user.firstName, user.lastName, user.isActive, user.approverId, user.authenticationProvider FROM ExternalFacingUser user");
+		vAllEAll.put("USER_DIRECTORY_REFRESH_INTERVAL_IN_SECONDS", "60");
+		vAllEAll.put("SESSION_TOUCH_INTERVAL_IN_SECONDS", "300");
+		vAllEAll.put("SESSION_WRITE_BEHIND_INTERVAL_IN_MILLISECONDS", "1000");
+		vAllEAll.put("SESSION_WRITE_BEHIND_MAXIMUM_PENDING", "10000");
+		vAllEAll.put("SESSION_NEAR_CACHE_MAXIMUM_SIZE", "10000");
+		vAllEAll.put("SESSION_NEAR_CACHE_TIME_TO_LIVE_IN_SECONDS", "60");
+		vAllEAll.put("SESSION_INVALIDATION_CHANNEL", "SESSION_INVALIDATION");
+		vAllEAll.put("USER_INVALIDATION_CHANNEL", "USER_INVALIDATION");
+		vAllEAll.put("QUERY_PLAN_FULL_SCAN_ALLOWED",
+				"SQL_QUERY_FOR_GETTING_ROLES_OF_ALL_USERS,SQL_QUERY_FOR_ALL_ROLE_TYPES,SQL_QUERY_FOR_GETTING_USER_DIRECTORY_ROWS,SQL_QUERY_FOR_GETTING_EXPENSE_AGGREGATE_DRIFT");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_USER_AMOUNTS",
-				"SELECT ex.UserId , sum(ex.Amount) as TotalAmount, CONCAT(user.FirstName,' ',user.LastName) as Name FROM Expenses ex join User user on user.Id = ex.UserId where ex.Status = '@Status' group by ex.UserId");
+				"SELECT agg.UserId as userId, agg.TotalAmount as totalAmount, CONCAT(user.FirstName,' ',user.LastName) as userName FROM ExpenseAggregates agg join User user on user.Id = agg.UserId where agg.Status = :Status and agg.ExpenseCount > 0");
+		vAllEAll.put("SQL_QUERY_FOR_UPSERT_EXPENSE_AGGREGATE",
+				"insert into ExpenseAggregates (UserId, Status, ExpenseCount, TotalAmount) values (?, ?, ?, ?) on duplicate key update ExpenseCount = ExpenseCount + values(ExpenseCount), TotalAmount = TotalAmount + values(TotalAmount)");
+		vAllEAll.put("SQL_QUERY_FOR_GETTING_EXPENSE_AGGREGATE_DRIFT",
+				"select drift.UserId as userId, drift.Status as status, sum(drift.ExpenseCount) as expenseCount, sum(drift.TotalAmount) as totalAmount from (select UserId, Status, count(*) as ExpenseCount, sum(Amount) as TotalAmount from Expenses group by UserId, Status union all select UserId, Status, -ExpenseCount, -TotalAmount from ExpenseAggregates) drift group by drift.UserId, drift.Status having sum(drift.ExpenseCount) <> 0 or abs(sum(drift.TotalAmount)) >= 0.005");
+		vAllEAll.put("EXPENSE_AGGREGATE_RECONCILIATION_LOCK_IN_SECONDS", "82800");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_FILE_MAPPING_BY_ATTACHMENT_ID",
 				"FROM FileMappingEntity mapping where mapping.attachmentId = :AttachmentId and mapping.isActive = true");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_FILE_DETAILS_BY_ATTACHMENT_ID",
@@ -787,7 +1022,7 @@ public class BaseRedisDataAccessLayer {
 		vAllEAll.put("SQL_QUERY_FOR_ALL_ROLE_TYPES", "FROM RoleEntity role");
 		vAllEAll.put("GET_ALL_ACTIVE_EXPENSES", "FROM ExpenseEntity expense");
 		vAllEAll.put("SQL_QUERY_FOR_GETTING_FINANCE_USERS",
-				"select user.Id as id, user.UserId as userId, user.EmailId as email, user.FirstName as firstName, user.LastName as lastName FROM User user join UserRoleMapping mapping on user.Id = mapping.UserId join Roles role on mapping.RoleId = role.Id where role.RoleName = '@Role'");
+				"select user.Id as id, user.UserId as userId, user.EmailId as email, user.FirstName as firstName, user.LastName as lastName FROM User user join UserRoleMapping mapping on user.Id = mapping.UserId join Roles role on mapping.RoleId = role.Id where role.RoleName = :Role");
 
 		return vAllEAll;
 
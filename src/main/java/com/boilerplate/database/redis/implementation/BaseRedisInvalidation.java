@@ -0,0 +1,197 @@
+package com.boilerplate.database.redis.implementation;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.framework.Logger;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+
+/**
+ * This class sends invalidations over a Redis channel named in the
+ * configuration. Each message is the id of the server which sent it and the
+ * body, separated by a colon. A server does not pass on its own messages.
+ *
+ * The channel is listened to by a background thread on a connection of its
+ * own, as a subscribed connection can not run other commands and waits for
+ * messages longer than the pool allows. If the connection is lost the
+ * thread connects again after a delay.
+ *
+ * @author ruchi
+ *
+ */
+public abstract class BaseRedisInvalidation extends BaseRedisDataAccessLayer {
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(BaseRedisInvalidation.class);
+
+	/**
+	 * This is the milli seconds to wait before connecting again
+	 */
+	private static final long RECONNECT_DELAY_IN_MILLISECONDS = 5000;
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	com.boilerplate.configurations.ConfigurationManager configurationManager;
+
+	/**
+	 * The setter to set the configuration manager
+	 *
+	 * @param configurationManager
+	 */
+	public void setConfigurationManager(com.boilerplate.configurations.ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This is the id of this server in the messages
+	 */
+	private final String serverId = UUID.randomUUID().toString();
+
+	/**
+	 * This is the subscription to the channel
+	 */
+	private volatile JedisPubSub jedisPubSub;
+
+	/**
+	 * This is true till unsubscribe is called
+	 */
+	private volatile boolean isRunning;
+
+	/**
+	 * This interface is implemented by the receiver of the message bodies sent
+	 * by the other servers
+	 */
+	protected interface Receiver {
+
+		/**
+		 * This method is called with the body of a message sent by another
+		 * server
+		 *
+		 * @param body
+		 *            The body of the message
+		 */
+		public void onMessage(String body);
+
+		/**
+		 * This method is called when the messages start to be received
+		 */
+		public void onSubscribe();
+
+		/**
+		 * This method is called when the messages stop being received
+		 */
+		public void onUnsubscribe();
+	}
+
+	/**
+	 * This method gets the key of the configuration having the name of the
+	 * channel
+	 *
+	 * @return The key of the configuration
+	 */
+	protected abstract String getChannelConfigurationKey();
+
+	/**
+	 * This method sends a message to the other servers, a failure is logged
+	 * as the other servers read again when their copy expires
+	 *
+	 * @param body
+	 *            The body of the message
+	 */
+	protected void publishMessage(String body) {
+		Jedis jedis = null;
+		try {
+			jedis = this.getConnection();
+			jedis.publish(configurationManager.get(this.getChannelConfigurationKey()), serverId + ":" + body);
+		} catch (Exception ex) {
+			logger.logException(this.getClass().getSimpleName(), "publish", "try-catch block",
+					"While trying to publish the invalidation, This is the message~ " + body + " ~ " + ex.toString(),
+					ex);
+		} finally {
+			if (jedis != null) {
+				jedis.close();
+			}
+		}
+	}
+
+	/**
+	 * This method starts receiving the messages sent by the other servers in
+	 * the background
+	 *
+	 * @param receiver
+	 *            The receiver of the message bodies
+	 */
+	protected void startReceiving(final Receiver receiver) {
+		isRunning = true;
+		Thread thread = new Thread(() -> this.listen(receiver), this.getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * This method stops receiving the messages
+	 */
+	public void unsubscribe() {
+		isRunning = false;
+		JedisPubSub subscription = jedisPubSub;
+		if (subscription != null && subscription.isSubscribed()) {
+			subscription.unsubscribe();
+		}
+	}
+
+	/**
+	 * This method listens to the channel till unsubscribe is called
+	 *
+	 * @param receiver
+	 *            The receiver of the message bodies
+	 */
+	private void listen(final Receiver receiver) {
+		while (isRunning) {
+			Jedis jedis = null;
+			try {
+				jedis = this.createDedicatedConnection();
+				jedisPubSub = new JedisPubSub() {
+					@Override
+					public void onSubscribe(String channel, int subscribedChannels) {
+						receiver.onSubscribe();
+					}
+
+					@Override
+					public void onMessage(String channel, String message) {
+						String[] parts = message.split(":", 2);
+						if (parts.length == 2 && !serverId.equals(parts[0])) {
+							receiver.onMessage(parts[1]);
+						}
+					}
+				};
+				// this returns only when the subscription ends
+				jedis.subscribe(jedisPubSub, configurationManager.get(this.getChannelConfigurationKey()));
+			} catch (Exception ex) {
+				if (isRunning) {
+					logger.logException(this.getClass().getSimpleName(), "listen", "try-catch block",
+							"While trying to listen to the invalidations ~ " + ex.toString(), ex);
+				}
+			} finally {
+				receiver.onUnsubscribe();
+				if (jedis != null) {
+					jedis.close();
+				}
+			}
+			if (isRunning) {
+				try {
+					Thread.sleep(RECONNECT_DELAY_IN_MILLISECONDS);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.boilerplate.database.redis.implementation;
+
+import com.boilerplate.database.interfaces.IJobLock;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * This class keeps the locks of the background jobs as Redis keys which are
+ * set only if they do not exist.
+ * 
+ * @author ruchi
+ *
+ */
+public class RedisJobLock extends BaseRedisDataAccessLayer implements IJobLock {
+
+	/**
+	 * This is the prefix of the keys of the locks
+	 */
+	private static final String JobLock = "JobLock:";
+
+	/**
+	 * @see IJobLock.tryLock
+	 */
+	@Override
+	public boolean tryLock(String jobName, int timeoutInSeconds) {
+		Jedis jedis = null;
+		try {
+			jedis = this.getConnection();
+			return jedis.set(JobLock + jobName, String.valueOf(System.currentTimeMillis()), "NX", "EX",
+					timeoutInSeconds) != null;
+		} finally {
+			if (jedis != null) {
+				jedis.close();
+			}
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.boilerplate.database.redis.implementation;
 
+import java.io.IOException;
 import java.util.Date;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.boilerplate.database.interfaces.ISession;
 import com.boilerplate.framework.Logger;
 import com.boilerplate.sessions.Session;
+import com.boilerplate.sessions.SessionCodec;
 
 public class RedisSession extends BaseRedisDataAccessLayer implements ISession {
 
@@ -30,19 +32,40 @@ public class RedisSession extends BaseRedisDataAccessLayer implements ISession {
 
 	@Override
 	public Session create(Session session) {
-		return this.update(session);
+		session.setId(session.getSessionId());
+		super.setBytes(Session + session.getSessionId(), SessionCodec.encode(session),
+				Integer.parseInt(configurationManager.get("SessionTimeOutInMinutes")) * 60);
+		return session;
 	}
 
+	/**
+	 * This method gets a session, it reads the sessions saved by SessionCodec
+	 * and the sessions saved as XML before it
+	 * 
+	 * @param sessionId
+	 *            The id of the session
+	 * @return The session, null if it does not exist or can not be read
+	 */
 	@Override
 	public Session getSession(String sessionId) {
-		return super.get(Session + sessionId, Session.class);
+		try {
+			return SessionCodec.decode(super.getBytes(Session + sessionId));
+		} catch (IOException ex) {
+			logger.logException("RedisSession", "getSession", "try-catch block",
+					"While trying to read the session, This is the session id~ " + sessionId + " ~ " + ex.toString(),
+					ex);
+			return null;
+		}
 	}
 
 	@Override
 	public Session update(Session session) {
 		session.setId(session.getSessionId());
-		super.set(Session + session.getSessionId(), session,
-				Integer.parseInt(configurationManager.get("SessionTimeOutInMinutes")) * 60);
+		// only if the session still exists, so that a logout is not undone
+		if (!super.replaceBytes(Session + session.getSessionId(), SessionCodec.encode(session),
+				Integer.parseInt(configurationManager.get("SessionTimeOutInMinutes")) * 60)) {
+			return null;
+		}
 		return session;
 	}
 
@@ -0,0 +1,57 @@
+package com.boilerplate.database.redis.implementation;
+
+import com.boilerplate.database.interfaces.ISessionInvalidation;
+
+/**
+ * This class sends the session invalidations over the Redis channel in the
+ * configuration SESSION_INVALIDATION_CHANNEL. The body of each message is U
+ * for an update or D for a delete and the id of the session, separated by a
+ * colon.
+ *
+ * @author ruchi
+ *
+ */
+public class RedisSessionInvalidation extends BaseRedisInvalidation implements ISessionInvalidation {
+
+	/**
+	 * @see BaseRedisInvalidation.getChannelConfigurationKey
+	 */
+	@Override
+	protected String getChannelConfigurationKey() {
+		return "SESSION_INVALIDATION_CHANNEL";
+	}
+
+	/**
+	 * @see ISessionInvalidation.publish
+	 */
+	@Override
+	public void publish(String sessionId, boolean isDeleted) {
+		this.publishMessage((isDeleted ? "D" : "U") + ":" + sessionId);
+	}
+
+	/**
+	 * @see ISessionInvalidation.subscribe
+	 */
+	@Override
+	public void subscribe(final Listener listener) {
+		this.startReceiving(new Receiver() {
+			@Override
+			public void onMessage(String body) {
+				String[] parts = body.split(":", 2);
+				if (parts.length == 2) {
+					listener.onInvalidate(parts[1], "D".equals(parts[0]));
+				}
+			}
+
+			@Override
+			public void onSubscribe() {
+				listener.onSubscribe();
+			}
+
+			@Override
+			public void onUnsubscribe() {
+				listener.onUnsubscribe();
+			}
+		});
+	}
+}
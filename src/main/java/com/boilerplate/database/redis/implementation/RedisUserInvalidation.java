@@ -0,0 +1,53 @@
+package com.boilerplate.database.redis.implementation;
+
+import com.boilerplate.database.interfaces.IUserInvalidation;
+
+/**
+ * This class sends the user invalidations over the Redis channel in the
+ * configuration USER_INVALIDATION_CHANNEL. The body of each message is the id
+ * of the user.
+ *
+ * @author ruchi
+ *
+ */
+public class RedisUserInvalidation extends BaseRedisInvalidation implements IUserInvalidation {
+
+	/**
+	 * @see BaseRedisInvalidation.getChannelConfigurationKey
+	 */
+	@Override
+	protected String getChannelConfigurationKey() {
+		return "USER_INVALIDATION_CHANNEL";
+	}
+
+	/**
+	 * @see IUserInvalidation.publish
+	 */
+	@Override
+	public void publish(String userId) {
+		this.publishMessage(userId);
+	}
+
+	/**
+	 * @see IUserInvalidation.subscribe
+	 */
+	@Override
+	public void subscribe(final Listener listener) {
+		this.startReceiving(new Receiver() {
+			@Override
+			public void onMessage(String body) {
+				listener.onInvalidate(body);
+			}
+
+			@Override
+			public void onSubscribe() {
+				listener.onSubscribe();
+			}
+
+			@Override
+			public void onUnsubscribe() {
+				listener.onUnsubscribe();
+			}
+		});
+	}
+}
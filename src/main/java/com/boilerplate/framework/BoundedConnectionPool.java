@@ -0,0 +1,518 @@
+package com.boilerplate.framework;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.internal.ConnectionProviderInitiator;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+/**
+ * This class is a bounded pool of jdbc connections. At most max_size
+ * connections are open, a thread asking for a connection when all are in use
+ * waits up to checkout_timeout milliseconds. A connection is validated only if
+ * it has been idle for longer than validate_after_idle milliseconds, rather
+ * than on every checkout, as a connection used a moment ago is almost always
+ * good. Idle connections above min_size are closed after idle_timeout
+ * milliseconds and every connection is closed after max_lifetime milliseconds,
+ * before the database or a firewall drops it. A returned connection is rolled
+ * back if it is in a transaction and its auto commit and transaction isolation
+ * are set back, so the next thread does not get the state the last one left.
+ *
+ * The pool is configured by the boilerplate.pool properties of the hibernate
+ * configuration and is used through InstrumentedConnectionProvider.
+ *
+ * @author ruchi
+ *
+ */
+public class BoundedConnectionPool implements ConnectionProvider, Configurable, Stoppable {
+
+	/**
+	 * This is the serial version id
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * This is the property of the maximum number of connections
+	 */
+	public static final String MAX_SIZE = "boilerplate.pool.max_size";
+
+	/**
+	 * This is the property of the number of connections kept open when idle
+	 */
+	public static final String MIN_SIZE = "boilerplate.pool.min_size";
+
+	/**
+	 * This is the property of the milliseconds to wait for a connection
+	 */
+	public static final String CHECKOUT_TIMEOUT = "boilerplate.pool.checkout_timeout";
+
+	/**
+	 * This is the property of the milliseconds a connection may be idle before
+	 * it is validated on checkout
+	 */
+	public static final String VALIDATE_AFTER_IDLE = "boilerplate.pool.validate_after_idle";
+
+	/**
+	 * This is the property of the milliseconds after which an idle connection
+	 * above the minimum is closed
+	 */
+	public static final String IDLE_TIMEOUT = "boilerplate.pool.idle_timeout";
+
+	/**
+	 * This is the property of the milliseconds after which a connection is
+	 * closed whether idle or not
+	 */
+	public static final String MAX_LIFETIME = "boilerplate.pool.max_lifetime";
+
+	/**
+	 * This is the property of the seconds to wait for a validation
+	 */
+	public static final String VALIDATION_TIMEOUT = "boilerplate.pool.validation_timeout";
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(BoundedConnectionPool.class);
+
+	/**
+	 * This is the url of the database
+	 */
+	private String url;
+
+	/**
+	 * This is the user, password and driver properties of the connections
+	 */
+	private Properties connectionProperties;
+
+	/**
+	 * This is the transaction isolation of the connections, null for the
+	 * driver default
+	 */
+	private Integer isolation;
+
+	/**
+	 * This is the auto commit of the connections
+	 */
+	private boolean autoCommit;
+
+	/**
+	 * This is the maximum number of connections
+	 */
+	private int maxSize;
+
+	/**
+	 * This is the number of connections kept open when idle
+	 */
+	private int minSize;
+
+	/**
+	 * This is the milliseconds to wait for a connection
+	 */
+	private long checkoutTimeoutMillis;
+
+	/**
+	 * This is the milliseconds a connection may be idle before it is validated
+	 */
+	private long validateAfterIdleMillis;
+
+	/**
+	 * This is the milliseconds after which an idle connection is closed
+	 */
+	private long idleTimeoutMillis;
+
+	/**
+	 * This is the milliseconds after which a connection is closed
+	 */
+	private long maxLifetimeMillis;
+
+	/**
+	 * This is the seconds to wait for a validation
+	 */
+	private int validationTimeoutSeconds;
+
+	/**
+	 * This is the permit of each connection which may be checked out
+	 */
+	private Semaphore permits;
+
+	/**
+	 * This is the idle connections, the most recently used first so that the
+	 * connections at the end are the ones to close when idle too long
+	 */
+	private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+
+	/**
+	 * This is the map of checked out connections
+	 */
+	private final Map<Connection, PooledConnection> checkedOutConnections = new ConcurrentHashMap<>();
+
+	/**
+	 * This is true once the pool is stopped
+	 */
+	private volatile boolean isStopped;
+
+	/**
+	 * This is the statistics of the pool
+	 */
+	private ConnectionPoolStatistics statistics = new ConnectionPoolStatistics();
+
+	/**
+	 * This method sets the statistics the pool updates
+	 *
+	 * @param statistics
+	 *            The statistics
+	 */
+	public void setStatistics(ConnectionPoolStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * This method reads the connection and pool properties and opens the
+	 * minimum number of connections
+	 *
+	 * @see Configurable.configure
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void configure(Map configurationValues) {
+		String driverClassName = (String) configurationValues.get(AvailableSettings.DRIVER);
+		if (driverClassName != null) {
+			try {
+				Class.forName(driverClassName);
+			} catch (ClassNotFoundException ex) {
+				throw new HibernateException("Jdbc driver class not found " + driverClassName, ex);
+			}
+		}
+		url = (String) configurationValues.get(AvailableSettings.URL);
+		if (url == null)
+			throw new HibernateException(AvailableSettings.URL + " is not set");
+		connectionProperties = ConnectionProviderInitiator.getConnectionProperties(configurationValues);
+		isolation = ConfigurationHelper.getInteger(AvailableSettings.ISOLATION, configurationValues);
+		autoCommit = ConfigurationHelper.getBoolean(AvailableSettings.AUTOCOMMIT, configurationValues, false);
+		maxSize = ConfigurationHelper.getInt(MAX_SIZE, configurationValues, 20);
+		minSize = Math.min(ConfigurationHelper.getInt(MIN_SIZE, configurationValues, 5), maxSize);
+		checkoutTimeoutMillis = ConfigurationHelper.getInt(CHECKOUT_TIMEOUT, configurationValues, 10000);
+		validateAfterIdleMillis = ConfigurationHelper.getInt(VALIDATE_AFTER_IDLE, configurationValues, 30000);
+		idleTimeoutMillis = ConfigurationHelper.getInt(IDLE_TIMEOUT, configurationValues, 300000);
+		maxLifetimeMillis = ConfigurationHelper.getInt(MAX_LIFETIME, configurationValues, 1800000);
+		validationTimeoutSeconds = ConfigurationHelper.getInt(VALIDATION_TIMEOUT, configurationValues, 2);
+		permits = new Semaphore(maxSize, true);
+		try {
+			for (int index = 0; index < minSize; index++) {
+				idleConnections.offerLast(this.openConnection());
+			}
+		} catch (SQLException ex) {
+			// the pool opens connections when they are asked for, the
+			// application may start before the database
+			logger.logException("BoundedConnectionPool", "configure", "try-catch block",
+					"While trying to open the minimum connections to " + url, ex);
+		}
+	}
+
+	/**
+	 * This method checks out a connection, waiting if all are in use
+	 *
+	 * @see ConnectionProvider.getConnection
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (isStopped)
+			throw new SQLException("The connection pool of " + url + " is stopped");
+		try {
+			if (!permits.tryAcquire(checkoutTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw new SQLException("Timed out after " + checkoutTimeoutMillis + " ms waiting for one of the "
+						+ maxSize + " connections to " + url);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection to " + url, ex);
+		}
+		try {
+			PooledConnection pooledConnection = this.takeIdleConnection();
+			if (pooledConnection == null)
+				pooledConnection = this.openConnection();
+			checkedOutConnections.put(pooledConnection.connection, pooledConnection);
+			return pooledConnection.connection;
+		} catch (SQLException | RuntimeException ex) {
+			permits.release();
+			throw ex;
+		}
+	}
+
+	/**
+	 * This method returns a connection to the pool
+	 *
+	 * @see ConnectionProvider.closeConnection
+	 */
+	@Override
+	public void closeConnection(Connection connection) throws SQLException {
+		PooledConnection pooledConnection = checkedOutConnections.remove(connection);
+		if (pooledConnection == null) {
+			// not from this pool
+			connection.close();
+			return;
+		}
+		try {
+			long now = System.currentTimeMillis();
+			if (isStopped || connection.isClosed() || now - pooledConnection.createdAt > maxLifetimeMillis) {
+				this.closeQuietly(pooledConnection);
+			} else if (this.resetConnection(pooledConnection)) {
+				pooledConnection.lastUsedAt = now;
+				idleConnections.offerFirst(pooledConnection);
+			}
+		} finally {
+			permits.release();
+		}
+		this.closeIdleConnections();
+	}
+
+	/**
+	 * This method rolls back a returned connection if it is in a transaction
+	 * and sets its auto commit and transaction isolation back to those of the
+	 * pool, the connection is closed if it can not be reset
+	 *
+	 * @param pooledConnection
+	 *            The connection
+	 * @return True if the connection may be used again
+	 */
+	private boolean resetConnection(PooledConnection pooledConnection) {
+		Connection connection = pooledConnection.connection;
+		try {
+			if (!connection.getAutoCommit())
+				connection.rollback();
+			if (connection.getAutoCommit() != autoCommit)
+				connection.setAutoCommit(autoCommit);
+			if (connection.getTransactionIsolation() != pooledConnection.isolation)
+				connection.setTransactionIsolation(pooledConnection.isolation);
+			return true;
+		} catch (SQLException ex) {
+			logger.logException("BoundedConnectionPool", "resetConnection", "try-catch block",
+					"While trying to reset a returned connection to " + url, ex);
+			this.closeQuietly(pooledConnection);
+			return false;
+		}
+	}
+
+	/**
+	 * This method gets an idle connection which may be used, idle connections
+	 * past their lifetime or failing validation are closed
+	 *
+	 * @return The connection, null if there is no usable idle connection
+	 */
+	private PooledConnection takeIdleConnection() {
+		PooledConnection pooledConnection;
+		while ((pooledConnection = idleConnections.pollFirst()) != null) {
+			long now = System.currentTimeMillis();
+			if (now - pooledConnection.createdAt > maxLifetimeMillis) {
+				this.closeQuietly(pooledConnection);
+				continue;
+			}
+			if (now - pooledConnection.lastUsedAt > validateAfterIdleMillis) {
+				boolean isValid;
+				try {
+					isValid = pooledConnection.connection.isValid(validationTimeoutSeconds);
+				} catch (SQLException ex) {
+					isValid = false;
+				}
+				statistics.validated(isValid);
+				if (!isValid) {
+					this.closeQuietly(pooledConnection);
+					continue;
+				}
+			}
+			return pooledConnection;
+		}
+		return null;
+	}
+
+	/**
+	 * This method closes the connections idle for longer than the idle timeout,
+	 * keeping the minimum number open
+	 */
+	private void closeIdleConnections() {
+		long now = System.currentTimeMillis();
+		while (idleConnections.size() > minSize) {
+			PooledConnection oldest = idleConnections.peekLast();
+			if (oldest == null || now - oldest.lastUsedAt <= idleTimeoutMillis
+					|| !idleConnections.removeLastOccurrence(oldest))
+				break;
+			this.closeQuietly(oldest);
+		}
+	}
+
+	/**
+	 * This method opens a physical connection
+	 *
+	 * @return The connection
+	 * @throws SQLException
+	 *             Throw this exception if the database can not be connected
+	 */
+	private PooledConnection openConnection() throws SQLException {
+		Connection connection = DriverManager.getConnection(url, connectionProperties);
+		int connectionIsolation;
+		try {
+			if (isolation != null)
+				connection.setTransactionIsolation(isolation);
+			if (connection.getAutoCommit() != autoCommit)
+				connection.setAutoCommit(autoCommit);
+			// the isolation given or the driver default, returned connections
+			// are set back to it
+			connectionIsolation = connection.getTransactionIsolation();
+		} catch (SQLException ex) {
+			connection.close();
+			throw ex;
+		}
+		statistics.connectionCreated();
+		return new PooledConnection(connection, connectionIsolation);
+	}
+
+	/**
+	 * This method closes a physical connection ignoring errors
+	 *
+	 * @param pooledConnection
+	 *            The connection
+	 */
+	private void closeQuietly(PooledConnection pooledConnection) {
+		try {
+			pooledConnection.connection.close();
+		} catch (SQLException ex) {
+			logger.logException("BoundedConnectionPool", "closeQuietly", "try-catch block",
+					"While trying to close a connection to " + url, ex);
+		}
+		statistics.connectionClosed();
+	}
+
+	/**
+	 * This method gets the number of idle connections
+	 *
+	 * @return The number of idle connections
+	 */
+	public int getIdleCount() {
+		return idleConnections.size();
+	}
+
+	/**
+	 * This method gets the age of the oldest open connection
+	 *
+	 * @return The age in seconds, 0 if no connection is open
+	 */
+	public long getOldestConnectionAgeSeconds() {
+		long oldestCreatedAt = System.currentTimeMillis();
+		for (PooledConnection pooledConnection : idleConnections) {
+			oldestCreatedAt = Math.min(oldestCreatedAt, pooledConnection.createdAt);
+		}
+		for (PooledConnection pooledConnection : checkedOutConnections.values()) {
+			oldestCreatedAt = Math.min(oldestCreatedAt, pooledConnection.createdAt);
+		}
+		return (System.currentTimeMillis() - oldestCreatedAt) / 1000;
+	}
+
+	/**
+	 * This method gets the maximum number of connections
+	 *
+	 * @return The maximum number of connections
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * This method closes the idle connections, connections in use are closed
+	 * when they are returned
+	 *
+	 * @see Stoppable.stop
+	 */
+	@Override
+	public void stop() {
+		isStopped = true;
+		PooledConnection pooledConnection;
+		while ((pooledConnection = idleConnections.pollFirst()) != null) {
+			this.closeQuietly(pooledConnection);
+		}
+	}
+
+	/**
+	 * @see ConnectionProvider.supportsAggressiveRelease
+	 */
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+
+	/**
+	 * @see ConnectionProvider.isUnwrappableAs
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean isUnwrappableAs(Class unwrapType) {
+		return ConnectionProvider.class.equals(unwrapType) || BoundedConnectionPool.class.isAssignableFrom(unwrapType);
+	}
+
+	/**
+	 * @see ConnectionProvider.unwrap
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> unwrapType) {
+		if (this.isUnwrappableAs(unwrapType))
+			return (T) this;
+		throw new UnknownUnwrapTypeException(unwrapType);
+	}
+
+	/**
+	 * This class is a physical connection with the times it was opened and
+	 * last returned
+	 *
+	 * @author ruchi
+	 *
+	 */
+	private static class PooledConnection {
+
+		/**
+		 * This is the connection
+		 */
+		private final Connection connection;
+
+		/**
+		 * This is the time the connection was opened
+		 */
+		private final long createdAt;
+
+		/**
+		 * This is the time the connection was last returned to the pool
+		 */
+		private long lastUsedAt;
+
+		/**
+		 * This is the transaction isolation the connection is reset to
+		 */
+		private final int isolation;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param connection
+		 *            The connection
+		 * @param isolation
+		 *            The transaction isolation the connection is reset to
+		 */
+		PooledConnection(Connection connection, int isolation) {
+			this.connection = connection;
+			this.isolation = isolation;
+			this.createdAt = System.currentTimeMillis();
+			this.lastUsedAt = this.createdAt;
+		}
+	}
+}
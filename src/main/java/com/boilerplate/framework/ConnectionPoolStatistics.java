@@ -0,0 +1,215 @@
+package com.boilerplate.framework;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.boilerplate.java.collections.BoilerplateMap;
+
+/**
+ * This class keeps the counters of a connection pool, the connections in use,
+ * the threads waiting for a connection and a histogram of the time taken to
+ * check out a connection. The counters are updated by the threads checking out
+ * connections without locks, they are read together only when the statistics
+ * are published.
+ *
+ * @author ruchi
+ *
+ */
+public class ConnectionPoolStatistics {
+
+	/**
+	 * These are the upper bounds in milliseconds of the buckets of the checkout
+	 * histogram, the last bucket has checkouts slower than all of them
+	 */
+	private static final long[] CHECKOUT_BUCKET_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000 };
+
+	/**
+	 * This is the number of connections checked out and not yet returned
+	 */
+	private final AtomicInteger activeCount = new AtomicInteger();
+
+	/**
+	 * This is the number of threads waiting to check out a connection
+	 */
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	/**
+	 * This is the highest number of connections checked out together
+	 */
+	private final AtomicInteger peakActiveCount = new AtomicInteger();
+
+	/**
+	 * This is the number of checkouts in each bucket of the histogram
+	 */
+	private final AtomicLongArray checkoutBuckets = new AtomicLongArray(CHECKOUT_BUCKET_MILLIS.length + 1);
+
+	/**
+	 * This is the total time of all checkouts in micro seconds
+	 */
+	private final LongAdder checkoutMicros = new LongAdder();
+
+	/**
+	 * This is the slowest checkout in micro seconds
+	 */
+	private final AtomicLong maxCheckoutMicros = new AtomicLong();
+
+	/**
+	 * This is the number of checkouts which failed or timed out
+	 */
+	private final LongAdder checkoutFailures = new LongAdder();
+
+	/**
+	 * This is the number of physical connections opened
+	 */
+	private final LongAdder connectionsCreated = new LongAdder();
+
+	/**
+	 * This is the number of physical connections closed
+	 */
+	private final LongAdder connectionsClosed = new LongAdder();
+
+	/**
+	 * This is the number of idle connections validated before use
+	 */
+	private final LongAdder validations = new LongAdder();
+
+	/**
+	 * This is the number of idle connections found broken on validation
+	 */
+	private final LongAdder validationFailures = new LongAdder();
+
+	/**
+	 * This method records that a thread has started waiting for a connection
+	 */
+	public void checkoutStarted() {
+		pendingCount.incrementAndGet();
+	}
+
+	/**
+	 * This method records a successful checkout
+	 *
+	 * @param startNanos
+	 *            The value of System.nanoTime when the checkout started
+	 */
+	public void checkoutSucceeded(long startNanos) {
+		pendingCount.decrementAndGet();
+		int active = activeCount.incrementAndGet();
+		int peak = peakActiveCount.get();
+		while (active > peak && !peakActiveCount.compareAndSet(peak, active)) {
+			peak = peakActiveCount.get();
+		}
+		long micros = (System.nanoTime() - startNanos) / 1000;
+		checkoutMicros.add(micros);
+		long max = maxCheckoutMicros.get();
+		while (micros > max && !maxCheckoutMicros.compareAndSet(max, micros)) {
+			max = maxCheckoutMicros.get();
+		}
+		checkoutBuckets.incrementAndGet(bucketOf(micros / 1000));
+	}
+
+	/**
+	 * This method records a checkout which failed or timed out
+	 */
+	public void checkoutFailed() {
+		pendingCount.decrementAndGet();
+		checkoutFailures.increment();
+	}
+
+	/**
+	 * This method records that a connection has been returned
+	 */
+	public void checkedIn() {
+		activeCount.decrementAndGet();
+	}
+
+	/**
+	 * This method records that a physical connection has been opened
+	 */
+	public void connectionCreated() {
+		connectionsCreated.increment();
+	}
+
+	/**
+	 * This method records that a physical connection has been closed
+	 */
+	public void connectionClosed() {
+		connectionsClosed.increment();
+	}
+
+	/**
+	 * This method records the validation of an idle connection
+	 *
+	 * @param isValid
+	 *            True if the connection was found usable
+	 */
+	public void validated(boolean isValid) {
+		validations.increment();
+		if (!isValid)
+			validationFailures.increment();
+	}
+
+	/**
+	 * This method gets the number of connections checked out
+	 *
+	 * @return The number of active connections
+	 */
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	/**
+	 * This method gets the number of threads waiting for a connection
+	 *
+	 * @return The number of pending checkouts
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * This method gets the counters as a map. The histogram is published as one
+	 * entry per bucket, checkoutMillisUpTo<bound> being the number of checkouts
+	 * slower than the previous bound and at most the bound.
+	 *
+	 * @return The map of counter name and value
+	 */
+	public BoilerplateMap<String, Long> toMap() {
+		BoilerplateMap<String, Long> counts = new BoilerplateMap<>();
+		counts.put("active", (long) activeCount.get());
+		counts.put("pending", (long) pendingCount.get());
+		counts.put("peakActive", (long) peakActiveCount.get());
+		long checkoutCount = 0;
+		for (int bucket = 0; bucket < checkoutBuckets.length(); bucket++) {
+			long bucketCount = checkoutBuckets.get(bucket);
+			checkoutCount += bucketCount;
+			counts.put(bucket < CHECKOUT_BUCKET_MILLIS.length ? "checkoutMillisUpTo" + CHECKOUT_BUCKET_MILLIS[bucket]
+					: "checkoutMillisOver" + CHECKOUT_BUCKET_MILLIS[CHECKOUT_BUCKET_MILLIS.length - 1], bucketCount);
+		}
+		counts.put("checkoutCount", checkoutCount);
+		counts.put("averageCheckoutMicros", checkoutCount == 0 ? 0 : checkoutMicros.sum() / checkoutCount);
+		counts.put("maxCheckoutMicros", maxCheckoutMicros.get());
+		counts.put("checkoutFailures", checkoutFailures.sum());
+		counts.put("connectionsCreated", connectionsCreated.sum());
+		counts.put("connectionsClosed", connectionsClosed.sum());
+		counts.put("validations", validations.sum());
+		counts.put("validationFailures", validationFailures.sum());
+		return counts;
+	}
+
+	/**
+	 * This method gets the histogram bucket of a checkout time
+	 *
+	 * @param millis
+	 *            The checkout time in milliseconds
+	 * @return The index of the bucket
+	 */
+	private static int bucketOf(long millis) {
+		for (int bucket = 0; bucket < CHECKOUT_BUCKET_MILLIS.length; bucket++) {
+			if (millis <= CHECKOUT_BUCKET_MILLIS[bucket])
+				return bucket;
+		}
+		return CHECKOUT_BUCKET_MILLIS.length;
+	}
+}
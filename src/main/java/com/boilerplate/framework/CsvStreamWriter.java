@@ -0,0 +1,190 @@
+package com.boilerplate.framework;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.boilerplate.database.interfaces.IRowHandler;
+
+/**
+ * This class writes rows to the http response as a csv file while they are
+ * being read, so a large export is never held in memory as a whole. The first
+ * line has the names of the columns. Written rows are sent to the client after
+ * every flush interval rows. The response is started only when the first row
+ * is written, so an exception thrown before any row is read can still be sent
+ * as a normal error response.
+ *
+ * @author ruchi
+ *
+ */
+public class CsvStreamWriter implements IRowHandler<Object[]> {
+
+	/**
+	 * This is the format in which dates are written
+	 */
+	private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+	/**
+	 * This is the http response
+	 */
+	private HttpServletResponse httpServletResponse;
+
+	/**
+	 * This is the name of the file sent to the client
+	 */
+	private String fileName;
+
+	/**
+	 * This is the names of the columns in the order of the row values
+	 */
+	private String[] columnNames;
+
+	/**
+	 * This is the number of rows after which the response is flushed
+	 */
+	private int flushInterval;
+
+	/**
+	 * This is the format used to write dates, it is used by one request only
+	 */
+	private SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+
+	/**
+	 * This is the writer of the response, it is null till the first row is
+	 * written
+	 */
+	private Writer writer;
+
+	/**
+	 * This is the number of rows written
+	 */
+	private int rowCount;
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param httpServletResponse
+	 *            The http response to which rows are written
+	 * @param fileName
+	 *            The name of the file sent to the client
+	 * @param columnNames
+	 *            The names of the columns in the order of the row values
+	 * @param flushInterval
+	 *            The number of rows after which the response is flushed
+	 */
+	public CsvStreamWriter(HttpServletResponse httpServletResponse, String fileName, String[] columnNames,
+			int flushInterval) {
+		this.httpServletResponse = httpServletResponse;
+		this.fileName = fileName;
+		this.columnNames = columnNames;
+		this.flushInterval = flushInterval < 1 ? 1 : flushInterval;
+	}
+
+	/**
+	 * This method writes a row to the response
+	 *
+	 * @see IRowHandler.handle
+	 */
+	@Override
+	public void handle(Object[] row) throws IOException {
+		if (writer == null)
+			this.start();
+		this.writeLine(row);
+		// send what is written so far to the client
+		if (++rowCount % flushInterval == 0)
+			writer.flush();
+	}
+
+	/**
+	 * This method ends the file, a file with only the names of the columns is
+	 * written if no row was written
+	 *
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	public void close() throws IOException {
+		if (writer == null)
+			this.start();
+		writer.close();
+	}
+
+	/**
+	 * This method starts the file in the response and writes the names of the
+	 * columns
+	 *
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	private void start() throws IOException {
+		httpServletResponse.setContentType("text/csv");
+		httpServletResponse.setCharacterEncoding("UTF-8");
+		httpServletResponse.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+		writer = new OutputStreamWriter(httpServletResponse.getOutputStream(), StandardCharsets.UTF_8);
+		this.writeLine(columnNames);
+	}
+
+	/**
+	 * This method writes the values as one line of the file
+	 *
+	 * @param values
+	 *            The values
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	private void writeLine(Object[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				writer.write(',');
+			this.writeValue(values[i]);
+		}
+		writer.write("\r\n");
+	}
+
+	/**
+	 * This method writes a value, values having a separator, quote or line
+	 * break are quoted and their quotes are doubled. Text starting with a
+	 * character which makes a spreadsheet read the cell as a formula is
+	 * prefixed with a quote, so a title such as =HYPERLINK(...) is shown as
+	 * text. Numbers are written as they are, a negative amount is not a
+	 * formula.
+	 *
+	 * @param value
+	 *            The value, nothing is written if it is null
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	private void writeValue(Object value) throws IOException {
+		if (value == null)
+			return;
+		String text = value instanceof Date ? dateFormat.format((Date) value) : value.toString();
+		if (!(value instanceof Number) && isFormula(text))
+			text = "'" + text;
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+			writer.write(text);
+			return;
+		}
+		writer.write('"');
+		writer.write(text.replace("\"", "\"\""));
+		writer.write('"');
+	}
+
+	/**
+	 * This method checks if a spreadsheet would read text as a formula
+	 *
+	 * @param text
+	 *            The text
+	 * @return True if the text starts with =, +, -, @, a tab or a carriage
+	 *         return
+	 */
+	private static boolean isFormula(String text) {
+		if (text.isEmpty())
+			return false;
+		char first = text.charAt(0);
+		return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+	}
+}
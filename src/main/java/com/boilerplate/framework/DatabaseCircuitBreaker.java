@@ -0,0 +1,157 @@
+package com.boilerplate.framework;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is the circuit breaker of a database. It counts the consecutive
+ * connection failures, after failure_threshold of them the circuit opens and
+ * connections are refused at once instead of every request waiting for the
+ * connect timeout of a database which is down. The circuit is closed again by
+ * InstrumentedConnectionProvider once a new pool has connected in the
+ * background.
+ *
+ * @author ruchi
+ *
+ */
+public class DatabaseCircuitBreaker {
+
+	/**
+	 * This is the sql state of a connection failure, the states of the class
+	 * 08 are connection exceptions and hibernate turns them into
+	 * JDBCConnectionException
+	 */
+	public static final String CONNECTION_FAILURE_SQL_STATE = "08001";
+
+	/**
+	 * This is the number of consecutive failures after which the circuit opens
+	 */
+	private final int failureThreshold;
+
+	/**
+	 * This is the number of consecutive failures
+	 */
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	/**
+	 * This is true while the circuit is open
+	 */
+	private final AtomicBoolean isOpen = new AtomicBoolean();
+
+	/**
+	 * This is the number of times the circuit has opened
+	 */
+	private final LongAdder openCount = new LongAdder();
+
+	/**
+	 * This is the number of connections refused while the circuit was open
+	 */
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param failureThreshold
+	 *            The number of consecutive failures after which the circuit
+	 *            opens
+	 */
+	public DatabaseCircuitBreaker(int failureThreshold) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+	}
+
+	/**
+	 * This method checks that a connection may be asked for
+	 *
+	 * @throws SQLException
+	 *             Throw this exception if the circuit is open
+	 */
+	public void checkClosed() throws SQLException {
+		if (isOpen.get()) {
+			rejectedCount.increment();
+			throw new SQLException("The database is unavailable, connections are refused till it is reconnected",
+					CONNECTION_FAILURE_SQL_STATE);
+		}
+	}
+
+	/**
+	 * This method records a connection which worked
+	 */
+	public void recordSuccess() {
+		if (consecutiveFailures.get() != 0)
+			consecutiveFailures.set(0);
+	}
+
+	/**
+	 * This method records a connection failure
+	 *
+	 * @return True if this failure opened the circuit, only one of the threads
+	 *         failing together gets true
+	 */
+	public boolean recordFailure() {
+		if (consecutiveFailures.incrementAndGet() < failureThreshold)
+			return false;
+		if (!isOpen.compareAndSet(false, true))
+			return false;
+		openCount.increment();
+		return true;
+	}
+
+	/**
+	 * This method closes the circuit
+	 */
+	public void close() {
+		consecutiveFailures.set(0);
+		isOpen.set(false);
+	}
+
+	/**
+	 * This method checks if the circuit is open
+	 *
+	 * @return True if connections are refused
+	 */
+	public boolean isOpen() {
+		return isOpen.get();
+	}
+
+	/**
+	 * This method gets the number of times the circuit has opened
+	 *
+	 * @return The count
+	 */
+	public long getOpenCount() {
+		return openCount.sum();
+	}
+
+	/**
+	 * This method gets the number of connections refused
+	 *
+	 * @return The count
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * This method checks if an exception is a failure to reach the database,
+	 * rather than for example a pool which is busy or a bad query
+	 *
+	 * @param throwable
+	 *            The exception
+	 * @return True if the exception or one of its causes has an sql state of
+	 *         the class 08
+	 */
+	public static boolean isConnectionFailure(Throwable throwable) {
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SQLException) {
+				String sqlState = ((SQLException) cause).getSQLState();
+				if (sqlState != null && sqlState.startsWith("08"))
+					return true;
+			}
+			if (cause.getCause() == cause)
+				break;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,140 @@
+package com.boilerplate.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.boilerplate.java.entities.ExpenseStatusType;
+
+/**
+ * This class collects the changes to be made to the expense aggregates by one
+ * service call. The aggregates have the number and total amount of the
+ * expenses of each user in each status. Changes to the same user and status
+ * are added up, so each aggregate row is written at most once per call. The
+ * rows are returned ordered by user and status, so concurrent calls lock the
+ * aggregate rows in the same order.
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseAggregateDeltas {
+
+	/**
+	 * This is the map of user id and status to the change in number and amount
+	 * of expenses
+	 */
+	private Map<String, Map<ExpenseStatusType, double[]>> deltas = new TreeMap<>();
+
+	/**
+	 * This method adds an expense to the aggregate of its user and status
+	 *
+	 * @param userId
+	 *            The id of the user of the expense
+	 * @param status
+	 *            The status of the expense
+	 * @param amount
+	 *            The amount of the expense
+	 */
+	public void add(String userId, ExpenseStatusType status, double amount) {
+		this.change(userId, status, 1, amount);
+	}
+
+	/**
+	 * This method removes an expense from the aggregate of its user and status
+	 *
+	 * @param userId
+	 *            The id of the user of the expense
+	 * @param status
+	 *            The status of the expense
+	 * @param amount
+	 *            The amount of the expense
+	 */
+	public void remove(String userId, ExpenseStatusType status, double amount) {
+		this.change(userId, status, -1, -amount);
+	}
+
+	/**
+	 * This method changes the aggregate of a user and status by a number and
+	 * amount of expenses, it is used to correct the aggregates
+	 *
+	 * @param userId
+	 *            The id of the user
+	 * @param status
+	 *            The status
+	 * @param count
+	 *            The change in number of expenses
+	 * @param amount
+	 *            The change in amount of expenses
+	 */
+	public void adjust(String userId, ExpenseStatusType status, int count, double amount) {
+		this.change(userId, status, count, amount);
+	}
+
+	/**
+	 * This method moves an expense from the aggregate of its old status and
+	 * amount to the aggregate of its new status and amount
+	 *
+	 * @param userId
+	 *            The id of the user of the expense
+	 * @param oldStatus
+	 *            The status of the expense before the change
+	 * @param oldAmount
+	 *            The amount of the expense before the change
+	 * @param newStatus
+	 *            The status of the expense after the change
+	 * @param newAmount
+	 *            The amount of the expense after the change
+	 */
+	public void move(String userId, ExpenseStatusType oldStatus, double oldAmount, ExpenseStatusType newStatus,
+			double newAmount) {
+		this.remove(userId, oldStatus, oldAmount);
+		this.add(userId, newStatus, newAmount);
+	}
+
+	/**
+	 * This method gets the changes as rows of user id, status, change in
+	 * number and change in amount. Changes which cancel out are skipped.
+	 *
+	 * @return The rows
+	 */
+	public List<Object[]> toRows() {
+		List<Object[]> rows = new ArrayList<>();
+		for (Map.Entry<String, Map<ExpenseStatusType, double[]>> userDeltas : deltas.entrySet()) {
+			for (Map.Entry<ExpenseStatusType, double[]> statusDelta : userDeltas.getValue().entrySet()) {
+				double[] delta = statusDelta.getValue();
+				if (delta[0] == 0 && delta[1] == 0)
+					continue;
+				rows.add(new Object[] { userDeltas.getKey(), statusDelta.getKey(), (int) delta[0], delta[1] });
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * This method changes the aggregate of a user and status
+	 *
+	 * @param userId
+	 *            The id of the user
+	 * @param status
+	 *            The status
+	 * @param count
+	 *            The change in number of expenses
+	 * @param amount
+	 *            The change in amount of expenses
+	 */
+	private void change(String userId, ExpenseStatusType status, int count, double amount) {
+		Map<ExpenseStatusType, double[]> userDeltas = deltas.get(userId);
+		if (userDeltas == null) {
+			userDeltas = new TreeMap<>();
+			deltas.put(userId, userDeltas);
+		}
+		double[] delta = userDeltas.get(status);
+		if (delta == null) {
+			delta = new double[2];
+			userDeltas.put(status, delta);
+		}
+		delta[0] += count;
+		delta[1] += amount;
+	}
+}
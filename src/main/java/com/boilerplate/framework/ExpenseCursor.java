@@ -0,0 +1,110 @@
+package com.boilerplate.framework;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import com.boilerplate.exceptions.rest.ValidationFailedException;
+import com.boilerplate.java.entities.ExpenseEntity;
+
+/**
+ * This class is the keyset cursor used to page through expenses. Expenses are
+ * ordered by creation date and id, both descending, and the cursor holds these
+ * values of the last expense of a page. The next page is everything strictly
+ * after the cursor, so a page costs the same no matter how deep it is.
+ * 
+ * @author ruchi
+ *
+ */
+public class ExpenseCursor {
+
+	/**
+	 * This is the separator between creation date and id in the token
+	 */
+	private static final String SEPARATOR = ":";
+
+	/**
+	 * This is the creation date of the last expense of the page
+	 */
+	private Date creationDate;
+
+	/**
+	 * This is the id of the last expense of the page
+	 */
+	private String id;
+
+	/**
+	 * This is the parameterized constructor
+	 * 
+	 * @param creationDate
+	 *            The creation date of the last expense of the page
+	 * @param id
+	 *            The id of the last expense of the page
+	 */
+	public ExpenseCursor(Date creationDate, String id) {
+		this.creationDate = creationDate;
+		this.id = id;
+	}
+
+	/**
+	 * This method creates the cursor positioned after the given expense
+	 * 
+	 * @param expenseEntity
+	 *            The last expense of a page
+	 * @return The cursor
+	 */
+	public static ExpenseCursor after(ExpenseEntity expenseEntity) {
+		return new ExpenseCursor(expenseEntity.getCreationDate(), expenseEntity.getId());
+	}
+
+	/**
+	 * This method decodes the cursor from an opaque page token
+	 * 
+	 * @param pageToken
+	 *            The page token sent by the client
+	 * @return The cursor, null if no token is given
+	 * @throws ValidationFailedException
+	 *             Throw this exception if the token is not a valid page token
+	 */
+	public static ExpenseCursor decode(String pageToken) throws ValidationFailedException {
+		if (pageToken == null || pageToken.isEmpty())
+			return null;
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+			String[] parts = value.split(SEPARATOR, 2);
+			// the id is numeric in the database
+			Long.parseLong(parts[1]);
+			return new ExpenseCursor(new Date(Long.parseLong(parts[0])), parts[1]);
+		} catch (Exception ex) {
+			throw new ValidationFailedException("ExpenseCursor", "Invalid page token", ex);
+		}
+	}
+
+	/**
+	 * This method encodes the cursor into an opaque page token
+	 * 
+	 * @return The page token
+	 */
+	public String encode() {
+		String value = creationDate.getTime() + SEPARATOR + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * This method is used to get the creation date
+	 * 
+	 * @return the creation date
+	 */
+	public Date getCreationDate() {
+		return creationDate;
+	}
+
+	/**
+	 * This method is used to get the id
+	 * 
+	 * @return the id
+	 */
+	public String getId() {
+		return id;
+	}
+}
@@ -0,0 +1,613 @@
+package com.boilerplate.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.IExpense;
+import com.boilerplate.database.interfaces.IRowHandler;
+import com.boilerplate.java.entities.ExpenseEntity;
+import com.boilerplate.java.entities.ExpenseListViewEntity;
+import com.boilerplate.java.entities.ExpenseStatusType;
+
+/**
+ * This class is an in memory index of the expenses for searching them by the
+ * words of their title and description, amount range, status and user without
+ * a query on the database.
+ *
+ * Each expense is a document numbered in the order it is indexed. For each
+ * word the index has the sorted numbers of the documents having it, and the
+ * amount, status and user of the documents are kept in arrays by document
+ * number, so a search intersects the lists of its words and checks the
+ * filters on arrays. When the title or description of an expense changes its
+ * document is marked deleted and a new one is added, the deleted documents
+ * are dropped when they are a quarter of the index. A change of status or
+ * amount only changes the arrays. The updation date of each document is kept
+ * as its version, a row older than the document, as read by a refresh which
+ * started before a later change was indexed, is ignored.
+ *
+ * The index is loaded from the database when the application starts and is
+ * updated by ExpenseService when expenses are committed. Expenses changed on
+ * other servers are read again by their updation date once in the refresh
+ * interval.
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseSearchIndex {
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(ExpenseSearchIndex.class);
+
+	/**
+	 * This is the number of milli seconds the refresh reads before the latest
+	 * updation date already indexed, to read changes committed late or with
+	 * the clock of another server behind
+	 */
+	private static final long REFRESH_OVERLAP_IN_MILLISECONDS = 60000;
+
+	/**
+	 * This is the minimum number of deleted documents before the index is
+	 * compacted
+	 */
+	private static final int MINIMUM_DELETED_FOR_COMPACTION = 1000;
+
+	/**
+	 * This is the shortest word which is indexed
+	 */
+	private static final int MINIMUM_TERM_LENGTH = 2;
+
+	/**
+	 * This is the statuses, the status of a document is kept as its ordinal
+	 */
+	private static final ExpenseStatusType[] STATUSES = ExpenseStatusType.values();
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 *
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This is the data access layer of expenses
+	 */
+	@Autowired
+	IExpense mySqlExpense;
+
+	/**
+	 * This method is used to set the mySqlExpense
+	 *
+	 * @param mySqlExpense
+	 *            the mySqlExpense to set
+	 */
+	public void setMySqlExpense(IExpense mySqlExpense) {
+		this.mySqlExpense = mySqlExpense;
+	}
+
+	/**
+	 * This is the lock of the index, searches share it and changes hold it
+	 * alone
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * This is the number of documents including the deleted ones
+	 */
+	private int documentCount;
+
+	/**
+	 * This is the number of deleted documents
+	 */
+	private int deletedCount;
+
+	/**
+	 * This is the set of deleted documents
+	 */
+	private BitSet deleted = new BitSet();
+
+	/**
+	 * This is the expense id of each document
+	 */
+	private String[] expenseIds = new String[1024];
+
+	/**
+	 * This is the user id of each document
+	 */
+	private String[] userIds = new String[1024];
+
+	/**
+	 * This is the user name of each document
+	 */
+	private String[] userNames = new String[1024];
+
+	/**
+	 * This is the title of each document
+	 */
+	private String[] titles = new String[1024];
+
+	/**
+	 * This is the hash of the title and description of each document
+	 */
+	private long[] textHashes = new long[1024];
+
+	/**
+	 * This is the amount of each document
+	 */
+	private float[] amounts = new float[1024];
+
+	/**
+	 * This is the status ordinal of each document
+	 */
+	private byte[] statuses = new byte[1024];
+
+	/**
+	 * This is the updation date in milli seconds of each document, the version
+	 * of the expense indexed in it
+	 */
+	private long[] updationTimes = new long[1024];
+
+	/**
+	 * This is the map of expense id and its current document
+	 */
+	private Map<String, Integer> documentsByExpenseId = new HashMap<>();
+
+	/**
+	 * This is the map of word and the documents having it
+	 */
+	private Map<String, Postings> postingsByTerm = new HashMap<>();
+
+	/**
+	 * This is the latest updation date indexed in milli seconds
+	 */
+	private volatile long latestUpdationTime;
+
+	/**
+	 * This is the time of the next refresh from the database
+	 */
+	private volatile long nextRefreshTime;
+
+	/**
+	 * This is the milli seconds between refreshes from the database
+	 */
+	private long refreshIntervalInMilliSeconds;
+
+	/**
+	 * This is true while a thread refreshes the index
+	 */
+	private final AtomicBoolean isRefreshing = new AtomicBoolean();
+
+	/**
+	 * This method loads the index from the database. The application starts
+	 * with an empty index if the database can not be read, it is loaded by the
+	 * first search.
+	 */
+	public void initialize() {
+		refreshIntervalInMilliSeconds = Long
+				.parseLong(configurationManager.get("EXPENSE_SEARCH_REFRESH_INTERVAL_IN_SECONDS")) * 1000;
+		this.refresh();
+	}
+
+	/**
+	 * This method adds an expense to the index or updates it
+	 *
+	 * @param expenseEntity
+	 *            The expense
+	 */
+	public void index(ExpenseEntity expenseEntity) {
+		this.index(expenseEntity.getId(), expenseEntity.getUserId(), expenseEntity.getUserName(),
+				expenseEntity.getTitle(), expenseEntity.getDescription(), expenseEntity.getAmount(),
+				expenseEntity.getStatus(), expenseEntity.getUpdationDate());
+	}
+
+	/**
+	 * This method adds an expense to the index or updates it
+	 *
+	 * @param expenseId
+	 *            The id of the expense
+	 * @param userId
+	 *            The id of the user of the expense
+	 * @param userName
+	 *            The name of the user
+	 * @param title
+	 *            The title
+	 * @param description
+	 *            The description
+	 * @param amount
+	 *            The amount
+	 * @param status
+	 *            The status
+	 * @param updationDate
+	 *            The updation date, it may be null. The expense is not changed
+	 *            if the indexed one has a later updation date.
+	 */
+	public void index(String expenseId, String userId, String userName, String title, String description,
+			float amount, ExpenseStatusType status, Date updationDate) {
+		if (expenseId == null || status == null)
+			return;
+		long textHash = hashOf(title, description);
+		// an expense without an updation date is older than any which has one
+		long updationTime = updationDate == null ? Long.MIN_VALUE : updationDate.getTime();
+		lock.writeLock().lock();
+		try {
+			Integer existingDocument = documentsByExpenseId.get(expenseId);
+			if (existingDocument != null && updationTime < updationTimes[existingDocument]) {
+				// the row was read before a later change was indexed
+				return;
+			}
+			if (existingDocument != null && textHashes[existingDocument] == textHash
+					&& userId != null && userId.equals(userIds[existingDocument])) {
+				// the words are the same, only the columns change
+				amounts[existingDocument] = amount;
+				statuses[existingDocument] = (byte) status.ordinal();
+				userNames[existingDocument] = userName;
+				updationTimes[existingDocument] = updationTime;
+			} else {
+				if (existingDocument != null) {
+					deleted.set(existingDocument);
+					deletedCount++;
+				}
+				this.addDocument(expenseId, userId, userName, title, description, textHash, amount, status,
+						updationTime);
+				if (deletedCount >= MINIMUM_DELETED_FOR_COMPACTION && deletedCount * 4 >= documentCount)
+					this.compact();
+			}
+			if (updationDate != null && updationDate.getTime() > latestUpdationTime)
+				latestUpdationTime = updationDate.getTime();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * This method searches the expenses, the expenses changed latest are first
+	 *
+	 * @param keywords
+	 *            The words all of which must be in the title or description,
+	 *            null or empty for any expense
+	 * @param minimumAmount
+	 *            The minimum amount, null for no minimum
+	 * @param maximumAmount
+	 *            The maximum amount, null for no maximum
+	 * @param status
+	 *            The status, null for any status
+	 * @param allowedUserIds
+	 *            The users whose expenses may be returned, null for all users
+	 * @param limit
+	 *            The maximum number of expenses returned
+	 * @return The list of expenses found
+	 */
+	public List<ExpenseListViewEntity> search(String keywords, Float minimumAmount, Float maximumAmount,
+			ExpenseStatusType status, Set<String> allowedUserIds, int limit) {
+		if (System.currentTimeMillis() >= nextRefreshTime)
+			this.refreshIfNotRefreshing();
+		List<String> terms = tokenize(keywords);
+		List<ExpenseListViewEntity> expenses = new ArrayList<>();
+		float minimum = minimumAmount == null ? Float.NEGATIVE_INFINITY : minimumAmount;
+		float maximum = maximumAmount == null ? Float.POSITIVE_INFINITY : maximumAmount;
+		int statusOrdinal = status == null ? -1 : status.ordinal();
+		lock.readLock().lock();
+		try {
+			int[] candidates = terms.isEmpty() ? null : this.intersect(terms);
+			int candidateCount = candidates == null ? documentCount : candidates.length;
+			for (int index = candidateCount - 1; index >= 0 && expenses.size() < limit; index--) {
+				int document = candidates == null ? index : candidates[index];
+				if (deleted.get(document) || amounts[document] < minimum || amounts[document] > maximum)
+					continue;
+				if (statusOrdinal >= 0 && statuses[document] != statusOrdinal)
+					continue;
+				if (allowedUserIds != null && !allowedUserIds.contains(userIds[document]))
+					continue;
+				expenses.add(new ExpenseListViewEntity(expenseIds[document], userNames[document], titles[document],
+						amounts[document]));
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return expenses;
+	}
+
+	/**
+	 * This method gets the number of expenses in the index
+	 *
+	 * @return The number of expenses
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documentCount - deletedCount;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * This method refreshes the index unless another thread is doing it, the
+	 * other searches do not wait for the refresh
+	 */
+	private void refreshIfNotRefreshing() {
+		if (!isRefreshing.compareAndSet(false, true))
+			return;
+		try {
+			if (System.currentTimeMillis() >= nextRefreshTime)
+				this.refresh();
+		} finally {
+			isRefreshing.set(false);
+		}
+	}
+
+	/**
+	 * This method reads the expenses changed since the latest updation date
+	 * indexed, all the expenses if the index is empty
+	 */
+	private void refresh() {
+		nextRefreshTime = System.currentTimeMillis() + refreshIntervalInMilliSeconds;
+		long since = latestUpdationTime == 0 ? 0 : latestUpdationTime - REFRESH_OVERLAP_IN_MILLISECONDS;
+		try {
+			mySqlExpense.scrollExpensesForSearchIndex(new Date(since), new IRowHandler<Object[]>() {
+				@Override
+				public void handle(Object[] row) throws Exception {
+					index(String.valueOf(row[0]), (String) row[1], (String) row[2], (String) row[3],
+							(String) row[4], row[5] == null ? 0 : ((Number) row[5]).floatValue(),
+							(ExpenseStatusType) row[6], (Date) row[7]);
+				}
+			});
+		} catch (Exception ex) {
+			logger.logException("ExpenseSearchIndex", "refresh", "try-catch block",
+					"While trying to read the expenses changed since " + new Date(since) + " ~ " + ex.toString(),
+					ex);
+			// try again with the next search
+			nextRefreshTime = 0;
+		}
+	}
+
+	/**
+	 * This method adds a document, the write lock must be held
+	 */
+	private void addDocument(String expenseId, String userId, String userName, String title, String description,
+			long textHash, float amount, ExpenseStatusType status, long updationTime) {
+		if (documentCount == expenseIds.length)
+			this.resize(expenseIds.length * 2);
+		int document = documentCount++;
+		expenseIds[document] = expenseId;
+		userIds[document] = userId;
+		userNames[document] = userName;
+		titles[document] = title;
+		textHashes[document] = textHash;
+		amounts[document] = amount;
+		statuses[document] = (byte) status.ordinal();
+		updationTimes[document] = updationTime;
+		documentsByExpenseId.put(expenseId, document);
+		for (String term : tokenize(title + " " + description)) {
+			Postings postings = postingsByTerm.get(term);
+			if (postings == null) {
+				postings = new Postings();
+				postingsByTerm.put(term, postings);
+			}
+			postings.add(document);
+		}
+	}
+
+	/**
+	 * This method changes the size of the arrays of the documents, the write
+	 * lock must be held
+	 *
+	 * @param capacity
+	 *            The new size
+	 */
+	private void resize(int capacity) {
+		expenseIds = Arrays.copyOf(expenseIds, capacity);
+		userIds = Arrays.copyOf(userIds, capacity);
+		userNames = Arrays.copyOf(userNames, capacity);
+		titles = Arrays.copyOf(titles, capacity);
+		textHashes = Arrays.copyOf(textHashes, capacity);
+		amounts = Arrays.copyOf(amounts, capacity);
+		statuses = Arrays.copyOf(statuses, capacity);
+		updationTimes = Arrays.copyOf(updationTimes, capacity);
+	}
+
+	/**
+	 * This method drops the deleted documents and numbers the others again in
+	 * the same order, the write lock must be held
+	 */
+	private void compact() {
+		int[] newNumbers = new int[documentCount];
+		int liveCount = 0;
+		for (int document = 0; document < documentCount; document++) {
+			if (deleted.get(document)) {
+				newNumbers[document] = -1;
+				continue;
+			}
+			newNumbers[document] = liveCount;
+			expenseIds[liveCount] = expenseIds[document];
+			userIds[liveCount] = userIds[document];
+			userNames[liveCount] = userNames[document];
+			titles[liveCount] = titles[document];
+			textHashes[liveCount] = textHashes[document];
+			amounts[liveCount] = amounts[document];
+			statuses[liveCount] = statuses[document];
+			updationTimes[liveCount] = updationTimes[document];
+			documentsByExpenseId.put(expenseIds[liveCount], liveCount);
+			liveCount++;
+		}
+		Arrays.fill(expenseIds, liveCount, documentCount, null);
+		Arrays.fill(userIds, liveCount, documentCount, null);
+		Arrays.fill(userNames, liveCount, documentCount, null);
+		Arrays.fill(titles, liveCount, documentCount, null);
+		Map<String, Postings> compactedPostings = new HashMap<>();
+		for (Map.Entry<String, Postings> entry : postingsByTerm.entrySet()) {
+			Postings postings = new Postings();
+			for (int index = 0; index < entry.getValue().size; index++) {
+				// the numbers keep their order so the list stays sorted
+				int newNumber = newNumbers[entry.getValue().documents[index]];
+				if (newNumber >= 0)
+					postings.add(newNumber);
+			}
+			if (postings.size > 0)
+				compactedPostings.put(entry.getKey(), postings);
+		}
+		postingsByTerm = compactedPostings;
+		documentCount = liveCount;
+		deletedCount = 0;
+		deleted = new BitSet();
+	}
+
+	/**
+	 * This method gets the documents having all the words, the read lock must
+	 * be held
+	 *
+	 * @param terms
+	 *            The words
+	 * @return The sorted documents
+	 */
+	private int[] intersect(List<String> terms) {
+		Postings[] termPostings = new Postings[terms.size()];
+		for (int index = 0; index < terms.size(); index++) {
+			termPostings[index] = postingsByTerm.get(terms.get(index));
+			if (termPostings[index] == null)
+				return new int[0];
+		}
+		// start with the shortest list, the result is never longer
+		Arrays.sort(termPostings, (first, second) -> Integer.compare(first.size, second.size));
+		int[] result = Arrays.copyOf(termPostings[0].documents, termPostings[0].size);
+		int resultCount = result.length;
+		for (int index = 1; index < termPostings.length && resultCount > 0; index++) {
+			Postings postings = termPostings[index];
+			int matchCount = 0;
+			int position = 0;
+			for (int resultIndex = 0; resultIndex < resultCount; resultIndex++) {
+				position = postings.seek(result[resultIndex], position);
+				if (position < postings.size && postings.documents[position] == result[resultIndex])
+					result[matchCount++] = result[resultIndex];
+			}
+			resultCount = matchCount;
+		}
+		return Arrays.copyOf(result, resultCount);
+	}
+
+	/**
+	 * This method splits a text into its distinct lower case words
+	 *
+	 * @param text
+	 *            The text, it may be null
+	 * @return The list of words
+	 */
+	private static List<String> tokenize(String text) {
+		if (text == null || text.isEmpty())
+			return new ArrayList<>();
+		Set<String> terms = new LinkedHashSet<>();
+		int start = -1;
+		for (int index = 0; index <= text.length(); index++) {
+			boolean isWordCharacter = index < text.length() && Character.isLetterOrDigit(text.charAt(index));
+			if (isWordCharacter && start < 0) {
+				start = index;
+			} else if (!isWordCharacter && start >= 0) {
+				if (index - start >= MINIMUM_TERM_LENGTH)
+					terms.add(text.substring(start, index).toLowerCase(Locale.ENGLISH));
+				start = -1;
+			}
+		}
+		return new ArrayList<>(terms);
+	}
+
+	/**
+	 * This method gets a 64 bit hash of the title and description, it tells if
+	 * the words of an expense have changed
+	 *
+	 * @param title
+	 *            The title
+	 * @param description
+	 *            The description
+	 * @return The hash
+	 */
+	private static long hashOf(String title, String description) {
+		String text = title + '\u0000' + description;
+		long hash = 0xcbf29ce484222325L;
+		for (int index = 0; index < text.length(); index++) {
+			hash ^= text.charAt(index);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * This class is the sorted list of documents having a word
+	 *
+	 * @author ruchi
+	 *
+	 */
+	private static class Postings {
+
+		/**
+		 * This is the documents, only the first size are used
+		 */
+		private int[] documents = new int[4];
+
+		/**
+		 * This is the number of documents
+		 */
+		private int size;
+
+		/**
+		 * This method adds a document, documents are added in increasing order
+		 *
+		 * @param document
+		 *            The document
+		 */
+		void add(int document) {
+			if (size > 0 && documents[size - 1] == document)
+				return;
+			if (size == documents.length)
+				documents = Arrays.copyOf(documents, size * 2);
+			documents[size++] = document;
+		}
+
+		/**
+		 * This method finds the first position at or after a position whose
+		 * document is not less than a document, it gallops so that a short list
+		 * is intersected with a long one quickly
+		 *
+		 * @param document
+		 *            The document
+		 * @param from
+		 *            The position to start from
+		 * @return The position, size if all the documents are less
+		 */
+		int seek(int document, int from) {
+			int step = 1;
+			int low = from;
+			int high = from;
+			while (high < size && documents[high] < document) {
+				low = high + 1;
+				high += step;
+				step *= 2;
+			}
+			high = Math.min(high, size);
+			int position = Arrays.binarySearch(documents, low, high, document);
+			return position >= 0 ? position : -position - 1;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.boilerplate.framework;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.boilerplate.java.entities.ExpenseStatusType;
+import com.boilerplate.java.entities.UserRoleType;
+
+/**
+ * This class is the table of the status changes allowed on an expense. For
+ * each role it has the statuses the role may move an expense to, and for each
+ * of them the statuses the expense must be in. The table is built once, the
+ * data access layer uses the allowed statuses in the condition of the update,
+ * so a change made by someone else in the meantime makes the update change no
+ * row instead of being overwritten.
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseStatusTransitions {
+
+	/**
+	 * This is the map of role to the map of new status and the statuses from
+	 * which it may be reached
+	 */
+	private static final Map<UserRoleType, Map<ExpenseStatusType, Set<ExpenseStatusType>>> transitions = compile();
+
+	/**
+	 * This method gets the statuses an expense must be in for a role to move it
+	 * to a status
+	 *
+	 * @param role
+	 *            The role making the change, super approvers use the table of
+	 *            approvers
+	 * @param status
+	 *            The new status
+	 * @return The statuses, empty if the role may not move an expense to the
+	 *         status
+	 */
+	public static Set<ExpenseStatusType> getSourceStatuses(UserRoleType role, ExpenseStatusType status) {
+		Map<ExpenseStatusType, Set<ExpenseStatusType>> roleTransitions = transitions
+				.get(role == UserRoleType.SUPER_APPROVER ? UserRoleType.APPROVER : role);
+		if (roleTransitions == null || !roleTransitions.containsKey(status))
+			return Collections.emptySet();
+		return roleTransitions.get(status);
+	}
+
+	/**
+	 * This method checks if a role may move an expense from a status to
+	 * another
+	 *
+	 * @param role
+	 *            The role making the change
+	 * @param currentStatus
+	 *            The status of the expense
+	 * @param status
+	 *            The new status
+	 * @return True if the change is allowed
+	 */
+	public static boolean isAllowed(UserRoleType role, ExpenseStatusType currentStatus, ExpenseStatusType status) {
+		return getSourceStatuses(role, status).contains(currentStatus);
+	}
+
+	/**
+	 * This method builds the table
+	 *
+	 * @return The table
+	 */
+	private static Map<UserRoleType, Map<ExpenseStatusType, Set<ExpenseStatusType>>> compile() {
+		Map<UserRoleType, Map<ExpenseStatusType, Set<ExpenseStatusType>>> table = new EnumMap<>(UserRoleType.class);
+		// the owner may only submit again a rejected expense
+		allow(table, UserRoleType.EMPLOYEE, ExpenseStatusType.RE_SUBMITTED,
+				EnumSet.of(ExpenseStatusType.APPROVER_REJECTED, ExpenseStatusType.FINANCE_REJECTED));
+		// approvers review submitted expenses
+		allow(table, UserRoleType.APPROVER, ExpenseStatusType.APPROVER_APPROVED,
+				EnumSet.of(ExpenseStatusType.SUBMITTED, ExpenseStatusType.RE_SUBMITTED));
+		allow(table, UserRoleType.APPROVER, ExpenseStatusType.APPROVER_REJECTED,
+				EnumSet.of(ExpenseStatusType.SUBMITTED, ExpenseStatusType.RE_SUBMITTED));
+		// finance reviews approved expenses and then marks them for payment
+		allow(table, UserRoleType.FINANCE, ExpenseStatusType.FINANCE_APPROVED,
+				EnumSet.of(ExpenseStatusType.APPROVER_APPROVED));
+		allow(table, UserRoleType.FINANCE, ExpenseStatusType.FINANCE_REJECTED,
+				EnumSet.of(ExpenseStatusType.APPROVER_APPROVED));
+		allow(table, UserRoleType.FINANCE, ExpenseStatusType.READY_FOR_PAYMENT,
+				EnumSet.of(ExpenseStatusType.FINANCE_APPROVED));
+		return table;
+	}
+
+	/**
+	 * This method adds a transition to the table
+	 *
+	 * @param table
+	 *            The table
+	 * @param role
+	 *            The role making the change
+	 * @param status
+	 *            The new status
+	 * @param sourceStatuses
+	 *            The statuses the expense must be in
+	 */
+	private static void allow(Map<UserRoleType, Map<ExpenseStatusType, Set<ExpenseStatusType>>> table,
+			UserRoleType role, ExpenseStatusType status, EnumSet<ExpenseStatusType> sourceStatuses) {
+		Map<ExpenseStatusType, Set<ExpenseStatusType>> roleTransitions = table.get(role);
+		if (roleTransitions == null) {
+			roleTransitions = new EnumMap<>(ExpenseStatusType.class);
+			table.put(role, roleTransitions);
+		}
+		roleTransitions.put(status, Collections.unmodifiableSet(sourceStatuses));
+	}
+}
@@ -0,0 +1,367 @@
+package com.boilerplate.framework;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.exceptions.rest.UnauthorizedException;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class verifies the Google id tokens sent on login without a call to
+ * Google. The signature of the token is checked with the signing keys, which
+ * are read from the key source and kept in memory, and the issuer, audience
+ * and expiry of the token are checked with the configurations.
+ *
+ * The keys are read again once in the refresh interval by the login which
+ * finds them old, the other logins use the keys already read meanwhile. A
+ * token signed by a key not yet read, as happens when Google rotates its keys,
+ * reads the keys again at once, but not more than once a minute. If the keys
+ * can not be read the keys already read are used.
+ *
+ * @author ruchi
+ *
+ */
+public class GoogleIdTokenVerifier {
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(GoogleIdTokenVerifier.class);
+
+	/**
+	 * This is the signature algorithm of the Google id tokens
+	 */
+	private static final String TOKEN_ALGORITHM = "RS256";
+
+	/**
+	 * This is the least milli seconds between two reads of the keys, so that
+	 * tokens with unknown keys do not make a request to Google each
+	 */
+	private static final long MINIMUM_FETCH_INTERVAL_IN_MILLISECONDS = 60000;
+
+	/**
+	 * This is the object mapper of the token and the keys
+	 */
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * This is the type of the header and the claims of the token
+	 */
+	private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<Map<String, Object>>() {
+	};
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 *
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This is the source of the signing keys
+	 */
+	ISigningKeySource signingKeySource;
+
+	/**
+	 * This method is used to set the signingKeySource
+	 *
+	 * @param signingKeySource
+	 *            the signingKeySource to set
+	 */
+	public void setSigningKeySource(ISigningKeySource signingKeySource) {
+		this.signingKeySource = signingKeySource;
+	}
+
+	/**
+	 * This is the map of key id and signing key
+	 */
+	private volatile Map<String, PublicKey> keysById = new HashMap<>();
+
+	/**
+	 * This is the time the keys were last read or tried to be read
+	 */
+	private volatile long lastFetchTime;
+
+	/**
+	 * This is the time of the next refresh of the keys
+	 */
+	private volatile long nextRefreshTime;
+
+	/**
+	 * This is true while a thread refreshes the keys
+	 */
+	private final AtomicBoolean isRefreshing = new AtomicBoolean();
+
+	/**
+	 * This method reads the keys, the application starts without keys if they
+	 * can not be read and the first login reads them
+	 */
+	public void initialize() {
+		this.fetchKeys();
+	}
+
+	/**
+	 * This method verifies an id token and gets its claims
+	 *
+	 * @param idToken
+	 *            The id token
+	 * @return The map of claim and value
+	 * @throws UnauthorizedException
+	 *             Throw this exception if the token is not well formed, its
+	 *             signature is not valid, it is expired or it was not issued
+	 *             by Google for this application
+	 */
+	public Map<String, Object> verify(String idToken) throws UnauthorizedException {
+		if (idToken == null)
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is null", null);
+		String[] parts = idToken.split("\\.");
+		if (parts.length != 3)
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is not well formed", null);
+		Map<String, Object> header = decode(parts[0]);
+		Map<String, Object> claims = decode(parts[1]);
+		// check the signature with the key named in the header
+		if (!TOKEN_ALGORITHM.equals(header.get("alg")))
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is not signed with " + TOKEN_ALGORITHM,
+					null);
+		if (!(header.get("kid") instanceof String))
+			throw new UnauthorizedException("ExternalFacingUser", "Id token does not name its signing key", null);
+		PublicKey key = this.getKey((String) header.get("kid"));
+		if (!isSignatureValid(key, parts))
+			throw new UnauthorizedException("ExternalFacingUser", "Signature of the id token is not valid", null);
+		// check who issued the token and for whom
+		if (!this.getConfiguredValues("GOOGLE_ID_TOKEN_ISSUERS").contains(String.valueOf(claims.get("iss"))))
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is not issued by Google", null);
+		if (!this.isAudienceValid(claims.get("aud")))
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is not issued for this application",
+					null);
+		// check the token is current, allowing for the clock of this server
+		long nowInSeconds = this.currentTimeMillis() / 1000;
+		long clockSkewInSeconds = Long.parseLong(configurationManager.get("ID_TOKEN_CLOCK_SKEW_IN_SECONDS"));
+		if (!(claims.get("exp") instanceof Number)
+				|| ((Number) claims.get("exp")).longValue() + clockSkewInSeconds < nowInSeconds)
+			throw new UnauthorizedException("ExternalFacingUser", "Id token has expired", null);
+		if (claims.get("iat") instanceof Number
+				&& ((Number) claims.get("iat")).longValue() - clockSkewInSeconds > nowInSeconds)
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is issued in the future", null);
+		// the email is the user id, it must be verified by Google
+		if (claims.get("email") == null || !"true".equals(String.valueOf(claims.get("email_verified"))))
+			throw new UnauthorizedException("ExternalFacingUser", "Email of the id token is not verified", null);
+		return claims;
+	}
+
+	/**
+	 * This method gets the signing key of a key id, reading the keys again if
+	 * they are old or the key is not found
+	 *
+	 * @param keyId
+	 *            The key id
+	 * @return The key
+	 * @throws UnauthorizedException
+	 *             Throw this exception if there is no key having the id
+	 */
+	private PublicKey getKey(String keyId) throws UnauthorizedException {
+		if (this.currentTimeMillis() >= nextRefreshTime && isRefreshing.compareAndSet(false, true)) {
+			try {
+				if (this.currentTimeMillis() >= nextRefreshTime)
+					this.fetchKeys();
+			} finally {
+				isRefreshing.set(false);
+			}
+		}
+		PublicKey key = keysById.get(keyId);
+		if (key == null) {
+			synchronized (this) {
+				key = keysById.get(keyId);
+				if (key == null
+						&& this.currentTimeMillis() - lastFetchTime >= MINIMUM_FETCH_INTERVAL_IN_MILLISECONDS) {
+					this.fetchKeys();
+					key = keysById.get(keyId);
+				}
+			}
+		}
+		if (key == null)
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is signed with an unknown key", null);
+		return key;
+	}
+
+	/**
+	 * This method reads the keys from the key source and replaces the keys
+	 * read before, which are kept if the keys can not be read
+	 */
+	private synchronized void fetchKeys() {
+		long now = this.currentTimeMillis();
+		lastFetchTime = now;
+		try {
+			Map<String, PublicKey> keys = new HashMap<>();
+			JsonWebKeySet keySet = objectMapper.readValue(signingKeySource.fetchKeySet(), JsonWebKeySet.class);
+			for (JsonWebKey key : keySet.keys) {
+				// only the rsa keys of the algorithm of the tokens
+				if (key.kid == null || !"RSA".equals(key.kty) || (key.alg != null && !TOKEN_ALGORITHM.equals(key.alg)))
+					continue;
+				BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(key.n));
+				BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(key.e));
+				keys.put(key.kid,
+						KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+			}
+			keysById = keys;
+			nextRefreshTime = now
+					+ Long.parseLong(configurationManager.get("GOOGLE_SIGNING_KEYS_REFRESH_INTERVAL_IN_SECONDS")) * 1000;
+		} catch (Exception ex) {
+			logger.logException("GoogleIdTokenVerifier", "fetchKeys", "try-catch block",
+					"While trying to read the signing keys ~ " + ex.toString(), ex);
+			// keep the keys read before and try again after a minute
+			nextRefreshTime = now + MINIMUM_FETCH_INTERVAL_IN_MILLISECONDS;
+		}
+	}
+
+	/**
+	 * This method gets the current time, it is overridden by the tests to move
+	 * the time
+	 *
+	 * @return The milli seconds since the epoch
+	 */
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * This method checks the audience of the token is a client id of this
+	 * application
+	 *
+	 * @param audience
+	 *            The audience claim, a client id or a list of them
+	 * @return True if the audience is valid
+	 */
+	private boolean isAudienceValid(Object audience) {
+		Set<String> clientIds = this.getConfiguredValues("GOOGLE_CLIENT_IDS");
+		if (audience instanceof Collection) {
+			for (Object eachAudience : (Collection<?>) audience) {
+				if (clientIds.contains(String.valueOf(eachAudience)))
+					return true;
+			}
+			return false;
+		}
+		return clientIds.contains(String.valueOf(audience));
+	}
+
+	/**
+	 * This method gets the values of a comma separated configuration
+	 *
+	 * @param key
+	 *            The key of the configuration
+	 * @return The set of values
+	 */
+	private Set<String> getConfiguredValues(String key) {
+		return new HashSet<>(Arrays.asList(configurationManager.get(key).trim().split("\\s*,\\s*")));
+	}
+
+	/**
+	 * This method decodes a part of the token
+	 *
+	 * @param part
+	 *            The base 64 url encoded json
+	 * @return The map of the json
+	 * @throws UnauthorizedException
+	 *             Throw this exception if the part is not base 64 url encoded
+	 *             json
+	 */
+	private static Map<String, Object> decode(String part) throws UnauthorizedException {
+		try {
+			return objectMapper.readValue(Base64.getUrlDecoder().decode(part), JSON_OBJECT);
+		} catch (Exception ex) {
+			throw new UnauthorizedException("ExternalFacingUser", "Id token is not well formed", null);
+		}
+	}
+
+	/**
+	 * This method checks the signature of the token
+	 *
+	 * @param key
+	 *            The signing key
+	 * @param parts
+	 *            The header, claims and signature of the token
+	 * @return True if the signature is valid
+	 */
+	private static boolean isSignatureValid(PublicKey key, String[] parts) {
+		try {
+			Signature signature = Signature.getInstance("SHA256withRSA");
+			signature.initVerify(key);
+			signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+			return signature.verify(Base64.getUrlDecoder().decode(parts[2]));
+		} catch (Exception ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * This class is a json web key set, the members not used are ignored
+	 */
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	static final class JsonWebKeySet {
+
+		/**
+		 * This is the list of keys
+		 */
+		public List<JsonWebKey> keys = new ArrayList<>();
+	}
+
+	/**
+	 * This class is a json web key, the members not used are ignored
+	 */
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	static final class JsonWebKey {
+
+		/**
+		 * This is the key type, RSA for the keys used
+		 */
+		public String kty;
+
+		/**
+		 * This is the algorithm of the key, it may be absent
+		 */
+		public String alg;
+
+		/**
+		 * This is the key id named in the token header
+		 */
+		public String kid;
+
+		/**
+		 * This is the base 64 url encoded modulus of the rsa key
+		 */
+		public String n;
+
+		/**
+		 * This is the base 64 url encoded exponent of the rsa key
+		 */
+		public String e;
+	}
+}
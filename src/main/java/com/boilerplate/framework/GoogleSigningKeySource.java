@@ -0,0 +1,75 @@
+package com.boilerplate.framework;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.configurations.ConfigurationManager;
+
+/**
+ * This class reads the keys which sign the Google id tokens from the url in
+ * the configuration GOOGLE_SIGNING_KEYS_URL.
+ *
+ * The request is made here rather than through HttpUtility, which always sets
+ * a request body and so turns a GET into a POST, and waits two minutes to
+ * connect.
+ *
+ * @author ruchi
+ *
+ */
+public class GoogleSigningKeySource implements ISigningKeySource {
+
+	/**
+	 * This is the milli seconds to wait to connect and to read the keys
+	 */
+	private static final int TIMEOUT_IN_MILLISECONDS = 5000;
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 *
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * @see ISigningKeySource.fetchKeySet
+	 */
+	@Override
+	public String fetchKeySet() throws Exception {
+		String url = configurationManager.get("GOOGLE_SIGNING_KEYS_URL");
+		HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(url).openConnection();
+		try {
+			httpURLConnection.setRequestMethod("GET");
+			httpURLConnection.setConnectTimeout(TIMEOUT_IN_MILLISECONDS);
+			httpURLConnection.setReadTimeout(TIMEOUT_IN_MILLISECONDS);
+			int responseCode = httpURLConnection.getResponseCode();
+			if (responseCode != 200)
+				throw new IOException("The signing keys could not be read from " + url + ", status " + responseCode);
+			StringBuilder keySet = new StringBuilder();
+			try (BufferedReader bufferedReader = new BufferedReader(
+					new InputStreamReader(httpURLConnection.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = bufferedReader.readLine()) != null) {
+					keySet.append(line);
+				}
+			}
+			return keySet.toString();
+		} finally {
+			httpURLConnection.disconnect();
+		}
+	}
+}
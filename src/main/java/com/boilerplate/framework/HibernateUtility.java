@@ -2,12 +2,18 @@ package com.boilerplate.framework;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.service.ServiceRegistry;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
 
 import com.boilerplate.java.collections.BoilerplateMap;
 
@@ -28,9 +34,10 @@ public class HibernateUtility {
 
 	/**
 	 * This is the map of session factory, it has a session factory for each
-	 * connection string file
+	 * connection string file. It is read by every request thread without a
+	 * lock.
 	 */
-	private static BoilerplateMap<String, SessionFactory> sessionFactoryMap = new BoilerplateMap<String, SessionFactory>();
+	private static Map<String, SessionFactory> sessionFactoryMap = new ConcurrentHashMap<String, SessionFactory>();
 
 	/**
 	 * This is the name of the core connection string.
@@ -56,7 +63,7 @@ public class HibernateUtility {
 		try {
 
 			Configuration configuration = new Configuration();
-			configuration.configure(coreConnectionStringFileName);
+			configuration.configure(hibernateCfgFileName);
 			ServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
 					.applySettings(configuration.getProperties()).build();
 			return configuration.buildSessionFactory(serviceRegistry);
@@ -75,14 +82,20 @@ public class HibernateUtility {
 	 */
 	public static SessionFactory getSessionFactory(
 			String hibernateCfgFileName) {
-		if (sessionFactoryMap.containsKey(hibernateCfgFileName)) {
-			return sessionFactoryMap.get(hibernateCfgFileName);
-		} else {
-			SessionFactory sessionFactory = new org.hibernate.cfg.Configuration()
-					.configure(hibernateCfgFileName).buildSessionFactory();
-			// SessionFactory sessionFactory =
-			// HibernateUtility.buildSessionFactory(hibernateCfgFileName);
-			sessionFactoryMap.put(hibernateCfgFileName, sessionFactory);
+		SessionFactory existingSessionFactory = sessionFactoryMap.get(hibernateCfgFileName);
+		if (existingSessionFactory != null) {
+			return existingSessionFactory;
+		}
+		// factories other than the core one are built on first use by any
+		// thread, only one must be built
+		synchronized (HibernateUtility.class) {
+			if (!sessionFactoryMap.containsKey(hibernateCfgFileName)) {
+				SessionFactory sessionFactory = new org.hibernate.cfg.Configuration()
+						.configure(hibernateCfgFileName).buildSessionFactory();
+				// SessionFactory sessionFactory =
+				// HibernateUtility.buildSessionFactory(hibernateCfgFileName);
+				sessionFactoryMap.put(hibernateCfgFileName, sessionFactory);
+			}
 			return sessionFactoryMap.get(hibernateCfgFileName);
 		}
 	}
@@ -106,6 +119,18 @@ public class HibernateUtility {
 				.getSessionFactory(onlySelectConnectionStringFileName);
 	}
 
+	/**
+	 * This method checks if an only select database, a read replica of the
+	 * core database, is configured
+	 * 
+	 * @return True if the only select connection file is set and is not the
+	 *         core connection file
+	 */
+	public static boolean isOnlySelectDatabaseConfigured() {
+		return onlySelectConnectionStringFileName != null && !onlySelectConnectionStringFileName.isEmpty()
+				&& !onlySelectConnectionStringFileName.equals(coreConnectionStringFileName);
+	}
+
 	/**
 	 * This method closes the core connection
 	 */
@@ -133,7 +158,7 @@ public class HibernateUtility {
 	 *            The property name
 	 * @return The name of the core connection string
 	 */
-	private static String getConnectionName(String propertyName) {
+	static String getConnectionName(String propertyName) {
 		Properties properties = null;
 		InputStream inputStream = null;
 		String coreConnection = null;
@@ -176,13 +201,22 @@ public class HibernateUtility {
 	
 	
 	/**
-	 * This method rebulid 
+	 * This method rebulid the session factory, the old factory and its
+	 * connection pool are closed. It parses all the mappings and must not be
+	 * called in a request, a database which can not be reached is handled by
+	 * InstrumentedConnectionProvider without a rebuild.
+	 * 
 	 * @param hibernateCfgFileName
 	 */
 	public static void reBuildSessionFactory(String hibernateCfgFileName) {
 		SessionFactory sessionFactory = new org.hibernate.cfg.Configuration().configure(hibernateCfgFileName)
 				.buildSessionFactory();
-		sessionFactoryMap.put(hibernateCfgFileName, sessionFactory);		
+		SessionFactory oldSessionFactory;
+		synchronized (HibernateUtility.class) {
+			oldSessionFactory = sessionFactoryMap.put(hibernateCfgFileName, sessionFactory);
+		}
+		if (oldSessionFactory != null)
+			oldSessionFactory.close();
 	}
 
 	/**
@@ -193,4 +227,81 @@ public class HibernateUtility {
 	public static void reBuildSessionFactory() {
 		HibernateUtility.reBuildSessionFactory(coreConnectionStringFileName);
 	}
+
+	/**
+	 * This method removes all the results of a query cache region of every
+	 * session factory
+	 * 
+	 * @param region
+	 *            The name of the query cache region
+	 */
+	public static void evictQueryRegion(String region) {
+		for (SessionFactory sessionFactory : sessionFactoryMap.values()) {
+			sessionFactory.getCache().evictQueryRegion(region);
+		}
+	}
+
+	/**
+	 * This method gets the hit and miss statistics of the second level cache
+	 * and the query cache of the core session factory
+	 * 
+	 * @return The map of region name and its statistics
+	 */
+	public static BoilerplateMap<String, BoilerplateMap<String, Long>> getCacheStatistics() {
+		Statistics statistics = HibernateUtility.getSessionFactory().getStatistics();
+		BoilerplateMap<String, BoilerplateMap<String, Long>> cacheStatistics = new BoilerplateMap<>();
+		for (String region : statistics.getSecondLevelCacheRegionNames()) {
+			SecondLevelCacheStatistics regionStatistics = statistics.getSecondLevelCacheStatistics(region);
+			BoilerplateMap<String, Long> counts = new BoilerplateMap<>();
+			counts.put("hitCount", regionStatistics.getHitCount());
+			counts.put("missCount", regionStatistics.getMissCount());
+			counts.put("putCount", regionStatistics.getPutCount());
+			counts.put("elementCountInMemory", regionStatistics.getElementCountInMemory());
+			cacheStatistics.put(region, counts);
+		}
+		BoilerplateMap<String, Long> queryCounts = new BoilerplateMap<>();
+		queryCounts.put("hitCount", statistics.getQueryCacheHitCount());
+		queryCounts.put("missCount", statistics.getQueryCacheMissCount());
+		queryCounts.put("putCount", statistics.getQueryCachePutCount());
+		queryCounts.put("databaseQueryCount", statistics.getQueryExecutionCount());
+		cacheStatistics.put("queries", queryCounts);
+		return cacheStatistics;
+	}
+
+	/**
+	 * This method reports that a statement on the core database failed because
+	 * the database could not be reached. It returns at once, the connection
+	 * provider refuses connections after repeated failures and reconnects in
+	 * the background.
+	 */
+	public static void reportConnectionFailure() {
+		SessionFactory sessionFactory = sessionFactoryMap.get(coreConnectionStringFileName);
+		if (sessionFactory == null)
+			return;
+		ConnectionProvider connectionProvider = ((SessionFactoryImplementor) sessionFactory).getServiceRegistry()
+				.getService(ConnectionProvider.class);
+		if (connectionProvider != null && connectionProvider.isUnwrappableAs(InstrumentedConnectionProvider.class))
+			connectionProvider.unwrap(InstrumentedConnectionProvider.class).recordConnectionFailure();
+	}
+
+	/**
+	 * This method gets the statistics of the connection pool of every session
+	 * factory whose connections come from InstrumentedConnectionProvider
+	 * 
+	 * @return The map of hibernate configuration file name and the statistics
+	 *         of its pool
+	 */
+	public static BoilerplateMap<String, BoilerplateMap<String, Long>> getConnectionPoolStatistics() {
+		BoilerplateMap<String, BoilerplateMap<String, Long>> poolStatistics = new BoilerplateMap<>();
+		for (String hibernateCfgFileName : sessionFactoryMap.keySet()) {
+			ConnectionProvider connectionProvider = ((SessionFactoryImplementor) sessionFactoryMap
+					.get(hibernateCfgFileName)).getServiceRegistry().getService(ConnectionProvider.class);
+			if (connectionProvider != null
+					&& connectionProvider.isUnwrappableAs(InstrumentedConnectionProvider.class)) {
+				poolStatistics.put(hibernateCfgFileName,
+						connectionProvider.unwrap(InstrumentedConnectionProvider.class).getStatistics());
+			}
+		}
+		return poolStatistics;
+	}
 }
@@ -0,0 +1,23 @@
+package com.boilerplate.framework;
+
+/**
+ * This interface is implemented by a source of the keys which sign the id
+ * tokens, GoogleSigningKeySource reads them from Google and
+ * StaticSigningKeySource serves a key set it is given, for tests and local
+ * runs without a connection to Google.
+ *
+ * @author ruchi
+ *
+ */
+public interface ISigningKeySource {
+
+	/**
+	 * This method fetches the signing keys
+	 *
+	 * @return The keys as a json web key set, an object having the list of
+	 *         keys as "keys"
+	 * @throws Exception
+	 *             Throw this exception if the keys could not be fetched
+	 */
+	public String fetchKeySet() throws Exception;
+}
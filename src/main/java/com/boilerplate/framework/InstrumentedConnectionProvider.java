@@ -0,0 +1,363 @@
+package com.boilerplate.framework;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.ServiceRegistryAwareService;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.hibernate.service.spi.Startable;
+import org.hibernate.service.spi.Stoppable;
+
+import com.boilerplate.java.collections.BoilerplateMap;
+
+/**
+ * This class is the connection provider of the hibernate configurations. It
+ * gets connections from a pool chosen by the boilerplate.pool.implementation
+ * property and records the connections in use, the threads waiting and the
+ * time taken by each checkout, so the pool can be sized from what is seen in
+ * production. The property is either bounded, for BoundedConnectionPool, or
+ * the class name of any hibernate connection provider, for example
+ * org.hibernate.c3p0.internal.C3P0ConnectionProvider when hibernate-c3p0 is on
+ * the class path. The other properties of the configuration are passed to the
+ * pool as they are.
+ *
+ * When the database can not be reached the circuit breaker opens and
+ * connections are refused at once. A new pool is then built in the background
+ * every reconnect_interval milliseconds, once it connects it replaces the old
+ * pool and the circuit closes. The session factory is kept, so nothing is
+ * rebuilt in the request threads. Connections checked out of the old pool are
+ * returned to it and closed.
+ *
+ * The statistics of each session factory are published by
+ * HibernateUtility.getConnectionPoolStatistics.
+ *
+ * @author ruchi
+ *
+ */
+public class InstrumentedConnectionProvider
+		implements ConnectionProvider, Configurable, Stoppable, ServiceRegistryAwareService {
+
+	/**
+	 * This is the serial version id
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * This is the property of the pool implementation
+	 */
+	public static final String IMPLEMENTATION = "boilerplate.pool.implementation";
+
+	/**
+	 * This is the value of the property for BoundedConnectionPool
+	 */
+	public static final String BOUNDED_IMPLEMENTATION = "bounded";
+
+	/**
+	 * This is the property of the number of consecutive connection failures
+	 * after which connections are refused
+	 */
+	public static final String FAILURE_THRESHOLD = "boilerplate.failover.failure_threshold";
+
+	/**
+	 * This is the property of the milliseconds between reconnect attempts
+	 */
+	public static final String RECONNECT_INTERVAL = "boilerplate.failover.reconnect_interval";
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(InstrumentedConnectionProvider.class);
+
+	/**
+	 * This is the pool the connections come from, it is replaced when the
+	 * database is reconnected
+	 */
+	private final AtomicReference<ConnectionProvider> pool = new AtomicReference<>();
+
+	/**
+	 * This is the map of checked out connection and the pool it came from
+	 */
+	private final Map<Connection, ConnectionProvider> connectionPools = new ConcurrentHashMap<>();
+
+	/**
+	 * This is the configuration, kept to build new pools
+	 */
+	@SuppressWarnings("rawtypes")
+	private Map configurationValues;
+
+	/**
+	 * This is the service registry, it is passed to pools which need it
+	 */
+	private ServiceRegistryImplementor serviceRegistry;
+
+	/**
+	 * This is the circuit breaker of the database
+	 */
+	private DatabaseCircuitBreaker circuitBreaker;
+
+	/**
+	 * This is the milliseconds between reconnect attempts
+	 */
+	private long reconnectIntervalMillis;
+
+	/**
+	 * This is the thread making the reconnect attempts, it is created when the
+	 * circuit first opens
+	 */
+	private ScheduledExecutorService reconnectExecutor;
+
+	/**
+	 * This is the number of times the pool has been replaced
+	 */
+	private final LongAdder poolSwapCount = new LongAdder();
+
+	/**
+	 * This is the statistics of the pool
+	 */
+	private final ConnectionPoolStatistics statistics = new ConnectionPoolStatistics();
+
+	/**
+	 * @see ServiceRegistryAwareService.injectServices
+	 */
+	@Override
+	public void injectServices(ServiceRegistryImplementor serviceRegistry) {
+		this.serviceRegistry = serviceRegistry;
+	}
+
+	/**
+	 * This method creates and configures the pool
+	 *
+	 * @see Configurable.configure
+	 */
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void configure(Map configurationValues) {
+		this.configurationValues = new HashMap(configurationValues);
+		circuitBreaker = new DatabaseCircuitBreaker(
+				ConfigurationHelper.getInt(FAILURE_THRESHOLD, configurationValues, 3));
+		reconnectIntervalMillis = ConfigurationHelper.getInt(RECONNECT_INTERVAL, configurationValues, 2000);
+		pool.set(this.createPool());
+	}
+
+	/**
+	 * This method creates a pool of the configured implementation
+	 *
+	 * @return The configured pool
+	 */
+	private ConnectionProvider createPool() {
+		String implementation = (String) configurationValues.get(IMPLEMENTATION);
+		ConnectionProvider newPool;
+		if (implementation == null || implementation.trim().isEmpty()
+				|| BOUNDED_IMPLEMENTATION.equals(implementation.trim())) {
+			BoundedConnectionPool boundedConnectionPool = new BoundedConnectionPool();
+			boundedConnectionPool.setStatistics(statistics);
+			newPool = boundedConnectionPool;
+		} else {
+			try {
+				newPool = (ConnectionProvider) Class.forName(implementation.trim()).newInstance();
+			} catch (ClassNotFoundException | InstantiationException | IllegalAccessException
+					| ClassCastException ex) {
+				throw new HibernateException("Could not create the connection pool " + implementation, ex);
+			}
+		}
+		if (newPool instanceof ServiceRegistryAwareService)
+			((ServiceRegistryAwareService) newPool).injectServices(serviceRegistry);
+		if (newPool instanceof Configurable)
+			((Configurable) newPool).configure(configurationValues);
+		if (newPool instanceof Startable)
+			((Startable) newPool).start();
+		return newPool;
+	}
+
+	/**
+	 * This method checks out a connection from the pool and records the time
+	 * taken. It fails at once while the circuit is open.
+	 *
+	 * @see ConnectionProvider.getConnection
+	 */
+	@Override
+	public Connection getConnection() throws SQLException {
+		circuitBreaker.checkClosed();
+		long startNanos = System.nanoTime();
+		statistics.checkoutStarted();
+		ConnectionProvider currentPool = pool.get();
+		try {
+			Connection connection = currentPool.getConnection();
+			connectionPools.put(connection, currentPool);
+			statistics.checkoutSucceeded(startNanos);
+			circuitBreaker.recordSuccess();
+			return connection;
+		} catch (SQLException | RuntimeException ex) {
+			statistics.checkoutFailed();
+			if (DatabaseCircuitBreaker.isConnectionFailure(ex))
+				this.recordConnectionFailure();
+			throw ex;
+		}
+	}
+
+	/**
+	 * This method returns a connection to the pool it came from
+	 *
+	 * @see ConnectionProvider.closeConnection
+	 */
+	@Override
+	public void closeConnection(Connection connection) throws SQLException {
+		ConnectionProvider connectionPool = connectionPools.remove(connection);
+		try {
+			(connectionPool == null ? pool.get() : connectionPool).closeConnection(connection);
+		} finally {
+			statistics.checkedIn();
+		}
+	}
+
+	/**
+	 * This method records a failure to reach the database, a statement failing
+	 * on a connection which was checked out fine is reported here by the data
+	 * access layer. The reconnect attempts start when the circuit opens.
+	 */
+	public void recordConnectionFailure() {
+		if (!circuitBreaker.recordFailure())
+			return;
+		logger.logInfo("InstrumentedConnectionProvider", "recordConnectionFailure", "circuit open",
+				"The database can not be reached, connections are refused till it is reconnected");
+		synchronized (this) {
+			if (reconnectExecutor == null) {
+				reconnectExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+					Thread thread = new Thread(runnable, "DatabaseReconnect");
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+			reconnectExecutor.schedule(this::reconnect, reconnectIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * This method builds a new pool and replaces the current one with it if it
+	 * connects, else it tries again after the reconnect interval
+	 */
+	private void reconnect() {
+		ConnectionProvider newPool = null;
+		try {
+			newPool = this.createPool();
+			Connection connection = newPool.getConnection();
+			try {
+				if (!connection.isValid(5))
+					throw new SQLException("The new connection is not valid",
+							DatabaseCircuitBreaker.CONNECTION_FAILURE_SQL_STATE);
+			} finally {
+				newPool.closeConnection(connection);
+			}
+		} catch (Exception ex) {
+			logger.logException("InstrumentedConnectionProvider", "reconnect", "try-catch block",
+					"While trying to reconnect to the database ~ " + ex.toString(), ex);
+			this.stopQuietly(newPool);
+			synchronized (this) {
+				if (!reconnectExecutor.isShutdown())
+					reconnectExecutor.schedule(this::reconnect, reconnectIntervalMillis, TimeUnit.MILLISECONDS);
+			}
+			return;
+		}
+		ConnectionProvider oldPool = pool.getAndSet(newPool);
+		poolSwapCount.increment();
+		circuitBreaker.close();
+		logger.logInfo("InstrumentedConnectionProvider", "reconnect", "circuit closed",
+				"The database is reconnected, connections are given from a new pool");
+		this.stopQuietly(oldPool);
+	}
+
+	/**
+	 * This method stops a pool ignoring errors
+	 *
+	 * @param stoppedPool
+	 *            The pool, it may be null
+	 */
+	private void stopQuietly(ConnectionProvider stoppedPool) {
+		if (!(stoppedPool instanceof Stoppable))
+			return;
+		try {
+			((Stoppable) stoppedPool).stop();
+		} catch (RuntimeException ex) {
+			logger.logException("InstrumentedConnectionProvider", "stopQuietly", "try-catch block",
+					"While trying to stop a connection pool ~ " + ex.toString(), ex);
+		}
+	}
+
+	/**
+	 * This method gets the statistics of the pool. The idle count, maximum size
+	 * and age of the oldest connection are only known for
+	 * BoundedConnectionPool.
+	 *
+	 * @return The map of counter name and value
+	 */
+	public BoilerplateMap<String, Long> getStatistics() {
+		BoilerplateMap<String, Long> counts = statistics.toMap();
+		ConnectionProvider currentPool = pool.get();
+		if (currentPool instanceof BoundedConnectionPool) {
+			BoundedConnectionPool boundedConnectionPool = (BoundedConnectionPool) currentPool;
+			counts.put("idle", (long) boundedConnectionPool.getIdleCount());
+			counts.put("maxSize", (long) boundedConnectionPool.getMaxSize());
+			counts.put("oldestConnectionAgeSeconds", boundedConnectionPool.getOldestConnectionAgeSeconds());
+		}
+		counts.put("circuitOpen", circuitBreaker.isOpen() ? 1L : 0L);
+		counts.put("circuitOpenCount", circuitBreaker.getOpenCount());
+		counts.put("circuitRejectedCount", circuitBreaker.getRejectedCount());
+		counts.put("poolSwapCount", poolSwapCount.sum());
+		return counts;
+	}
+
+	/**
+	 * @see Stoppable.stop
+	 */
+	@Override
+	public void stop() {
+		synchronized (this) {
+			if (reconnectExecutor != null)
+				reconnectExecutor.shutdownNow();
+		}
+		this.stopQuietly(pool.get());
+	}
+
+	/**
+	 * @see ConnectionProvider.supportsAggressiveRelease
+	 */
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return pool.get().supportsAggressiveRelease();
+	}
+
+	/**
+	 * @see ConnectionProvider.isUnwrappableAs
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean isUnwrappableAs(Class unwrapType) {
+		return ConnectionProvider.class.equals(unwrapType)
+				|| InstrumentedConnectionProvider.class.isAssignableFrom(unwrapType)
+				|| pool.get().isUnwrappableAs(unwrapType);
+	}
+
+	/**
+	 * @see ConnectionProvider.unwrap
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> unwrapType) {
+		if (ConnectionProvider.class.equals(unwrapType)
+				|| InstrumentedConnectionProvider.class.isAssignableFrom(unwrapType))
+			return (T) this;
+		return pool.get().unwrap(unwrapType);
+	}
+}
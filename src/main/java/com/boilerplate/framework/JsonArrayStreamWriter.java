@@ -0,0 +1,94 @@
+package com.boilerplate.framework;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.boilerplate.database.interfaces.IRowHandler;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class writes items to the http response as a json array while they are
+ * being produced, so a large response is never held in memory as a whole. The
+ * response is started only when the first item is written, so an exception
+ * thrown before any item is produced can still be sent as a normal error
+ * response. The items are written with the object mapper of the application,
+ * so they are written as the other responses are.
+ * 
+ * @author ruchi
+ *
+ * @param <T>
+ *            The type of the items
+ */
+public class JsonArrayStreamWriter<T> implements IRowHandler<T> {
+
+	/**
+	 * This is the object mapper used to write items
+	 */
+	private ObjectMapper objectMapper;
+
+	/**
+	 * This is the http response
+	 */
+	private HttpServletResponse httpServletResponse;
+
+	/**
+	 * This is the json generator, it is null till the first item is written
+	 */
+	private JsonGenerator jsonGenerator;
+
+	/**
+	 * This is the parameterized constructor
+	 * 
+	 * @param httpServletResponse
+	 *            The http response to which items are written
+	 * @param objectMapper
+	 *            The object mapper used to write items
+	 */
+	public JsonArrayStreamWriter(HttpServletResponse httpServletResponse, ObjectMapper objectMapper) {
+		this.httpServletResponse = httpServletResponse;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * This method writes an item to the response
+	 * 
+	 * @see IRowHandler.handle
+	 */
+	@Override
+	public void handle(T item) throws IOException {
+		if (jsonGenerator == null)
+			this.start();
+		jsonGenerator.writeObject(item);
+		// send what is written so far to the client
+		jsonGenerator.flush();
+	}
+
+	/**
+	 * This method ends the json array, an empty array is written if no item
+	 * was written
+	 * 
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	public void close() throws IOException {
+		if (jsonGenerator == null)
+			this.start();
+		jsonGenerator.writeEndArray();
+		jsonGenerator.close();
+	}
+
+	/**
+	 * This method starts the json array in the response
+	 * 
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	private void start() throws IOException {
+		httpServletResponse.setContentType("application/json");
+		httpServletResponse.setCharacterEncoding("UTF-8");
+		jsonGenerator = objectMapper.getFactory().createGenerator(httpServletResponse.getOutputStream());
+		jsonGenerator.writeStartArray();
+	}
+}
@@ -0,0 +1,121 @@
+package com.boilerplate.framework;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import com.boilerplate.database.interfaces.IRowHandler;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class writes rows to the http response as a json array of objects while
+ * they are being read, each row is written as an object having a field for
+ * each column. No object is built for a row, the values are written straight
+ * to the response. Written rows are sent to the client after every flush
+ * interval rows. The response is started only when the first row is written,
+ * so an exception thrown before any row is read can still be sent as a normal
+ * error response. The values are written with the object mapper of the
+ * application, so they are written as the other responses are.
+ *
+ * @author ruchi
+ *
+ */
+public class JsonRowStreamWriter implements IRowHandler<Object[]> {
+
+	/**
+	 * This is the object mapper used to write values
+	 */
+	private ObjectMapper objectMapper;
+
+	/**
+	 * This is the http response
+	 */
+	private HttpServletResponse httpServletResponse;
+
+	/**
+	 * This is the names of the columns in the order of the row values
+	 */
+	private String[] columnNames;
+
+	/**
+	 * This is the number of rows after which the response is flushed
+	 */
+	private int flushInterval;
+
+	/**
+	 * This is the json generator, it is null till the first row is written
+	 */
+	private JsonGenerator jsonGenerator;
+
+	/**
+	 * This is the number of rows written
+	 */
+	private int rowCount;
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param httpServletResponse
+	 *            The http response to which rows are written
+	 * @param columnNames
+	 *            The names of the columns in the order of the row values
+	 * @param flushInterval
+	 *            The number of rows after which the response is flushed
+	 * @param objectMapper
+	 *            The object mapper used to write values
+	 */
+	public JsonRowStreamWriter(HttpServletResponse httpServletResponse, String[] columnNames, int flushInterval,
+			ObjectMapper objectMapper) {
+		this.httpServletResponse = httpServletResponse;
+		this.columnNames = columnNames;
+		this.flushInterval = flushInterval < 1 ? 1 : flushInterval;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * This method writes a row to the response
+	 *
+	 * @see IRowHandler.handle
+	 */
+	@Override
+	public void handle(Object[] row) throws IOException {
+		if (jsonGenerator == null)
+			this.start();
+		jsonGenerator.writeStartObject();
+		for (int i = 0; i < columnNames.length; i++) {
+			jsonGenerator.writeObjectField(columnNames[i], row[i]);
+		}
+		jsonGenerator.writeEndObject();
+		// send what is written so far to the client
+		if (++rowCount % flushInterval == 0)
+			jsonGenerator.flush();
+	}
+
+	/**
+	 * This method ends the json array, an empty array is written if no row
+	 * was written
+	 *
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	public void close() throws IOException {
+		if (jsonGenerator == null)
+			this.start();
+		jsonGenerator.writeEndArray();
+		jsonGenerator.close();
+	}
+
+	/**
+	 * This method starts the json array in the response
+	 *
+	 * @throws IOException
+	 *             Throw this exception if response could not be written
+	 */
+	private void start() throws IOException {
+		httpServletResponse.setContentType("application/json");
+		httpServletResponse.setCharacterEncoding("UTF-8");
+		jsonGenerator = objectMapper.getFactory().createGenerator(httpServletResponse.getOutputStream());
+		jsonGenerator.writeStartArray();
+	}
+}
@@ -0,0 +1,143 @@
+package com.boilerplate.framework;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.configurations.ConfigurationManager;
+
+/**
+ * This is the registry of the queries used by the data access layers. Queries
+ * are read from configurations by their keys, optional clauses are added from
+ * query fragments which are also read from configurations. The text of every
+ * query and of every combination of fragments is built once and the same text
+ * is returned from then on. All the variable parts of a query must be bound as
+ * named parameters, so one text is used for every value and the hibernate query
+ * plan cache and the prepared statement cache are hit for each call. A key
+ * which is not in configurations is an error, the keys of the queries used
+ * with fragments are checked when the application starts.
+ *
+ * @author ruchi
+ *
+ */
+public class QueryRegistry {
+
+	/**
+	 * This is the separator between the query key and fragment keys in the
+	 * registry key
+	 */
+	private static final String SEPARATOR = "+";
+
+	/**
+	 * These are the queries which are used with fragments, the first key of
+	 * each is the query and the rest are all the fragments which may be added
+	 * to it
+	 */
+	public static final String[][] COMPOSED_QUERIES = {
+			{ "SQL_QUERY_FOR_GETTING_EXPENSE_BY_USER_ID", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_DATE_RANGE",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_STATUS", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER" },
+			{ "SQL_QUERY_FOR_GETTING_EXPENSE_BY_STATUS", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER" },
+			{ "SQL_QUERY_FOR_GETTING_EXPENSE_BY_APPROVER", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER" },
+			{ "SQL_QUERY_FOR_GETTING_EXPENSE_FOR_SUPER_APPROVER", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER" },
+			{ "SQL_QUERY_FOR_GETTING_EXPENSE_LIST_VIEW_BY_APPROVER", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER" },
+			{ "SQL_QUERY_FOR_GETTING_EXPENSE_LIST_VIEW_FOR_SUPER_APPROVER", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_CURSOR",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER" },
+			{ "SQL_QUERY_FOR_GETTING_EXPENSE_EXPORT_ROWS", "SQL_QUERY_FRAGMENT_FOR_EXPENSE_DATE_RANGE",
+					"SQL_QUERY_FRAGMENT_FOR_EXPENSE_ORDER" } };
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 *
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This is the map of registry key and query text
+	 */
+	private ConcurrentHashMap<String, String> queries = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * This method checks the keys of the queries used with fragments are in
+	 * configurations, so that a missing key stops the application from
+	 * starting rather than failing a request
+	 */
+	public void initialize() {
+		for (String[] composedQuery : COMPOSED_QUERIES) {
+			for (String key : composedQuery) {
+				this.getConfiguredText(key);
+			}
+		}
+	}
+
+	/**
+	 * This method is used to get a query
+	 *
+	 * @param queryKey
+	 *            The configuration key of the query
+	 * @return The query text
+	 */
+	public String get(String queryKey) {
+		return this.compose(queryKey);
+	}
+
+	/**
+	 * This method is used to get a query with optional clauses added. The
+	 * fragments are added in the given order.
+	 *
+	 * @param queryKey
+	 *            The configuration key of the query
+	 * @param fragmentKeys
+	 *            The configuration keys of the fragments to be added
+	 * @return The query text
+	 * @throws IllegalStateException
+	 *             Throw this exception if a key is not in configurations
+	 */
+	public String compose(String queryKey, String... fragmentKeys) {
+		StringBuilder registryKey = new StringBuilder(queryKey);
+		for (String fragmentKey : fragmentKeys) {
+			registryKey.append(SEPARATOR).append(fragmentKey);
+		}
+		String query = queries.get(registryKey.toString());
+		if (query == null) {
+			StringBuilder queryText = new StringBuilder(this.getConfiguredText(queryKey));
+			for (String fragmentKey : fragmentKeys) {
+				queryText.append(this.getConfiguredText(fragmentKey));
+			}
+			// if two threads build the same query the first one is kept
+			String existingQuery = queries.putIfAbsent(registryKey.toString(), queryText.toString());
+			query = existingQuery == null ? queryText.toString() : existingQuery;
+		}
+		return query;
+	}
+
+	/**
+	 * This method gets the text of a query or fragment from configurations
+	 *
+	 * @param key
+	 *            The configuration key
+	 * @return The text
+	 * @throws IllegalStateException
+	 *             Throw this exception if the key is not in configurations
+	 */
+	private String getConfiguredText(String key) {
+		String text = configurationManager.get(key);
+		if (text == null)
+			throw new IllegalStateException("The query " + key + " is not in configurations");
+		return text;
+	}
+}
@@ -1,13 +1,17 @@
 package com.boilerplate.framework;
 
-import java.text.DateFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
 
+import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.java.entities.FetchExpenseEntity;
-import com.boilerplate.java.entities.UserRoleType;
 
 /**
- * This class has methods for query replacing
+ * This class has methods for query construction
  * 
  * @author ruchi
  *
@@ -15,36 +19,72 @@ import com.boilerplate.java.entities.UserRoleType;
 public class RDBMSUtility {
 
 	/**
-	 * This method is used to modify query for get expenses according to
-	 * filtration required
+	 * This method is used to get the query fragments for get expenses
+	 * according to filtration required, and to put the filter values in the
+	 * query parameters
 	 * 
-	 * @param sqlQuery
-	 *            This is the sql query to be modified
 	 * @param fetchExpenseEntity
 	 *            this entity contains attributes required for filtration
-	 * @return Modified sql query
+	 * @param queryParameterMap
+	 *            The query parameters in which filter values are put
+	 * @return The configuration keys of the query fragments to be added
+	 * @throws BadRequestException
+	 *             Throw this exception if the dates are not in yyyy-MM-dd
+	 *             format
 	 */
-	public static String queryConstructionForGetExpenses(String sqlQuery, FetchExpenseEntity fetchExpenseEntity) {
+	public static List<String> queryFragmentsForGetExpenses(FetchExpenseEntity fetchExpenseEntity,
+			Map<String, Object> queryParameterMap) throws BadRequestException {
+		List<String> fragmentKeys = new ArrayList<>();
 		// check if fetchExpenseEntity contains date
 		if (fetchExpenseEntity.getStartDate() != null) {
-			// replace end date and start date in sql query
-			sqlQuery = sqlQuery.replace("@StartDate", fetchExpenseEntity.getStartDate());
-			sqlQuery = sqlQuery.replace("@EndDate", fetchExpenseEntity.getEndDate());
-		} else {
-			// remove date filtering part from sql query
-			sqlQuery = sqlQuery.replace(
-					"Date(expense.creationDate) >='@StartDate' and Date(expense.creationDate) <= '@EndDate' and", "");
+			// add date filtering and put end date and start date in parameters
+			addExpenseDateRange(fragmentKeys, queryParameterMap, fetchExpenseEntity.getStartDate(),
+					fetchExpenseEntity.getEndDate());
 		}
-
 		// check if fetchExpenseEntity contains status of expense
-		if (fetchExpenseEntity.getExpenseStatusType() != null)
-			// replace status type in sql query
-			sqlQuery = sqlQuery.replace("@Status", fetchExpenseEntity.getExpenseStatusType().toString());
-		else
-			sqlQuery = sqlQuery.replace("and expense.status = '@Status'", "");
-		// return modified sql query
-		return sqlQuery;
+		if (fetchExpenseEntity.getExpenseStatusType() != null) {
+			// add status filtering and put status type in parameters
+			fragmentKeys.add("SQL_QUERY_FRAGMENT_FOR_EXPENSE_STATUS");
+			queryParameterMap.put("Status", fetchExpenseEntity.getExpenseStatusType());
+		}
+		// return fragment keys
+		return fragmentKeys;
+	}
 
+	/**
+	 * This method is used to add the filter on the creation date of expenses.
+	 * The dates are turned into a half open range of timestamps, from the
+	 * start of the start date to the start of the day after the end date, so
+	 * the creation date is compared as it is and its index can be used.
+	 * 
+	 * @param fragmentKeys
+	 *            The configuration keys of the query fragments to which the
+	 *            date range fragment is added
+	 * @param queryParameterMap
+	 *            The query parameters in which the range is put
+	 * @param startDate
+	 *            The first day of the range in yyyy-MM-dd format
+	 * @param endDate
+	 *            The last day of the range in yyyy-MM-dd format
+	 * @throws BadRequestException
+	 *             Throw this exception if the dates are not in yyyy-MM-dd
+	 *             format
+	 */
+	public static void addExpenseDateRange(List<String> fragmentKeys, Map<String, Object> queryParameterMap,
+			String startDate, String endDate) throws BadRequestException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+		format.setLenient(false);
+		Calendar endOfRange = Calendar.getInstance();
+		try {
+			queryParameterMap.put("StartDate", format.parse(startDate));
+			endOfRange.setTime(format.parse(endDate));
+		} catch (ParseException ex) {
+			throw new BadRequestException("RDBMSUtility", "Dates should be in yyyy-MM-dd format ~ " + ex.toString(),
+					ex);
+		}
+		endOfRange.add(Calendar.DATE, 1);
+		queryParameterMap.put("EndDateExclusive", endOfRange.getTime());
+		fragmentKeys.add("SQL_QUERY_FRAGMENT_FOR_EXPENSE_DATE_RANGE");
 	}
 
 }
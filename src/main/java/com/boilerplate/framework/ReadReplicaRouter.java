@@ -0,0 +1,186 @@
+package com.boilerplate.framework;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.ReturningWork;
+
+/**
+ * This class decides if a select can be sent to the read replica, the only
+ * select database connection. A select goes to the core database if
+ *
+ * <ul>
+ * <li>no replica is configured</li>
+ * <li>the current request has already written to the core database, so the
+ * request always reads its own writes</li>
+ * <li>the select is not made in a request, background jobs may read what they
+ * have just written and there is no request to track it</li>
+ * <li>the replica is behind the core database by more than the allowed lag or
+ * its lag could not be read</li>
+ * </ul>
+ *
+ * The lag of the replica is read at most once in the check interval, reads
+ * never wait for the check except the one making it.
+ *
+ * @author ruchi
+ *
+ */
+public class ReadReplicaRouter {
+
+	/**
+	 * This is the request attribute set when the request writes to the core
+	 * database
+	 */
+	private static final String HAS_WRITTEN_ATTRIBUTE = "ReadReplicaRouter.HasWritten";
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(ReadReplicaRouter.class);
+
+	/**
+	 * This is the lag in seconds after which the replica is not used
+	 */
+	private static long maximumLagInSeconds = ReadReplicaRouter
+			.getLongProperty("MaximumReplicaLagInSeconds", 5);
+
+	/**
+	 * This is the time in milli seconds after which the lag is checked again
+	 */
+	private static long lagCheckIntervalInMilliSeconds = ReadReplicaRouter
+			.getLongProperty("ReplicaLagCheckIntervalInSeconds", 10) * 1000;
+
+	/**
+	 * This is true if the replica was found in sync in the last check
+	 */
+	private static volatile boolean isReplicaInSync = false;
+
+	/**
+	 * This is the time of the next lag check
+	 */
+	private static volatile long nextLagCheckTime = 0;
+
+	/**
+	 * This method gets the session factory for a select
+	 *
+	 * @return The replica session factory if the select can be sent to it,
+	 *         else the core session factory
+	 */
+	public static SessionFactory getSessionFactoryForRead() {
+		if (!HibernateUtility.isOnlySelectDatabaseConfigured())
+			return HibernateUtility.getSessionFactory();
+		if (ReadReplicaRouter.hasWrittenInRequest())
+			return HibernateUtility.getSessionFactory();
+		if (!ReadReplicaRouter.isReplicaInSync())
+			return HibernateUtility.getSessionFactory();
+		return HibernateUtility.getOnlySelectSessionFactory();
+	}
+
+	/**
+	 * This method records that the current request writes to the core
+	 * database, all its later selects go to the core database
+	 */
+	public static void markWrite() {
+		if (RequestThreadLocal.threadLocal.get() != null) {
+			RequestThreadLocal.setAttribute(HAS_WRITTEN_ATTRIBUTE, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * This method stops the use of the replica till the next lag check, it is
+	 * called when a select on the replica fails
+	 */
+	public static void markReplicaUnavailable() {
+		isReplicaInSync = false;
+		nextLagCheckTime = System.currentTimeMillis() + lagCheckIntervalInMilliSeconds;
+	}
+
+	/**
+	 * This method checks if the current request has written to the core
+	 * database
+	 *
+	 * @return True if it has written or if there is no request
+	 */
+	private static boolean hasWrittenInRequest() {
+		if (RequestThreadLocal.threadLocal.get() == null)
+			return true;
+		return RequestThreadLocal.getAttribute(HAS_WRITTEN_ATTRIBUTE) != null;
+	}
+
+	/**
+	 * This method checks if the replica is in sync, the lag is read again if
+	 * the check interval is over
+	 *
+	 * @return True if the lag of the replica is within the allowed lag
+	 */
+	private static boolean isReplicaInSync() {
+		if (System.currentTimeMillis() < nextLagCheckTime)
+			return isReplicaInSync;
+		synchronized (ReadReplicaRouter.class) {
+			// another thread may have checked while this one waited
+			if (System.currentTimeMillis() < nextLagCheckTime)
+				return isReplicaInSync;
+			Long lag = ReadReplicaRouter.readReplicaLag();
+			isReplicaInSync = lag != null && lag <= maximumLagInSeconds;
+			nextLagCheckTime = System.currentTimeMillis() + lagCheckIntervalInMilliSeconds;
+			if (!isReplicaInSync)
+				logger.logInfo("ReadReplicaRouter", "isReplicaInSync", "replica not in sync",
+						"Selects are sent to the core database, the replica lag is " + lag);
+			return isReplicaInSync;
+		}
+	}
+
+	/**
+	 * This method reads the lag of the replica
+	 *
+	 * @return The lag in seconds, null if the replication is not running or
+	 *         the lag could not be read
+	 */
+	private static Long readReplicaLag() {
+		Session session = null;
+		try {
+			session = HibernateUtility.getOnlySelectSessionFactory().openSession();
+			return session.doReturningWork(new ReturningWork<Long>() {
+				@Override
+				public Long execute(Connection connection) throws SQLException {
+					Statement statement = connection.createStatement();
+					try {
+						ResultSet resultSet = statement.executeQuery("SHOW SLAVE STATUS");
+						if (!resultSet.next())
+							return null;
+						long lag = resultSet.getLong("Seconds_Behind_Master");
+						// the lag is null when replication is stopped
+						return resultSet.wasNull() ? null : lag;
+					} finally {
+						statement.close();
+					}
+				}
+			});
+		} catch (Exception ex) {
+			logger.logException("ReadReplicaRouter", "readReplicaLag", "try-catch block", ex.getMessage(), ex);
+			return null;
+		} finally {
+			if (session != null && session.isOpen()) {
+				session.close();
+			}
+		}
+	}
+
+	/**
+	 * This method reads a number from the properties file
+	 *
+	 * @param propertyName
+	 *            The property name
+	 * @param defaultValue
+	 *            The value used if the property is not set
+	 * @return The value
+	 */
+	private static long getLongProperty(String propertyName, long defaultValue) {
+		String value = HibernateUtility.getConnectionName(propertyName);
+		return value == null ? defaultValue : Long.parseLong(value.trim());
+	}
+}
@@ -0,0 +1,20 @@
+package com.boilerplate.framework;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This annotation marks a service method whose database calls must share one
+ * session and one transaction, see UnitOfWork. The method is committed as a
+ * whole when it returns and rolled back as a whole when it throws.
+ *
+ * @author ruchi
+ *
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RunInUnitOfWork {
+
+}
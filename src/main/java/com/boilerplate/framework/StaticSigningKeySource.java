@@ -0,0 +1,53 @@
+package com.boilerplate.framework;
+
+/**
+ * This class serves a fixed json web key set, it stands in for Google in
+ * tests and local runs so that tokens signed with a local key are verified
+ * without a connection to Google.
+ *
+ * @author ruchi
+ *
+ */
+public class StaticSigningKeySource implements ISigningKeySource {
+
+	/**
+	 * This is the json web key set
+	 */
+	private String keySet;
+
+	/**
+	 * This is the default constructor
+	 */
+	public StaticSigningKeySource() {
+	}
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param keySet
+	 *            The json web key set
+	 */
+	public StaticSigningKeySource(String keySet) {
+		this.keySet = keySet;
+	}
+
+	/**
+	 * This method is used to set the keySet
+	 *
+	 * @param keySet
+	 *            the json web key set to serve
+	 */
+	public void setKeySet(String keySet) {
+		this.keySet = keySet;
+	}
+
+	/**
+	 * @see ISigningKeySource.fetchKeySet
+	 */
+	@Override
+	public String fetchKeySet() throws Exception {
+		if (keySet == null)
+			throw new IllegalStateException("No key set has been given to the static signing key source");
+		return keySet;
+	}
+}
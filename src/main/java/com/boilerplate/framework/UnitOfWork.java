@@ -0,0 +1,187 @@
+package com.boilerplate.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+/**
+ * This class binds one hibernate session and one transaction to the current
+ * thread for the length of a service call. While a unit of work is active the
+ * data access layers use its session instead of opening their own, so all the
+ * reads and writes of the call happen in one transaction. The changes are
+ * written before a query which reads a table they touch, so the queries of the
+ * call see its own changes, and when the outermost unit of work ends.
+ * Everything is rolled back if any part fails. Units of work may be nested, an
+ * inner unit joins the outer one.
+ *
+ * @author ruchi
+ *
+ */
+public class UnitOfWork {
+
+	/**
+	 * This is the unit of work of the current thread
+	 */
+	private static ThreadLocal<UnitOfWork> current = new ThreadLocal<UnitOfWork>();
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(UnitOfWork.class);
+
+	/**
+	 * This is the shared session
+	 */
+	private Session session;
+
+	/**
+	 * This is the shared transaction
+	 */
+	private Transaction transaction;
+
+	/**
+	 * This is the number of units of work joined on this thread
+	 */
+	private int depth;
+
+	/**
+	 * This is true if the transaction must be rolled back at the end
+	 */
+	private boolean rollbackOnly;
+
+	/**
+	 * This is the list of actions to run once the transaction has committed
+	 */
+	private List<Runnable> afterCommitActions;
+
+	/**
+	 * This method begins a unit of work on the current thread, or joins the
+	 * one already active. Every call must be matched by a call to end.
+	 */
+	public static void begin() {
+		UnitOfWork unitOfWork = current.get();
+		if (unitOfWork == null) {
+			unitOfWork = new UnitOfWork();
+			unitOfWork.session = HibernateUtility.getSessionFactory().openSession();
+			// changes are written before the queries which read their tables
+			// and when the transaction commits, native statements flush the
+			// session themselves
+			unitOfWork.session.setFlushMode(FlushMode.AUTO);
+			unitOfWork.transaction = unitOfWork.session.beginTransaction();
+			current.set(unitOfWork);
+		}
+		unitOfWork.depth++;
+	}
+
+	/**
+	 * This method ends the unit of work on the current thread. When the
+	 * outermost unit of work ends the transaction is committed, or rolled back
+	 * if it failed, and the session is closed.
+	 *
+	 * @param failed
+	 *            True if the service call failed
+	 * @throws Exception
+	 *             Throw this exception if the commit fails, the transaction is
+	 *             rolled back in this case
+	 */
+	public static void end(boolean failed) throws Exception {
+		UnitOfWork unitOfWork = current.get();
+		if (unitOfWork == null)
+			return;
+		if (failed)
+			unitOfWork.rollbackOnly = true;
+		if (--unitOfWork.depth > 0)
+			return;
+		current.remove();
+		try {
+			if (unitOfWork.rollbackOnly) {
+				unitOfWork.transaction.rollback();
+			} else {
+				unitOfWork.transaction.commit();
+			}
+		} catch (Exception ex) {
+			logger.logException("UnitOfWork", "end", "try-catch block", ex.getMessage(), ex);
+			if (unitOfWork.transaction.isActive())
+				unitOfWork.transaction.rollback();
+			throw ex;
+		} finally {
+			if (unitOfWork.session.isOpen()) {
+				unitOfWork.session.close();
+			}
+		}
+		if (!unitOfWork.rollbackOnly && unitOfWork.afterCommitActions != null) {
+			for (Runnable action : unitOfWork.afterCommitActions) {
+				UnitOfWork.runQuietly(action);
+			}
+		}
+	}
+
+	/**
+	 * This method runs an action once the unit of work on the current thread
+	 * has committed, it is not run if the unit of work is rolled back. The
+	 * action is run at once if no unit of work is active. It is used to
+	 * update in memory state only with changes which are in the database.
+	 *
+	 * @param action
+	 *            The action, an exception it throws is logged and not thrown
+	 */
+	public static void afterCommit(Runnable action) {
+		UnitOfWork unitOfWork = current.get();
+		if (unitOfWork == null) {
+			UnitOfWork.runQuietly(action);
+			return;
+		}
+		if (unitOfWork.afterCommitActions == null)
+			unitOfWork.afterCommitActions = new ArrayList<>();
+		unitOfWork.afterCommitActions.add(action);
+	}
+
+	/**
+	 * This method runs an action logging any exception
+	 *
+	 * @param action
+	 *            The action
+	 */
+	private static void runQuietly(Runnable action) {
+		try {
+			action.run();
+		} catch (RuntimeException ex) {
+			logger.logException("UnitOfWork", "runQuietly", "try-catch block", ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * This method gets the session of the unit of work on the current thread
+	 *
+	 * @return The session, null if no unit of work is active
+	 */
+	public static Session getSession() {
+		UnitOfWork unitOfWork = current.get();
+		return unitOfWork == null ? null : unitOfWork.session;
+	}
+
+	/**
+	 * This method checks if the given session belongs to the unit of work on
+	 * the current thread
+	 *
+	 * @param session
+	 *            The session
+	 * @return True if the session is owned by the unit of work
+	 */
+	public static boolean isBoundTo(Session session) {
+		return session != null && session == getSession();
+	}
+
+	/**
+	 * This method marks the unit of work on the current thread so that it is
+	 * rolled back when it ends
+	 */
+	public static void setRollbackOnly() {
+		UnitOfWork unitOfWork = current.get();
+		if (unitOfWork != null)
+			unitOfWork.rollbackOnly = true;
+	}
+}
@@ -0,0 +1,561 @@
+package com.boilerplate.framework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.FetchProfile;
+import com.boilerplate.database.interfaces.IRole;
+import com.boilerplate.database.interfaces.IUser;
+import com.boilerplate.database.interfaces.IUserInvalidation;
+import com.boilerplate.exceptions.rest.BadRequestException;
+import com.boilerplate.java.entities.ExternalFacingUser;
+import com.boilerplate.java.entities.RoleEntity;
+import com.boilerplate.java.entities.UserRoleEntity;
+import com.boilerplate.java.entities.UserRoleType;
+
+/**
+ * This class is an in memory directory of the users, their roles and the
+ * users reporting to each approver, so that the checks done on every request
+ * and the lists of approvers and finance users do not query the database.
+ *
+ * The directory is a snapshot which is never changed once published, a change
+ * builds a new snapshot and replaces the old one, so lookups take no lock. The
+ * users of the snapshot are never given out, every lookup returns a copy which
+ * the caller may change.
+ *
+ * The directory is loaded from the database when the application starts. A
+ * user changed by UserService or UserRoleService is read again with the roles
+ * once the change has committed, and the other servers are told to read it
+ * again too. All the users are read again by a background thread once in the
+ * refresh interval, and when the invalidations start to be received as some
+ * may have been missed, lookups use the old snapshot till the new one is
+ * published. A user not in the directory is read from the database and added
+ * to it.
+ *
+ * @author ruchi
+ *
+ */
+public class UserDirectory {
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(UserDirectory.class);
+
+	/**
+	 * This is the milli seconds after which a full refresh which failed is
+	 * tried again
+	 */
+	private static final long REFRESH_RETRY_DELAY_IN_MILLISECONDS = 5000;
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 *
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This is the data access layer of users
+	 */
+	@Autowired
+	IUser mySqlUser;
+
+	/**
+	 * This method is used to set the mySqlUser
+	 *
+	 * @param mySqlUser
+	 *            the mySqlUser to set
+	 */
+	public void setMySqlUser(IUser mySqlUser) {
+		this.mySqlUser = mySqlUser;
+	}
+
+	/**
+	 * This is the data access layer of roles
+	 */
+	@Autowired
+	IRole mySqlRole;
+
+	/**
+	 * This method is used to set the mySqlRole
+	 *
+	 * @param mySqlRole
+	 *            the mySqlRole to set
+	 */
+	public void setMySqlRole(IRole mySqlRole) {
+		this.mySqlRole = mySqlRole;
+	}
+
+	/**
+	 * This tells the other servers of the users changed on this one, without
+	 * it their changes are seen with the next full refresh
+	 */
+	IUserInvalidation userInvalidation;
+
+	/**
+	 * This method is used to set the userInvalidation
+	 *
+	 * @param userInvalidation
+	 *            the userInvalidation to set
+	 */
+	public void setUserInvalidation(IUserInvalidation userInvalidation) {
+		this.userInvalidation = userInvalidation;
+	}
+
+	/**
+	 * This is the current snapshot
+	 */
+	private volatile Snapshot snapshot = new Snapshot(new HashMap<String, ExternalFacingUser>(),
+			new HashMap<String, UserRoleType>());
+
+	/**
+	 * This is the lock held while a new snapshot is built, so that a change
+	 * of one user is not lost by a full refresh read before it
+	 */
+	private final Object publishLock = new Object();
+
+	/**
+	 * This is the thread which reads all the users again
+	 */
+	private ScheduledExecutorService refreshExecutor;
+
+	/**
+	 * This is true while a full refresh is waiting to be run, so that many
+	 * requests for one are run once
+	 */
+	private final AtomicBoolean isRefreshRequested = new AtomicBoolean();
+
+	/**
+	 * This method loads the directory from the database and starts the thread
+	 * which refreshes it. The application starts with an empty directory if
+	 * the database can not be read, the refresh thread tries again.
+	 */
+	public void initialize() {
+		long refreshIntervalInMilliSeconds = Long
+				.parseLong(configurationManager.get("USER_DIRECTORY_REFRESH_INTERVAL_IN_SECONDS")) * 1000;
+		refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "UserDirectoryRefresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (!this.refresh())
+			this.requestRefresh(REFRESH_RETRY_DELAY_IN_MILLISECONDS);
+		refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshIntervalInMilliSeconds,
+				refreshIntervalInMilliSeconds, TimeUnit.MILLISECONDS);
+		if (userInvalidation != null) {
+			userInvalidation.subscribe(new IUserInvalidation.Listener() {
+				@Override
+				public void onInvalidate(String userId) {
+					reloadUser(userId);
+				}
+
+				@Override
+				public void onSubscribe() {
+					// read everything again as the changes made while not
+					// subscribed were missed
+					requestRefresh(0);
+				}
+
+				@Override
+				public void onUnsubscribe() {
+					// the full refresh goes on in the refresh interval
+				}
+			});
+		}
+	}
+
+	/**
+	 * This method stops receiving the invalidations and the refresh thread, it
+	 * is called when the application stops
+	 */
+	public void stop() {
+		if (userInvalidation != null) {
+			userInvalidation.unsubscribe();
+		}
+		if (refreshExecutor != null) {
+			refreshExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * This method gets a user by id with its roles
+	 *
+	 * @param id
+	 *            The id of the user
+	 * @return A copy of the user, null if there is no such user
+	 * @throws BadRequestException
+	 *             Throw this exception if the user is not in the directory and
+	 *             could not be read from the database
+	 */
+	public ExternalFacingUser getUser(String id) throws BadRequestException {
+		if (id == null)
+			return null;
+		ExternalFacingUser user = this.current().usersById.get(id);
+		if (user == null) {
+			// a user created on another server since the last refresh
+			user = mySqlUser.getUser(id, FetchProfile.AUTHZ);
+			if (user == null)
+				return null;
+			this.put(id, user);
+		}
+		return copyOf(user);
+	}
+
+	/**
+	 * This method gets a user by email with its roles
+	 *
+	 * @param email
+	 *            The email of the user, it is not case sensitive
+	 * @return A copy of the user, null if no user in the directory has the
+	 *         email
+	 */
+	public ExternalFacingUser getUserByEmail(String email) {
+		if (email == null)
+			return null;
+		Snapshot current = this.current();
+		String id = current.idsByEmail.get(email.toLowerCase(Locale.ENGLISH));
+		return id == null ? null : copyOf(current.usersById.get(id));
+	}
+
+	/**
+	 * This method gets the role types of a user
+	 *
+	 * @param id
+	 *            The id of the user
+	 * @return The role types, empty if the user has no roles or is not in the
+	 *         directory
+	 */
+	public List<UserRoleType> getRoleTypes(String id) {
+		Snapshot current = this.current();
+		ExternalFacingUser user = id == null ? null : current.usersById.get(id);
+		if (user == null)
+			return new ArrayList<>();
+		return current.roleTypesOf(user);
+	}
+
+	/**
+	 * This method gets the users having a role
+	 *
+	 * @param roleType
+	 *            The role
+	 * @return Copies of the users, empty if no user has the role
+	 */
+	public List<ExternalFacingUser> getUsersByRole(UserRoleType roleType) {
+		Snapshot current = this.current();
+		List<String> ids = current.idsByRole.get(roleType);
+		List<ExternalFacingUser> users = new ArrayList<>();
+		if (ids != null) {
+			for (String id : ids) {
+				users.add(copyOf(current.usersById.get(id)));
+			}
+		}
+		return users;
+	}
+
+	/**
+	 * This method gets the ids of the users whose approver is the given user
+	 *
+	 * @param approverId
+	 *            The id of the approver
+	 * @return The ids, empty if the approver has no users
+	 */
+	public List<String> getReportIds(String approverId) {
+		List<String> ids = approverId == null ? null : this.current().reportIdsByApprover.get(approverId);
+		return ids == null ? Collections.<String> emptyList() : ids;
+	}
+
+	/**
+	 * This method reads a user again from the database and tells the other
+	 * servers to do the same, it is called once a change of the user or its
+	 * roles has committed
+	 *
+	 * @param id
+	 *            The id of the user
+	 */
+	public void refreshUser(String id) {
+		if (id == null)
+			return;
+		this.reloadUser(id);
+		if (userInvalidation != null) {
+			userInvalidation.publish(id);
+		}
+	}
+
+	/**
+	 * This method reads a user again from the database with the role types,
+	 * as the change of the user may come with a role added or renamed
+	 *
+	 * @param id
+	 *            The id of the user
+	 */
+	private void reloadUser(String id) {
+		synchronized (publishLock) {
+			try {
+				ExternalFacingUser user = mySqlUser.getUser(id, FetchProfile.AUTHZ);
+				Map<String, UserRoleType> roleTypesByRoleId = this.readRoleTypes();
+				Map<String, ExternalFacingUser> usersById = new HashMap<>(snapshot.usersById);
+				if (user == null)
+					usersById.remove(id);
+				else
+					usersById.put(id, detach(user));
+				snapshot = new Snapshot(usersById, roleTypesByRoleId);
+			} catch (Exception ex) {
+				logger.logException("UserDirectory", "reloadUser", "try-catch block",
+						"While trying to read the user again, This is the id~ " + id + " ~ " + ex.toString(), ex);
+				// read everything again rather than keep a stale user till
+				// the next refresh
+				this.requestRefresh(0);
+			}
+		}
+	}
+
+	/**
+	 * This method gets the number of users in the directory
+	 *
+	 * @return The number of users
+	 */
+	public int size() {
+		return snapshot.usersById.size();
+	}
+
+	/**
+	 * This method gets the current snapshot, it does not wait for a refresh
+	 *
+	 * @return The snapshot
+	 */
+	private Snapshot current() {
+		return snapshot;
+	}
+
+	/**
+	 * This method asks the refresh thread to read all the users again, unless
+	 * a refresh is already waiting to be run
+	 *
+	 * @param delayInMilliSeconds
+	 *            The milli seconds after which the refresh is run
+	 */
+	private void requestRefresh(long delayInMilliSeconds) {
+		if (refreshExecutor == null || !isRefreshRequested.compareAndSet(false, true))
+			return;
+		try {
+			refreshExecutor.schedule(() -> {
+				isRefreshRequested.set(false);
+				if (!refresh())
+					requestRefresh(REFRESH_RETRY_DELAY_IN_MILLISECONDS);
+			}, delayInMilliSeconds, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException ex) {
+			// the directory is stopped
+			isRefreshRequested.set(false);
+		}
+	}
+
+	/**
+	 * This method reads all the users and roles from the database and
+	 * publishes them as a new snapshot, the old snapshot is used till then
+	 *
+	 * @return True if the users were read
+	 */
+	private boolean refresh() {
+		synchronized (publishLock) {
+			try {
+				Map<String, UserRoleType> roleTypesByRoleId = this.readRoleTypes();
+				Map<String, ExternalFacingUser> usersById = new HashMap<>();
+				for (ExternalFacingUser user : mySqlUser.getAllUsers()) {
+					usersById.put(user.getId(), user);
+				}
+				snapshot = new Snapshot(usersById, roleTypesByRoleId);
+				return true;
+			} catch (Exception ex) {
+				logger.logException("UserDirectory", "refresh", "try-catch block",
+						"While trying to read the users ~ " + ex.toString(), ex);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * This method reads the roles from the database
+	 *
+	 * @return The map of role id and role type
+	 * @throws BadRequestException
+	 *             Throw this exception if the roles could not be read
+	 */
+	private Map<String, UserRoleType> readRoleTypes() throws BadRequestException {
+		Map<String, UserRoleType> roleTypesByRoleId = new HashMap<>();
+		for (RoleEntity role : mySqlRole.getAllRoles()) {
+			roleTypesByRoleId.put(role.getId(), UserRoleType.valueOf(role.getRoleName().toUpperCase()));
+		}
+		return roleTypesByRoleId;
+	}
+
+	/**
+	 * This method adds a user read from the database to the directory
+	 *
+	 * @param id
+	 *            The id of the user
+	 * @param user
+	 *            The user with its roles
+	 */
+	private void put(String id, ExternalFacingUser user) {
+		synchronized (publishLock) {
+			Map<String, ExternalFacingUser> usersById = new HashMap<>(snapshot.usersById);
+			usersById.put(id, detach(user));
+			snapshot = new Snapshot(usersById, snapshot.roleTypesByRoleId);
+		}
+	}
+
+	/**
+	 * This method copies a user read from the database, so that the directory
+	 * holds no hibernate collection
+	 *
+	 * @param user
+	 *            The user with its roles
+	 * @return The copy
+	 */
+	private static ExternalFacingUser detach(ExternalFacingUser user) {
+		List<UserRoleEntity> roles = new ArrayList<>();
+		if (user.getRoles() != null) {
+			for (UserRoleEntity role : user.getRoles()) {
+				roles.add(new UserRoleEntity(role.getRoleId(), role.getUserId()));
+			}
+		}
+		ExternalFacingUser copy = new ExternalFacingUser(user.getUserId(), user.getEmail(), user.getFirstName(),
+				user.getLastName(), Collections.unmodifiableList(roles), user.getIsActive(), user.getApproverId(),
+				user.getAuthenticationProvider());
+		copy.setId(user.getId());
+		return copy;
+	}
+
+	/**
+	 * This method copies a user of the directory to be given out
+	 *
+	 * @param user
+	 *            The user of the directory
+	 * @return The copy
+	 */
+	private static ExternalFacingUser copyOf(ExternalFacingUser user) {
+		List<UserRoleEntity> roles = new ArrayList<>(user.getRoles().size());
+		for (UserRoleEntity role : user.getRoles()) {
+			roles.add(new UserRoleEntity(role.getRoleId(), role.getUserId()));
+		}
+		ExternalFacingUser copy = new ExternalFacingUser(user.getUserId(), user.getEmail(), user.getFirstName(),
+				user.getLastName(), roles, user.getIsActive(), user.getApproverId(), user.getAuthenticationProvider());
+		copy.setId(user.getId());
+		return copy;
+	}
+
+	/**
+	 * This class is a snapshot of the directory, it is not changed once built
+	 *
+	 * @author ruchi
+	 *
+	 */
+	private static final class Snapshot {
+
+		/**
+		 * This is the map of user id and user
+		 */
+		private final Map<String, ExternalFacingUser> usersById;
+
+		/**
+		 * This is the map of role id and role type
+		 */
+		private final Map<String, UserRoleType> roleTypesByRoleId;
+
+		/**
+		 * This is the map of lower case email and user id
+		 */
+		private final Map<String, String> idsByEmail = new HashMap<>();
+
+		/**
+		 * This is the map of role type and the ids of the users having it
+		 */
+		private final Map<UserRoleType, List<String>> idsByRole = new HashMap<>();
+
+		/**
+		 * This is the map of approver id and the ids of its users
+		 */
+		private final Map<String, List<String>> reportIdsByApprover = new HashMap<>();
+
+		/**
+		 * This is the parameterized constructor, it builds the lookups
+		 *
+		 * @param usersById
+		 *            The map of user id and user, it is not changed after
+		 * @param roleTypesByRoleId
+		 *            The map of role id and role type
+		 */
+		private Snapshot(Map<String, ExternalFacingUser> usersById, Map<String, UserRoleType> roleTypesByRoleId) {
+			this.usersById = usersById;
+			this.roleTypesByRoleId = roleTypesByRoleId;
+			for (ExternalFacingUser user : usersById.values()) {
+				if (user.getEmail() != null)
+					idsByEmail.put(user.getEmail().toLowerCase(Locale.ENGLISH), user.getId());
+				for (UserRoleType roleType : this.roleTypesOf(user)) {
+					addTo(idsByRole, roleType, user.getId());
+				}
+				if (user.getApproverId() != null)
+					addTo(reportIdsByApprover, user.getApproverId(), user.getId());
+			}
+			for (List<String> ids : idsByRole.values()) {
+				Collections.sort(ids);
+			}
+			for (Map.Entry<String, List<String>> entry : reportIdsByApprover.entrySet()) {
+				Collections.sort(entry.getValue());
+				entry.setValue(Collections.unmodifiableList(entry.getValue()));
+			}
+		}
+
+		/**
+		 * This method gets the role types of a user of the snapshot
+		 *
+		 * @param user
+		 *            The user
+		 * @return The role types
+		 */
+		private List<UserRoleType> roleTypesOf(ExternalFacingUser user) {
+			List<UserRoleType> roleTypes = new ArrayList<>();
+			for (UserRoleEntity role : user.getRoles()) {
+				UserRoleType roleType = roleTypesByRoleId.get(role.getRoleId());
+				if (roleType != null && !roleTypes.contains(roleType))
+					roleTypes.add(roleType);
+			}
+			return roleTypes;
+		}
+
+		/**
+		 * This method adds a value to the list of a key
+		 */
+		private static <K> void addTo(Map<K, List<String>> map, K key, String value) {
+			List<String> values = map.get(key);
+			if (values == null) {
+				values = new ArrayList<>();
+				map.put(key, values);
+			}
+			values.add(value);
+		}
+	}
+
+}
@@ -41,6 +41,11 @@ public class Constants {
 	 */
 	public static final String X_User_Id = "X-User-Id";
 
+	/**
+	 * The header in which the token of the next page of a list is returned
+	 */
+	public static final String X_Next_Page_Token = "X-Next-Page-Token";
+
 	/**
 	 * The queue subject to save session to the database
 	 */
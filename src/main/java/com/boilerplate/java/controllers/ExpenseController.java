@@ -4,6 +4,7 @@ import java.text.ParseException;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -11,15 +12,23 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.IExpense;
 import com.boilerplate.exceptions.rest.BadRequestException;
+import com.boilerplate.exceptions.rest.ConflictException;
 import com.boilerplate.exceptions.rest.NotFoundException;
 import com.boilerplate.exceptions.rest.UnauthorizedException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
+import com.boilerplate.framework.CsvStreamWriter;
+import com.boilerplate.framework.JsonArrayStreamWriter;
+import com.boilerplate.framework.JsonRowStreamWriter;
+import com.boilerplate.java.Constants;
 import com.boilerplate.java.entities.ExpenseEntity;
 import com.boilerplate.java.entities.ExpenseListViewEntity;
 import com.boilerplate.java.entities.ExpenseReportEntity;
 import com.boilerplate.java.entities.ExpenseReviewEntity;
 import com.boilerplate.java.entities.FetchExpenseEntity;
+import com.boilerplate.java.entities.GenericPageEncapsulationEntity;
 import com.boilerplate.service.interfaces.IExpenseService;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
@@ -43,6 +52,19 @@ public class ExpenseController extends BaseController {
 	@Autowired
 	IExpenseService expenseService;
 
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This is the json converter of the application, its object mapper is used
+	 * to write the streamed responses
+	 */
+	@Autowired
+	MappingJackson2HttpMessageConverter jacksonConverter;
+
 	/**
 	 * This API is used to create a new expense in the system
 	 * 
@@ -125,6 +147,70 @@ public class ExpenseController extends BaseController {
 		return expenseService.getExpenseById(id);
 	}
 
+	/**
+	 * This API is used to fetch an expense as it was at a given date
+	 * 
+	 * @param id
+	 *            This is the id of the expense
+	 * @param asOf
+	 *            This is the date in yyyy-MM-dd HH:mm:ss format
+	 * @return Expense entity as it was at the date
+	 * @throws UnauthorizedException
+	 *             Throw this exception if user is not authorized to view this
+	 *             expense
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends a bad request
+	 * @throws ValidationFailedException
+	 *             Throw this exception if any validation fails
+	 * @throws NotFoundException
+	 *             Throw this exception if expense not found at the date
+	 */
+	@ApiOperation(value = "Fetches an expense as it was at a given date", notes = "The changes made after the date are undone using the history of the expense, attachments are those of the current expense")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"), @ApiResponse(code = 404, message = "Not Found"),
+			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
+			@ApiResponse(code = 404, message = "If entity does not exist at the date") })
+	@RequestMapping(value = "/expenseAsOf", method = RequestMethod.GET)
+	public @ResponseBody ExpenseEntity getExpenseAsOf(@RequestParam String id, @RequestParam String asOf)
+			throws ValidationFailedException, NotFoundException, BadRequestException, UnauthorizedException {
+		// call the business layer
+		return expenseService.getExpenseAsOf(id, asOf);
+	}
+
+	/**
+	 * This API is used to search the expenses the current user may view
+	 * 
+	 * @param keywords
+	 *            This is the words all of which must be in the title or
+	 *            description
+	 * @param minimumAmount
+	 *            This is the minimum amount
+	 * @param maximumAmount
+	 *            This is the maximum amount
+	 * @param status
+	 *            This is the status
+	 * @param pageSize
+	 *            This is the maximum number of expenses returned
+	 * @return List of expenses found
+	 * @throws NotFoundException
+	 *             Throw this exception if no expense is found
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends a bad request
+	 * @throws ValidationFailedException
+	 *             Throw this exception if any validation fails
+	 */
+	@ApiOperation(value = "Searches expenses by the words of their title and description, amount range and status", notes = "Employees find their own expenses, approvers also those of their users and super approvers and finance all expenses. The expenses changed latest are first.")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"),
+			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
+			@ApiResponse(code = 404, message = "If no expense is found") })
+	@RequestMapping(value = "/searchExpenses", method = RequestMethod.GET)
+	public @ResponseBody List<ExpenseListViewEntity> searchExpenses(@RequestParam(required = false) String keywords,
+			@RequestParam(required = false) Float minimumAmount, @RequestParam(required = false) Float maximumAmount,
+			@RequestParam(required = false) String status, @RequestParam(required = false) Integer pageSize)
+			throws ValidationFailedException, NotFoundException, BadRequestException {
+		// call the business layer
+		return expenseService.searchExpenses(keywords, minimumAmount, maximumAmount, status, pageSize);
+	}
+
 	/**
 	 * This API is used to get expenses for a given user
 	 * 
@@ -149,7 +235,7 @@ public class ExpenseController extends BaseController {
 	public @ResponseBody List<ExpenseEntity> getExpensesForEmployee(@RequestBody FetchExpenseEntity fetchExpenseEntity)
 			throws ValidationFailedException, NotFoundException, BadRequestException, ParseException {
 		// call the business layer
-		return expenseService.getExpensesForUser(fetchExpenseEntity);
+		return this.toPageResponse(expenseService.getExpensesForUser(fetchExpenseEntity));
 	}
 
 	/**
@@ -159,6 +245,11 @@ public class ExpenseController extends BaseController {
 	 *            This is the id of the approver
 	 * @param role
 	 *            This is the role of the approver
+	 * @param pageToken
+	 *            This is the token of the page to be fetched, first page is
+	 *            fetched if not given
+	 * @param pageSize
+	 *            This is the number of expenses in the page
 	 * @return List of expenses
 	 * @throws NotFoundException
 	 *             Throw this exception if entity not found
@@ -172,15 +263,21 @@ public class ExpenseController extends BaseController {
 			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
 			@ApiResponse(code = 404, message = "If entity does not exist") })
 	@RequestMapping(value = "/getExpensesForApprover", method = RequestMethod.GET)
-	public @ResponseBody List<ExpenseEntity> getExpensesForApprover()
+	public @ResponseBody List<ExpenseEntity> getExpensesForApprover(
+			@RequestParam(required = false) String pageToken, @RequestParam(required = false) Integer pageSize)
 			throws NotFoundException, ValidationFailedException, BadRequestException {
 		// call the business layer
-		return expenseService.getExpensesForApproval();
+		return this.toPageResponse(expenseService.getExpensesForApproval(pageToken, pageSize));
 	}
 
 	/**
 	 * This API is used to get list of expenses for approver/super approver
 	 * 
+	 * @param pageToken
+	 *            This is the token of the page to be fetched, first page is
+	 *            fetched if not given
+	 * @param pageSize
+	 *            This is the number of expenses in the page
 	 * @return List of expenses
 	 * @throws NotFoundException
 	 *             Throw this exception if no expenses are found
@@ -194,10 +291,11 @@ public class ExpenseController extends BaseController {
 			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
 			@ApiResponse(code = 404, message = "If entity does not exist") })
 	@RequestMapping(value = "/getExpenseListForApprover", method = RequestMethod.GET)
-	public @ResponseBody List<ExpenseListViewEntity> getExpenseListForApproval()
+	public @ResponseBody List<ExpenseListViewEntity> getExpenseListForApproval(
+			@RequestParam(required = false) String pageToken, @RequestParam(required = false) Integer pageSize)
 			throws NotFoundException, ValidationFailedException, BadRequestException {
 		// call the business layer
-		return expenseService.getExpenseListForApprovers();
+		return this.toPageResponse(expenseService.getExpenseListForApprovers(pageToken, pageSize));
 	}
 
 	/**
@@ -230,6 +328,13 @@ public class ExpenseController extends BaseController {
 	/**
 	 * This api is used to get list for expenses for finance
 	 * 
+	 * @param status
+	 *            This is the status of the expenses
+	 * @param pageToken
+	 *            This is the token of the page to be fetched, first page is
+	 *            fetched if not given
+	 * @param pageSize
+	 *            This is the number of expenses in the page
 	 * @return List of reports
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
@@ -242,10 +347,11 @@ public class ExpenseController extends BaseController {
 			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
 			@ApiResponse(code = 404, message = "If entity does not exist") })
 	@RequestMapping(value = "/getExpensesForFinance", method = RequestMethod.GET)
-	public @ResponseBody List<ExpenseEntity> getExpensesForFinance(@RequestParam String status)
+	public @ResponseBody List<ExpenseEntity> getExpensesForFinance(@RequestParam String status,
+			@RequestParam(required = false) String pageToken, @RequestParam(required = false) Integer pageSize)
 			throws BadRequestException, NotFoundException, ValidationFailedException {
 		// call the business layer
-		return expenseService.getExpensesForFinance(status);
+		return this.toPageResponse(expenseService.getExpensesForFinance(status, pageToken, pageSize));
 	}
 
 	/**
@@ -284,14 +390,17 @@ public class ExpenseController extends BaseController {
 	 *             Throw this exception if user sends a bad request
 	 * @throws NotFoundException
 	 *             Throw this exception if expense not found
+	 * @throws ConflictException
+	 *             Throw this exception if expense was reviewed by someone else
 	 */
 	@ApiOperation(value = "Approve/Reject a single expense by finance", notes = "Individual expense can be approved or rejcted by finance")
 	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"), @ApiResponse(code = 404, message = "Not Found"),
 			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
-			@ApiResponse(code = 404, message = "If entity does not exist") })
+			@ApiResponse(code = 404, message = "If entity does not exist"),
+			@ApiResponse(code = 409, message = "If expense was reviewed by someone else") })
 	@RequestMapping(value = "/expenseReviewByFinance", method = RequestMethod.POST)
 	public @ResponseBody void expenseReviewByFinance(@RequestBody ExpenseReviewEntity expenseReviewEntity)
-			throws ValidationFailedException, BadRequestException, NotFoundException {
+			throws ValidationFailedException, BadRequestException, NotFoundException, ConflictException {
 		// call the business layer
 		expenseService.expenseReviewByFinance(expenseReviewEntity);
 	}
@@ -300,23 +409,96 @@ public class ExpenseController extends BaseController {
 	 * This aPI is used to get expense reports in finance approved state/ready
 	 * for payment state
 	 * 
-	 * @return List of expense reports
+	 * @param status
+	 *            This is the status of the expenses
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
 	 * @throws NotFoundException
 	 *             Throw this exception if expenses not found
 	 * @throws ValidationFailedException
 	 *             Throw this exception if any validation fails
+	 * @throws Exception
+	 *             Throw this exception if reports could not be written
 	 */
 	@ApiOperation(value = "Gets expense reports for finance", notes = "The creation date and updated date are automatically filled.")
 	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"), @ApiResponse(code = 404, message = "Not Found"),
 			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
 			@ApiResponse(code = 404, message = "If entity does not exist") })
 	@RequestMapping(value = "/getExpenseReportsForFinance", method = RequestMethod.GET)
-	public @ResponseBody List<ExpenseReportEntity> getReportsForFinance(@RequestParam String status)
-			throws BadRequestException, NotFoundException, ValidationFailedException {
+	public @ResponseBody void getReportsForFinance(@RequestParam String status)
+			throws BadRequestException, NotFoundException, ValidationFailedException, Exception {
+		// write the reports to the response as they are built
+		JsonArrayStreamWriter<ExpenseReportEntity> reportWriter = new JsonArrayStreamWriter<ExpenseReportEntity>(
+				super.getHttpServletResponse(), jacksonConverter.getObjectMapper());
 		// call the business layer
-		return expenseService.getExpenseReportsForFinance(status);
+		expenseService.getExpenseReportsForFinance(status, reportWriter);
+		reportWriter.close();
+	}
+
+	/**
+	 * This api is used to export the expenses in a status for finance as a csv
+	 * file or a json array. The expenses are written to the response while
+	 * they are being read from the database.
+	 * 
+	 * @param status
+	 *            This is the status of the expenses
+	 * @param startDate
+	 *            This is the date from which expenses are exported in
+	 *            yyyy-MM-dd format
+	 * @param endDate
+	 *            This is the date till which expenses are exported in
+	 *            yyyy-MM-dd format
+	 * @param format
+	 *            This is the format of the export, csv or json
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends a bad request
+	 * @throws NotFoundException
+	 *             Throw this exception if expenses not found
+	 * @throws ValidationFailedException
+	 *             Throw this exception if any validation fails
+	 * @throws Exception
+	 *             Throw this exception if expenses could not be written
+	 */
+	@ApiOperation(value = "Exports expenses for finance as csv or json", notes = "The dates are optional, either none or both should be given.")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"),
+			@ApiResponse(code = 400, message = "Bad request, If user sends invalid data"),
+			@ApiResponse(code = 404, message = "If no expense is found") })
+	@RequestMapping(value = "/exportExpensesForFinance", method = RequestMethod.GET)
+	public @ResponseBody void exportExpensesForFinance(@RequestParam String status,
+			@RequestParam(required = false) String startDate, @RequestParam(required = false) String endDate,
+			@RequestParam(required = false, defaultValue = "json") String format)
+			throws BadRequestException, NotFoundException, ValidationFailedException, Exception {
+		int flushInterval = Integer.parseInt(configurationManager.get("EXPENSE_EXPORT_FLUSH_INTERVAL"));
+		// write the expenses to the response as they are read
+		if ("csv".equalsIgnoreCase(format)) {
+			CsvStreamWriter csvWriter = new CsvStreamWriter(super.getHttpServletResponse(), "expenses.csv",
+					IExpense.EXPORT_COLUMNS, flushInterval);
+			// call the business layer
+			expenseService.exportExpensesForFinance(status, startDate, endDate, csvWriter);
+			csvWriter.close();
+		} else if ("json".equalsIgnoreCase(format)) {
+			JsonRowStreamWriter jsonWriter = new JsonRowStreamWriter(super.getHttpServletResponse(),
+					IExpense.EXPORT_COLUMNS, flushInterval, jacksonConverter.getObjectMapper());
+			// call the business layer
+			expenseService.exportExpensesForFinance(status, startDate, endDate, jsonWriter);
+			jsonWriter.close();
+		} else {
+			throw new ValidationFailedException("ExpenseController", "Format should be csv or json", null);
+		}
+	}
+
+	/**
+	 * This method puts the next page token of a page in the response header
+	 * and returns the list of the page as the response body
+	 * 
+	 * @param page
+	 *            This is the page returned by the business layer
+	 * @return The list of entities in the page
+	 */
+	private <T> List<T> toPageResponse(GenericPageEncapsulationEntity<T> page) {
+		if (page.getNextPageToken() != null)
+			super.addHeader(Constants.X_Next_Page_Token, page.getNextPageToken());
+		return page.getEntityList();
 	}
 
 }
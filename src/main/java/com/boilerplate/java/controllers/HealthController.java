@@ -10,9 +10,12 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.boilerplate.database.interfaces.IQueryPlan;
+import com.boilerplate.framework.HibernateUtility;
 import com.boilerplate.java.collections.BoilerplateMap;
 import com.boilerplate.java.entities.ClientSideDiagnostic;
 import com.boilerplate.java.entities.Ping;
+import com.boilerplate.sessions.SessionManager;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiResponse;
@@ -35,6 +38,18 @@ public class HealthController extends BaseController {
 	@Autowired
 	com.boilerplate.service.interfaces.IPingService iPingService;
 
+	/**
+	 * This is the instance of query plan
+	 */
+	@Autowired
+	IQueryPlan queryPlan;
+
+	/**
+	 * This is the instance of session manager
+	 */
+	@Autowired
+	SessionManager sessionManager;
+
 	/**
 	 * This method is used to ping a server. This method checks all the major
 	 * components like cache, queue, db etc and sends back a status for the
@@ -91,6 +106,81 @@ public class HealthController extends BaseController {
 		return this.configurationManager.getConfigurations();
 	}
 
+	/**
+	 * This method gets the hit and miss statistics of the database second
+	 * level cache
+	 * 
+	 * @return The map of cache region and its statistics
+	 */
+	@ApiOperation(value = "Gets the hit and miss counts of each region of the database second level cache"
+			+ " and of the query cache")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok") })
+	@RequestMapping(value = "/health/cacheStatistics", method = RequestMethod.GET)
+	public @ResponseBody BoilerplateMap<String, BoilerplateMap<String, Long>> getCacheStatistics() {
+		return HibernateUtility.getCacheStatistics();
+	}
+
+	/**
+	 * This method gets the statistics of the database connection pools
+	 * 
+	 * @return The map of hibernate configuration and the statistics of its pool
+	 */
+	@ApiOperation(value = "Gets the connections in use, idle and waited for, the checkout time histogram"
+			+ " and the age of the oldest connection of each database connection pool")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok") })
+	@RequestMapping(value = "/health/connectionPoolStatistics", method = RequestMethod.GET)
+	public @ResponseBody BoilerplateMap<String, BoilerplateMap<String, Long>> getConnectionPoolStatistics() {
+		return HibernateUtility.getConnectionPoolStatistics();
+	}
+
+	/**
+	 * This method gets the counters of the buffer of sessions waiting to be
+	 * saved
+	 * 
+	 * @return The map of counter name and value
+	 */
+	@ApiOperation(value = "Gets the sessions offered to, written by and waiting in the session write behind buffer")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok") })
+	@RequestMapping(value = "/health/sessionWriteStatistics", method = RequestMethod.GET)
+	public @ResponseBody BoilerplateMap<String, Long> getSessionWriteStatistics() {
+		return sessionManager.getWriteStatistics();
+	}
+
+	/**
+	 * This method gets the counters of the sessions kept in memory by this
+	 * server
+	 * 
+	 * @return The map of counter name and value
+	 */
+	@ApiOperation(value = "Gets the hits, misses and invalidations of the sessions kept in memory by this server")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok") })
+	@RequestMapping(value = "/health/sessionNearCacheStatistics", method = RequestMethod.GET)
+	public @ResponseBody BoilerplateMap<String, Long> getSessionNearCacheStatistics() {
+		return sessionManager.getNearCacheStatistics();
+	}
+
+	/**
+	 * This method explains every configured select query on the primary
+	 * database. The response status is 500 if the plan of any query reads a
+	 * whole table, so it can be used as a check before a release.
+	 * 
+	 * @return The map of query key and its plan
+	 */
+	@ApiOperation(value = "Explains every configured query and reports the queries which read a whole table")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Ok"),
+			@ApiResponse(code = 500, message = "If the plan of a query reads a whole table") })
+	@RequestMapping(value = "/health/queryPlans", method = RequestMethod.GET)
+	public @ResponseBody BoilerplateMap<String, String> getQueryPlans() {
+		BoilerplateMap<String, String> queryPlans = this.queryPlan.explainConfiguredQueries();
+		for (String plan : queryPlans.values()) {
+			if (plan.startsWith(IQueryPlan.FULL_SCAN)) {
+				super.getHttpServletResponse().setStatus(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+				break;
+			}
+		}
+		return queryPlans;
+	}
+
 	/**
 	 * This method accepts any client side diagnostic message
 	 * 
@@ -7,13 +7,53 @@ import com.wordnik.swagger.annotations.ApiModelProperty;
 
 /**
  * this class extends the expense entity and defines some extra parameters which
- * are required for saving expense history
+ * are required for saving expense history. A history is the change made to an
+ * expense at its creation date, it has the values the changed fields had
+ * before the change and the other fields are null. Undoing the histories of an
+ * expense from the latest gives the expense as it was at any earlier time.
+ * Histories saved before this format have every field set.
  * 
  * @author ruchi
  *
  */
 public class ExpenseHistoryEntity extends BaseEntity {
 
+	/**
+	 * This is the flag of the title in changed fields
+	 */
+	public static final int TITLE = 1;
+
+	/**
+	 * This is the flag of the description in changed fields
+	 */
+	public static final int DESCRIPTION = 2;
+
+	/**
+	 * This is the flag of the status in changed fields
+	 */
+	public static final int STATUS = 4;
+
+	/**
+	 * This is the flag of the approver comments in changed fields
+	 */
+	public static final int APPROVER_COMMENTS = 8;
+
+	/**
+	 * This is the flag of the amount in changed fields
+	 */
+	public static final int AMOUNT = 16;
+
+	/**
+	 * This is the flag of the updation date in changed fields
+	 */
+	public static final int UPDATION_DATE = 32;
+
+	/**
+	 * These are the flags of all the fields, histories saved as a full copy of
+	 * the expense have all of them
+	 */
+	public static final int ALL_FIELDS = TITLE | DESCRIPTION | STATUS | APPROVER_COMMENTS | AMOUNT | UPDATION_DATE;
+
 	/**
 	 * This is the default constructor
 	 */
@@ -100,14 +140,109 @@ public class ExpenseHistoryEntity extends BaseEntity {
 	 * This is the amount of the expense
 	 */
 	@ApiModelProperty(value = "This is the amount of the expense", required = true, notes = "This is the amount of the expense")
-	private float amount;
+	private Float amount;
+
+	/**
+	 * These are the flags of the fields changed, the fields which are not
+	 * flagged are null
+	 */
+	@ApiModelProperty(value = "This is the flags of the changed fields", required = true, notes = "This is the flags of the changed fields")
+	private int changedFields = ALL_FIELDS;
+
+	/**
+	 * This method creates the history of a change to an expense, having the
+	 * values before the change of only the fields which change
+	 * 
+	 * @param previousExpense
+	 *            The expense before the change
+	 * @param title
+	 *            The title after the change
+	 * @param description
+	 *            The description after the change
+	 * @param status
+	 *            The status after the change
+	 * @param approverComments
+	 *            The approver comments after the change
+	 * @param amount
+	 *            The amount after the change
+	 * @param changeDate
+	 *            The date of the change
+	 * @return The history
+	 */
+	public static ExpenseHistoryEntity createDelta(ExpenseEntity previousExpense, String title, String description,
+			ExpenseStatusType status, String approverComments, float amount, Date changeDate) {
+		ExpenseHistoryEntity history = new ExpenseHistoryEntity();
+		history.setPreviousId(previousExpense.getId());
+		history.setCreationDate(changeDate);
+		// the updation date changes with every change
+		history.changedFields = UPDATION_DATE;
+		history.setPreviousUpdationDate(previousExpense.getUpdationDate());
+		if (!equals(previousExpense.getTitle(), title)) {
+			history.changedFields |= TITLE;
+			history.setTitle(previousExpense.getTitle());
+		}
+		if (!equals(previousExpense.getDescription(), description)) {
+			history.changedFields |= DESCRIPTION;
+			history.setDescription(previousExpense.getDescription());
+		}
+		if (previousExpense.getStatus() != status) {
+			history.changedFields |= STATUS;
+			history.setStatus(previousExpense.getStatus());
+		}
+		if (!equals(previousExpense.getApproverComments(), approverComments)) {
+			history.changedFields |= APPROVER_COMMENTS;
+			history.setApproverComments(previousExpense.getApproverComments());
+		}
+		if (previousExpense.getAmount() != amount) {
+			history.changedFields |= AMOUNT;
+			history.setAmount(previousExpense.getAmount());
+		}
+		return history;
+	}
+
+	/**
+	 * This method undoes this change on an expense, the changed fields are set
+	 * to the values they had before the change
+	 * 
+	 * @param expenseEntity
+	 *            The expense as it was after this change
+	 * @throws ValidationFailedException
+	 *             Throw this exception if the status could not be set
+	 */
+	public void undo(ExpenseEntity expenseEntity) throws ValidationFailedException {
+		if ((changedFields & TITLE) != 0)
+			expenseEntity.setTitle(title);
+		if ((changedFields & DESCRIPTION) != 0)
+			expenseEntity.setDescription(description);
+		if ((changedFields & STATUS) != 0 && status != null)
+			expenseEntity.setStatus(status);
+		if ((changedFields & APPROVER_COMMENTS) != 0)
+			expenseEntity.setApproverComments(approverComments);
+		if ((changedFields & AMOUNT) != 0 && amount != null)
+			expenseEntity.setAmount(amount);
+		if ((changedFields & UPDATION_DATE) != 0)
+			expenseEntity.setUpdationDate(previousUpdationDate);
+	}
+
+	/**
+	 * This method compares two strings which may be null
+	 * 
+	 * @param first
+	 *            The first string
+	 * @param second
+	 *            The second string
+	 * @return True if both are null or equal
+	 */
+	private static boolean equals(String first, String second) {
+		return first == null ? second == null : first.equals(second);
+	}
 
 	/**
 	 * This method is used to get amount
 	 * 
 	 * @return
 	 */
-	public float getAmount() {
+	public Float getAmount() {
 		return amount;
 	}
 
@@ -116,10 +251,28 @@ public class ExpenseHistoryEntity extends BaseEntity {
 	 * 
 	 * @param amount
 	 */
-	public void setAmount(float amount) {
+	public void setAmount(Float amount) {
 		this.amount = amount;
 	}
 
+	/**
+	 * This method is used to get the flags of the changed fields
+	 * 
+	 * @return
+	 */
+	public int getChangedFields() {
+		return changedFields;
+	}
+
+	/**
+	 * This method is used to set the flags of the changed fields
+	 * 
+	 * @param changedFields
+	 */
+	public void setChangedFields(int changedFields) {
+		this.changedFields = changedFields;
+	}
+
 	/**
 	 * This method is used to get title of the expense
 	 * 
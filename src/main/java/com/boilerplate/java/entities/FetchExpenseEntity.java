@@ -31,6 +31,18 @@ public class FetchExpenseEntity extends BaseEntity {
 	@ApiModelProperty(value = "This is the string equivalent of the expense status type", required = true, notes = "This is the string equivalent of the expense status type")
 	private String statusString;
 
+	/**
+	 * This is the number of expenses to be fetched in a page
+	 */
+	@ApiModelProperty(value = "This is the number of expenses to be fetched in a page", required = false, notes = "Server default is used if not given")
+	private Integer pageSize;
+
+	/**
+	 * This is the token of the page to be fetched
+	 */
+	@ApiModelProperty(value = "This is the token of the page to be fetched", required = false, notes = "This is the next page token returned with the previous page, first page is fetched if not given")
+	private String pageToken;
+
 	/**
 	 * This method is used get start date
 	 * 
@@ -105,6 +117,42 @@ public class FetchExpenseEntity extends BaseEntity {
 
 	}
 
+	/**
+	 * This method is used to get page size
+	 * 
+	 * @return
+	 */
+	public Integer getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * This method is used to set page size
+	 * 
+	 * @param pageSize
+	 */
+	public void setPageSize(Integer pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * This method is used to get page token
+	 * 
+	 * @return
+	 */
+	public String getPageToken() {
+		return pageToken;
+	}
+
+	/**
+	 * This method is used to set page token
+	 * 
+	 * @param pageToken
+	 */
+	public void setPageToken(String pageToken) {
+		this.pageToken = pageToken;
+	}
+
 	/**
 	 * @see BaseEntity.transformToInternal
 	 */
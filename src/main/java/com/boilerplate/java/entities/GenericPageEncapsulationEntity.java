@@ -0,0 +1,82 @@
+package com.boilerplate.java.entities;
+
+import java.io.Serializable;
+import java.util.List;
+
+import com.wordnik.swagger.annotations.ApiModel;
+import com.wordnik.swagger.annotations.ApiModelProperty;
+
+@ApiModel(value = "A generic page of items which encapsulates entities within to adhear to REST sepcifications", description = "This is used when a page of a list of items is request or response to any api")
+public class GenericPageEncapsulationEntity<T> implements Serializable {
+
+	/**
+	 * This is the default constructor
+	 */
+	public GenericPageEncapsulationEntity() {
+		super();
+	}
+
+	/**
+	 * This is the parameterized constructor
+	 * 
+	 * @param entityList
+	 *            The list of objects in this page
+	 * @param nextPageToken
+	 *            The token of the next page, null if this is the last page
+	 */
+	public GenericPageEncapsulationEntity(List<T> entityList, String nextPageToken) {
+		super();
+		this.entityList = entityList;
+		this.nextPageToken = nextPageToken;
+	}
+
+	/**
+	 * This is a list of objects in this page
+	 */
+	@ApiModelProperty(value = "The list of objects")
+	private List<T> entityList;
+
+	/**
+	 * This is the opaque token used to fetch the next page
+	 */
+	@ApiModelProperty(value = "The token to be sent to get the next page, null if this is the last page")
+	private String nextPageToken;
+
+	/**
+	 * Gets the entity list
+	 * 
+	 * @return a list of entities
+	 */
+	public List<T> getEntityList() {
+		return entityList;
+	}
+
+	/**
+	 * Sets the entity list
+	 * 
+	 * @param entityList
+	 *            The entity list
+	 */
+	public void setEntityList(List<T> entityList) {
+		this.entityList = entityList;
+	}
+
+	/**
+	 * Gets the next page token
+	 * 
+	 * @return the next page token
+	 */
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+
+	/**
+	 * Sets the next page token
+	 * 
+	 * @param nextPageToken
+	 *            The next page token
+	 */
+	public void setNextPageToken(String nextPageToken) {
+		this.nextPageToken = nextPageToken;
+	}
+}
@@ -0,0 +1,95 @@
+package com.boilerplate.jobs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.IExpense;
+import com.boilerplate.database.interfaces.IJobLock;
+import com.boilerplate.framework.Logger;
+
+/**
+ * This job rebuilds the expense aggregates from the expenses. The aggregates
+ * are changed with every status change of an expense, this job corrects any
+ * drift such as changes made to the expenses directly in the database. The job
+ * is enabled or disabled from the spring configuration file. Every server
+ * schedules the job, the one which takes the job lock runs it and the others
+ * skip the run.
+ * 
+ * @author ruchi
+ *
+ */
+public class ExpenseAggregateReconciliationJob {
+
+	/**
+	 * This is an instance of the logger
+	 */
+	private static Logger logger = Logger.getInstance(ExpenseAggregateReconciliationJob.class);
+
+	/**
+	 * This is the instance of IExpense
+	 */
+	@Autowired
+	IExpense mySqlExpense;
+
+	/**
+	 * This method is used to set the mySqlExpense
+	 * 
+	 * @param mySqlExpense
+	 *            the mySqlExpense to set
+	 */
+	public void setMySqlExpense(IExpense mySqlExpense) {
+		this.mySqlExpense = mySqlExpense;
+	}
+
+	/**
+	 * This is the instance of the job lock
+	 */
+	@Autowired
+	IJobLock jobLock;
+
+	/**
+	 * This method is used to set the jobLock
+	 * 
+	 * @param jobLock
+	 *            the jobLock to set
+	 */
+	public void setJobLock(IJobLock jobLock) {
+		this.jobLock = jobLock;
+	}
+
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 * 
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This method corrects the expense aggregates unless another server has
+	 * done it within the lock time, a failure is logged and the aggregates
+	 * are corrected with the next run
+	 */
+	public void reconcile() {
+		try {
+			if (!jobLock.tryLock("ExpenseAggregateReconciliation", Integer
+					.parseInt(configurationManager.get("EXPENSE_AGGREGATE_RECONCILIATION_LOCK_IN_SECONDS")))) {
+				return;
+			}
+			int aggregateCount = mySqlExpense.rebuildExpenseAggregates();
+			logger.logInfo("ExpenseAggregateReconciliationJob", "reconcile", "Rebuilt",
+					"Expense aggregates corrected, aggregate rows corrected : " + aggregateCount);
+		} catch (Exception ex) {
+			logger.logException("ExpenseAggregateReconciliationJob", "reconcile", "try-catch block",
+					"Exception occurred while rebuilding expense aggregates", ex);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.boilerplate.service.implemetations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.boilerplate.database.interfaces.IExpense;
+import com.boilerplate.database.interfaces.IRowHandler;
+import com.boilerplate.java.entities.ExpenseEntity;
+import com.boilerplate.java.entities.ExpenseReportEntity;
+import com.boilerplate.java.entities.ExpenseStatusType;
+
+/**
+ * This class builds expense reports in a single pass over expense rows ordered
+ * by user. The total of the current user is kept as a running sum and the
+ * report is closed when the user changes. Closed reports are held until they
+ * have a batch of expenses, then the attachments of the batch are set with one
+ * query and the reports are handed to the report handler. At most one batch of
+ * reports is held in memory no matter how many expenses there are.
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseReportBuilder implements IRowHandler<Object[]> {
+
+	/**
+	 * This is the instance of IExpense used to set attachments
+	 */
+	private IExpense mySqlExpense;
+
+	/**
+	 * This is the status of the reports
+	 */
+	private ExpenseStatusType status;
+
+	/**
+	 * This is the number of expenses after which reports are handed over
+	 */
+	private int batchSize;
+
+	/**
+	 * This is the handler to which built reports are handed
+	 */
+	private IRowHandler<ExpenseReportEntity> reportHandler;
+
+	/**
+	 * This is the report of the current user
+	 */
+	private ExpenseReportEntity currentReport;
+
+	/**
+	 * This is the running total of the current user
+	 */
+	private double currentTotal;
+
+	/**
+	 * This is the list of closed reports not yet handed over
+	 */
+	private List<ExpenseReportEntity> pendingReports = new ArrayList<>();
+
+	/**
+	 * This is the number of expenses in the pending reports
+	 */
+	private int pendingExpenseCount;
+
+	/**
+	 * This is the number of reports handed over
+	 */
+	private int reportCount;
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param mySqlExpense
+	 *            This is the instance of IExpense used to set attachments
+	 * @param status
+	 *            This is the status of the reports
+	 * @param batchSize
+	 *            This is the number of expenses after which reports are
+	 *            handed over
+	 * @param reportHandler
+	 *            This is the handler to which built reports are handed
+	 */
+	public ExpenseReportBuilder(IExpense mySqlExpense, ExpenseStatusType status, int batchSize,
+			IRowHandler<ExpenseReportEntity> reportHandler) {
+		this.mySqlExpense = mySqlExpense;
+		this.status = status;
+		this.batchSize = batchSize;
+		this.reportHandler = reportHandler;
+	}
+
+	/**
+	 * This method adds an expense row to the report of its user
+	 *
+	 * @see IRowHandler.handle
+	 */
+	@Override
+	public void handle(Object[] row) throws Exception {
+		ExpenseEntity expenseEntity = (ExpenseEntity) row[0];
+		// check if the user has changed
+		if (currentReport == null || !currentReport.getUserId().equals(expenseEntity.getUserId())) {
+			this.closeCurrentReport();
+			currentReport = new ExpenseReportEntity(String.valueOf(row[1]), expenseEntity.getUserId(), 0,
+					new ArrayList<ExpenseEntity>(), status);
+			currentTotal = 0;
+		}
+		currentReport.getExpenses().add(expenseEntity);
+		currentTotal += expenseEntity.getAmount();
+	}
+
+	/**
+	 * This method closes the last report and hands over all the pending
+	 * reports, it must be called after the last row
+	 *
+	 * @return The number of reports built
+	 * @throws Exception
+	 *             Throw this exception if reports could not be handed over
+	 */
+	public int finish() throws Exception {
+		this.closeCurrentReport();
+		this.flush();
+		return reportCount;
+	}
+
+	/**
+	 * This method closes the report of the current user and adds it to the
+	 * pending reports
+	 *
+	 * @throws Exception
+	 *             Throw this exception if reports could not be handed over
+	 */
+	private void closeCurrentReport() throws Exception {
+		if (currentReport == null)
+			return;
+		currentReport.setTotalAmount((float) currentTotal);
+		pendingReports.add(currentReport);
+		pendingExpenseCount += currentReport.getExpenses().size();
+		currentReport = null;
+		if (pendingExpenseCount >= batchSize)
+			this.flush();
+	}
+
+	/**
+	 * This method sets the attachments of the pending reports in one go and
+	 * hands them to the report handler
+	 *
+	 * @throws Exception
+	 *             Throw this exception if reports could not be handed over
+	 */
+	private void flush() throws Exception {
+		if (pendingReports.isEmpty())
+			return;
+		List<ExpenseEntity> expenses = new ArrayList<>(pendingExpenseCount);
+		for (ExpenseReportEntity report : pendingReports) {
+			expenses.addAll(report.getExpenses());
+		}
+		mySqlExpense.hydrateAttachments(expenses);
+		for (ExpenseReportEntity report : pendingReports) {
+			reportHandler.handle(report);
+			reportCount++;
+		}
+		pendingReports.clear();
+		pendingExpenseCount = 0;
+	}
+}
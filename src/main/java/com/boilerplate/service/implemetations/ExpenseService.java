@@ -5,20 +5,34 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.FetchProfile;
 import com.boilerplate.database.interfaces.IExpense;
 import com.boilerplate.database.interfaces.IFilePointer;
-import com.boilerplate.database.interfaces.IUser;
+import com.boilerplate.database.interfaces.IRowHandler;
 import com.boilerplate.exceptions.rest.BadRequestException;
+import com.boilerplate.exceptions.rest.ConflictException;
 import com.boilerplate.exceptions.rest.NotFoundException;
 import com.boilerplate.exceptions.rest.UnauthorizedException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
+import com.boilerplate.framework.ExpenseAggregateDeltas;
+import com.boilerplate.framework.ExpenseCursor;
+import com.boilerplate.framework.ExpenseSearchIndex;
+import com.boilerplate.framework.ExpenseStatusTransitions;
 import com.boilerplate.framework.Logger;
 import com.boilerplate.framework.RequestThreadLocal;
+import com.boilerplate.framework.RunInUnitOfWork;
+import com.boilerplate.framework.UnitOfWork;
+import com.boilerplate.framework.UserDirectory;
 import com.boilerplate.java.entities.ExpenseEntity;
 import com.boilerplate.java.entities.ExpenseHistoryEntity;
 import com.boilerplate.java.entities.ExpenseListViewEntity;
@@ -27,7 +41,7 @@ import com.boilerplate.java.entities.ExpenseReviewEntity;
 import com.boilerplate.java.entities.ExpenseStatusType;
 import com.boilerplate.java.entities.ExternalFacingUser;
 import com.boilerplate.java.entities.FetchExpenseEntity;
-import com.boilerplate.java.entities.FileMappingEntity;
+import com.boilerplate.java.entities.GenericPageEncapsulationEntity;
 import com.boilerplate.java.entities.UserRoleType;
 import com.boilerplate.service.interfaces.IEmailService;
 import com.boilerplate.service.interfaces.IExpenseService;
@@ -47,19 +61,19 @@ public class ExpenseService implements IExpenseService {
 	private Logger logger = Logger.getInstance(ExpenseService.class);
 
 	/**
-	 * This is the instance of IUser
+	 * This is the directory of users
 	 */
 	@Autowired
-	IUser mySqlUser;
+	UserDirectory userDirectory;
 
 	/**
-	 * This method set the mysqluser
+	 * This method is used to set the userDirectory
 	 * 
-	 * @param mySqlUser
-	 *            the mySqlUser to set
+	 * @param userDirectory
+	 *            the userDirectory to set
 	 */
-	public void setMySqlUser(IUser mySqlUser) {
-		this.mySqlUser = mySqlUser;
+	public void setUserDirectory(UserDirectory userDirectory) {
+		this.userDirectory = userDirectory;
 	}
 
 	/**
@@ -123,10 +137,43 @@ public class ExpenseService implements IExpenseService {
 		this.filePointer = filePointer;
 	}
 
+	/**
+	 * This is the instance of configuration manager
+	 */
+	@Autowired
+	ConfigurationManager configurationManager;
+
+	/**
+	 * This method is used to set the configurationManager
+	 * 
+	 * @param configurationManager
+	 *            the configurationManager to set
+	 */
+	public void setConfigurationManager(ConfigurationManager configurationManager) {
+		this.configurationManager = configurationManager;
+	}
+
+	/**
+	 * This is the in memory search index of expenses
+	 */
+	@Autowired
+	ExpenseSearchIndex expenseSearchIndex;
+
+	/**
+	 * This method is used to set the expenseSearchIndex
+	 * 
+	 * @param expenseSearchIndex
+	 *            the expenseSearchIndex to set
+	 */
+	public void setExpenseSearchIndex(ExpenseSearchIndex expenseSearchIndex) {
+		this.expenseSearchIndex = expenseSearchIndex;
+	}
+
 	/**
 	 * @see IExpenseService.createExpense
 	 */
 	@Override
+	@RunInUnitOfWork
 	public ExpenseEntity createExpense(ExpenseEntity expenseEntity) throws Exception {
 		// check if expense entity is valid or not
 		expenseEntity.validate();
@@ -151,8 +198,16 @@ public class ExpenseService implements IExpenseService {
 			mySqlExpense.deleteExpense(expenseEntity);
 			throw new BadRequestException("ExpenseEntity", "Could not save file mapping, please upload again", null);
 		}
-		// send email for submission of expense
-		sendEmailService.sendEmailOnSubmission(expenseEntity, false);
+		// count the new expense in the aggregates of its user
+		ExpenseAggregateDeltas aggregateDeltas = new ExpenseAggregateDeltas();
+		aggregateDeltas.add(expenseEntity.getUserId(), expenseEntity.getStatus(), expenseEntity.getAmount());
+		mySqlExpense.updateExpenseAggregates(aggregateDeltas);
+		// add the expense to the search index once it is saved
+		this.indexAfterCommit(Arrays.asList(expenseEntity));
+		// send email for submission of expense once it is saved
+		final ExpenseEntity submittedExpense = expenseEntity;
+		this.emailAfterCommit(() -> sendEmailService.sendEmailOnSubmission(submittedExpense, false),
+				submittedExpense);
 		return expenseEntity;
 	}
 
@@ -160,6 +215,7 @@ public class ExpenseService implements IExpenseService {
 	 * @see IExpenseService.updateExpense
 	 */
 	@Override
+	@RunInUnitOfWork
 	public ExpenseEntity updateExpense(ExpenseEntity expenseEntity) throws Exception {
 		// check if expense entity is valid or not
 		expenseEntity.validate();
@@ -167,12 +223,12 @@ public class ExpenseService implements IExpenseService {
 		if (expenseEntity.getId() == null || expenseEntity.getId().isEmpty())
 			throw new ValidationFailedException("ExpenseEntity", "Id should not be null or empty", null);
 		// check whether expense entity exists or not
-		ExpenseEntity previousExpense = mySqlExpense.getExpense(expenseEntity.getId());
+		ExpenseEntity previousExpense = mySqlExpense.getExpense(expenseEntity.getId(), FetchProfile.SUMMARY);
 		if (previousExpense == null)
 			throw new NotFoundException("ExpenseEntity", "Expense entity not found", null);
 		// check if expense is in rejected state
-		if (previousExpense.getStatus() != ExpenseStatusType.APPROVER_REJECTED
-				&& previousExpense.getStatus() != ExpenseStatusType.FINANCE_REJECTED)
+		if (!ExpenseStatusTransitions.isAllowed(UserRoleType.EMPLOYEE, previousExpense.getStatus(),
+				ExpenseStatusType.RE_SUBMITTED))
 			throw new BadRequestException("ExpenseEntity", "User can only update rejected expenses", null);
 		// Check whether expense belongs to the logged in user
 		if (!previousExpense.getUserId().equals(RequestThreadLocal.getSession().getExternalFacingUser().getId()))
@@ -180,31 +236,39 @@ public class ExpenseService implements IExpenseService {
 					"User cannot update this expense since he is not the owner of this expense", null);
 		// check if attachment ids exist
 		fileService.checkFileExistence(expenseEntity.getAttachmentIds());
-		// create a new expense history entity using the data from expense
-		// entity
-		ExpenseHistoryEntity expenseHistoryEntity = new ExpenseHistoryEntity(previousExpense.getId(),
-				previousExpense.getCreationDate(), previousExpense.getUpdationDate(), previousExpense.getTitle(),
-				previousExpense.getDescription(), previousExpense.getStatus(), previousExpense.getUserId(),
-				previousExpense.getApproverComments(), previousExpense.getAmount());
-		expenseHistoryEntity.setCreationDate(new Date());
+		// create a new expense history entity having the fields of the
+		// previous expense which are changed
+		Date now = new Date();
+		ExpenseHistoryEntity expenseHistoryEntity = ExpenseHistoryEntity.createDelta(previousExpense,
+				expenseEntity.getTitle(), expenseEntity.getDescription(), ExpenseStatusType.RE_SUBMITTED, null,
+				expenseEntity.getAmount(), now);
 
 		// if expense status is rejected then change it to re-submitted
 		expenseEntity.setStatus(ExpenseStatusType.RE_SUBMITTED);
-		// send email for re-submission of expense
-		sendEmailService.sendEmailOnSubmission(expenseEntity, true);
+		expenseEntity.setUserId(previousExpense.getUserId());
+		expenseEntity.setUserName(previousExpense.getUserName());
 		// set creation date and update date
 		expenseEntity.setCreationDate(previousExpense.getCreationDate());
-		expenseEntity.setUpdationDate(new Date());
+		expenseEntity.setUpdationDate(now);
 		// set approver comments to null
 		expenseEntity.setApproverComments(null);
-		// update expense
-		expenseEntity = mySqlExpense.updateExpense(expenseEntity);
+		// update expense if it is still in rejected state
+		if (!mySqlExpense.resubmitExpense(expenseEntity, ExpenseStatusTransitions
+				.getSourceStatuses(UserRoleType.EMPLOYEE, ExpenseStatusType.RE_SUBMITTED)))
+			throw new ConflictException("ExpenseEntity", "Expense has been changed by someone else, please try again",
+					null);
+		this.indexAfterCommit(Arrays.asList(expenseEntity));
+		// send email for re-submission of expense once it is saved
+		this.emailAfterCommit(() -> sendEmailService.sendEmailOnSubmission(expenseEntity, true), expenseEntity);
+		// move the expense to the aggregate of its new status and amount
+		ExpenseAggregateDeltas aggregateDeltas = new ExpenseAggregateDeltas();
+		aggregateDeltas.move(previousExpense.getUserId(), previousExpense.getStatus(), previousExpense.getAmount(),
+				expenseEntity.getStatus(), expenseEntity.getAmount());
+		mySqlExpense.updateExpenseAggregates(aggregateDeltas);
 		// save this history in mysql
 		expenseHistoryEntity = mySqlExpense.saveExpenseHistory(expenseHistoryEntity);
 		// update attachments
 		fileService.updateFileMapping(expenseEntity, expenseHistoryEntity);
-		// save this history in mysql
-		expenseHistoryEntity = mySqlExpense.saveExpenseHistory(expenseHistoryEntity);
 		// send email notification
 		return expenseEntity;
 	}
@@ -214,7 +278,7 @@ public class ExpenseService implements IExpenseService {
 	 * 
 	 */
 	@Override
-	public List<ExpenseEntity> getExpensesForUser(FetchExpenseEntity fetchExpenseEntity)
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForUser(FetchExpenseEntity fetchExpenseEntity)
 			throws ValidationFailedException, NotFoundException, BadRequestException, ParseException {
 		// validate entity
 		fetchExpenseEntity.validate();
@@ -240,21 +304,16 @@ public class ExpenseService implements IExpenseService {
 					"Some exception occurred while parsing date", ex);
 			throw new ValidationFailedException("FetchExpenseEntity", "Some exception occurred while parsing date", ex);
 		}
-		// fetch list of expenses from database
-		List<ExpenseEntity> expenses = mySqlExpense.getExpenses(fetchExpenseEntity);
+		// decode the page to be fetched
+		ExpenseCursor cursor = ExpenseCursor.decode(fetchExpenseEntity.getPageToken());
+		// fetch page of expenses from database
+		GenericPageEncapsulationEntity<ExpenseEntity> expenses = mySqlExpense.getExpenses(fetchExpenseEntity, cursor,
+				this.getPageSize(fetchExpenseEntity.getPageSize()));
 		// check if expenses were present for the present user or not
-		if (expenses == null || expenses.isEmpty())
+		if (expenses.getEntityList().isEmpty())
 			throw new NotFoundException("ExpenseEntity", "No expenses were found for the currently logged in user",
 					null);
-		// for each expense, fetch attachments
-		for (ExpenseEntity expenseEntity : expenses) {
-			List<String> attachmentIds = new ArrayList<>();
-			List<FileMappingEntity> mappings = filePointer.getFileMappingByExpenseId(expenseEntity.getId());
-			for (FileMappingEntity fileMappingEntity : mappings) {
-				attachmentIds.add(fileMappingEntity.getAttachmentId());
-			}
-			expenseEntity.setAttachmentIds(attachmentIds);
-		}
+		// attachments are already set by the data layer in a single query
 		return expenses;
 	}
 
@@ -262,21 +321,24 @@ public class ExpenseService implements IExpenseService {
 	 * @see IExpenseService.getExpensesForApproval
 	 */
 	@Override
-	public List<ExpenseEntity> getExpensesForApproval()
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForApproval(String pageToken, Integer pageSize)
 			throws NotFoundException, ValidationFailedException, BadRequestException {
 		// fetch approver
 		ExternalFacingUser approver = RequestThreadLocal.getSession().getExternalFacingUser();
-		// list of expenses
-		List<ExpenseEntity> expenses = new ArrayList<>();
+		// decode the page to be fetched
+		ExpenseCursor cursor = ExpenseCursor.decode(pageToken);
+		// page of expenses
+		GenericPageEncapsulationEntity<ExpenseEntity> expenses = null;
 		// check if user is approver or super/approver
 		if (approver.getRoleTypes().contains(UserRoleType.SUPER_APPROVER))
 			// get all the expenses
-			expenses = mySqlExpense.getExpensesForSuper();
+			expenses = mySqlExpense.getExpensesForSuper(cursor, this.getPageSize(pageSize));
 		else if (approver.getRoleTypes().contains(UserRoleType.APPROVER))
 			// get expense of user whose approver is currently logged in user
-			expenses = mySqlExpense.getExpensesForApprover(approver.getId());
+			expenses = mySqlExpense.getExpensesForApprover(userDirectory.getReportIds(approver.getId()), cursor,
+					this.getPageSize(pageSize));
 		// check if expenses are not null
-		if (expenses == null || expenses.size() == 0)
+		if (expenses == null || expenses.getEntityList().isEmpty())
 			throw new BadRequestException("ExpenseEntity", "No expenses found", null);
 		// else return expenses
 		return expenses;
@@ -286,12 +348,14 @@ public class ExpenseService implements IExpenseService {
 	 * @see IExpenseService.approverExpense
 	 */
 	@Override
+	@RunInUnitOfWork
 	public ExpenseEntity approveExpenseForApprover(ExpenseReviewEntity expenseReviewEntity) throws Exception {
 		// check if user id or role is not null or empty
 		expenseReviewEntity.validate();
 		// check if status has only approved or rejected status
-		if (expenseReviewEntity.getStatus() != ExpenseStatusType.APPROVER_APPROVED
-				&& expenseReviewEntity.getStatus() != ExpenseStatusType.APPROVER_REJECTED)
+		Set<ExpenseStatusType> sourceStatuses = ExpenseStatusTransitions.getSourceStatuses(UserRoleType.APPROVER,
+				expenseReviewEntity.getStatus());
+		if (sourceStatuses.isEmpty())
 			throw new ValidationFailedException("ExpenseReviewEntity",
 					"Approver/Super_Approver can only assign Approver_approved or Approver_rejected status, any other status is not allowed",
 					null);
@@ -306,12 +370,11 @@ public class ExpenseService implements IExpenseService {
 		if (expenseEntity == null)
 			throw new NotFoundException("ExpenseEntity", "Expense not found", null);
 		// check if expense is in submitted or re-submitted state
-		if (!expenseEntity.getStatus().equals(ExpenseStatusType.SUBMITTED)
-				&& !expenseEntity.getStatus().equals(ExpenseStatusType.RE_SUBMITTED))
+		if (!sourceStatuses.contains(expenseEntity.getStatus()))
 			throw new BadRequestException("ExpenseEntity",
 					"Expense is not in desired state for approver/super-approver to take action", null);
 		// fetch user of this expense
-		ExternalFacingUser externalFacingUser = mySqlUser.getUser(expenseEntity.getUserId());
+		ExternalFacingUser externalFacingUser = userDirectory.getUser(expenseEntity.getUserId());
 		// check if user is not null or inactive
 		if (externalFacingUser == null || !externalFacingUser.getIsActive())
 			throw new BadRequestException("ExternalFacingUser", "User not found for the given expense or is inactive",
@@ -328,25 +391,30 @@ public class ExpenseService implements IExpenseService {
 				.contains(UserRoleType.SUPER_APPROVER) && approverId.equals(externalFacingUser.getId()))
 			throw new BadRequestException("ExternalFacingUser", "Approver is not allowed to approve his own expense",
 					null);
-		// create a new expense history entity using the data from expense
-		// entity
-		ExpenseHistoryEntity expenseHistoryEntity = new ExpenseHistoryEntity(expenseEntity.getId(),
-				expenseEntity.getCreationDate(), expenseEntity.getUpdationDate(), expenseEntity.getTitle(),
-				expenseEntity.getDescription(), expenseEntity.getStatus(), expenseEntity.getUserId(),
-				expenseEntity.getApproverComments(), expenseEntity.getAmount());
-		expenseHistoryEntity.setCreationDate(new Date());
+		// create a new expense history entity having the status, comments and
+		// updation date of the expense before the review
+		ExpenseHistoryEntity expenseHistoryEntity = ExpenseHistoryEntity.createDelta(expenseEntity,
+				expenseEntity.getTitle(), expenseEntity.getDescription(), expenseReviewEntity.getStatus(),
+				expenseReviewEntity.getApproverComments(), expenseEntity.getAmount(), new Date());
+		ExpenseStatusType previousStatus = expenseEntity.getStatus();
+		// set expense status as per the approving role and the approver
+		// comments, if no one else has reviewed it in the meantime
+		if (!mySqlExpense.transitionExpenseStatus(expenseEntity, sourceStatuses, expenseReviewEntity.getStatus(),
+				expenseReviewEntity.getApproverComments()))
+			throw new ConflictException("ExpenseEntity", "Expense has already been reviewed by someone else", null);
+		this.indexAfterCommit(Arrays.asList(expenseEntity));
 		// save this history in mysql
 		expenseHistoryEntity = mySqlExpense.saveExpenseHistory(expenseHistoryEntity);
-		// set expense status as per the approving role
-		expenseEntity.setStatus(expenseReviewEntity.getStatus());
-		// set approver comments
-		expenseEntity.setApproverComments(expenseReviewEntity.getApproverComments());
-		// update expense
-		expenseEntity = mySqlExpense.updateExpense(expenseEntity);
+		// move the expense to the aggregate of its new status
+		ExpenseAggregateDeltas aggregateDeltas = new ExpenseAggregateDeltas();
+		aggregateDeltas.move(expenseEntity.getUserId(), previousStatus, expenseEntity.getAmount(),
+				expenseEntity.getStatus(), expenseEntity.getAmount());
+		mySqlExpense.updateExpenseAggregates(aggregateDeltas);
+		// send email for the review once it is saved
 		if (expenseReviewEntity.getStatus().equals(ExpenseStatusType.APPROVER_APPROVED))
-			sendEmailService.sendEmailOnApproval(expenseEntity);
+			this.emailAfterCommit(() -> sendEmailService.sendEmailOnApproval(expenseEntity), expenseEntity);
 		else if (expenseReviewEntity.getStatus().equals(ExpenseStatusType.APPROVER_REJECTED))
-			sendEmailService.sendEmailOnRejection(expenseEntity);
+			this.emailAfterCommit(() -> sendEmailService.sendEmailOnRejection(expenseEntity), expenseEntity);
 		return expenseEntity;
 
 	}
@@ -355,28 +423,42 @@ public class ExpenseService implements IExpenseService {
 	 * @see IExpenseService.approveExpenseForFinance
 	 */
 	@Override
+	@RunInUnitOfWork
 	public void approveExpenseForFinance(ExpenseReportEntity reportEntity) throws Exception {
 		// validate the report entity
 		reportEntity.validate();
 		// check if finance is not changing status to invalid status
-		if (!Arrays.asList(ExpenseStatusType.FINANCE_APPROVED, ExpenseStatusType.READY_FOR_PAYMENT,
-				ExpenseStatusType.FINANCE_REJECTED).contains(reportEntity.getStatus()))
+		Set<ExpenseStatusType> sourceStatuses = ExpenseStatusTransitions.getSourceStatuses(UserRoleType.FINANCE,
+				reportEntity.getStatus());
+		if (sourceStatuses.isEmpty())
 			throw new BadRequestException("ExpenseReportEntity",
 					"Finance can only approver, reject or change status to ready for payment", null);
 		// check if user in report exists
-		ExternalFacingUser user = mySqlUser.getUser(reportEntity.getUserId());
+		ExternalFacingUser user = userDirectory.getUser(reportEntity.getUserId());
 		if (user == null || !user.getIsActive())
 			throw new ValidationFailedException("ExternalFacingUser",
 					"User id in report doesn not exist or the user is inactive", null);
+		// collect the ids of the expenses in report entity
+		Set<String> expenseIds = new LinkedHashSet<>();
+		for (ExpenseEntity expense : reportEntity.getExpenses()) {
+			expenseIds.add(expense.getId());
+		}
+		// fetch all the expenses in one go
+		Map<String, ExpenseEntity> expensesById = new HashMap<>();
+		for (ExpenseEntity expenseEntity : mySqlExpense.getExpensesByIds(new ArrayList<>(expenseIds))) {
+			expensesById.put(expenseEntity.getId(), expenseEntity);
+		}
 		List<ExpenseEntity> entities = new ArrayList<>();
+		List<ExpenseHistoryEntity> histories = new ArrayList<>();
+		ExpenseAggregateDeltas aggregateDeltas = new ExpenseAggregateDeltas();
+		Date now = new Date();
 		// for each expense in report entity
-		for (ExpenseEntity expense : reportEntity.getExpenses()) {
+		for (String expenseId : expenseIds) {
 			// fetch the expense
-			ExpenseEntity expenseEntity = mySqlExpense.getExpense(expense.getId());
+			ExpenseEntity expenseEntity = expensesById.get(expenseId);
 			// check if expense exists or not
 			if (expenseEntity == null)
-				throw new NotFoundException("ExpenseEntity", "Expense with id :" + expense.getId() + " not found",
-						null);
+				throw new NotFoundException("ExpenseEntity", "Expense with id :" + expenseId + " not found", null);
 			// check if user in expense is same as report
 			if (!expenseEntity.getUserId().equals(reportEntity.getUserId()))
 				throw new ValidationFailedException("ExpenseReportEntity",
@@ -384,36 +466,46 @@ public class ExpenseService implements IExpenseService {
 						null);
 			// check if status of each expense is is appropriate for incoming
 			// status
-			if ((reportEntity.getStatus().equals(ExpenseStatusType.FINANCE_APPROVED)
-					&& !expenseEntity.getStatus().equals(ExpenseStatusType.APPROVER_APPROVED))
-					|| ((reportEntity.getStatus().equals(ExpenseStatusType.READY_FOR_PAYMENT)
-							&& !expenseEntity.getStatus().equals(ExpenseStatusType.FINANCE_APPROVED)))
-					|| (reportEntity.getStatus().equals(ExpenseStatusType.FINANCE_REJECTED)
-							&& !expenseEntity.getStatus().equals(ExpenseStatusType.APPROVER_APPROVED)))
+			if (!sourceStatuses.contains(expenseEntity.getStatus()))
 				throw new ValidationFailedException("ExpenseReportEntity",
 						"One of the expense in expense list of the report is not in desired status", null);
+			// save the fields of the expense changed by finance as history
+			histories.add(ExpenseHistoryEntity.createDelta(expenseEntity, expenseEntity.getTitle(),
+					expenseEntity.getDescription(), reportEntity.getStatus(), reportEntity.getApproverComments(),
+					expenseEntity.getAmount(), now));
+			// move the expense to the aggregate of the new status
+			aggregateDeltas.move(expenseEntity.getUserId(), expenseEntity.getStatus(), expenseEntity.getAmount(),
+					reportEntity.getStatus(), expenseEntity.getAmount());
 			// set status
 			expenseEntity.setStatus(reportEntity.getStatus());
 			// set comments
 			expenseEntity.setApproverComments(reportEntity.getApproverComments());
+			expenseEntity.setUpdationDate(now);
 			entities.add(expenseEntity);
 		}
 		reportEntity.setExpenses(entities);
-		// update all expenses
-		mySqlExpense.saveExpenseList(reportEntity.getExpenses());
+		// update all expenses and save their history in one transaction, if
+		// no one else has changed any of them in the meantime
+		if (!mySqlExpense.transitionExpenseStatuses(entities, sourceStatuses, histories))
+			throw new ConflictException("ExpenseReportEntity",
+					"One of the expenses of the report has been changed by someone else, please try again", null);
+		mySqlExpense.updateExpenseAggregates(aggregateDeltas);
+		this.indexAfterCommit(entities);
 	}
 
 	/**
 	 * @see IExpenseService.expenseReviewByFinance
 	 */
 	@Override
+	@RunInUnitOfWork
 	public void expenseReviewByFinance(ExpenseReviewEntity expenseReviewEntity)
-			throws ValidationFailedException, BadRequestException, NotFoundException {
+			throws ValidationFailedException, BadRequestException, NotFoundException, ConflictException {
 		// validate the expenseReviewEntity
 		expenseReviewEntity.validate();
 		// check if finance is not changing status to invalid status
-		if (!Arrays.asList(ExpenseStatusType.FINANCE_APPROVED, ExpenseStatusType.READY_FOR_PAYMENT,
-				ExpenseStatusType.FINANCE_REJECTED).contains(expenseReviewEntity.getStatus()))
+		Set<ExpenseStatusType> sourceStatuses = ExpenseStatusTransitions.getSourceStatuses(UserRoleType.FINANCE,
+				expenseReviewEntity.getStatus());
+		if (sourceStatuses.isEmpty())
 			throw new BadRequestException("ExpenseReviewEntity",
 					"Finance can only approver, reject or change status to ready for payment", null);
 		// check if status is rejected than approver comments should be present
@@ -422,33 +514,46 @@ public class ExpenseService implements IExpenseService {
 				throw new ValidationFailedException("ExpenseReviewEntity",
 						"Approver comments are mandatory if expense is being rejected", null);
 		// check if expense is present in database or not
-		ExpenseEntity expenseEntity = mySqlExpense.getExpense(expenseReviewEntity.getExpenseId());
+		ExpenseEntity expenseEntity = mySqlExpense.getExpense(expenseReviewEntity.getExpenseId(),
+				FetchProfile.SUMMARY);
 		// check if expense is not null
 		if (expenseEntity == null)
 			throw new NotFoundException("ExpenseEntity",
 					"Expense not found with given expense id: " + expenseReviewEntity.getExpenseId(), null);
 		// check if status of each expense is is appropriate for incoming status
-		if ((expenseReviewEntity.getStatus().equals(ExpenseStatusType.FINANCE_APPROVED)
-				&& !expenseEntity.getStatus().equals(ExpenseStatusType.APPROVER_APPROVED))
-				|| ((expenseReviewEntity.getStatus().equals(ExpenseStatusType.READY_FOR_PAYMENT)
-						&& !expenseEntity.getStatus().equals(ExpenseStatusType.FINANCE_APPROVED)))
-				|| (expenseReviewEntity.getStatus().equals(ExpenseStatusType.FINANCE_REJECTED)
-						&& !expenseEntity.getStatus().equals(ExpenseStatusType.APPROVER_APPROVED)))
+		if (!sourceStatuses.contains(expenseEntity.getStatus()))
 			throw new ValidationFailedException("ExpenseReportEntity",
 					"One of the expense in expense list of the report is not in desired status", null);
-		// update the expense entity
-		expenseEntity.setStatus(expenseReviewEntity.getStatus());
-		// set comments
-		expenseEntity.setApproverComments(expenseReviewEntity.getApproverComments());
-		// update the expense entity in the system
-		mySqlExpense.updateExpense(expenseEntity);
+		// move the expense to the aggregate of the new status
+		ExpenseAggregateDeltas aggregateDeltas = new ExpenseAggregateDeltas();
+		aggregateDeltas.move(expenseEntity.getUserId(), expenseEntity.getStatus(), expenseEntity.getAmount(),
+				expenseReviewEntity.getStatus(), expenseEntity.getAmount());
+		// create a new expense history entity having the fields changed by
+		// finance
+		ExpenseHistoryEntity expenseHistoryEntity = ExpenseHistoryEntity.createDelta(expenseEntity,
+				expenseEntity.getTitle(), expenseEntity.getDescription(), expenseReviewEntity.getStatus(),
+				expenseReviewEntity.getApproverComments(), expenseEntity.getAmount(), new Date());
+		// update the status and comments of the expense, if no one else has
+		// reviewed it in the meantime
+		if (!mySqlExpense.transitionExpenseStatus(expenseEntity, sourceStatuses, expenseReviewEntity.getStatus(),
+				expenseReviewEntity.getApproverComments()))
+			throw new ConflictException("ExpenseEntity", "Expense has already been reviewed by someone else", null);
+		this.indexAfterCommit(Arrays.asList(expenseEntity));
+		try {
+			mySqlExpense.saveExpenseHistory(expenseHistoryEntity);
+			mySqlExpense.updateExpenseAggregates(aggregateDeltas);
+		} catch (Exception ex) {
+			throw new BadRequestException("ExpenseEntity",
+					"While trying to save expense history and aggregates ~ " + ex.toString(), ex);
+		}
 	}
 
 	/**
 	 * @see IExpenseService.getExpensesForFinance
 	 */
 	@Override
-	public List<ExpenseEntity> getExpensesForFinance(String status)
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForFinance(String status, String pageToken,
+			Integer pageSize)
 			throws BadRequestException, NotFoundException, ValidationFailedException {
 		// check if status is not null or empty
 		if (status == null || status.isEmpty())
@@ -462,10 +567,12 @@ public class ExpenseService implements IExpenseService {
 				ExpenseStatusType.READY_FOR_PAYMENT).contains(expenseStatusType))
 			throw new BadRequestException("ExpenseStatusType",
 					"Finance is not allowed to fetch expenses in status :" + expenseStatusType.toString(), null);
-		List<ExpenseEntity> expenses = new ArrayList<>();
-		expenses = mySqlExpense.getExpensesByStatus(expenseStatusType);
+		// decode the page to be fetched
+		ExpenseCursor cursor = ExpenseCursor.decode(pageToken);
+		GenericPageEncapsulationEntity<ExpenseEntity> expenses = mySqlExpense.getExpensesByStatus(expenseStatusType,
+				cursor, this.getPageSize(pageSize));
 		// check if expense list is not null or empty
-		if (expenses == null || expenses.size() == 0)
+		if (expenses.getEntityList().isEmpty())
 			throw new NotFoundException("ExpenseEntity",
 					"No expense found in " + expenseStatusType.toString() + " state", null);
 		// return list of expense
@@ -476,8 +583,8 @@ public class ExpenseService implements IExpenseService {
 	 * @see IExpenseService.getExpenseReportsForFinance
 	 */
 	@Override
-	public List<ExpenseReportEntity> getExpenseReportsForFinance(String status)
-			throws BadRequestException, NotFoundException, ValidationFailedException {
+	public void getExpenseReportsForFinance(String status, IRowHandler<ExpenseReportEntity> reportHandler)
+			throws BadRequestException, NotFoundException, ValidationFailedException, Exception {
 		// check if status is not null or empty
 		if (status == null || status.isEmpty())
 			throw new ValidationFailedException("ExpenseStatusType", "Status should not be null or empty", null);
@@ -491,29 +598,68 @@ public class ExpenseService implements IExpenseService {
 				ExpenseStatusType.READY_FOR_PAYMENT).contains(statusType))
 			throw new BadRequestException("ExpenseStatusType",
 					"Finance is not allowed to fetch expenses in status :" + statusType.toString(), null);
-		// fetch the list of user ids with there total amount
-		List<Map<String, Object>> userAmounts = mySqlExpense.getUserAmountsForFinance(status);
-		// fetch all expenses with finance approved status
-		List<ExpenseEntity> expenses = mySqlExpense.getExpensesByStatus(statusType);
-		if (expenses != null && !expenses.isEmpty()) {
-			// list of reports
-			List<ExpenseReportEntity> reports = new ArrayList<>();
-			// for each expense, add it to expense report of that user
-			for (Map<String, Object> userAmount : userAmounts) {
-				List<ExpenseEntity> expenseList = new ArrayList<>();
-				for (ExpenseEntity expenseEntity : expenses) {
-					if (String.valueOf(userAmount.get("UserId")).equals(expenseEntity.getUserId()))
-						expenseList.add(expenseEntity);
-				}
-				ExpenseReportEntity expenseReportEntity = new ExpenseReportEntity(
-						String.valueOf(userAmount.get("Name")), String.valueOf(userAmount.get("UserId")),
-						Float.valueOf(String.valueOf(userAmount.get("TotalAmount"))), expenseList,
-						ExpenseStatusType.FINANCE_APPROVED);
-				reports.add(expenseReportEntity);
+		// build the reports in a single pass over the expenses ordered by user
+		ExpenseReportBuilder reportBuilder = new ExpenseReportBuilder(mySqlExpense, statusType,
+				Integer.parseInt(configurationManager.get("EXPENSE_REPORT_BATCH_SIZE")), reportHandler);
+		mySqlExpense.scrollExpensesForReports(statusType, reportBuilder);
+		if (reportBuilder.finish() == 0)
+			throw new NotFoundException("ExpenseEntity",
+					"No expenses found for finance in status : " + statusType.toString(), null);
+	}
 
+	/**
+	 * @see IExpenseService.exportExpensesForFinance
+	 */
+	@Override
+	public void exportExpensesForFinance(String status, String startDate, String endDate,
+			final IRowHandler<Object[]> rowHandler)
+			throws BadRequestException, NotFoundException, ValidationFailedException {
+		// check if status is not null or empty
+		if (status == null || status.isEmpty())
+			throw new ValidationFailedException("ExpenseStatusType", "Status should not be null or empty", null);
+		ExpenseStatusType statusType = ExpenseStatusType.convert(status);
+		// check if status is a vaid value for expense status
+		if (statusType == null)
+			throw new ValidationFailedException("ExpenseStatusType", "Invalid value for status passed in parameter",
+					null);
+		// check if all status type are not accessible to finance
+		if (!Arrays.asList(ExpenseStatusType.APPROVER_APPROVED, ExpenseStatusType.FINANCE_APPROVED,
+				ExpenseStatusType.READY_FOR_PAYMENT).contains(statusType))
+			throw new BadRequestException("ExpenseStatusType",
+					"Finance is not allowed to fetch expenses in status :" + statusType.toString(), null);
+		FetchExpenseEntity fetchExpenseEntity = new FetchExpenseEntity();
+		fetchExpenseEntity.setExpenseStatusType(statusType);
+		// check if start date is given then end date is mandatory and vice
+		// versa
+		boolean hasStartDate = startDate != null && !startDate.isEmpty();
+		boolean hasEndDate = endDate != null && !endDate.isEmpty();
+		if (hasStartDate != hasEndDate)
+			throw new ValidationFailedException("FetchExpenseEntity", "Either none or both the dates should be given",
+					null);
+		if (hasStartDate) {
+			SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+			format.setLenient(false);
+			try {
+				// check if end date is greater than start date
+				if (format.parse(startDate).compareTo(format.parse(endDate)) > 0)
+					throw new ValidationFailedException("FetchExpenseEntity", "End date is less than start date",
+							null);
+			} catch (ParseException ex) {
+				throw new ValidationFailedException("FetchExpenseEntity", "Dates should be in yyyy-MM-dd format", ex);
+			}
+			fetchExpenseEntity.setStartDate(startDate);
+			fetchExpenseEntity.setEndDate(endDate);
+		}
+		// count the rows as they are handed over
+		final int[] rowCount = new int[1];
+		mySqlExpense.scrollExpensesForExport(fetchExpenseEntity, new IRowHandler<Object[]>() {
+			@Override
+			public void handle(Object[] row) throws Exception {
+				rowHandler.handle(row);
+				rowCount[0]++;
 			}
-			return reports;
-		} else
+		});
+		if (rowCount[0] == 0)
 			throw new NotFoundException("ExpenseEntity",
 					"No expenses found for finance in status : " + statusType.toString(), null);
 	}
@@ -522,16 +668,132 @@ public class ExpenseService implements IExpenseService {
 	 * @see IExpenseService.getExpenseListForApprovers
 	 */
 	@Override
-	public List<ExpenseListViewEntity> getExpenseListForApprovers()
-			throws NotFoundException, ValidationFailedException, BadRequestException {
-		// get list of expenses
-		List<ExpenseListViewEntity> expenseList = new ArrayList<ExpenseListViewEntity>();
-		// get expenses for approval
-		for (ExpenseEntity expenseEntity : this.getExpensesForApproval()) {
-			expenseList.add(new ExpenseListViewEntity(expenseEntity.getId(), expenseEntity.getUserName(),
-					expenseEntity.getTitle(), expenseEntity.getAmount()));
+	public GenericPageEncapsulationEntity<ExpenseListViewEntity> getExpenseListForApprovers(String pageToken,
+			Integer pageSize) throws NotFoundException, ValidationFailedException, BadRequestException {
+		// fetch approver
+		ExternalFacingUser approver = RequestThreadLocal.getSession().getExternalFacingUser();
+		// decode the page to be fetched
+		ExpenseCursor cursor = ExpenseCursor.decode(pageToken);
+		// page of expenses, only the columns of the list are read
+		GenericPageEncapsulationEntity<ExpenseListViewEntity> expenses = null;
+		// check if user is approver or super/approver
+		if (approver.getRoleTypes().contains(UserRoleType.SUPER_APPROVER))
+			// get all the expenses
+			expenses = mySqlExpense.getExpenseListViewsForSuper(cursor, this.getPageSize(pageSize));
+		else if (approver.getRoleTypes().contains(UserRoleType.APPROVER))
+			// get expense of user whose approver is currently logged in user
+			expenses = mySqlExpense.getExpenseListViewsForApprover(userDirectory.getReportIds(approver.getId()), cursor,
+					this.getPageSize(pageSize));
+		// check if expenses are not null
+		if (expenses == null || expenses.getEntityList().isEmpty())
+			throw new BadRequestException("ExpenseEntity", "No expenses found", null);
+		return expenses;
+	}
+
+	/**
+	 * @see IExpenseService.searchExpenses
+	 */
+	@Override
+	public List<ExpenseListViewEntity> searchExpenses(String keywords, Float minimumAmount, Float maximumAmount,
+			String status, Integer pageSize) throws ValidationFailedException, NotFoundException, BadRequestException {
+		// check that the amount range is valid
+		if (minimumAmount != null && maximumAmount != null && minimumAmount > maximumAmount)
+			throw new ValidationFailedException("ExpenseSearch", "Minimum amount is more than maximum amount", null);
+		// check if status given is a valid status type
+		ExpenseStatusType expenseStatusType = null;
+		if (status != null && !status.isEmpty()) {
+			expenseStatusType = ExpenseStatusType.convert(status);
+			if (expenseStatusType == null)
+				throw new ValidationFailedException("ExpenseStatusType", "Invalid value for status", null);
+		}
+		// super approvers and finance may view every expense, approvers their
+		// own and those of their users and others only their own
+		ExternalFacingUser currentUser = RequestThreadLocal.getSession().getExternalFacingUser();
+		Set<String> allowedUserIds = null;
+		if (!currentUser.getRoleTypes().contains(UserRoleType.SUPER_APPROVER)
+				&& !currentUser.getRoleTypes().contains(UserRoleType.FINANCE)) {
+			allowedUserIds = new HashSet<>();
+			allowedUserIds.add(currentUser.getId());
+			if (currentUser.getRoleTypes().contains(UserRoleType.APPROVER))
+				allowedUserIds.addAll(userDirectory.getReportIds(currentUser.getId()));
 		}
-		return expenseList;
+		List<ExpenseListViewEntity> expenses = expenseSearchIndex.search(keywords, minimumAmount, maximumAmount,
+				expenseStatusType, allowedUserIds, this.getPageSize(pageSize));
+		if (expenses.isEmpty())
+			throw new NotFoundException("ExpenseEntity", "No expenses found for the search", null);
+		return expenses;
+	}
+
+	/**
+	 * This method updates the search index with expenses once the unit of work
+	 * saving them has committed
+	 * 
+	 * @param expenses
+	 *            The expenses as saved
+	 */
+	private void indexAfterCommit(final List<ExpenseEntity> expenses) {
+		UnitOfWork.afterCommit(() -> {
+			for (ExpenseEntity expenseEntity : expenses) {
+				expenseSearchIndex.index(expenseEntity);
+			}
+		});
+	}
+
+	/**
+	 * This method sends an email once the unit of work saving the expense has
+	 * committed, so that no email is sent for a change which is rolled back
+	 * and no row is kept locked while the email is sent. An email which could
+	 * not be sent is logged, the expense stays saved.
+	 * 
+	 * @param email
+	 *            The sending of the email
+	 * @param expenseEntity
+	 *            The expense the email is about
+	 */
+	private void emailAfterCommit(final ExpenseEmail email, final ExpenseEntity expenseEntity) {
+		UnitOfWork.afterCommit(() -> {
+			try {
+				email.send();
+			} catch (Exception ex) {
+				logger.logException("ExpenseService", "emailAfterCommit", "try-catch block",
+						"While trying to send the email for the expense, This is the expense id~ "
+								+ expenseEntity.getId() + " ~ " + ex.toString(),
+						ex);
+			}
+		});
+	}
+
+	/**
+	 * This interface is the sending of an email about an expense
+	 */
+	private interface ExpenseEmail {
+
+		/**
+		 * This method sends the email
+		 * 
+		 * @throws Exception
+		 *             Throw this exception if the email could not be sent
+		 */
+		void send() throws Exception;
+	}
+
+	/**
+	 * This method is used to get the page size to be used for a request. The
+	 * configured default is used if no page size is given and the requested
+	 * size is capped to the configured maximum.
+	 * 
+	 * @param pageSize
+	 *            This is the page size requested by the user
+	 * @return The page size to be used
+	 * @throws ValidationFailedException
+	 *             Throw this exception if page size is not positive
+	 */
+	private int getPageSize(Integer pageSize) throws ValidationFailedException {
+		if (pageSize == null)
+			return Integer.parseInt(configurationManager.get("DEFAULT_EXPENSE_PAGE_SIZE"));
+		if (pageSize <= 0)
+			throw new ValidationFailedException("PageSize", "Page size should be greater than zero", null);
+		return Math.min(pageSize, Integer.parseInt(configurationManager.get("MAX_EXPENSE_PAGE_SIZE")));
 	}
 
 	/**
@@ -554,7 +816,7 @@ public class ExpenseService implements IExpenseService {
 		if (!currentUser.getRoleTypes().contains(UserRoleType.SUPER_APPROVER)
 				&& !currentUser.getRoleTypes().contains(UserRoleType.FINANCE)) {
 			// fetch the expense owner
-			ExternalFacingUser expenseOwner = mySqlUser.getUser(expenseEntity.getUserId());
+			ExternalFacingUser expenseOwner = userDirectory.getUser(expenseEntity.getUserId());
 			// check if current user is approver for the expense owner or is
 			// expense owner
 			if (!expenseOwner.getId().equals(currentUser.getId()))
@@ -566,4 +828,30 @@ public class ExpenseService implements IExpenseService {
 		return expenseEntity;
 	}
 
+	/**
+	 * @see IExpenseService.getExpenseAsOf
+	 */
+	@Override
+	public ExpenseEntity getExpenseAsOf(String id, String asOf)
+			throws ValidationFailedException, NotFoundException, BadRequestException, UnauthorizedException {
+		// check if date is not null or empty
+		if (asOf == null || asOf.isEmpty())
+			throw new ValidationFailedException("ExpenseEntity", "Date is null or empty", null);
+		Date asOfDate;
+		try {
+			asOfDate = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(asOf);
+		} catch (ParseException ex) {
+			throw new ValidationFailedException("ExpenseEntity", "Date should be in yyyy-MM-dd HH:mm:ss format", ex);
+		}
+		// fetch the current expense, checking that the user may view it
+		ExpenseEntity expenseEntity = this.getExpenseById(id);
+		if (expenseEntity.getCreationDate() != null && asOfDate.before(expenseEntity.getCreationDate()))
+			throw new NotFoundException("ExpenseEntity", "Expense was not created at the given date", null);
+		// undo the changes made after the date, latest first
+		for (ExpenseHistoryEntity expenseHistoryEntity : mySqlExpense.getExpenseHistoriesAfter(id, asOfDate)) {
+			expenseHistoryEntity.undo(expenseEntity);
+		}
+		return expenseEntity;
+	}
+
 }
@@ -16,7 +16,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.boilerplate.database.interfaces.IFilePointer;
-import com.boilerplate.database.interfaces.IUser;
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.exceptions.rest.NotFoundException;
 import com.boilerplate.exceptions.rest.UnauthorizedException;
@@ -24,6 +23,7 @@ import com.boilerplate.exceptions.rest.UpdateFailedException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
 import com.boilerplate.framework.Logger;
 import com.boilerplate.framework.RequestThreadLocal;
+import com.boilerplate.framework.UserDirectory;
 import com.boilerplate.java.entities.ExpenseEntity;
 import com.boilerplate.java.entities.ExpenseHistoryEntity;
 import com.boilerplate.java.entities.ExternalFacingUser;
@@ -76,18 +76,18 @@ public class FileService implements IFileService {
 	}
 
 	/**
-	 * This is the instance of IUser
+	 * This is the directory of users
 	 */
-	IUser mySqlUser;
+	UserDirectory userDirectory;
 
 	/**
-	 * This method set the mysqluser
+	 * This method is used to set the userDirectory
 	 * 
-	 * @param mySqlUser
-	 *            the mySqlUser to set
+	 * @param userDirectory
+	 *            the userDirectory to set
 	 */
-	public void setMySqlUser(IUser mySqlUser) {
-		this.mySqlUser = mySqlUser;
+	public void setUserDirectory(UserDirectory userDirectory) {
+		this.userDirectory = userDirectory;
 	}
 
 	/**
@@ -211,7 +211,7 @@ public class FileService implements IFileService {
 		if (!currentUser.getRoleTypes().contains(UserRoleType.SUPER_APPROVER)
 				&& !currentUser.getRoleTypes().contains(UserRoleType.FINANCE)) {
 			// fetch the file owner
-			ExternalFacingUser fileOwner = mySqlUser.getUser(fileDetailsEntity.getUserId());
+			ExternalFacingUser fileOwner = userDirectory.getUser(fileDetailsEntity.getUserId());
 			// check if current user is approver for the file owner or is
 			// file owner
 			if (!fileOwner.getId().equals(currentUser.getId()))
@@ -1,22 +1,19 @@
 package com.boilerplate.service.implemetations;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.boilerplate.configurations.ConfigurationManager;
-import com.boilerplate.database.interfaces.IUser;
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.framework.EmailUtility;
 import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.UserDirectory;
 import com.boilerplate.java.collections.BoilerplateList;
 import com.boilerplate.java.entities.ExpenseEntity;
 import com.boilerplate.java.entities.ExternalFacingUser;
 import com.boilerplate.java.entities.UserRoleType;
 import com.boilerplate.service.interfaces.IEmailService;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * this class implements IEmailService
@@ -27,19 +24,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class SendEmailService implements IEmailService {
 
 	/**
-	 * This is the instance of IUser
+	 * This is the directory of users
 	 */
 	@Autowired
-	IUser mySqlUser;
+	UserDirectory userDirectory;
 
 	/**
-	 * This method set the mysqluser
+	 * This method is used to set the userDirectory
 	 * 
-	 * @param mySqlUser
-	 *            the mySqlUser to set
+	 * @param userDirectory
+	 *            the userDirectory to set
 	 */
-	public void setMySqlUser(IUser mySqlUser) {
-		this.mySqlUser = mySqlUser;
+	public void setUserDirectory(UserDirectory userDirectory) {
+		this.userDirectory = userDirectory;
 	}
 
 	/**
@@ -69,11 +66,11 @@ public class SendEmailService implements IEmailService {
 	@Override
 	public void sendEmailOnSubmission(ExpenseEntity expenseEntity, boolean isResubmitted) throws Exception {
 		// fetch user from expense
-		ExternalFacingUser expenseUser = mySqlUser.getUser(expenseEntity.getUserId());
-		// fetch approver from database for this user
-		ExternalFacingUser approver = mySqlUser.getUser(expenseUser.getApproverId());
+		ExternalFacingUser expenseUser = userDirectory.getUser(expenseEntity.getUserId());
+		// fetch approver of this user from the directory
+		ExternalFacingUser approver = userDirectory.getUser(expenseUser.getApproverId());
 		// fetch super approvers
-		List<Map<String, Object>> superUserMap = mySqlUser.getUsersByRole(UserRoleType.SUPER_APPROVER.toString());
+		List<ExternalFacingUser> superUsers = userDirectory.getUsersByRole(UserRoleType.SUPER_APPROVER);
 
 		// prepare tos list
 		BoilerplateList<String> tos = new BoilerplateList<>();
@@ -84,19 +81,11 @@ public class SendEmailService implements IEmailService {
 					"Approver is not assigned to user with id :" + expenseEntity.getUserId());
 		// prepare ccs list
 		BoilerplateList<String> ccs = new BoilerplateList<>();
-		if (superUserMap != null && !superUserMap.isEmpty()) {
-			List<ExternalFacingUser> superUsers = new ArrayList<>();
-			for (Map<String, Object> externalFacingUser : superUserMap) {
-				ExternalFacingUser user = (new ObjectMapper()).convertValue(externalFacingUser,
-						ExternalFacingUser.class);
-				superUsers.add(user);
+		if (superUsers != null && !superUsers.isEmpty()) {
+			// for each super approver add it in ccs list
+			for (ExternalFacingUser superUser : superUsers) {
+				ccs.add(superUser.getEmail());
 			}
-			// check if list of finance is not null or empty
-			if (superUsers != null && superUsers.size() != 0)
-				// for each finance add it in tos list
-				for (ExternalFacingUser eachFinance : superUsers) {
-					ccs.add(eachFinance.getEmail());
-				}
 		} else
 			logger.logWarning("SendEmailService", "sendEmailOnSubmission", "exceptionSendEmailOnSubmission",
 					"No super_approvers found");
@@ -128,7 +117,7 @@ public class SendEmailService implements IEmailService {
 	@Override
 	public void sendEmailOnRejection(ExpenseEntity expenseEntity) throws BadRequestException {
 		// fetch user from expense
-		ExternalFacingUser expenseUser = mySqlUser.getUser(expenseEntity.getUserId());
+		ExternalFacingUser expenseUser = userDirectory.getUser(expenseEntity.getUserId());
 		// prepare tos list
 		BoilerplateList<String> tos = new BoilerplateList<>();
 		tos.add(expenseUser.getEmail());
@@ -153,25 +142,17 @@ public class SendEmailService implements IEmailService {
 	@Override
 	public void sendEmailOnApproval(ExpenseEntity expenseEntity) throws BadRequestException {
 		// fetch user from expense
-		ExternalFacingUser expenseUser = mySqlUser.getUser(expenseEntity.getUserId());
+		ExternalFacingUser expenseUser = userDirectory.getUser(expenseEntity.getUserId());
 
 		// prepare tos list
 		BoilerplateList<String> tos = new BoilerplateList<>();
 		// fetch the finance email id
-		List<Map<String, Object>> financeUserMap = mySqlUser.getUsersByRole(UserRoleType.FINANCE.toString());
-		if (financeUserMap != null && !financeUserMap.isEmpty()) {
-			List<ExternalFacingUser> financeUsers = new ArrayList<>();
-			for (Map<String, Object> externalFacingUser : financeUserMap) {
-				ExternalFacingUser user = (new ObjectMapper()).convertValue(externalFacingUser,
-						ExternalFacingUser.class);
-				financeUsers.add(user);
+		List<ExternalFacingUser> financeUsers = userDirectory.getUsersByRole(UserRoleType.FINANCE);
+		if (financeUsers != null && !financeUsers.isEmpty()) {
+			// for each finance add it in tos list
+			for (ExternalFacingUser eachFinance : financeUsers) {
+				tos.add(eachFinance.getEmail());
 			}
-			// check if list of finance is not null or empty
-			if (financeUsers != null && financeUsers.size() != 0)
-				// for each finance add it in tos list
-				for (ExternalFacingUser eachFinance : financeUsers) {
-					tos.add(eachFinance.getEmail());
-				}
 		} else
 			logger.logWarning("SendEmailService", "sendEmailOnApproval", "exceptionSendEmailOnApproval",
 					"No finance users found");
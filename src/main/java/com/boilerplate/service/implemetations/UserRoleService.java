@@ -5,12 +5,15 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.boilerplate.database.interfaces.FetchProfile;
 import com.boilerplate.database.interfaces.IRole;
 import com.boilerplate.database.interfaces.IUser;
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.exceptions.rest.NotFoundException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
 import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.UnitOfWork;
+import com.boilerplate.framework.UserDirectory;
 import com.boilerplate.java.entities.AssignApproverEntity;
 import com.boilerplate.java.entities.ExternalFacingUser;
 import com.boilerplate.java.entities.SaveRoleEntity;
@@ -57,6 +60,22 @@ public class UserRoleService implements IUserRoleService {
 		this.mySqlRole = mySqlRole;
 	}
 
+	/**
+	 * This is the directory of users
+	 */
+	@Autowired
+	UserDirectory userDirectory;
+
+	/**
+	 * This method is used to set the userDirectory
+	 * 
+	 * @param userDirectory
+	 *            the userDirectory to set
+	 */
+	public void setUserDirectory(UserDirectory userDirectory) {
+		this.userDirectory = userDirectory;
+	}
+
 	/**
 	 * This is the logger
 	 */
@@ -75,6 +94,7 @@ public class UserRoleService implements IUserRoleService {
 			throw new NotFoundException("ExternalFacingUser", "User not found or is inactive", null);
 		// save roles in mysql
 		mySqlRole.saveUserRoles(saveRoleEntity);
+		this.refreshUserAfterCommit(saveRoleEntity.getUserId());
 
 	}
 
@@ -100,23 +120,21 @@ public class UserRoleService implements IUserRoleService {
 		// throw new BadRequestException("AssignApproverEntity", "User Id of
 		// approver does not have sufficient rights",
 		// null);
-		List<ExternalFacingUser> users = new ArrayList<>();
-		// fetch all the users in a list
+		List<String> userIds = new ArrayList<>();
+		// check all the users exist
 		for (String userId : assignApproverEntity.getUsers()) {
 			// check if user exists
 			ExternalFacingUser user = mySqlUser.getUser(userId);
 			if (user == null)
 				throw new NotFoundException("ExternalFacingUser", "User not found while assigning approver", null);
-			users.add(user);
+			userIds.add(user.getId());
 		}
 
-		// for each user in list, fetch the user and set approver and
-		// super-approver and save
-		for (ExternalFacingUser userEntity : users) {
-			// set approver id
-			userEntity.setApproverId(approver.getId());
-			mySqlUser.updateUser(userEntity);
-
+		// set the approver of all the users, only the approver is written so
+		// that no change made to the users by another server is lost
+		mySqlUser.updateUserApprover(userIds, approver.getId());
+		for (String userId : userIds) {
+			this.refreshUserAfterCommit(userId);
 		}
 	}
 
@@ -125,7 +143,7 @@ public class UserRoleService implements IUserRoleService {
 			throws ValidationFailedException, BadRequestException, NotFoundException {
 		// validate entity
 		saveRoleEntity.validate();
-		ExternalFacingUser user = mySqlUser.getUser(saveRoleEntity.getUserId());
+		ExternalFacingUser user = mySqlUser.getUser(saveRoleEntity.getUserId(), FetchProfile.AUTHZ);
 		// check if user exists or not
 		if (user == null || !user.getIsActive())
 			throw new NotFoundException("ExternalFacingUser", "User not found or is inactive", null);
@@ -148,6 +166,23 @@ public class UserRoleService implements IUserRoleService {
 		}
 		// delete the roles
 		mySqlRole.deleteRoles(rolesToDelete);
+		this.refreshUserAfterCommit(saveRoleEntity.getUserId());
+	}
+
+	/**
+	 * This method reads a user again into the directory once the change of its
+	 * roles or approver has committed
+	 * 
+	 * @param userId
+	 *            The id of the user
+	 */
+	private void refreshUserAfterCommit(final String userId) {
+		UnitOfWork.afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				userDirectory.refreshUser(userId);
+			}
+		});
 	}
 
 }
@@ -8,14 +8,16 @@ import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.FetchProfile;
 import com.boilerplate.database.interfaces.IRole;
 import com.boilerplate.database.interfaces.IUser;
 import com.boilerplate.exceptions.rest.BadRequestException;
 import com.boilerplate.exceptions.rest.NotFoundException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
-import com.boilerplate.framework.HttpResponse;
-import com.boilerplate.framework.HttpUtility;
+import com.boilerplate.framework.GoogleIdTokenVerifier;
 import com.boilerplate.framework.Logger;
+import com.boilerplate.framework.UnitOfWork;
+import com.boilerplate.framework.UserDirectory;
 import com.boilerplate.java.entities.ExternalFacingUser;
 import com.boilerplate.java.entities.RoleEntity;
 import com.boilerplate.java.entities.SaveRoleEntity;
@@ -24,7 +26,6 @@ import com.boilerplate.java.entities.UserRoleType;
 import com.boilerplate.service.interfaces.IUserRoleService;
 import com.boilerplate.service.interfaces.IUserService;
 import com.boilerplate.sessions.Session;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * This class Implements the IUserService class
@@ -101,6 +102,38 @@ public class UserService implements IUserService {
 		this.userRoleService = userRoleService;
 	}
 
+	/**
+	 * This is the directory of users
+	 */
+	@Autowired
+	UserDirectory userDirectory;
+
+	/**
+	 * This method is used to set the userDirectory
+	 * 
+	 * @param userDirectory
+	 *            the userDirectory to set
+	 */
+	public void setUserDirectory(UserDirectory userDirectory) {
+		this.userDirectory = userDirectory;
+	}
+
+	/**
+	 * This is the verifier of the Google id tokens
+	 */
+	@Autowired
+	GoogleIdTokenVerifier idTokenVerifier;
+
+	/**
+	 * This method is used to set the idTokenVerifier
+	 * 
+	 * @param idTokenVerifier
+	 *            the idTokenVerifier to set
+	 */
+	public void setIdTokenVerifier(GoogleIdTokenVerifier idTokenVerifier) {
+		this.idTokenVerifier = idTokenVerifier;
+	}
+
 	/**
 	 * This is the instance of configuration manager
 	 */
@@ -125,8 +158,8 @@ public class UserService implements IUserService {
 		// check if user id is not null
 		if (userId == null)
 			throw new BadRequestException("ExternalFacingUser", "User id for fetching user is null", null);
-		// create a new user enityt
-		return mySqlUser.getUser(userId);
+		// the user with its roles from the directory, it is a copy
+		return userDirectory.getUser(userId);
 
 	}
 
@@ -137,8 +170,8 @@ public class UserService implements IUserService {
 	public void disableUser(String userId) throws Exception {
 		if (userId == null)
 			throw new BadRequestException("ExternalFacingUser", "User id is null", null);
-		// check if user exists
-		ExternalFacingUser user = mySqlUser.getUser(userId);
+		// check if user exists, with its roles to check it is not an admin
+		ExternalFacingUser user = mySqlUser.getUser(userId, FetchProfile.AUTHZ);
 		// check if user id is not null
 		if (user == null)
 			throw new NotFoundException("ExternalFacingUser", "User not found", null);
@@ -163,9 +196,11 @@ public class UserService implements IUserService {
 			}
 
 		}
-		// set active to false
-		user.setIsActive(false);
-		mySqlUser.updateUser(user);
+		// set active to false, only the flag is written so that no change
+		// made to the user by another server is lost
+		if (!mySqlUser.updateUserIsActive(userId, false))
+			throw new BadRequestException("ExternalFacingUser", "user is already disabled", null);
+		this.refreshUserAfterCommit(userId);
 		// get all the sessions of this user from redis
 
 	}
@@ -185,9 +220,11 @@ public class UserService implements IUserService {
 		// check if user is already disabled
 		if (user.getIsActive())
 			throw new BadRequestException("ExternalFacingUser", "user is already active", null);
-		// set active to false
-		user.setIsActive(true);
-		mySqlUser.updateUser(user);
+		// set active to true, only the flag is written so that no change
+		// made to the user by another server is lost
+		if (!mySqlUser.updateUserIsActive(userId, true))
+			throw new BadRequestException("ExternalFacingUser", "user is already active", null);
+		this.refreshUserAfterCommit(userId);
 
 	}
 
@@ -196,10 +233,8 @@ public class UserService implements IUserService {
 	 */
 	@Override
 	public Session authenticateUsingGoogle(String idTokenString) throws Exception {
-		// verify the token using url
-		HttpResponse httpResponse = HttpUtility.makeHttpRequest(
-				"https://www.googleapis.com/oauth2/v3/tokeninfo?id_token=" + idTokenString, null, null, null, "POST");
-		Map<String, Object> responseMap = (new ObjectMapper()).readValue(httpResponse.getResponseBody(), Map.class);
+		// verify the token with the signing keys in memory
+		Map<String, Object> responseMap = idTokenVerifier.verify(idTokenString);
 		// check if user belongs to desired hd claim
 		// String hdClaim = String.valueOf(responseMap.get("hd"));
 		// if (!hdClaim.equals(configurationManager.get("HD_CLAIM")) ||
@@ -208,8 +243,12 @@ public class UserService implements IUserService {
 		// belong to this organization", null);
 		// // get email id from response map
 		String email = String.valueOf(responseMap.get("email"));
-		// check if user with this email id exists in the system
-		ExternalFacingUser user = mySqlUser.getUserById(email);
+		// check if user with this email id exists in the system, a user
+		// created on another server since the directory was read is in the
+		// database
+		ExternalFacingUser user = userDirectory.getUserByEmail(email);
+		if (user == null)
+			user = mySqlUser.getUserById(email);
 		// check if user exists in system
 		if (user == null) {
 			// save the new user
@@ -218,6 +257,7 @@ public class UserService implements IUserService {
 					configurationManager.get("DefaultAuthenticationProvider"));
 			// save uer in MySQl
 			user = mySqlUser.createUser(user);
+			this.refreshUserAfterCommit(user.getId());
 			// create a new role entity
 			SaveRoleEntity saveRoleEntity = new SaveRoleEntity(user.getId(), new ArrayList<>(Arrays.asList("1")));
 			// assign default role to user
@@ -227,28 +267,15 @@ public class UserService implements IUserService {
 				throw new BadRequestException("ExternalFacingUser", "User is disabled, please contact your admin",
 						null);
 		}
-		user = null;
-		user = mySqlUser.getUserById(email);
+		// read the user with its roles from the directory, a new user and its
+		// default role are in it already
+		user = userDirectory.getUser(user.getId());
 		// check if user has at least 1 role
 		if (user.getRoles() == null || user.getRoles().size() == 0)
 			throw new BadRequestException("ExternalFacingUser",
 					"User does not have any role, please check with your admin", null);
-
-		// get all roles
-		List<RoleEntity> allRoles = mySqlRole.getAllRoles();
-		List<UserRoleEntity> userRoles = new ArrayList<>();
-		userRoles.addAll(user.getRoles());
-		user.setRoles(userRoles);
-		List<UserRoleType> roleTypes = new ArrayList<>();
-		// for each role entity fetched, add it in role list
-		for (UserRoleEntity userRoleEntity : userRoles) {
-			// for each role
-			for (RoleEntity roleEntity : allRoles) {
-				if (userRoleEntity.getRoleId().equals(roleEntity.getId()))
-					roleTypes.add(UserRoleType.valueOf(roleEntity.getRoleName().toUpperCase()));
-			}
-		}
-		user.setRoleTypes(roleTypes);
+		// set the role types of the roles of the user
+		user.setRoleTypes(userDirectory.getRoleTypes(user.getId()));
 
 		// create a new session with user, return it
 		Session session = sessionManager.createNewSession(user);
@@ -263,4 +290,20 @@ public class UserService implements IUserService {
 		return mySqlUser.getAllUsers();
 	}
 
-}
\ No newline at end of file
+	/**
+	 * This method reads a user again into the directory once the change of the
+	 * user has committed
+	 * 
+	 * @param userId
+	 *            The id of the user
+	 */
+	private void refreshUserAfterCommit(final String userId) {
+		UnitOfWork.afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				userDirectory.refreshUser(userId);
+			}
+		});
+	}
+
+}
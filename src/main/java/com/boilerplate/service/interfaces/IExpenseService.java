@@ -3,7 +3,9 @@ package com.boilerplate.service.interfaces;
 import java.text.ParseException;
 import java.util.List;
 
+import com.boilerplate.database.interfaces.IRowHandler;
 import com.boilerplate.exceptions.rest.BadRequestException;
+import com.boilerplate.exceptions.rest.ConflictException;
 import com.boilerplate.exceptions.rest.NotFoundException;
 import com.boilerplate.exceptions.rest.UnauthorizedException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
@@ -13,6 +15,7 @@ import com.boilerplate.java.entities.ExpenseReportEntity;
 import com.boilerplate.java.entities.ExpenseReviewEntity;
 import com.boilerplate.java.entities.ExpenseStatusType;
 import com.boilerplate.java.entities.FetchExpenseEntity;
+import com.boilerplate.java.entities.GenericPageEncapsulationEntity;
 import com.boilerplate.java.entities.UserRoleType;
 
 /**
@@ -68,8 +71,8 @@ public interface IExpenseService {
 	 * 
 	 * @param fetchExpenseEntity
 	 *            This entity contain user id, date range and status for
-	 *            filtration
-	 * @return Expense list
+	 *            filtration, and the page to be fetched
+	 * @return Page of expenses
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
 	 * @throws NotFoundException
@@ -79,14 +82,20 @@ public interface IExpenseService {
 	 * @throws ParseException
 	 *             Throw this exception if exception occurs while parsing date
 	 */
-	public List<ExpenseEntity> getExpensesForUser(FetchExpenseEntity fetchExpenseEntity)
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForUser(FetchExpenseEntity fetchExpenseEntity)
 			throws ValidationFailedException, NotFoundException, BadRequestException, ParseException;
 
 	/**
 	 * This method is used to get list of expenses filed under a given approver
 	 * or super approver
 	 * 
-	 * @return List of expenses
+	 * @param pageToken
+	 *            This is the token of the page to be fetched, first page is
+	 *            fetched if null
+	 * @param pageSize
+	 *            This is the number of expenses in the page, default is used
+	 *            if null
+	 * @return Page of expenses
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
 	 * @throws NotFoundException
@@ -94,7 +103,7 @@ public interface IExpenseService {
 	 * @throws ValidationFailedException
 	 *             throw this exception if entity is invalid
 	 */
-	public List<ExpenseEntity> getExpensesForApproval()
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForApproval(String pageToken, Integer pageSize)
 			throws NotFoundException, ValidationFailedException, BadRequestException;
 
 	/**
@@ -116,14 +125,22 @@ public interface IExpenseService {
 	/**
 	 * This method is used to get list of expenses for finance in report format
 	 * 
-	 * @return List of expenses
+	 * @param status
+	 *            This is the status of the expenses
+	 * @param pageToken
+	 *            This is the token of the page to be fetched, first page is
+	 *            fetched if null
+	 * @param pageSize
+	 *            This is the number of expenses in the page, default is used
+	 *            if null
+	 * @return Page of expenses
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends a bad request
 	 * @throws NotFoundException
 	 * @throws ValidationFailedException
 	 */
-	public List<ExpenseEntity> getExpensesForFinance(String status)
-			throws BadRequestException, NotFoundException, ValidationFailedException;
+	public GenericPageEncapsulationEntity<ExpenseEntity> getExpensesForFinance(String status, String pageToken,
+			Integer pageSize) throws BadRequestException, NotFoundException, ValidationFailedException;
 
 	/**
 	 * This method is used to approve/rejects/move to ready for payment state
@@ -153,30 +170,72 @@ public interface IExpenseService {
 	 *             Throw this exception if user sends a bad request
 	 * @throws NotFoundException
 	 *             Throw this exception if expense is not found
+	 * @throws ConflictException
+	 *             Throw this exception if the expense was reviewed by someone
+	 *             else after it was read
 	 */
 	public void expenseReviewByFinance(ExpenseReviewEntity expenseReviewEntity)
-			throws ValidationFailedException, BadRequestException, NotFoundException;
+			throws ValidationFailedException, BadRequestException, NotFoundException, ConflictException;
 
 	/**
-	 * This method is used to get expense reports for the given status
+	 * This method is used to get expense reports for the given status. The
+	 * report of each user is handed to the report handler as soon as it is
+	 * built, ordered by user.
 	 * 
 	 * @param status
 	 *            This is the status in string format
-	 * @return List of reports for each the user
+	 * @param reportHandler
+	 *            This is the handler to which the report of each user is
+	 *            handed
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends bad request
 	 * @throws NotFoundException
-	 *             Throw this exception if no expenses are found
+	 *             Throw this exception if no expenses are found, no report is
+	 *             handed over in this case
+	 * @throws ValidationFailedException
+	 *             throw this exception if user sends some invalid values
+	 * @throws Exception
+	 *             Throw this exception if the report handler fails
+	 */
+	public void getExpenseReportsForFinance(String status, IRowHandler<ExpenseReportEntity> reportHandler)
+			throws BadRequestException, NotFoundException, ValidationFailedException, Exception;
+
+	/**
+	 * This method is used to export the expenses in a status for finance. The
+	 * expenses are handed to the row handler one at a time as they are read
+	 * from the database, so any number of expenses can be exported.
+	 * 
+	 * @param status
+	 *            This is the status in string format
+	 * @param startDate
+	 *            This is the date from which expenses are exported in
+	 *            yyyy-MM-dd format, it is optional
+	 * @param endDate
+	 *            This is the date till which expenses are exported in
+	 *            yyyy-MM-dd format, it is needed if start date is given
+	 * @param rowHandler
+	 *            This is the handler to which each expense row is handed
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends bad request
+	 * @throws NotFoundException
+	 *             Throw this exception if no expenses are found, no row is
+	 *             handed over in this case
 	 * @throws ValidationFailedException
 	 *             throw this exception if user sends some invalid values
 	 */
-	public List<ExpenseReportEntity> getExpenseReportsForFinance(String status)
-			throws BadRequestException, NotFoundException, ValidationFailedException;
+	public void exportExpensesForFinance(String status, String startDate, String endDate,
+			IRowHandler<Object[]> rowHandler) throws BadRequestException, NotFoundException, ValidationFailedException;
 
 	/**
 	 * This method is used to get expense list for approvers
 	 * 
-	 * @return List of expenses
+	 * @param pageToken
+	 *            This is the token of the page to be fetched, first page is
+	 *            fetched if null
+	 * @param pageSize
+	 *            This is the number of expenses in the page, default is used
+	 *            if null
+	 * @return Page of expenses
 	 * @throws NotFoundException
 	 *             Throw this exception if no expenses are found
 	 * @throws ValidationFailedException
@@ -184,8 +243,8 @@ public interface IExpenseService {
 	 * @throws BadRequestException
 	 *             Throw this exception if user sends bad request
 	 */
-	public List<ExpenseListViewEntity> getExpenseListForApprovers()
-			throws NotFoundException, ValidationFailedException, BadRequestException;
+	public GenericPageEncapsulationEntity<ExpenseListViewEntity> getExpenseListForApprovers(String pageToken,
+			Integer pageSize) throws NotFoundException, ValidationFailedException, BadRequestException;
 
 	/**
 	 * This method is used to fetch expense entity by its id
@@ -204,4 +263,54 @@ public interface IExpenseService {
 	 */
 	public ExpenseEntity getExpenseById(String id)
 			throws ValidationFailedException, NotFoundException, BadRequestException, UnauthorizedException;
+
+	/**
+	 * This method is used to fetch an expense as it was at a given date, the
+	 * changes saved in its history after the date are undone
+	 * 
+	 * @param id
+	 *            This is the id of the expense
+	 * @param asOf
+	 *            This is the date in yyyy-MM-dd HH:mm:ss format
+	 * @return Expense entity as it was at the date
+	 * @throws NotFoundException
+	 *             Throw this exception if expense is not found or was created
+	 *             after the date
+	 * @throws ValidationFailedException
+	 *             Throw this exception if any validation fails
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends bad request
+	 * @throws UnauthorizedException
+	 *             Throw this exception if user is not authorized
+	 */
+	public ExpenseEntity getExpenseAsOf(String id, String asOf)
+			throws ValidationFailedException, NotFoundException, BadRequestException, UnauthorizedException;
+
+	/**
+	 * This method is used to search the expenses the current user may view by
+	 * the words of their title and description, amount range and status. The
+	 * search is made on the in memory index, the expenses changed latest are
+	 * first.
+	 * 
+	 * @param keywords
+	 *            This is the words all of which must be in the title or
+	 *            description, optional
+	 * @param minimumAmount
+	 *            This is the minimum amount, optional
+	 * @param maximumAmount
+	 *            This is the maximum amount, optional
+	 * @param status
+	 *            This is the status, optional
+	 * @param pageSize
+	 *            This is the maximum number of expenses returned
+	 * @return List of expenses found
+	 * @throws ValidationFailedException
+	 *             Throw this exception if any validation fails
+	 * @throws NotFoundException
+	 *             Throw this exception if no expense is found
+	 * @throws BadRequestException
+	 *             Throw this exception if user sends bad request
+	 */
+	public List<ExpenseListViewEntity> searchExpenses(String keywords, Float minimumAmount, Float maximumAmount,
+			String status, Integer pageSize) throws ValidationFailedException, NotFoundException, BadRequestException;
 }
@@ -72,6 +72,7 @@ public class Session extends BaseEntity implements Serializable{
 	 */
 	public void setExternalFacingUser(ExternalFacingUser user){
 		this.user = user;
+		this.isChanged = true;
 	}
 	
 	/**
@@ -128,6 +129,7 @@ public class Session extends BaseEntity implements Serializable{
 	 */
 	public void setSessionId(String sessionId) {
 		this.sessionId = sessionId;
+		this.isChanged = true;
 	}
 
 	/**
@@ -144,6 +146,29 @@ public class Session extends BaseEntity implements Serializable{
 	 */
 	public void setUserId(String userId) {
 		this.userId = userId;
+		this.isChanged = true;
+	}
+	
+	/**
+	 * This is true if the session has changed since it was read or saved,
+	 * a new session has changed. It is not saved with the session.
+	 */
+	private transient boolean isChanged = true;
+	
+	/**
+	 * This method checks if the session has changed since it was read or saved
+	 * @return True if the session has changed
+	 */
+	public boolean hasChanged(){
+		return this.isChanged;
+	}
+	
+	/**
+	 * This method marks the session as being the same as the saved one, it is
+	 * called once the session is read or saved
+	 */
+	public void markSaved(){
+		this.isChanged = false;
 	}
 	
 	/**
@@ -0,0 +1,552 @@
+package com.boilerplate.sessions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.boilerplate.java.Base;
+import com.boilerplate.java.entities.ExternalFacingUser;
+import com.boilerplate.java.entities.UserRoleEntity;
+import com.boilerplate.java.entities.UserRoleType;
+
+/**
+ * This class converts a session to and from the bytes saved in cache and
+ * database. The bytes start with a two byte marker and the version of the
+ * format, followed by the fields of the session. Each field is its tag, the
+ * length of its value and the value, so that a field added later is skipped
+ * by a server which does not know its tag, and a field missing is left null.
+ * A field which is null is not written.
+ *
+ * Sessions saved before this format are XML, which is read with
+ * Base.fromXML, so that they stay valid till they expire.
+ *
+ * Tags must never be reused for another field, the version is raised only if
+ * the format changes in a way older servers can not read.
+ *
+ * @author ruchi
+ *
+ */
+public final class SessionCodec {
+
+	/**
+	 * This is the marker at the start of the bytes of a session
+	 */
+	private static final byte[] MARKER = { (byte) 0xB5, (byte) 0x53 };
+
+	/**
+	 * This is the version of the format written
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * These are the tags of the fields of the session
+	 */
+	private static final int SESSION_ID = 1;
+	private static final int SESSION_SESSION_ID = 2;
+	private static final int SESSION_USER_ID = 3;
+	private static final int SESSION_CREATION_DATE = 4;
+	private static final int SESSION_UPDATION_DATE = 5;
+	private static final int SESSION_USER = 6;
+
+	/**
+	 * These are the tags of the fields of the user
+	 */
+	private static final int USER_ID = 1;
+	private static final int USER_USER_ID = 2;
+	private static final int USER_EMAIL = 3;
+	private static final int USER_FIRST_NAME = 4;
+	private static final int USER_LAST_NAME = 5;
+	private static final int USER_IS_ACTIVE = 6;
+	private static final int USER_APPROVER_ID = 7;
+	private static final int USER_AUTHENTICATION_PROVIDER = 8;
+	private static final int USER_ROLES = 9;
+	private static final int USER_ROLE_TYPES = 10;
+	private static final int USER_CREATION_DATE = 11;
+	private static final int USER_UPDATION_DATE = 12;
+
+	/**
+	 * This is the tag of each item of a list
+	 */
+	private static final int LIST_ITEM = 1;
+
+	/**
+	 * These are the tags of the fields of the role of a user
+	 */
+	private static final int ROLE_ID = 1;
+	private static final int ROLE_ROLE_ID = 2;
+	private static final int ROLE_USER_ID = 3;
+
+	/**
+	 * This class only has static methods
+	 */
+	private SessionCodec() {
+	}
+
+	/**
+	 * This method converts a session to bytes
+	 *
+	 * @param session
+	 *            The session
+	 * @return The bytes of the session
+	 */
+	public static byte[] encode(Session session) {
+		FieldWriter writer = new FieldWriter();
+		writer.output.write(MARKER, 0, MARKER.length);
+		writer.output.write(VERSION);
+		writer.writeString(SESSION_ID, session.getId());
+		writer.writeString(SESSION_SESSION_ID, session.getSessionId());
+		writer.writeString(SESSION_USER_ID, session.getUserId());
+		writer.writeDate(SESSION_CREATION_DATE, session.getCreationDate());
+		writer.writeDate(SESSION_UPDATION_DATE, session.getUpdationDate());
+		if (session.getExternalFacingUser() != null) {
+			writer.writeBytes(SESSION_USER, encodeUser(session.getExternalFacingUser()));
+		}
+		return writer.output.toByteArray();
+	}
+
+	/**
+	 * This method converts bytes read from cache or database to a session,
+	 * the bytes may be of this format or the XML of a session saved before it
+	 *
+	 * @param bytes
+	 *            The bytes of the session
+	 * @return The session, null if the bytes are null
+	 * @throws IOException
+	 *             Throw this exception if the bytes are not a session or are
+	 *             of a later version of the format
+	 */
+	public static Session decode(byte[] bytes) throws IOException {
+		if (bytes == null) {
+			return null;
+		}
+		if (!isEncoded(bytes)) {
+			Session session = Base.fromXML(new String(bytes, StandardCharsets.UTF_8), Session.class);
+			if (session == null)
+				throw new IOException("The value is neither a session nor the XML of a session");
+			return session;
+		}
+		if (bytes.length < MARKER.length + 1 || (bytes[MARKER.length] & 0xFF) > VERSION)
+			throw new IOException("The session is of an unknown version of the format");
+		Session session = new Session();
+		FieldReader reader = new FieldReader(bytes, MARKER.length + 1, bytes.length);
+		while (reader.next()) {
+			switch (reader.tag) {
+			case SESSION_ID:
+				session.setId(reader.readString());
+				break;
+			case SESSION_SESSION_ID:
+				session.setSessionId(reader.readString());
+				break;
+			case SESSION_USER_ID:
+				session.setUserId(reader.readString());
+				break;
+			case SESSION_CREATION_DATE:
+				session.setCreationDate(reader.readDate());
+				break;
+			case SESSION_UPDATION_DATE:
+				session.setUpdationDate(reader.readDate());
+				break;
+			case SESSION_USER:
+				session.setExternalFacingUser(decodeUser(reader.readMessage()));
+				break;
+			default:
+				// a field added after this version, skipped
+			}
+		}
+		return session;
+	}
+
+	/**
+	 * This method checks if bytes are of this format rather than XML
+	 *
+	 * @param bytes
+	 *            The bytes
+	 * @return True if the bytes start with the marker
+	 */
+	public static boolean isEncoded(byte[] bytes) {
+		return bytes.length >= MARKER.length && bytes[0] == MARKER[0] && bytes[1] == MARKER[1];
+	}
+
+	/**
+	 * This method converts the user of a session to bytes
+	 *
+	 * @param user
+	 *            The user
+	 * @return The bytes of the user
+	 */
+	private static byte[] encodeUser(ExternalFacingUser user) {
+		FieldWriter writer = new FieldWriter();
+		writer.writeString(USER_ID, user.getId());
+		writer.writeString(USER_USER_ID, user.getUserId());
+		writer.writeString(USER_EMAIL, user.getEmail());
+		writer.writeString(USER_FIRST_NAME, user.getFirstName());
+		writer.writeString(USER_LAST_NAME, user.getLastName());
+		writer.writeBoolean(USER_IS_ACTIVE, user.getIsActive());
+		writer.writeString(USER_APPROVER_ID, user.getApproverId());
+		writer.writeString(USER_AUTHENTICATION_PROVIDER, user.getAuthenticationProvider());
+		if (user.getRoles() != null) {
+			FieldWriter rolesWriter = new FieldWriter();
+			for (UserRoleEntity role : user.getRoles()) {
+				FieldWriter roleWriter = new FieldWriter();
+				roleWriter.writeString(ROLE_ID, role.getId());
+				roleWriter.writeString(ROLE_ROLE_ID, role.getRoleId());
+				roleWriter.writeString(ROLE_USER_ID, role.getUserId());
+				rolesWriter.writeBytes(LIST_ITEM, roleWriter.output.toByteArray());
+			}
+			writer.writeBytes(USER_ROLES, rolesWriter.output.toByteArray());
+		}
+		if (user.getRoleTypes() != null) {
+			FieldWriter roleTypesWriter = new FieldWriter();
+			for (UserRoleType roleType : user.getRoleTypes()) {
+				roleTypesWriter.writeString(LIST_ITEM, roleType.name());
+			}
+			writer.writeBytes(USER_ROLE_TYPES, roleTypesWriter.output.toByteArray());
+		}
+		writer.writeDate(USER_CREATION_DATE, user.getCreationDate());
+		writer.writeDate(USER_UPDATION_DATE, user.getUpdationDate());
+		return writer.output.toByteArray();
+	}
+
+	/**
+	 * This method converts bytes to the user of a session
+	 *
+	 * @param reader
+	 *            The reader of the bytes of the user
+	 * @return The user
+	 * @throws IOException
+	 *             Throw this exception if the bytes are not a user
+	 */
+	private static ExternalFacingUser decodeUser(FieldReader reader) throws IOException {
+		ExternalFacingUser user = new ExternalFacingUser();
+		while (reader.next()) {
+			switch (reader.tag) {
+			case USER_ID:
+				user.setId(reader.readString());
+				break;
+			case USER_USER_ID:
+				user.setUserId(reader.readString());
+				break;
+			case USER_EMAIL:
+				user.setEmail(reader.readString());
+				break;
+			case USER_FIRST_NAME:
+				user.setFirstName(reader.readString());
+				break;
+			case USER_LAST_NAME:
+				user.setLastName(reader.readString());
+				break;
+			case USER_IS_ACTIVE:
+				user.setIsActive(reader.readBoolean());
+				break;
+			case USER_APPROVER_ID:
+				user.setApproverId(reader.readString());
+				break;
+			case USER_AUTHENTICATION_PROVIDER:
+				user.setAuthenticationProvider(reader.readString());
+				break;
+			case USER_ROLES:
+				List<UserRoleEntity> roles = new ArrayList<>();
+				FieldReader rolesReader = reader.readMessage();
+				while (rolesReader.next()) {
+					if (rolesReader.tag == LIST_ITEM)
+						roles.add(decodeRole(rolesReader.readMessage()));
+				}
+				user.setRoles(roles);
+				break;
+			case USER_ROLE_TYPES:
+				List<UserRoleType> roleTypes = new ArrayList<>();
+				FieldReader roleTypesReader = reader.readMessage();
+				while (roleTypesReader.next()) {
+					if (roleTypesReader.tag == LIST_ITEM) {
+						UserRoleType roleType = toRoleType(roleTypesReader.readString());
+						if (roleType != null)
+							roleTypes.add(roleType);
+					}
+				}
+				user.setRoleTypes(roleTypes);
+				break;
+			case USER_CREATION_DATE:
+				user.setCreationDate(reader.readDate());
+				break;
+			case USER_UPDATION_DATE:
+				user.setUpdationDate(reader.readDate());
+				break;
+			default:
+				// a field added after this version, skipped
+			}
+		}
+		return user;
+	}
+
+	/**
+	 * This method converts bytes to a role of a user
+	 *
+	 * @param reader
+	 *            The reader of the bytes of the role
+	 * @return The role
+	 * @throws IOException
+	 *             Throw this exception if the bytes are not a role
+	 */
+	private static UserRoleEntity decodeRole(FieldReader reader) throws IOException {
+		UserRoleEntity role = new UserRoleEntity();
+		while (reader.next()) {
+			switch (reader.tag) {
+			case ROLE_ID:
+				role.setId(reader.readString());
+				break;
+			case ROLE_ROLE_ID:
+				role.setRoleId(reader.readString());
+				break;
+			case ROLE_USER_ID:
+				role.setUserId(reader.readString());
+				break;
+			default:
+				// a field added after this version, skipped
+			}
+		}
+		return role;
+	}
+
+	/**
+	 * This method gets the role type of a name, a role type added after this
+	 * version is not known and is skipped
+	 *
+	 * @param name
+	 *            The name of the role type
+	 * @return The role type, null if the name is not known
+	 */
+	private static UserRoleType toRoleType(String name) {
+		try {
+			return UserRoleType.valueOf(name);
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * This class writes fields as tag, length and value
+	 */
+	private static final class FieldWriter {
+
+		/**
+		 * This is the bytes written
+		 */
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+
+		/**
+		 * This method writes a string field, nothing is written if it is null
+		 *
+		 * @param tag
+		 *            The tag of the field
+		 * @param value
+		 *            The value
+		 */
+		private void writeString(int tag, String value) {
+			if (value != null) {
+				this.writeBytes(tag, value.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		/**
+		 * This method writes a date field as milli seconds, nothing is written
+		 * if it is null
+		 *
+		 * @param tag
+		 *            The tag of the field
+		 * @param value
+		 *            The value
+		 */
+		private void writeDate(int tag, Date value) {
+			if (value != null) {
+				long time = value.getTime();
+				byte[] bytes = new byte[8];
+				for (int index = 7; index >= 0; index--) {
+					bytes[index] = (byte) time;
+					time >>>= 8;
+				}
+				this.writeBytes(tag, bytes);
+			}
+		}
+
+		/**
+		 * This method writes a boolean field
+		 *
+		 * @param tag
+		 *            The tag of the field
+		 * @param value
+		 *            The value
+		 */
+		private void writeBoolean(int tag, boolean value) {
+			this.writeBytes(tag, new byte[] { (byte) (value ? 1 : 0) });
+		}
+
+		/**
+		 * This method writes a field
+		 *
+		 * @param tag
+		 *            The tag of the field
+		 * @param value
+		 *            The bytes of the value
+		 */
+		private void writeBytes(int tag, byte[] value) {
+			this.writeVarint(tag);
+			this.writeVarint(value.length);
+			output.write(value, 0, value.length);
+		}
+
+		/**
+		 * This method writes a number in as few bytes as it needs, seven bits
+		 * in a byte with the high bit set if more bytes follow
+		 *
+		 * @param value
+		 *            The number, not negative
+		 */
+		private void writeVarint(int value) {
+			while ((value & ~0x7F) != 0) {
+				output.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			output.write(value);
+		}
+	}
+
+	/**
+	 * This class reads the fields written by FieldWriter
+	 */
+	private static final class FieldReader {
+
+		/**
+		 * This is the bytes read
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * This is the position of the next byte to be read
+		 */
+		private int position;
+
+		/**
+		 * This is the position after the last byte to be read
+		 */
+		private final int end;
+
+		/**
+		 * This is the tag of the current field
+		 */
+		private int tag;
+
+		/**
+		 * This is the position of the value of the current field
+		 */
+		private int valueStart;
+
+		/**
+		 * This is the length of the value of the current field
+		 */
+		private int valueLength;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param bytes
+		 *            The bytes
+		 * @param start
+		 *            The position of the first field
+		 * @param end
+		 *            The position after the last field
+		 */
+		private FieldReader(byte[] bytes, int start, int end) {
+			this.bytes = bytes;
+			this.position = start;
+			this.end = end;
+		}
+
+		/**
+		 * This method moves to the next field
+		 *
+		 * @return True if there is a field, false at the end
+		 * @throws IOException
+		 *             Throw this exception if the field runs past the end
+		 */
+		private boolean next() throws IOException {
+			if (position >= end) {
+				return false;
+			}
+			tag = this.readVarint();
+			valueLength = this.readVarint();
+			valueStart = position;
+			if (valueLength < 0 || valueLength > end - position)
+				throw new IOException("The field " + tag + " of the session runs past its end");
+			position += valueLength;
+			return true;
+		}
+
+		/**
+		 * This method reads the current field as a string
+		 *
+		 * @return The value
+		 */
+		private String readString() {
+			return new String(bytes, valueStart, valueLength, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * This method reads the current field as a date
+		 *
+		 * @return The value
+		 * @throws IOException
+		 *             Throw this exception if the field is not eight bytes
+		 */
+		private Date readDate() throws IOException {
+			if (valueLength != 8)
+				throw new IOException("The field " + tag + " of the session is not a date");
+			long time = 0;
+			for (int index = 0; index < 8; index++) {
+				time = (time << 8) | (bytes[valueStart + index] & 0xFF);
+			}
+			return new Date(time);
+		}
+
+		/**
+		 * This method reads the current field as a boolean
+		 *
+		 * @return The value
+		 */
+		private boolean readBoolean() {
+			return valueLength > 0 && bytes[valueStart] != 0;
+		}
+
+		/**
+		 * This method reads the fields within the current field
+		 *
+		 * @return The reader of the fields within
+		 */
+		private FieldReader readMessage() {
+			return new FieldReader(bytes, valueStart, valueStart + valueLength);
+		}
+
+		/**
+		 * This method reads a number written by FieldWriter.writeVarint
+		 *
+		 * @return The number
+		 * @throws IOException
+		 *             Throw this exception if the number runs past the end
+		 */
+		private int readVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				if (position >= end)
+					throw new IOException("The session ends within a field");
+				int eachByte = bytes[position++];
+				value |= (eachByte & 0x7F) << shift;
+				if ((eachByte & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("The session has a malformed field");
+		}
+	}
+}
@@ -9,7 +9,7 @@ import com.boilerplate.exceptions.rest.NotFoundException;
 import com.boilerplate.exceptions.rest.ValidationFailedException;
 import com.boilerplate.framework.Logger;
 import com.boilerplate.java.Constants;
-import com.boilerplate.java.collections.BoilerplateList;
+import com.boilerplate.java.collections.BoilerplateMap;
 import com.boilerplate.java.entities.ExternalFacingUser;
 
 public class SessionManager {
@@ -51,22 +51,39 @@ public class SessionManager {
 	}
 
 	/**
-	 * This is an instance of the queue job, to save the session back on to the
-	 * database async
+	 * This is the channel which tells the other servers of the sessions
+	 * changed on this one
 	 */
-	@Autowired
-	com.boilerplate.jobs.QueueReaderJob queueReaderJob;
+	com.boilerplate.database.interfaces.ISessionInvalidation sessionInvalidation;
 
 	/**
-	 * This sets the queue reader jon
+	 * This method sets the session invalidation channel, sessions are not
+	 * kept in memory without it
 	 * 
-	 * @param queueReaderJob
-	 *            The queue reader jon
+	 * @param sessionInvalidation
+	 *            The session invalidation channel
 	 */
-	public void setQueueReaderJob(com.boilerplate.jobs.QueueReaderJob queueReaderJob) {
-		this.queueReaderJob = queueReaderJob;
+	public void setSessionInvalidation(
+			com.boilerplate.database.interfaces.ISessionInvalidation sessionInvalidation) {
+		this.sessionInvalidation = sessionInvalidation;
 	}
 
+	/**
+	 * This is the sessions used recently on this server
+	 */
+	private SessionNearCache sessionNearCache;
+
+	/**
+	 * This is the buffer of the sessions to be saved in the background
+	 */
+	private SessionWriteBehind sessionWriteBehind;
+
+	/**
+	 * This is the milli seconds after which a session which has not changed is
+	 * saved again to move its expiry on
+	 */
+	private long sessionTouchIntervalInMilliSeconds;
+
 	/**
 	 * This is an annonympus session which never expires and is not stored on
 	 * cache or DB
@@ -78,14 +95,11 @@ public class SessionManager {
 	 */
 	private static int sessionTimeOut = 43200 * 60 * 1000;
 
-	/**
-	 * The subject for saving to background database
-	 */
-	private BoilerplateList<String> subjects = new BoilerplateList<String>();
-
 	/**
 	 * This method gets a session with the given id. The method first checks if
-	 * the session is on cache, if not then the method gets it from database
+	 * the session is waiting to be saved or is kept in memory by this server,
+	 * then if the session is on cache, if not then the method gets it from
+	 * database
 	 * 
 	 * @param sessionId
 	 *            The id of the session
@@ -99,12 +113,28 @@ public class SessionManager {
 		if (sessionId == null) {
 			return null;
 		}
-		// first check if the session exists in cache
-		Session session = getSessionFromCache(sessionId);
-
-		// if not then check session exists in DB
+		// first check if the session is waiting to be saved by this server
+		Session session = sessionWriteBehind == null ? null : sessionWriteBehind.getPending(sessionId.toUpperCase());
+		// then check if the session is kept in memory
+		if (session == null && sessionNearCache != null) {
+			session = sessionNearCache.get(sessionId.toUpperCase());
+		}
 		if (session == null) {
-			session = this.session.getSession(sessionId);
+			long generation = sessionNearCache == null ? 0 : sessionNearCache.getGeneration();
+			// then check if the session exists in cache
+			session = getSessionFromCache(sessionId);
+
+			// if not then check session exists in DB
+			if (session == null) {
+				session = this.session.getSession(sessionId);
+			}
+			// the session is the same as the saved one till it is changed
+			if (session != null) {
+				session.markSaved();
+				if (sessionNearCache != null) {
+					sessionNearCache.put(session, generation);
+				}
+			}
 		}
 		if (session != null) {
 			// if session has expired
@@ -122,7 +152,11 @@ public class SessionManager {
 	}
 
 	/**
-	 * THis method saves the sesion before exiting the thread
+	 * THis method saves the sesion before exiting the thread. A session which
+	 * has not changed is saved only once in the touch interval to move its
+	 * expiry on, else it is not saved at all. The session is put in the write
+	 * behind buffer, which saves the latest version of each session to cache
+	 * and database in the background.
 	 * 
 	 * @param session
 	 *            The session to be saved
@@ -136,22 +170,72 @@ public class SessionManager {
 				return;
 			}
 		}
-		session.setUpdationDate(new Date());
-		// put the session back on cache with new expiry
+		long now = System.currentTimeMillis();
+		if (!session.hasChanged() && session.getUpdationDate() != null
+				&& now - session.getUpdationDate().getTime() < sessionTouchIntervalInMilliSeconds) {
+			return;
+		}
+		session.setUpdationDate(new Date(now));
+		// we dont write back to DB from here itself because it will cause
+		// performance issue, and we cant just rely upon cache because during a
+		// memeory preassure the cache may be evicted
+		sessionWriteBehind.offer(session);
+	}
+
+	/**
+	 * This method saves a session to cache and database, it is called by the
+	 * write behind buffer. A session which has been deleted from the database
+	 * meanwhile, as by a logout on another server, is not saved again.
+	 * 
+	 * @param session
+	 *            The session to be saved
+	 */
+	void persistSession(Session session) {
+		// put the session back on cache with new expiry, before the database
+		// so that a logout after the update also removes it from cache
 		putSessionOnCache(session);
+		if (this.session.update(session) == null) {
+			this.removeSessionFromCache(session.getSessionId());
+			return;
+		}
+		this.sessionUpdated(session);
+	}
 
-		// the queue job will put it back in database we dont write back to DB
-		// from here itself because it will cause performance issue
-		// and we cant just rely upon cache because during a memeory preassure
-		// the cache may be evicted
+	/**
+	 * This method keeps a session saved by this server in memory and tells
+	 * the other servers to drop their copy of it
+	 * 
+	 * @param session
+	 *            The session saved
+	 */
+	private void sessionUpdated(Session session) {
+		if (sessionNearCache != null) {
+			sessionNearCache.put(session, sessionNearCache.getGeneration());
+		}
+		if (sessionInvalidation != null) {
+			sessionInvalidation.publish(session.getSessionId().toUpperCase(), false);
+		}
+	}
 
-		try {
-			queueReaderJob.requestBackroundWorkItem(session, subjects, "SessionManager", "getSession");
-		} catch (Exception ex) {
-			// if there is an issue during accessing queue we should save the
-			// session to the database
-			this.saveSession(session);
+	/**
+	 * This method gets the counters of the write behind buffer of sessions
+	 * 
+	 * @return The map of counter name and value
+	 */
+	public BoilerplateMap<String, Long> getWriteStatistics() {
+		return sessionWriteBehind.getStatistics();
+	}
+
+	/**
+	 * This method gets the counters of the sessions kept in memory
+	 * 
+	 * @return The map of counter name and value
+	 */
+	public BoilerplateMap<String, Long> getNearCacheStatistics() {
+		if (sessionNearCache == null) {
+			return new BoilerplateMap<>();
 		}
+		return sessionNearCache.getStatistics();
 	}
 
 	/**
@@ -165,7 +249,8 @@ public class SessionManager {
 		Session session = null;
 		try {
 			if (CacheFactory.getInstance().isCacheEnabled()) {
-				session = CacheFactory.getInstance().get(Constants.SESSION + sessionId.toUpperCase(), Session.class);
+				session = SessionCodec
+						.decode(CacheFactory.getInstance().getBytes(Constants.SESSION + sessionId.toUpperCase()));
 			}
 		} catch (Exception ex) {
 			logger.logException("SessionManager", "getSession", "Get Session From cache", ex.toString(), ex);
@@ -182,7 +267,8 @@ public class SessionManager {
 	private void putSessionOnCache(Session session) {
 		try {
 			if (CacheFactory.getInstance().isCacheEnabled()) {
-				CacheFactory.getInstance().add(Constants.SESSION + session.getSessionId(), session, sessionTimeOut);
+				CacheFactory.getInstance().addBytes(Constants.SESSION + session.getSessionId(),
+						SessionCodec.encode(session), sessionTimeOut);
 			}
 		} catch (Exception ex) {
 			// although there is an error in accessing cache
@@ -194,6 +280,22 @@ public class SessionManager {
 		}
 	}
 
+	/**
+	 * This method removes a session from cache
+	 * 
+	 * @param sessionId
+	 *            The id of the session
+	 */
+	private void removeSessionFromCache(String sessionId) {
+		try {
+			if (CacheFactory.getInstance().isCacheEnabled()) {
+				CacheFactory.getInstance().remove(Constants.SESSION + sessionId.toUpperCase());
+			}
+		} catch (Exception ex) {
+			logger.logException("SessionManager", "removeSessionFromCache", "try-catch block", ex.toString(), ex);
+		}
+	}
+
 	/**
 	 * This method creates a session for the given user and saves it to the
 	 * database and cache. If the user is not saved to cache it will not throw
@@ -211,6 +313,7 @@ public class SessionManager {
 		this.saveSession(session);
 		// Save session on cache
 		putSessionOnCache(session);
+		session.markSaved();
 		return session;
 	}
 
@@ -231,10 +334,14 @@ public class SessionManager {
 	 * 
 	 * @param session
 	 *            The session
-	 * @return The session
+	 * @return The session, null if the session has been deleted
 	 */
 	public Session updateSession(Session session) {
-		return this.session.update(session);
+		if (this.session.update(session) == null) {
+			return null;
+		}
+		this.sessionUpdated(session);
+		return session;
 	}
 
 	/**
@@ -251,8 +358,52 @@ public class SessionManager {
 		sessionTimeOut = Integer.parseInt(configurationManager.get("SessionTimeOutInMinutes") == null
 				? configurationManager.get("SessionTimeOutInMinutes")
 				: configurationManager.get("SessionTimeOutInMinutes")) * 60;
-		this.subjects.add(Constants.SaveSessionToDatabase);
+		sessionTouchIntervalInMilliSeconds = Long
+				.parseLong(configurationManager.get("SESSION_TOUCH_INTERVAL_IN_SECONDS")) * 1000;
+		sessionWriteBehind = new SessionWriteBehind(this,
+				Long.parseLong(configurationManager.get("SESSION_WRITE_BEHIND_INTERVAL_IN_MILLISECONDS")),
+				Integer.parseInt(configurationManager.get("SESSION_WRITE_BEHIND_MAXIMUM_PENDING")));
+		// without invalidations a session changed on another server would be
+		// used till it expires, so sessions are kept only with them
+		if (sessionInvalidation != null) {
+			sessionNearCache = new SessionNearCache(
+					Integer.parseInt(configurationManager.get("SESSION_NEAR_CACHE_MAXIMUM_SIZE")),
+					Long.parseLong(configurationManager.get("SESSION_NEAR_CACHE_TIME_TO_LIVE_IN_SECONDS")) * 1000);
+			sessionInvalidation.subscribe(new com.boilerplate.database.interfaces.ISessionInvalidation.Listener() {
+				@Override
+				public void onInvalidate(String sessionId, boolean isDeleted) {
+					sessionNearCache.invalidate(sessionId);
+					// a session logged out elsewhere must not be saved again
+					// by this server
+					if (isDeleted) {
+						sessionWriteBehind.discard(sessionId);
+					}
+				}
+
+				@Override
+				public void onSubscribe() {
+					sessionNearCache.setEnabled(true);
+				}
+
+				@Override
+				public void onUnsubscribe() {
+					sessionNearCache.setEnabled(false);
+				}
+			});
+		}
+	}
 
+	/**
+	 * This method saves the sessions waiting in the write behind buffer, it is
+	 * called when the application stops
+	 */
+	public void stop() {
+		if (sessionInvalidation != null) {
+			sessionInvalidation.unsubscribe();
+		}
+		if (sessionWriteBehind != null) {
+			sessionWriteBehind.stop();
+		}
 	}
 
 	/**
@@ -327,15 +478,17 @@ public class SessionManager {
 	}
 
 	public void logout(String sessionId) {
-		try {
-			if (CacheFactory.getInstance().isCacheEnabled()) {
-				CacheFactory.getInstance().remove(Constants.SESSION + sessionId.toUpperCase());
-			}
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		// the flush must not save the session again
+		if (sessionWriteBehind != null) {
+			sessionWriteBehind.discard(sessionId.toUpperCase());
+		}
+		if (sessionNearCache != null) {
+			sessionNearCache.invalidate(sessionId.toUpperCase());
 		}
+		this.removeSessionFromCache(sessionId);
 		this.session.deleteSession(sessionId);
-
+		if (sessionInvalidation != null) {
+			sessionInvalidation.publish(sessionId.toUpperCase(), true);
+		}
 	}
 }
@@ -0,0 +1,278 @@
+package com.boilerplate.sessions;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.boilerplate.framework.Logger;
+import com.boilerplate.java.collections.BoilerplateMap;
+
+/**
+ * This class keeps the sessions used recently on this server in memory, so
+ * that a request does not read its session from cache or database. A
+ * session is kept for the time to live at most, and is dropped earlier when
+ * another server updates or deletes it.
+ *
+ * A session read from cache or database is kept only if no session was
+ * dropped while it was being read, else the copy read may be older than the
+ * change which dropped it. The cache is used only while the invalidations
+ * are being received, and is emptied when they start or stop.
+ *
+ * A session is kept as the bytes of SessionCodec and each get decodes its own
+ * copy, so concurrent requests of one session do not share its attributes or
+ * its changed flag.
+ *
+ * When the cache is full the expired sessions are dropped, and then others
+ * till a tenth of the room is free, in no particular order.
+ *
+ * @author ruchi
+ *
+ */
+public class SessionNearCache {
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(SessionNearCache.class);
+
+	/**
+	 * This is the most sessions kept
+	 */
+	private final int maximumSize;
+
+	/**
+	 * This is the milli seconds a session is kept
+	 */
+	private final long timeToLiveInMilliSeconds;
+
+	/**
+	 * This is the map of session id and the session kept
+	 */
+	private final ConcurrentHashMap<String, CachedSession> sessions = new ConcurrentHashMap<>();
+
+	/**
+	 * This is the number of sessions dropped so far, a session read is kept
+	 * only if it has not changed while the session was read
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * This is true while a thread drops sessions to make room
+	 */
+	private final AtomicBoolean isEvicting = new AtomicBoolean();
+
+	/**
+	 * This is true while the invalidations are being received
+	 */
+	private volatile boolean isEnabled;
+
+	/**
+	 * This is the number of sessions found
+	 */
+	private final LongAdder hitCount = new LongAdder();
+
+	/**
+	 * This is the number of sessions not found
+	 */
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * This is the number of sessions dropped as another server changed them
+	 */
+	private final LongAdder invalidationCount = new LongAdder();
+
+	/**
+	 * This is the number of sessions dropped to make room
+	 */
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * This is the parameterized constructor
+	 *
+	 * @param maximumSize
+	 *            The most sessions kept
+	 * @param timeToLiveInMilliSeconds
+	 *            The milli seconds a session is kept
+	 */
+	public SessionNearCache(int maximumSize, long timeToLiveInMilliSeconds) {
+		this.maximumSize = maximumSize;
+		this.timeToLiveInMilliSeconds = timeToLiveInMilliSeconds;
+	}
+
+	/**
+	 * This method gets a session
+	 *
+	 * @param sessionId
+	 *            The id of the session in upper case
+	 * @return A copy of the session, null if it is not kept or has expired
+	 */
+	public Session get(String sessionId) {
+		if (!isEnabled) {
+			return null;
+		}
+		CachedSession cachedSession = sessions.get(sessionId);
+		if (cachedSession == null) {
+			missCount.increment();
+			return null;
+		}
+		if (cachedSession.expiryTime <= System.currentTimeMillis()) {
+			sessions.remove(sessionId, cachedSession);
+			missCount.increment();
+			return null;
+		}
+		Session session;
+		try {
+			session = SessionCodec.decode(cachedSession.bytes);
+		} catch (IOException ex) {
+			logger.logException("SessionNearCache", "get", "try-catch block",
+					"While trying to decode the session kept for " + sessionId, ex);
+			sessions.remove(sessionId, cachedSession);
+			missCount.increment();
+			return null;
+		}
+		// the copy is the same as the saved session
+		session.markSaved();
+		hitCount.increment();
+		return session;
+	}
+
+	/**
+	 * This method gets the generation to be passed to put for a session about
+	 * to be read
+	 *
+	 * @return The generation
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * This method keeps a session, unless a session was dropped since the
+	 * generation was got
+	 *
+	 * @param session
+	 *            The session
+	 * @param readGeneration
+	 *            The generation got before the session was read
+	 */
+	public void put(Session session, long readGeneration) {
+		if (!isEnabled || generation.get() != readGeneration) {
+			return;
+		}
+		String sessionId = session.getSessionId().toUpperCase();
+		CachedSession cachedSession = new CachedSession(SessionCodec.encode(session),
+				System.currentTimeMillis() + timeToLiveInMilliSeconds);
+		sessions.put(sessionId, cachedSession);
+		// a session dropped while this one was put may be this one
+		if (generation.get() != readGeneration) {
+			sessions.remove(sessionId, cachedSession);
+		}
+		if (sessions.size() > maximumSize) {
+			this.evict();
+		}
+	}
+
+	/**
+	 * This method drops a session
+	 *
+	 * @param sessionId
+	 *            The id of the session in upper case
+	 */
+	public void invalidate(String sessionId) {
+		generation.incrementAndGet();
+		if (sessions.remove(sessionId) != null) {
+			invalidationCount.increment();
+		}
+	}
+
+	/**
+	 * This method turns the cache on or off, either way the sessions kept are
+	 * dropped as invalidations may have been missed
+	 *
+	 * @param isEnabled
+	 *            True to turn the cache on
+	 */
+	public void setEnabled(boolean isEnabled) {
+		this.isEnabled = isEnabled;
+		generation.incrementAndGet();
+		sessions.clear();
+	}
+
+	/**
+	 * This method gets the counters of the cache
+	 *
+	 * @return The map of counter name and value
+	 */
+	public BoilerplateMap<String, Long> getStatistics() {
+		BoilerplateMap<String, Long> statistics = new BoilerplateMap<>();
+		statistics.put("enabled", isEnabled ? 1L : 0L);
+		statistics.put("size", (long) sessions.size());
+		statistics.put("hits", hitCount.sum());
+		statistics.put("misses", missCount.sum());
+		statistics.put("invalidations", invalidationCount.sum());
+		statistics.put("evictions", evictionCount.sum());
+		return statistics;
+	}
+
+	/**
+	 * This method drops the expired sessions, and then others till a tenth of
+	 * the room is free
+	 */
+	private void evict() {
+		if (!isEvicting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			long now = System.currentTimeMillis();
+			int targetSize = maximumSize - maximumSize / 10;
+			Iterator<Map.Entry<String, CachedSession>> iterator = sessions.entrySet().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().getValue().expiryTime <= now) {
+					iterator.remove();
+					evictionCount.increment();
+				}
+			}
+			iterator = sessions.entrySet().iterator();
+			while (sessions.size() > targetSize && iterator.hasNext()) {
+				iterator.next();
+				iterator.remove();
+				evictionCount.increment();
+			}
+		} finally {
+			isEvicting.set(false);
+		}
+	}
+
+	/**
+	 * This class is a session kept with the time it expires
+	 */
+	private static final class CachedSession {
+
+		/**
+		 * This is the session encoded by SessionCodec
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * This is the time after which the session is not used
+		 */
+		private final long expiryTime;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param bytes
+		 *            The session encoded by SessionCodec
+		 * @param expiryTime
+		 *            The time after which the session is not used
+		 */
+		private CachedSession(byte[] bytes, long expiryTime) {
+			this.bytes = bytes;
+			this.expiryTime = expiryTime;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package com.boilerplate.sessions;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.boilerplate.framework.Logger;
+import com.boilerplate.java.collections.BoilerplateMap;
+
+/**
+ * This class buffers the sessions to be saved and saves them in the background
+ * once in the flush interval. A session saved again before it is flushed
+ * replaces the version in the buffer, so a session used by many requests in
+ * an interval is written once with its latest version.
+ *
+ * When the buffer is full the session is saved by the calling thread, so the
+ * buffer does not grow without bound when the database is slower than the
+ * requests.
+ *
+ * The buffer holds the bytes of the session as they were when it was offered,
+ * not the session itself, so the flush does not save a session which a
+ * request is changing. A session deleted by discard is not saved again, a
+ * write of it which has started is waited for, and a later offer or a retry
+ * of a failed write is dropped.
+ *
+ * @author ruchi
+ *
+ */
+public class SessionWriteBehind {
+
+	/**
+	 * This is the logger
+	 */
+	private static Logger logger = Logger.getInstance(SessionWriteBehind.class);
+
+	/**
+	 * This is the session manager which saves the sessions
+	 */
+	private final SessionManager sessionManager;
+
+	/**
+	 * This is the most sessions waiting to be flushed
+	 */
+	private final int maximumPending;
+
+	/**
+	 * This is the milli seconds a deleted session is remembered, so that the
+	 * requests running when it was deleted do not save it again
+	 */
+	private static final long DELETED_SESSION_RETENTION_IN_MILLISECONDS = 600000;
+
+	/**
+	 * This is the number of locks the writes and deletes of sessions are
+	 * spread over
+	 */
+	private static final int LOCK_COUNT = 64;
+
+	/**
+	 * This is the map of session id and the bytes of the latest version of the
+	 * session not yet saved
+	 */
+	private final ConcurrentHashMap<String, byte[]> pendingSessions = new ConcurrentHashMap<>();
+
+	/**
+	 * This is the map of the id of a deleted session and the time it was
+	 * deleted
+	 */
+	private final ConcurrentHashMap<String, Long> deletedSessions = new ConcurrentHashMap<>();
+
+	/**
+	 * These are the locks which keep a write of a session and its delete
+	 * apart, a session uses the lock of the hash of its id
+	 */
+	private final Object[] locks = new Object[LOCK_COUNT];
+
+	/**
+	 * This is the thread which flushes the buffer
+	 */
+	private final ScheduledExecutorService flushExecutor;
+
+	/**
+	 * This is the number of sessions offered to the buffer
+	 */
+	private final LongAdder offeredCount = new LongAdder();
+
+	/**
+	 * This is the number of sessions written
+	 */
+	private final LongAdder writtenCount = new LongAdder();
+
+	/**
+	 * This is the number of sessions saved by the calling thread as the
+	 * buffer was full
+	 */
+	private final LongAdder overflowCount = new LongAdder();
+
+	/**
+	 * This is the number of writes which failed
+	 */
+	private final LongAdder failedCount = new LongAdder();
+
+	/**
+	 * This is the parameterized constructor, it starts the flush thread
+	 *
+	 * @param sessionManager
+	 *            The session manager which saves the sessions
+	 * @param flushIntervalInMilliSeconds
+	 *            The milli seconds between flushes
+	 * @param maximumPending
+	 *            The most sessions waiting to be flushed
+	 */
+	public SessionWriteBehind(SessionManager sessionManager, long flushIntervalInMilliSeconds, int maximumPending) {
+		this.sessionManager = sessionManager;
+		this.maximumPending = maximumPending;
+		for (int index = 0; index < LOCK_COUNT; index++) {
+			locks[index] = new Object();
+		}
+		this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "SessionWriteBehind");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalInMilliSeconds,
+				flushIntervalInMilliSeconds, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * This method buffers a session to be saved, the session is marked saved
+	 * as the version buffered has its changes
+	 *
+	 * @param session
+	 *            The session
+	 */
+	public void offer(Session session) {
+		String sessionId = session.getSessionId();
+		if (deletedSessions.containsKey(sessionId)) {
+			return;
+		}
+		offeredCount.increment();
+		// a change made while the session is encoded marks it changed again
+		// and is saved with the next offer
+		session.markSaved();
+		byte[] snapshot = SessionCodec.encode(session);
+		if (pendingSessions.size() >= maximumPending && !pendingSessions.containsKey(sessionId)) {
+			overflowCount.increment();
+			this.write(sessionId, snapshot);
+			return;
+		}
+		pendingSessions.put(sessionId, snapshot);
+	}
+
+	/**
+	 * This method gets the version of a session waiting to be saved, so that a
+	 * session is read with the changes made on this server
+	 *
+	 * @param sessionId
+	 *            The id of the session
+	 * @return A copy of the session, null if it is not waiting to be saved
+	 */
+	public Session getPending(String sessionId) {
+		byte[] snapshot = pendingSessions.get(sessionId);
+		if (snapshot == null) {
+			return null;
+		}
+		try {
+			return SessionCodec.decode(snapshot);
+		} catch (IOException ex) {
+			logger.logException("SessionWriteBehind", "getPending", "try-catch block",
+					"While trying to read the session, This is the session id~ " + sessionId + " ~ " + ex.toString(),
+					ex);
+			return null;
+		}
+	}
+
+	/**
+	 * This method drops a session waiting to be saved, it is called before
+	 * the session is deleted so that it is not saved again. It waits for a
+	 * write of the session which has started.
+	 *
+	 * @param sessionId
+	 *            The id of the session
+	 */
+	public void discard(String sessionId) {
+		synchronized (this.getLock(sessionId)) {
+			deletedSessions.put(sessionId, System.currentTimeMillis());
+			pendingSessions.remove(sessionId);
+		}
+	}
+
+	/**
+	 * This method saves the sessions waiting in the buffer
+	 */
+	public void flush() {
+		for (String sessionId : pendingSessions.keySet()) {
+			byte[] snapshot = pendingSessions.remove(sessionId);
+			if (snapshot != null && !this.write(sessionId, snapshot))
+				// try again with the next flush unless a newer version has
+				// come meanwhile, the write drops it if it has been deleted
+				pendingSessions.putIfAbsent(sessionId, snapshot);
+		}
+		// forget the sessions deleted long enough ago
+		long oldestKept = System.currentTimeMillis() - DELETED_SESSION_RETENTION_IN_MILLISECONDS;
+		Iterator<Long> iterator = deletedSessions.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next() < oldestKept) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * This method stops the flush thread and saves the sessions in the buffer
+	 */
+	public void stop() {
+		flushExecutor.shutdown();
+		try {
+			flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		this.flush();
+	}
+
+	/**
+	 * This method gets the counters of the buffer
+	 *
+	 * @return The map of counter name and value
+	 */
+	public BoilerplateMap<String, Long> getStatistics() {
+		BoilerplateMap<String, Long> statistics = new BoilerplateMap<>();
+		statistics.put("pending", (long) pendingSessions.size());
+		statistics.put("offered", offeredCount.sum());
+		statistics.put("written", writtenCount.sum());
+		statistics.put("overflow", overflowCount.sum());
+		statistics.put("failed", failedCount.sum());
+		return statistics;
+	}
+
+	/**
+	 * This method saves a session unless it has been deleted
+	 *
+	 * @param sessionId
+	 *            The id of the session
+	 * @param snapshot
+	 *            The bytes of the session
+	 * @return True if the session was saved or need not be saved
+	 */
+	private boolean write(String sessionId, byte[] snapshot) {
+		synchronized (this.getLock(sessionId)) {
+			if (deletedSessions.containsKey(sessionId)) {
+				return true;
+			}
+			try {
+				sessionManager.persistSession(SessionCodec.decode(snapshot));
+				writtenCount.increment();
+				return true;
+			} catch (Exception ex) {
+				failedCount.increment();
+				logger.logException("SessionWriteBehind", "write", "try-catch block",
+						"While trying to save the session, This is the session id~ " + sessionId + " ~ "
+								+ ex.toString(),
+						ex);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * This method gets the lock of a session
+	 *
+	 * @param sessionId
+	 *            The id of the session
+	 * @return The lock
+	 */
+	private Object getLock(String sessionId) {
+		return locks[(sessionId.hashCode() & 0x7FFFFFFF) % LOCK_COUNT];
+	}
+}
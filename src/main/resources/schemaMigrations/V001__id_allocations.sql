@@ -0,0 +1,21 @@
+--
+-- Table of the pooled id generator, see PooledTableIdGenerator.
+-- Each entity has a row holding the next id to be reserved. The rows are
+-- seeded past the largest existing id, with a gap of one block since the
+-- pooled optimizer hands out the block below the stored value.
+--
+
+CREATE TABLE IF NOT EXISTS `IdAllocations` (
+  `EntityName` varchar(255) NOT NULL,
+  `NextId` bigint(20) NOT NULL,
+  PRIMARY KEY (`EntityName`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+INSERT IGNORE INTO `IdAllocations` (`EntityName`, `NextId`)
+SELECT 'Expenses', COALESCE(MAX(`Id`), 0) + 51 FROM `Expenses`;
+INSERT IGNORE INTO `IdAllocations` (`EntityName`, `NextId`)
+SELECT 'ExpenseHistory', COALESCE(MAX(`Id`), 0) + 51 FROM `ExpenseHistory`;
+INSERT IGNORE INTO `IdAllocations` (`EntityName`, `NextId`)
+SELECT 'FileMapping', COALESCE(MAX(`Id`), 0) + 51 FROM `FileMapping`;
+INSERT IGNORE INTO `IdAllocations` (`EntityName`, `NextId`)
+SELECT 'UserRoleMapping', COALESCE(MAX(`Id`), 0) + 51 FROM `UserRoleMapping`;
@@ -0,0 +1,19 @@
+--
+-- Number and total amount of the expenses of each user in each status. The
+-- rows are changed in the same transaction as the expenses and rebuilt daily
+-- by ExpenseAggregateReconciliationJob. The initial rows are built from the
+-- existing expenses.
+--
+
+CREATE TABLE IF NOT EXISTS `ExpenseAggregates` (
+  `UserId` varchar(255) NOT NULL,
+  `Status` varchar(50) NOT NULL,
+  `ExpenseCount` int(11) NOT NULL DEFAULT 0,
+  `TotalAmount` double NOT NULL DEFAULT 0,
+  PRIMARY KEY (`UserId`, `Status`),
+  KEY `IX_ExpenseAggregates_Status` (`Status`)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+DELETE FROM `ExpenseAggregates`;
+INSERT INTO `ExpenseAggregates` (`UserId`, `Status`, `ExpenseCount`, `TotalAmount`)
+SELECT `UserId`, `Status`, COUNT(*), SUM(`Amount`) FROM `Expenses` GROUP BY `UserId`, `Status`;
@@ -0,0 +1,104 @@
+--
+-- Indexes for the queries configured in the seed configuration. The date
+-- range on expenses is a range on CreationDate, so the indexes on expenses
+-- end with CreationDate and Id which also give the order of the pages.
+--
+-- Mysql commits each CREATE INDEX on its own, so if the script stops part way
+-- the indexes already created stay while the version is not recorded. Each
+-- index is created only if information_schema does not have it, so the script
+-- can be run again.
+--
+
+-- expenses of a user, filtered by status and date, latest first
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'Expenses' AND index_name = 'IX_Expenses_UserId_CreationDate') = 0,
+  'CREATE INDEX `IX_Expenses_UserId_CreationDate` ON `Expenses` (`UserId`, `CreationDate`, `Id`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+-- expenses in a status, latest first, and the finance export
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'Expenses' AND index_name = 'IX_Expenses_Status_CreationDate') = 0,
+  'CREATE INDEX `IX_Expenses_Status_CreationDate` ON `Expenses` (`Status`, `CreationDate`, `Id`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+-- finance reports read the expenses in a status ordered by user
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'Expenses' AND index_name = 'IX_Expenses_Status_UserId') = 0,
+  'CREATE INDEX `IX_Expenses_Status_UserId` ON `Expenses` (`Status`, `UserId`, `CreationDate`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'FileMapping' AND index_name = 'IX_FileMapping_ExpenseId_IsActive') = 0,
+  'CREATE INDEX `IX_FileMapping_ExpenseId_IsActive` ON `FileMapping` (`ExpenseId`, `IsActive`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'FileMapping' AND index_name = 'IX_FileMapping_AttachmentId_IsActive') = 0,
+  'CREATE INDEX `IX_FileMapping_AttachmentId_IsActive` ON `FileMapping` (`AttachmentId`, `IsActive`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'FileMapping' AND index_name = 'IX_FileMapping_FileId') = 0,
+  'CREATE INDEX `IX_FileMapping_FileId` ON `FileMapping` (`FileId`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'FileDetails' AND index_name = 'IX_FileDetails_AttachmentId') = 0,
+  'CREATE INDEX `IX_FileDetails_AttachmentId` ON `FileDetails` (`AttachmentId`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'User' AND index_name = 'IX_User_EmailId') = 0,
+  'CREATE INDEX `IX_User_EmailId` ON `User` (`EmailId`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'User' AND index_name = 'IX_User_UserId') = 0,
+  'CREATE INDEX `IX_User_UserId` ON `User` (`UserId`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'User' AND index_name = 'IX_User_ApproverId') = 0,
+  'CREATE INDEX `IX_User_ApproverId` ON `User` (`ApproverId`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'UserRoleMapping' AND index_name = 'IX_UserRoleMapping_UserId') = 0,
+  'CREATE INDEX `IX_UserRoleMapping_UserId` ON `UserRoleMapping` (`UserId`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'UserRoleMapping' AND index_name = 'IX_UserRoleMapping_RoleId') = 0,
+  'CREATE INDEX `IX_UserRoleMapping_RoleId` ON `UserRoleMapping` (`RoleId`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'Roles' AND index_name = 'IX_Roles_RoleName') = 0,
+  'CREATE INDEX `IX_Roles_RoleName` ON `Roles` (`RoleName`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
@@ -0,0 +1,44 @@
+--
+-- Expense history rows keep only the fields changed by each change, flagged
+-- in ChangedFields (see ExpenseHistoryEntity), the other columns are null.
+-- The existing rows are full copies of the expense, so they have every flag.
+-- UserId and Previous_CreationDate do not change and are no longer written.
+--
+-- Mysql commits each ALTER TABLE and CREATE INDEX on its own, so each one is
+-- run only if information_schema shows it is still needed, as in
+-- V003__query_indexes.sql, and the script can be run again.
+--
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'ExpenseHistory' AND column_name = 'ChangedFields') = 0,
+  'ALTER TABLE `ExpenseHistory` ADD COLUMN `ChangedFields` int(11) NOT NULL DEFAULT 63', 'DO 0');
+PREPARE alterTable FROM @ddl;
+EXECUTE alterTable;
+DEALLOCATE PREPARE alterTable;
+
+-- the columns of the fields which are not changed become nullable, each is
+-- modified to its own type, character set, default and comment with only
+-- NOT NULL dropped
+SET SESSION group_concat_max_len = 65536;
+SET @ddl = (SELECT IFNULL(CONCAT('ALTER TABLE `ExpenseHistory` ', GROUP_CONCAT(CONCAT('MODIFY `', column_name, '` ',
+    column_type,
+    IF(character_set_name IS NULL, '', CONCAT(' CHARACTER SET ', character_set_name, ' COLLATE ', collation_name)),
+    ' NULL',
+    IF(column_default IS NULL, '', CONCAT(' DEFAULT ',
+      IF(column_default LIKE 'CURRENT\_TIMESTAMP%', column_default, QUOTE(column_default)))),
+    IF(column_comment = '', '', CONCAT(' COMMENT ', QUOTE(column_comment)))) SEPARATOR ', ')), 'DO 0')
+  FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = 'ExpenseHistory'
+  AND is_nullable = 'NO' AND column_name IN ('Title', 'Description', 'Status', 'UserId', 'ApproverComments',
+  'Amount', 'Previous_CreationDate', 'Previous_UpdatedDate'));
+PREPARE alterTable FROM @ddl;
+EXECUTE alterTable;
+DEALLOCATE PREPARE alterTable;
+
+-- the changes of an expense after a date, latest first
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'ExpenseHistory' AND index_name = 'IX_ExpenseHistory_PreviousId_CreationDate') = 0,
+  'CREATE INDEX `IX_ExpenseHistory_PreviousId_CreationDate` ON `ExpenseHistory` (`PreviousId`, `CreationDate`, `Id`)',
+  'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
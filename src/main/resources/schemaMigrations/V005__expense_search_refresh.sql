@@ -0,0 +1,13 @@
+--
+-- The expense search index reads the expenses changed since its last
+-- refresh by their updation date, the UpdatedDate column. The index is
+-- created only if information_schema does not have it, as in
+-- V003__query_indexes.sql, so the script can be run again.
+--
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics WHERE table_schema = DATABASE()
+  AND table_name = 'Expenses' AND index_name = 'IX_Expenses_UpdatedDate') = 0,
+  'CREATE INDEX `IX_Expenses_UpdatedDate` ON `Expenses` (`UpdatedDate`, `Id`)', 'DO 0');
+PREPARE createIndex FROM @ddl;
+EXECUTE createIndex;
+DEALLOCATE PREPARE createIndex;
@@ -0,0 +1,122 @@
+package com.boilerplate.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.boilerplate.exceptions.rest.ValidationFailedException;
+
+/**
+ * This class tests the page tokens of the expense cursor
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseCursorTest {
+
+	/**
+	 * This method tests a cursor is read back from its token
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeDecode() throws Exception {
+		ExpenseCursor cursor = new ExpenseCursor(new Date(1500000000123L), "4567");
+		String pageToken = cursor.encode();
+		// the token is safe in a url
+		assertTrue(pageToken.matches("[A-Za-z0-9_-]+"));
+		ExpenseCursor decoded = ExpenseCursor.decode(pageToken);
+		assertEquals(new Date(1500000000123L), decoded.getCreationDate());
+		assertEquals("4567", decoded.getId());
+		assertEquals(pageToken, decoded.encode());
+	}
+
+	/**
+	 * This method tests the dates at the ends of the range are read back
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEncodeDecodeOfExtremeDates() throws Exception {
+		for (long time : new long[] { 0L, -1000L, Long.MAX_VALUE }) {
+			ExpenseCursor decoded = ExpenseCursor.decode(new ExpenseCursor(new Date(time), "1").encode());
+			assertEquals(new Date(time), decoded.getCreationDate());
+			assertEquals("1", decoded.getId());
+		}
+	}
+
+	/**
+	 * This method tests no token means the first page
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoToken() throws Exception {
+		assertNull(ExpenseCursor.decode(null));
+		assertNull(ExpenseCursor.decode(""));
+	}
+
+	/**
+	 * This method tests a token which is not base 64 url encoded is rejected
+	 */
+	@Test
+	public void testMalformedToken() {
+		assertRejected("not a token!");
+		assertRejected("abc=def");
+		assertRejected("%%%");
+	}
+
+	/**
+	 * This method tests a token changed by the client is rejected
+	 */
+	@Test
+	public void testTamperedToken() {
+		// no separator
+		assertRejected(token("1500000000123"));
+		// an id which is not numeric, as in an injection attempt
+		assertRejected(token("1500000000123:1 or 1=1"));
+		assertRejected(token("1500000000123:"));
+		assertRejected(token("1500000000123:1:2"));
+		// a date which is not a number
+		assertRejected(token("yesterday:4567"));
+		assertRejected(token(":4567"));
+		// a date past the range
+		assertRejected(token("99999999999999999999:4567"));
+		// a valid token with a character changed
+		String pageToken = new ExpenseCursor(new Date(1500000000123L), "4567").encode();
+		assertRejected(pageToken.substring(0, pageToken.length() - 1) + "*");
+	}
+
+	/**
+	 * This method builds a token of a value
+	 *
+	 * @param value
+	 *            The value
+	 * @return The token
+	 */
+	private static String token(String value) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * This method checks a token is rejected
+	 *
+	 * @param pageToken
+	 *            The token
+	 */
+	private static void assertRejected(String pageToken) {
+		try {
+			ExpenseCursor.decode(pageToken);
+			fail("The token was accepted: " + pageToken);
+		} catch (ValidationFailedException ex) {
+			assertEquals("Invalid page token", ex.getReason());
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.boilerplate.framework;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.IExpense;
+import com.boilerplate.database.interfaces.IRowHandler;
+import com.boilerplate.java.entities.ExpenseListViewEntity;
+import com.boilerplate.java.entities.ExpenseStatusType;
+
+/**
+ * This class tests the expense search index keeps the latest version of each
+ * expense when rows arrive out of order
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseSearchIndexTest {
+
+	/**
+	 * This method tests a row older than the indexed expense does not change
+	 * it, and a newer one does
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOlderRowIsIgnored() throws Exception {
+		ExpenseSearchIndex index = newIndex(new ArrayList<Object[]>());
+		index.index("9", "7", "Test User", "Taxi", "To the airport", 300f, ExpenseStatusType.APPROVER_APPROVED,
+				new Date(2000L));
+		// same words, older status and amount
+		index.index("9", "7", "Test User", "Taxi", "To the airport", 250f, ExpenseStatusType.SUBMITTED,
+				new Date(1000L));
+		assertExpense(index, "Taxi", 300f, ExpenseStatusType.APPROVER_APPROVED);
+		// older words
+		index.index("9", "7", "Test User", "Cab", "To the client", 250f, ExpenseStatusType.SUBMITTED,
+				new Date(1000L));
+		assertExpense(index, "Taxi", 300f, ExpenseStatusType.APPROVER_APPROVED);
+		assertEquals(0, index.search("cab", null, null, null, null, 10).size());
+		// no updation date is older than any date
+		index.index("9", "7", "Test User", "Taxi", "To the airport", 250f, ExpenseStatusType.SUBMITTED, null);
+		assertExpense(index, "Taxi", 300f, ExpenseStatusType.APPROVER_APPROVED);
+		// a newer row and a row of the same date change the expense
+		index.index("9", "7", "Test User", "Taxi", "To the airport", 300f, ExpenseStatusType.FINANCE_APPROVED,
+				new Date(3000L));
+		assertExpense(index, "Taxi", 300f, ExpenseStatusType.FINANCE_APPROVED);
+		index.index("9", "7", "Test User", "Cab", "To the client", 300f, ExpenseStatusType.FINANCE_APPROVED,
+				new Date(3000L));
+		assertExpense(index, "Cab", 300f, ExpenseStatusType.FINANCE_APPROVED);
+		assertEquals(1, index.size());
+	}
+
+	/**
+	 * This method tests a refresh which read a row before a later change was
+	 * indexed on commit does not undo the change
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRefreshDeliversOlderRow() throws Exception {
+		List<Object[]> rows = new ArrayList<>();
+		rows.add(new Object[] { 9L, "7", "Test User", "Taxi", "To the airport", 250f, ExpenseStatusType.SUBMITTED,
+				new Date(1000L) });
+		ExpenseSearchIndex index = newIndex(rows);
+		index.initialize();
+		assertExpense(index, "Taxi", 250f, ExpenseStatusType.SUBMITTED);
+
+		// the approval is indexed on commit, the next refresh still reads the
+		// submitted row
+		index.index("9", "7", "Test User", "Taxi", "To the airport", 300f, ExpenseStatusType.APPROVER_APPROVED,
+				new Date(2000L));
+		assertExpense(index, "Taxi", 300f, ExpenseStatusType.APPROVER_APPROVED);
+		assertExpense(index, "Taxi", 300f, ExpenseStatusType.APPROVER_APPROVED);
+
+		// the refresh reads a later change made on another server
+		rows.set(0, new Object[] { 9L, "7", "Test User", "Taxi", "To the airport", 300f,
+				ExpenseStatusType.FINANCE_APPROVED, new Date(3000L) });
+		assertExpense(index, "Taxi", 300f, ExpenseStatusType.FINANCE_APPROVED);
+	}
+
+	/**
+	 * This method searches the index for the only expense and checks it, the
+	 * search refreshes the index if it is due
+	 *
+	 * @param index
+	 *            The index
+	 * @param title
+	 *            The expected title
+	 * @param amount
+	 *            The expected amount
+	 * @param status
+	 *            The expected status
+	 */
+	private static void assertExpense(ExpenseSearchIndex index, String title, float amount,
+			ExpenseStatusType status) {
+		List<ExpenseListViewEntity> expenses = index.search(null, null, null, null, null, 10);
+		assertEquals(1, expenses.size());
+		assertEquals("9", expenses.get(0).getId());
+		assertEquals(title, expenses.get(0).getTitle());
+		assertEquals(amount, expenses.get(0).getAmount(), 0f);
+		assertEquals(1, index.search(null, null, null, status, null, 10).size());
+	}
+
+	/**
+	 * This method gets an index which reads the given rows on every refresh,
+	 * the refresh is due on every search
+	 *
+	 * @param rows
+	 *            The rows read by a refresh
+	 * @return The index
+	 */
+	private static ExpenseSearchIndex newIndex(final List<Object[]> rows) {
+		Map<String, String> configurations = new HashMap<>();
+		configurations.put("EXPENSE_SEARCH_REFRESH_INTERVAL_IN_SECONDS", "0");
+		ExpenseSearchIndex index = new ExpenseSearchIndex();
+		index.setConfigurationManager(new MapConfigurationManager(configurations));
+		index.setMySqlExpense((IExpense) Proxy.newProxyInstance(IExpense.class.getClassLoader(),
+				new Class<?>[] { IExpense.class }, new InvocationHandler() {
+					@SuppressWarnings("unchecked")
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+						if (!method.getName().equals("scrollExpensesForSearchIndex"))
+							throw new UnsupportedOperationException(method.getName());
+						for (Object[] row : rows) {
+							((IRowHandler<Object[]>) arguments[1]).handle(row);
+						}
+						return null;
+					}
+				}));
+		return index;
+	}
+
+	/**
+	 * This class is a configuration manager reading from a map
+	 *
+	 * @author ruchi
+	 *
+	 */
+	private static final class MapConfigurationManager extends ConfigurationManager {
+
+		/**
+		 * This is the map of configuration key and value
+		 */
+		private final Map<String, String> values;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param values
+		 *            The map of configuration key and value
+		 */
+		private MapConfigurationManager(Map<String, String> values) {
+			this.values = values;
+		}
+
+		/**
+		 * @see ConfigurationManager.get
+		 */
+		@Override
+		public String get(String key) {
+			return values.get(key);
+		}
+	}
+}
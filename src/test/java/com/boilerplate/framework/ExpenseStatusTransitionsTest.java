@@ -0,0 +1,114 @@
+package com.boilerplate.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.boilerplate.java.entities.ExpenseStatusType;
+import com.boilerplate.java.entities.UserRoleType;
+
+/**
+ * This class tests the table of the status changes allowed on an expense
+ * against every role, current status and new status
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseStatusTransitionsTest {
+
+	/**
+	 * This is the table of the changes allowed, each row is the role, the
+	 * current status and the new status. Every other change is forbidden.
+	 */
+	private static final Object[][] ALLOWED = {
+			{ UserRoleType.EMPLOYEE, ExpenseStatusType.APPROVER_REJECTED, ExpenseStatusType.RE_SUBMITTED },
+			{ UserRoleType.EMPLOYEE, ExpenseStatusType.FINANCE_REJECTED, ExpenseStatusType.RE_SUBMITTED },
+			{ UserRoleType.APPROVER, ExpenseStatusType.SUBMITTED, ExpenseStatusType.APPROVER_APPROVED },
+			{ UserRoleType.APPROVER, ExpenseStatusType.RE_SUBMITTED, ExpenseStatusType.APPROVER_APPROVED },
+			{ UserRoleType.APPROVER, ExpenseStatusType.SUBMITTED, ExpenseStatusType.APPROVER_REJECTED },
+			{ UserRoleType.APPROVER, ExpenseStatusType.RE_SUBMITTED, ExpenseStatusType.APPROVER_REJECTED },
+			{ UserRoleType.SUPER_APPROVER, ExpenseStatusType.SUBMITTED, ExpenseStatusType.APPROVER_APPROVED },
+			{ UserRoleType.SUPER_APPROVER, ExpenseStatusType.RE_SUBMITTED, ExpenseStatusType.APPROVER_APPROVED },
+			{ UserRoleType.SUPER_APPROVER, ExpenseStatusType.SUBMITTED, ExpenseStatusType.APPROVER_REJECTED },
+			{ UserRoleType.SUPER_APPROVER, ExpenseStatusType.RE_SUBMITTED, ExpenseStatusType.APPROVER_REJECTED },
+			{ UserRoleType.FINANCE, ExpenseStatusType.APPROVER_APPROVED, ExpenseStatusType.FINANCE_APPROVED },
+			{ UserRoleType.FINANCE, ExpenseStatusType.APPROVER_APPROVED, ExpenseStatusType.FINANCE_REJECTED },
+			{ UserRoleType.FINANCE, ExpenseStatusType.FINANCE_APPROVED, ExpenseStatusType.READY_FOR_PAYMENT } };
+
+	/**
+	 * This method tests every change of every role is allowed if and only if
+	 * it is in the table
+	 */
+	@Test
+	public void testEveryTransition() {
+		Set<String> allowed = new HashSet<>();
+		for (Object[] row : ALLOWED) {
+			allowed.add(key((UserRoleType) row[0], (ExpenseStatusType) row[1], (ExpenseStatusType) row[2]));
+		}
+		int allowedCount = 0;
+		for (UserRoleType role : UserRoleType.values()) {
+			for (ExpenseStatusType currentStatus : ExpenseStatusType.values()) {
+				for (ExpenseStatusType status : ExpenseStatusType.values()) {
+					String key = key(role, currentStatus, status);
+					boolean expected = allowed.contains(key);
+					assertEquals(key, expected, ExpenseStatusTransitions.isAllowed(role, currentStatus, status));
+					assertEquals(key, expected,
+							ExpenseStatusTransitions.getSourceStatuses(role, status).contains(currentStatus));
+					if (expected)
+						allowedCount++;
+				}
+			}
+		}
+		// every row of the table names a change which exists
+		assertEquals(ALLOWED.length, allowedCount);
+	}
+
+	/**
+	 * This method tests the statuses from which a status may be reached
+	 */
+	@Test
+	public void testSourceStatuses() {
+		assertEquals(EnumSet.of(ExpenseStatusType.SUBMITTED, ExpenseStatusType.RE_SUBMITTED),
+				ExpenseStatusTransitions.getSourceStatuses(UserRoleType.APPROVER, ExpenseStatusType.APPROVER_APPROVED));
+		assertEquals(EnumSet.noneOf(ExpenseStatusType.class),
+				ExpenseStatusTransitions.getSourceStatuses(UserRoleType.ADMIN, ExpenseStatusType.FINANCE_APPROVED));
+		assertEquals(EnumSet.noneOf(ExpenseStatusType.class),
+				ExpenseStatusTransitions.getSourceStatuses(UserRoleType.EMPLOYEE, ExpenseStatusType.SUBMITTED));
+	}
+
+	/**
+	 * This method tests the table can not be changed by a caller
+	 */
+	@Test
+	public void testSourceStatusesAreReadOnly() {
+		try {
+			ExpenseStatusTransitions.getSourceStatuses(UserRoleType.FINANCE, ExpenseStatusType.READY_FOR_PAYMENT)
+					.add(ExpenseStatusType.SUBMITTED);
+			fail("The source statuses were changed");
+		} catch (UnsupportedOperationException ex) {
+			// expected
+		}
+		assertEquals(false, ExpenseStatusTransitions.isAllowed(UserRoleType.FINANCE, ExpenseStatusType.SUBMITTED,
+				ExpenseStatusType.READY_FOR_PAYMENT));
+	}
+
+	/**
+	 * This method gets the key of a change in the table
+	 *
+	 * @param role
+	 *            The role
+	 * @param currentStatus
+	 *            The current status
+	 * @param status
+	 *            The new status
+	 * @return The key
+	 */
+	private static String key(UserRoleType role, ExpenseStatusType currentStatus, ExpenseStatusType status) {
+		return role + ": " + currentStatus + " -> " + status;
+	}
+}
@@ -0,0 +1,557 @@
+package com.boilerplate.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.exceptions.rest.UnauthorizedException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class tests the verification of the Google id tokens with keys
+ * generated for the test and served by a static key source
+ *
+ * @author ruchi
+ *
+ */
+public class GoogleIdTokenVerifierTest {
+
+	/**
+	 * This is the client id of the application
+	 */
+	private static final String CLIENT_ID = "client-id.apps.googleusercontent.com";
+
+	/**
+	 * This is the issuer of the tokens
+	 */
+	private static final String ISSUER = "https://accounts.google.com";
+
+	/**
+	 * This is the clock skew allowed in seconds
+	 */
+	private static final long CLOCK_SKEW_IN_SECONDS = 300;
+
+	/**
+	 * This is the object mapper of the tokens and the keys
+	 */
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * This is the key pair served by the key source as key-1
+	 */
+	private static KeyPair firstKeyPair;
+
+	/**
+	 * This is the key pair served by the key source as key-2 once the keys
+	 * are rotated
+	 */
+	private static KeyPair secondKeyPair;
+
+	/**
+	 * This is the key pair the key source does not serve
+	 */
+	private static KeyPair unknownKeyPair;
+
+	/**
+	 * This is the key source
+	 */
+	private CountingSigningKeySource signingKeySource;
+
+	/**
+	 * This is the verifier under test
+	 */
+	private TestGoogleIdTokenVerifier verifier;
+
+	/**
+	 * This method generates the key pairs once for all the tests
+	 *
+	 * @throws Exception
+	 */
+	@BeforeClass
+	public static void generateKeys() throws Exception {
+		KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+		keyPairGenerator.initialize(2048);
+		firstKeyPair = keyPairGenerator.generateKeyPair();
+		secondKeyPair = keyPairGenerator.generateKeyPair();
+		unknownKeyPair = keyPairGenerator.generateKeyPair();
+	}
+
+	/**
+	 * This method creates a verifier having read key-1
+	 *
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		Map<String, String> configurations = new HashMap<>();
+		configurations.put("GOOGLE_CLIENT_IDS", CLIENT_ID);
+		configurations.put("GOOGLE_ID_TOKEN_ISSUERS", "accounts.google.com," + ISSUER);
+		configurations.put("GOOGLE_SIGNING_KEYS_REFRESH_INTERVAL_IN_SECONDS", "3600");
+		configurations.put("ID_TOKEN_CLOCK_SKEW_IN_SECONDS", String.valueOf(CLOCK_SKEW_IN_SECONDS));
+		signingKeySource = new CountingSigningKeySource(keySet("key-1", firstKeyPair));
+		verifier = new TestGoogleIdTokenVerifier();
+		verifier.setConfigurationManager(new MapConfigurationManager(configurations));
+		verifier.setSigningKeySource(signingKeySource);
+		verifier.initialize();
+		assertEquals(1, signingKeySource.fetchCount);
+	}
+
+	/**
+	 * This method tests a valid token is verified and its claims returned
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testValidToken() throws Exception {
+		Map<String, Object> claims = verifier
+				.verify(token(header("RS256", "key-1"), validClaims(), firstKeyPair.getPrivate()));
+		assertEquals("user@example.com", claims.get("email"));
+		assertEquals("Test", claims.get("given_name"));
+	}
+
+	/**
+	 * This method tests an audience given as a list is accepted if it has the
+	 * client id
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAudienceList() throws Exception {
+		Map<String, Object> claims = validClaims();
+		List<String> audience = new ArrayList<>();
+		audience.add("other-client-id");
+		audience.add(CLIENT_ID);
+		claims.put("aud", audience);
+		verifier.verify(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()));
+	}
+
+	/**
+	 * This method tests a token signed by another key with the id of a known
+	 * key is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testBadSignature() throws Exception {
+		assertRejected(token(header("RS256", "key-1"), validClaims(), unknownKeyPair.getPrivate()),
+				"Signature of the id token is not valid");
+	}
+
+	/**
+	 * This method tests a token whose claims were changed after signing is
+	 * rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangedClaims() throws Exception {
+		String[] parts = token(header("RS256", "key-1"), validClaims(), firstKeyPair.getPrivate()).split("\\.");
+		Map<String, Object> claims = validClaims();
+		claims.put("email", "admin@example.com");
+		assertRejected(parts[0] + "." + encode(claims) + "." + parts[2], "Signature of the id token is not valid");
+	}
+
+	/**
+	 * This method tests a token of another algorithm is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAlgorithmNotRs256() throws Exception {
+		assertRejected(token(header("HS256", "key-1"), validClaims(), firstKeyPair.getPrivate()),
+				"Id token is not signed with RS256");
+		assertRejected(encode(header("none", "key-1")) + "." + encode(validClaims()) + ".",
+				"Id token is not well formed");
+		assertRejected(encode(header("none", "key-1")) + "." + encode(validClaims()) + ".c2lnbmF0dXJl",
+				"Id token is not signed with RS256");
+	}
+
+	/**
+	 * This method tests a token not naming its key is rejected without reading
+	 * the keys
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMissingKeyId() throws Exception {
+		verifier.now += 61000;
+		assertRejected(token(header("RS256", null), validClaims(), firstKeyPair.getPrivate()),
+				"Id token does not name its signing key");
+		assertEquals(1, signingKeySource.fetchCount);
+	}
+
+	/**
+	 * This method tests a token for another application is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testWrongAudience() throws Exception {
+		Map<String, Object> claims = validClaims();
+		claims.put("aud", "other-client-id");
+		assertRejected(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()),
+				"Id token is not issued for this application");
+	}
+
+	/**
+	 * This method tests a token of another issuer is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testWrongIssuer() throws Exception {
+		Map<String, Object> claims = validClaims();
+		claims.put("iss", "https://accounts.example.com");
+		assertRejected(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()),
+				"Id token is not issued by Google");
+	}
+
+	/**
+	 * This method tests a token expired longer than the clock skew is
+	 * rejected, and one expired within it is accepted
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testExpiredToken() throws Exception {
+		Map<String, Object> claims = validClaims();
+		claims.put("exp", nowInSeconds() - CLOCK_SKEW_IN_SECONDS - 1);
+		assertRejected(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()), "Id token has expired");
+		claims.put("exp", nowInSeconds() - CLOCK_SKEW_IN_SECONDS + 1);
+		verifier.verify(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()));
+		claims.remove("exp");
+		assertRejected(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()), "Id token has expired");
+	}
+
+	/**
+	 * This method tests a token issued later than the clock skew from now is
+	 * rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testIssuedInFuture() throws Exception {
+		Map<String, Object> claims = validClaims();
+		claims.put("iat", nowInSeconds() + CLOCK_SKEW_IN_SECONDS + 1);
+		assertRejected(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()),
+				"Id token is issued in the future");
+	}
+
+	/**
+	 * This method tests a token whose email is not verified is rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnverifiedEmail() throws Exception {
+		Map<String, Object> claims = validClaims();
+		claims.put("email_verified", false);
+		assertRejected(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()),
+				"Email of the id token is not verified");
+		claims.put("email_verified", "true");
+		verifier.verify(token(header("RS256", "key-1"), claims, firstKeyPair.getPrivate()));
+	}
+
+	/**
+	 * This method tests a token signed by a key not yet read reads the keys
+	 * again, but not more than once a minute
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnknownKeyReadsKeysAgain() throws Exception {
+		// Google rotates its keys
+		signingKeySource.keySet = keySet("key-1", firstKeyPair, "key-2", secondKeyPair);
+		// the keys were read less than a minute ago
+		assertRejected(token(header("RS256", "key-2"), validClaims(), secondKeyPair.getPrivate()),
+				"Id token is signed with an unknown key");
+		assertEquals(1, signingKeySource.fetchCount);
+		// a minute later the unknown key reads the keys again
+		verifier.now += 60000;
+		verifier.verify(token(header("RS256", "key-2"), validClaims(), secondKeyPair.getPrivate()));
+		assertEquals(2, signingKeySource.fetchCount);
+		// a key still unknown does not read them again within the minute
+		verifier.now += 59000;
+		assertRejected(token(header("RS256", "key-3"), validClaims(), unknownKeyPair.getPrivate()),
+				"Id token is signed with an unknown key");
+		assertRejected(token(header("RS256", "key-3"), validClaims(), unknownKeyPair.getPrivate()),
+				"Id token is signed with an unknown key");
+		assertEquals(2, signingKeySource.fetchCount);
+		verifier.now += 1000;
+		assertRejected(token(header("RS256", "key-3"), validClaims(), unknownKeyPair.getPrivate()),
+				"Id token is signed with an unknown key");
+		assertEquals(3, signingKeySource.fetchCount);
+		// the keys read are used meanwhile
+		verifier.verify(token(header("RS256", "key-1"), validClaims(), firstKeyPair.getPrivate()));
+		assertEquals(3, signingKeySource.fetchCount);
+	}
+
+	/**
+	 * This method tests the keys read before are kept when the keys can not
+	 * be read
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testKeysKeptWhenReadFails() throws Exception {
+		signingKeySource.keySet = "not json";
+		verifier.now += 3600000;
+		verifier.verify(token(header("RS256", "key-1"), validClaims(), firstKeyPair.getPrivate()));
+		assertEquals(2, signingKeySource.fetchCount);
+	}
+
+	/**
+	 * This method tests the tokens which are not three base 64 url encoded
+	 * parts are rejected
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMalformedToken() throws Exception {
+		assertRejected(null, "Id token is null");
+		assertRejected("abc.def", "Id token is not well formed");
+		assertRejected("abc.def.ghi", "Id token is not well formed");
+	}
+
+	/**
+	 * This method checks a token is rejected for a reason
+	 *
+	 * @param idToken
+	 *            The token
+	 * @param reason
+	 *            The reason expected
+	 */
+	private void assertRejected(String idToken, String reason) {
+		try {
+			verifier.verify(idToken);
+			fail("The token was verified, expected: " + reason);
+		} catch (UnauthorizedException ex) {
+			assertEquals(reason, ex.getReason());
+		}
+	}
+
+	/**
+	 * This method gets the claims of a valid token
+	 *
+	 * @return The map of claim and value
+	 */
+	private Map<String, Object> validClaims() {
+		Map<String, Object> claims = new LinkedHashMap<>();
+		claims.put("iss", ISSUER);
+		claims.put("aud", CLIENT_ID);
+		claims.put("sub", "1234567890");
+		claims.put("email", "user@example.com");
+		claims.put("email_verified", true);
+		claims.put("given_name", "Test");
+		claims.put("family_name", "User");
+		claims.put("iat", nowInSeconds() - 10);
+		claims.put("exp", nowInSeconds() + 3590);
+		return claims;
+	}
+
+	/**
+	 * This method gets the time of the verifier in seconds
+	 *
+	 * @return The seconds since the epoch
+	 */
+	private long nowInSeconds() {
+		return verifier.now / 1000;
+	}
+
+	/**
+	 * This method gets a token header
+	 *
+	 * @param algorithm
+	 *            The algorithm
+	 * @param keyId
+	 *            The key id, null to leave it out
+	 * @return The map of header name and value
+	 */
+	private static Map<String, Object> header(String algorithm, String keyId) {
+		Map<String, Object> header = new LinkedHashMap<>();
+		header.put("alg", algorithm);
+		if (keyId != null)
+			header.put("kid", keyId);
+		header.put("typ", "JWT");
+		return header;
+	}
+
+	/**
+	 * This method builds a token signed with SHA256withRSA
+	 *
+	 * @param header
+	 *            The header
+	 * @param claims
+	 *            The claims
+	 * @param privateKey
+	 *            The key to sign with
+	 * @return The token
+	 * @throws Exception
+	 */
+	private static String token(Map<String, Object> header, Map<String, Object> claims, PrivateKey privateKey)
+			throws Exception {
+		String signedPart = encode(header) + "." + encode(claims);
+		Signature signature = Signature.getInstance("SHA256withRSA");
+		signature.initSign(privateKey);
+		signature.update(signedPart.getBytes(StandardCharsets.US_ASCII));
+		return signedPart + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature.sign());
+	}
+
+	/**
+	 * This method encodes a part of a token
+	 *
+	 * @param json
+	 *            The map of the json
+	 * @return The base 64 url encoded json
+	 * @throws Exception
+	 */
+	private static String encode(Map<String, Object> json) throws Exception {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(json));
+	}
+
+	/**
+	 * This method builds a json web key set of key ids and key pairs, with a
+	 * key of another type which is skipped
+	 *
+	 * @param keyIdsAndKeyPairs
+	 *            The key ids each followed by its key pair
+	 * @return The json web key set
+	 * @throws Exception
+	 */
+	private static String keySet(Object... keyIdsAndKeyPairs) throws Exception {
+		List<Map<String, Object>> keys = new ArrayList<>();
+		Map<String, Object> ellipticCurveKey = new LinkedHashMap<>();
+		ellipticCurveKey.put("kty", "EC");
+		ellipticCurveKey.put("kid", "ec-key");
+		ellipticCurveKey.put("crv", "P-256");
+		keys.add(ellipticCurveKey);
+		for (int i = 0; i < keyIdsAndKeyPairs.length; i += 2) {
+			RSAPublicKey publicKey = (RSAPublicKey) ((KeyPair) keyIdsAndKeyPairs[i + 1]).getPublic();
+			Map<String, Object> key = new LinkedHashMap<>();
+			key.put("kty", "RSA");
+			key.put("alg", "RS256");
+			key.put("use", "sig");
+			key.put("kid", keyIdsAndKeyPairs[i]);
+			key.put("n", unsigned(publicKey.getModulus().toByteArray()));
+			key.put("e", unsigned(publicKey.getPublicExponent().toByteArray()));
+			keys.add(key);
+		}
+		Map<String, Object> keySet = new HashMap<>();
+		keySet.put("keys", keys);
+		return objectMapper.writeValueAsString(keySet);
+	}
+
+	/**
+	 * This method base 64 url encodes a big integer without its sign byte
+	 *
+	 * @param bytes
+	 *            The bytes of the big integer
+	 * @return The encoded value
+	 */
+	private static String unsigned(byte[] bytes) {
+		int start = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+		byte[] value = new byte[bytes.length - start];
+		System.arraycopy(bytes, start, value, 0, value.length);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+	}
+
+	/**
+	 * This class is a verifier whose time is set by the test
+	 */
+	private static final class TestGoogleIdTokenVerifier extends GoogleIdTokenVerifier {
+
+		/**
+		 * This is the current time of the verifier
+		 */
+		private long now = System.currentTimeMillis();
+
+		/**
+		 * @see GoogleIdTokenVerifier.currentTimeMillis
+		 */
+		@Override
+		long currentTimeMillis() {
+			return now;
+		}
+	}
+
+	/**
+	 * This class is a key source which counts the reads of the keys
+	 */
+	private static final class CountingSigningKeySource implements ISigningKeySource {
+
+		/**
+		 * This is the json web key set served
+		 */
+		private String keySet;
+
+		/**
+		 * This is the number of reads of the keys
+		 */
+		private int fetchCount;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param keySet
+		 *            The json web key set to serve
+		 */
+		private CountingSigningKeySource(String keySet) {
+			this.keySet = keySet;
+		}
+
+		/**
+		 * @see ISigningKeySource.fetchKeySet
+		 */
+		@Override
+		public String fetchKeySet() throws Exception {
+			fetchCount++;
+			return keySet;
+		}
+	}
+
+	/**
+	 * This class is a configuration manager serving a map of configurations
+	 */
+	private static final class MapConfigurationManager extends ConfigurationManager {
+
+		/**
+		 * This is the map of configuration key and value
+		 */
+		private final Map<String, String> values;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param values
+		 *            The map of configuration key and value
+		 */
+		private MapConfigurationManager(Map<String, String> values) {
+			this.values = values;
+		}
+
+		/**
+		 * @see ConfigurationManager.get
+		 */
+		@Override
+		public String get(String key) {
+			return values.get(key);
+		}
+	}
+}
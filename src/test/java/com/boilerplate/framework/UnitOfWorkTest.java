@@ -0,0 +1,99 @@
+package com.boilerplate.framework;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.boilerplate.database.mysql.implementations.MySQLBaseDataAccessLayer;
+import com.boilerplate.java.entities.UserRoleEntity;
+
+/**
+ * This class tests the queries made in a unit of work see the changes made
+ * earlier in it. The tests run on the in memory database of
+ * h2.hibernate.cfg.xml.
+ *
+ * @author ruchi
+ *
+ */
+public class UnitOfWorkTest {
+
+	/**
+	 * This is the hql query for the roles of a user
+	 */
+	private static final String ROLES_OF_USER_QUERY = "From UserRoleEntity Where userId = :UserId";
+
+	/**
+	 * This method tests a row inserted in a unit of work is read back by a
+	 * query in the same unit of work, and is gone once it is rolled back
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testQueryReadsRowInsertedInSameUnitOfWork() throws Exception {
+		MySQLBaseDataAccessLayer dataAccessLayer = new MySQLBaseDataAccessLayer();
+		UnitOfWork.begin();
+		try {
+			dataAccessLayer.create(new UserRoleEntity("3", "901"));
+			List<UserRoleEntity> roles = dataAccessLayer.executeSelect(ROLES_OF_USER_QUERY, userIdParameter("901"));
+			assertEquals(1, roles.size());
+			assertEquals("3", roles.get(0).getRoleId());
+		} finally {
+			UnitOfWork.end(true);
+		}
+
+		UnitOfWork.begin();
+		try {
+			assertEquals(0, dataAccessLayer.executeSelect(ROLES_OF_USER_QUERY, userIdParameter("901")).size());
+		} finally {
+			UnitOfWork.end(true);
+		}
+	}
+
+	/**
+	 * This method tests a row changed in a unit of work is found by a query
+	 * on the changed column in the same unit of work
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testQueryReadsRowUpdatedInSameUnitOfWork() throws Exception {
+		MySQLBaseDataAccessLayer dataAccessLayer = new MySQLBaseDataAccessLayer();
+		UnitOfWork.begin();
+		try {
+			dataAccessLayer.create(new UserRoleEntity("3", "902"));
+		} finally {
+			UnitOfWork.end(false);
+		}
+
+		UnitOfWork.begin();
+		try {
+			UserRoleEntity role = dataAccessLayer
+					.<UserRoleEntity> executeSelect(ROLES_OF_USER_QUERY, userIdParameter("902")).get(0);
+			role.setRoleId("4");
+			dataAccessLayer.update(role);
+			Map<String, Object> parameters = userIdParameter("902");
+			parameters.put("RoleId", "4");
+			assertEquals(1, dataAccessLayer
+					.executeSelect(ROLES_OF_USER_QUERY + " And roleId = :RoleId", parameters).size());
+		} finally {
+			UnitOfWork.end(true);
+		}
+	}
+
+	/**
+	 * This method gets the parameters of the query for the roles of a user
+	 *
+	 * @param userId
+	 *            The id of the user
+	 * @return The map of parameter name and value
+	 */
+	private static Map<String, Object> userIdParameter(String userId) {
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("UserId", userId);
+		return parameters;
+	}
+}
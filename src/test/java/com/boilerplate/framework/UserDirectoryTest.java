@@ -0,0 +1,204 @@
+package com.boilerplate.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.boilerplate.configurations.ConfigurationManager;
+import com.boilerplate.database.interfaces.IRole;
+import com.boilerplate.database.interfaces.IUser;
+import com.boilerplate.java.entities.ExternalFacingUser;
+import com.boilerplate.java.entities.RoleEntity;
+import com.boilerplate.java.entities.UserRoleEntity;
+import com.boilerplate.java.entities.UserRoleType;
+
+/**
+ * This class tests the user directory is refreshed without blocking the
+ * lookups and keeps the roles of a changed user
+ *
+ * @author ruchi
+ *
+ */
+public class UserDirectoryTest {
+
+	/**
+	 * This method tests a user changed together with a role created with the
+	 * change gets the role type of the new role
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRefreshUserReadsNewRole() throws Exception {
+		List<RoleEntity> roles = new ArrayList<>(Arrays.asList(new RoleEntity("1", "Employee")));
+		List<ExternalFacingUser> users = new ArrayList<>(Arrays.asList(newUser("1")));
+		UserDirectory userDirectory = newDirectory(roles, users, null);
+		userDirectory.initialize();
+		try {
+			assertEquals(Arrays.asList(UserRoleType.EMPLOYEE), userDirectory.getRoleTypes("7"));
+
+			// the role is created and given to the user in one change
+			roles.add(new RoleEntity("2", "Approver"));
+			users.set(0, newUser("1", "2"));
+			userDirectory.refreshUser("7");
+			assertEquals(Arrays.asList(UserRoleType.EMPLOYEE, UserRoleType.APPROVER),
+					userDirectory.getRoleTypes("7"));
+			assertEquals(1, userDirectory.getUsersByRole(UserRoleType.APPROVER).size());
+		} finally {
+			userDirectory.stop();
+		}
+	}
+
+	/**
+	 * This method tests the lookups use the old snapshot while the directory
+	 * is read again, and the new snapshot once it is published
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLookupDoesNotWaitForRefresh() throws Exception {
+		List<RoleEntity> roles = new ArrayList<>(Arrays.asList(new RoleEntity("1", "Employee")));
+		List<ExternalFacingUser> users = new CopyOnWriteArrayList<>(Arrays.asList(newUser("1")));
+		CountDownLatch refreshStarted = new CountDownLatch(1);
+		CountDownLatch releaseRefresh = new CountDownLatch(1);
+		CountDownLatch[] latches = new CountDownLatch[2];
+		UserDirectory userDirectory = newDirectory(roles, users, latches);
+		userDirectory.initialize();
+		try {
+			// the next refresh is held while reading the users
+			latches[0] = refreshStarted;
+			latches[1] = releaseRefresh;
+			ExternalFacingUser user = newUser("1");
+			user.setId("8");
+			user.setEmail("user8@example.com");
+			users.add(user);
+			assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+			assertEquals(1, userDirectory.size());
+			assertEquals("user7@example.com", userDirectory.getUserByEmail("USER7@example.com").getEmail());
+
+			releaseRefresh.countDown();
+			long waitUntil = System.currentTimeMillis() + 5000;
+			while (userDirectory.size() != 2 && System.currentTimeMillis() < waitUntil) {
+				Thread.sleep(10);
+			}
+			assertEquals(2, userDirectory.size());
+		} finally {
+			releaseRefresh.countDown();
+			userDirectory.stop();
+		}
+	}
+
+	/**
+	 * This method gets a user with the id 7 and the given roles
+	 *
+	 * @param roleIds
+	 *            The ids of the roles of the user
+	 * @return The user
+	 */
+	private static ExternalFacingUser newUser(String... roleIds) {
+		List<UserRoleEntity> userRoles = new ArrayList<>();
+		for (String roleId : roleIds) {
+			userRoles.add(new UserRoleEntity(roleId, "7"));
+		}
+		ExternalFacingUser user = new ExternalFacingUser("user7@example.com", "user7@example.com", "Test", "User",
+				userRoles, true, null, "Google");
+		user.setId("7");
+		return user;
+	}
+
+	/**
+	 * This method gets a directory reading the given roles and users, it is
+	 * refreshed every second
+	 *
+	 * @param roles
+	 *            The roles read from the database
+	 * @param users
+	 *            The users read from the database
+	 * @param latches
+	 *            Null, or the latches a refresh counts down and then waits for
+	 *            once they are set
+	 * @return The directory
+	 */
+	private static UserDirectory newDirectory(final List<RoleEntity> roles, final List<ExternalFacingUser> users,
+			final CountDownLatch[] latches) {
+		Map<String, String> configurations = new HashMap<>();
+		configurations.put("USER_DIRECTORY_REFRESH_INTERVAL_IN_SECONDS", "1");
+		UserDirectory userDirectory = new UserDirectory();
+		userDirectory.setConfigurationManager(new MapConfigurationManager(configurations));
+		userDirectory.setMySqlRole((IRole) Proxy.newProxyInstance(IRole.class.getClassLoader(),
+				new Class<?>[] { IRole.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+						if (!method.getName().equals("getAllRoles"))
+							throw new UnsupportedOperationException(method.getName());
+						return new ArrayList<>(roles);
+					}
+				}));
+		userDirectory.setMySqlUser((IUser) Proxy.newProxyInstance(IUser.class.getClassLoader(),
+				new Class<?>[] { IUser.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] arguments) throws Throwable {
+						if (method.getName().equals("getAllUsers")) {
+							if (latches != null && latches[1] != null) {
+								latches[0].countDown();
+								latches[1].await(5, TimeUnit.SECONDS);
+							}
+							return new ArrayList<>(users);
+						}
+						if (method.getName().equals("getUser")) {
+							for (ExternalFacingUser user : users) {
+								if (user.getId().equals(arguments[0]))
+									return user;
+							}
+							return null;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				}));
+		return userDirectory;
+	}
+
+	/**
+	 * This class is a configuration manager reading from a map
+	 *
+	 * @author ruchi
+	 *
+	 */
+	private static final class MapConfigurationManager extends ConfigurationManager {
+
+		/**
+		 * This is the map of configuration key and value
+		 */
+		private final Map<String, String> values;
+
+		/**
+		 * This is the parameterized constructor
+		 *
+		 * @param values
+		 *            The map of configuration key and value
+		 */
+		private MapConfigurationManager(Map<String, String> values) {
+			this.values = values;
+		}
+
+		/**
+		 * @see ConfigurationManager.get
+		 */
+		@Override
+		public String get(String key) {
+			return values.get(key);
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package com.boilerplate.java.entities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * This class tests the histories of the changes to an expense are created
+ * with the changed fields only and undo the change
+ *
+ * @author ruchi
+ *
+ */
+public class ExpenseHistoryEntityTest {
+
+	/**
+	 * This method tests undoing the history of a change of every field gives
+	 * the expense before the change
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRoundTripOfEveryField() throws Exception {
+		ExpenseEntity before = expense("Taxi", "To the airport", ExpenseStatusType.APPROVER_REJECTED, "No receipt",
+				250f, new Date(1000L));
+		ExpenseEntity after = copyOf(before);
+		ExpenseHistoryEntity history = change(after, "Cab", "To the client", ExpenseStatusType.RE_SUBMITTED, null,
+				300f, new Date(2000L));
+		assertEquals(ExpenseHistoryEntity.ALL_FIELDS, history.getChangedFields());
+		assertEquals("9", history.getPreviousId());
+		assertEquals(new Date(2000L), history.getCreationDate());
+		history.undo(after);
+		assertSameFields(before, after);
+	}
+
+	/**
+	 * This method tests the history has only the fields which change, and
+	 * undoing it leaves the other fields as they are
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnchangedFieldsAreNotSaved() throws Exception {
+		ExpenseEntity before = expense("Taxi", "To the airport", ExpenseStatusType.SUBMITTED, null, 250f,
+				new Date(1000L));
+		ExpenseEntity after = copyOf(before);
+		ExpenseHistoryEntity history = change(after, "Taxi", "To the airport", ExpenseStatusType.APPROVER_APPROVED,
+				null, 250f, new Date(2000L));
+		assertEquals(ExpenseHistoryEntity.STATUS | ExpenseHistoryEntity.UPDATION_DATE, history.getChangedFields());
+		assertEquals(ExpenseStatusType.SUBMITTED, history.getStatus());
+		assertEquals(new Date(1000L), history.getPreviousUpdationDate());
+		assertNull(history.getTitle());
+		assertNull(history.getDescription());
+		assertNull(history.getApproverComments());
+		assertNull(history.getAmount());
+		history.undo(after);
+		assertSameFields(before, after);
+	}
+
+	/**
+	 * This method tests fields changed from and to null are undone to the
+	 * value they had, null included
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNullFields() throws Exception {
+		// from null to a value
+		ExpenseEntity before = expense("Taxi", null, ExpenseStatusType.SUBMITTED, null, 250f, null);
+		ExpenseEntity after = copyOf(before);
+		ExpenseHistoryEntity history = change(after, "Taxi", "To the airport", ExpenseStatusType.APPROVER_REJECTED,
+				"No receipt", 250f, new Date(2000L));
+		assertEquals(ExpenseHistoryEntity.DESCRIPTION | ExpenseHistoryEntity.STATUS
+				| ExpenseHistoryEntity.APPROVER_COMMENTS | ExpenseHistoryEntity.UPDATION_DATE,
+				history.getChangedFields());
+		history.undo(after);
+		assertSameFields(before, after);
+		assertNull(after.getDescription());
+		assertNull(after.getApproverComments());
+		assertNull(after.getUpdationDate());
+
+		// from a value to null
+		before = expense("Taxi", "To the airport", ExpenseStatusType.APPROVER_REJECTED, "No receipt", 250f,
+				new Date(1000L));
+		after = copyOf(before);
+		history = change(after, "Taxi", null, ExpenseStatusType.RE_SUBMITTED, null, 250f, new Date(2000L));
+		assertEquals(ExpenseHistoryEntity.DESCRIPTION | ExpenseHistoryEntity.STATUS
+				| ExpenseHistoryEntity.APPROVER_COMMENTS | ExpenseHistoryEntity.UPDATION_DATE,
+				history.getChangedFields());
+		history.undo(after);
+		assertSameFields(before, after);
+
+		// null before and after is not a change
+		before = expense(null, null, ExpenseStatusType.SUBMITTED, null, 250f, new Date(1000L));
+		history = ExpenseHistoryEntity.createDelta(before, null, null, ExpenseStatusType.SUBMITTED, null, 250f,
+				new Date(2000L));
+		assertEquals(ExpenseHistoryEntity.UPDATION_DATE, history.getChangedFields());
+	}
+
+	/**
+	 * This method tests undoing the histories from the latest gives the
+	 * expense as it was before each change
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUndoOfSeveralChanges() throws Exception {
+		ExpenseEntity first = expense("Taxi", "To the airport", ExpenseStatusType.SUBMITTED, null, 250f,
+				new Date(1000L));
+		ExpenseEntity expense = copyOf(first);
+		ExpenseHistoryEntity firstHistory = change(expense, "Taxi", "To the airport",
+				ExpenseStatusType.APPROVER_REJECTED, "No receipt", 250f, new Date(2000L));
+		ExpenseEntity second = copyOf(expense);
+		ExpenseHistoryEntity secondHistory = change(expense, "Taxi", "To the airport, receipt attached",
+				ExpenseStatusType.RE_SUBMITTED, null, 275f, new Date(3000L));
+		secondHistory.undo(expense);
+		assertSameFields(second, expense);
+		firstHistory.undo(expense);
+		assertSameFields(first, expense);
+	}
+
+	/**
+	 * This method tests a history saved before the deltas, a full copy of the
+	 * expense, sets every field on undo but a null status or amount
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUndoOfFullCopy() throws Exception {
+		ExpenseHistoryEntity history = new ExpenseHistoryEntity("9", new Date(500L), new Date(1000L), "Taxi",
+				"To the airport", ExpenseStatusType.SUBMITTED, "7", null, 250f);
+		assertEquals(ExpenseHistoryEntity.ALL_FIELDS, history.getChangedFields());
+		ExpenseEntity expense = expense("Cab", "To the client", ExpenseStatusType.APPROVER_REJECTED, "No receipt",
+				300f, new Date(2000L));
+		history.undo(expense);
+		assertSameFields(expense("Taxi", "To the airport", ExpenseStatusType.SUBMITTED, null, 250f, new Date(1000L)),
+				expense);
+
+		history.setStatus(null);
+		history.setAmount(null);
+		expense = expense("Cab", "To the client", ExpenseStatusType.APPROVER_REJECTED, "No receipt", 300f,
+				new Date(2000L));
+		history.undo(expense);
+		assertEquals(ExpenseStatusType.APPROVER_REJECTED, expense.getStatus());
+		assertEquals(300f, expense.getAmount(), 0f);
+		assertEquals("Taxi", expense.getTitle());
+	}
+
+	/**
+	 * This method changes an expense and gets the history of the change
+	 *
+	 * @param expense
+	 *            The expense, changed to the new values
+	 * @param title
+	 *            The new title
+	 * @param description
+	 *            The new description
+	 * @param status
+	 *            The new status
+	 * @param approverComments
+	 *            The new approver comments
+	 * @param amount
+	 *            The new amount
+	 * @param changeDate
+	 *            The date of the change
+	 * @return The history
+	 * @throws Exception
+	 */
+	private static ExpenseHistoryEntity change(ExpenseEntity expense, String title, String description,
+			ExpenseStatusType status, String approverComments, float amount, Date changeDate) throws Exception {
+		ExpenseHistoryEntity history = ExpenseHistoryEntity.createDelta(expense, title, description, status,
+				approverComments, amount, changeDate);
+		expense.setTitle(title);
+		expense.setDescription(description);
+		expense.setStatus(status);
+		expense.setApproverComments(approverComments);
+		expense.setAmount(amount);
+		expense.setUpdationDate(changeDate);
+		return history;
+	}
+
+	/**
+	 * This method gets an expense of user 7 with id 9
+	 *
+	 * @param title
+	 *            The title
+	 * @param description
+	 *            The description
+	 * @param status
+	 *            The status
+	 * @param approverComments
+	 *            The approver comments
+	 * @param amount
+	 *            The amount
+	 * @param updationDate
+	 *            The updation date
+	 * @return The expense
+	 */
+	private static ExpenseEntity expense(String title, String description, ExpenseStatusType status,
+			String approverComments, float amount, Date updationDate) {
+		return new ExpenseEntity("9", title, description, status, new ArrayList<String>(), "7", "Test User",
+				approverComments, amount, new Date(500L), updationDate);
+	}
+
+	/**
+	 * This method copies an expense
+	 *
+	 * @param expense
+	 *            The expense
+	 * @return The copy
+	 */
+	private static ExpenseEntity copyOf(ExpenseEntity expense) {
+		return expense(expense.getTitle(), expense.getDescription(), expense.getStatus(),
+				expense.getApproverComments(), expense.getAmount(), expense.getUpdationDate());
+	}
+
+	/**
+	 * This method checks two expenses have the same fields a history changes
+	 *
+	 * @param expected
+	 *            The expected expense
+	 * @param actual
+	 *            The actual expense
+	 */
+	private static void assertSameFields(ExpenseEntity expected, ExpenseEntity actual) {
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.getDescription(), actual.getDescription());
+		assertEquals(expected.getStatus(), actual.getStatus());
+		assertEquals(expected.getApproverComments(), actual.getApproverComments());
+		assertEquals(expected.getAmount(), actual.getAmount(), 0f);
+		assertEquals(expected.getUpdationDate(), actual.getUpdationDate());
+	}
+}
@@ -0,0 +1,303 @@
+package com.boilerplate.sessions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.boilerplate.java.Base;
+import com.boilerplate.java.entities.ExternalFacingUser;
+import com.boilerplate.java.entities.UserRoleEntity;
+import com.boilerplate.java.entities.UserRoleType;
+
+/**
+ * This class tests the conversion of sessions to and from bytes
+ *
+ * @author ruchi
+ *
+ */
+public class SessionCodecTest {
+
+	/**
+	 * This method tests a session with every field set is read back the same
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRoundTripOfAllFields() throws Exception {
+		Session session = fullSession();
+		byte[] bytes = SessionCodec.encode(session);
+		assertTrue(SessionCodec.isEncoded(bytes));
+		Session decoded = SessionCodec.decode(bytes);
+		assertEquals("11", decoded.getId());
+		assertEquals("A1B2C3", decoded.getSessionId());
+		assertEquals("7", decoded.getUserId());
+		assertEquals(new Date(1500000000123L), decoded.getCreationDate());
+		assertEquals(new Date(1500000999456L), decoded.getUpdationDate());
+		ExternalFacingUser user = decoded.getExternalFacingUser();
+		assertEquals("7", user.getId());
+		assertEquals("user@example.com", user.getUserId());
+		assertEquals("user@example.com", user.getEmail());
+		assertEquals("Zo\u00eb", user.getFirstName());
+		assertEquals("O'Brien", user.getLastName());
+		assertTrue(user.getIsActive());
+		assertEquals("3", user.getApproverId());
+		assertEquals("Google", user.getAuthenticationProvider());
+		assertEquals(new Date(-1000L), user.getCreationDate());
+		assertEquals(new Date(Long.MAX_VALUE), user.getUpdationDate());
+		assertEquals(2, user.getRoles().size());
+		assertEquals("21", user.getRoles().get(0).getId());
+		assertEquals("1", user.getRoles().get(0).getRoleId());
+		assertEquals("7", user.getRoles().get(0).getUserId());
+		assertEquals("22", user.getRoles().get(1).getId());
+		assertEquals("4", user.getRoles().get(1).getRoleId());
+		assertEquals(Arrays.asList(UserRoleType.EMPLOYEE, UserRoleType.APPROVER), user.getRoleTypes());
+	}
+
+	/**
+	 * This method tests an inactive user is read back inactive
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testInactiveUser() throws Exception {
+		Session session = fullSession();
+		session.getExternalFacingUser().setIsActive(false);
+		assertFalse(SessionCodec.decode(SessionCodec.encode(session)).getExternalFacingUser().getIsActive());
+	}
+
+	/**
+	 * This method tests the fields which are null are read back null
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNullFields() throws Exception {
+		Session decoded = SessionCodec.decode(SessionCodec.encode(new Session()));
+		assertNull(decoded.getId());
+		assertNull(decoded.getSessionId());
+		assertNull(decoded.getUserId());
+		assertNull(decoded.getCreationDate());
+		assertNull(decoded.getUpdationDate());
+		assertNull(decoded.getExternalFacingUser());
+
+		Session session = new Session();
+		session.setSessionId("A1B2C3");
+		session.setExternalFacingUser(new ExternalFacingUser());
+		ExternalFacingUser user = SessionCodec.decode(SessionCodec.encode(session)).getExternalFacingUser();
+		assertNull(user.getId());
+		assertNull(user.getUserId());
+		assertNull(user.getEmail());
+		assertNull(user.getFirstName());
+		assertNull(user.getLastName());
+		assertNull(user.getApproverId());
+		assertNull(user.getAuthenticationProvider());
+		assertNull(user.getRoles());
+		assertNull(user.getRoleTypes());
+		assertNull(user.getCreationDate());
+		assertNull(user.getUpdationDate());
+	}
+
+	/**
+	 * This method tests empty lists are read back empty rather than null
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEmptyLists() throws Exception {
+		Session session = fullSession();
+		session.getExternalFacingUser().setRoles(new ArrayList<UserRoleEntity>());
+		session.getExternalFacingUser().setRoleTypes(new ArrayList<UserRoleType>());
+		ExternalFacingUser user = SessionCodec.decode(SessionCodec.encode(session)).getExternalFacingUser();
+		assertTrue(user.getRoles().isEmpty());
+		assertTrue(user.getRoleTypes().isEmpty());
+	}
+
+	/**
+	 * This method tests a field of an unknown tag, as written by a later
+	 * version, is skipped
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnknownTagIsSkipped() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(SessionCodec.encode(fullSession()));
+		// tag 300 takes two bytes as a varint
+		output.write(new byte[] { (byte) 0xAC, 0x02, 3, 'a', 'b', 'c' });
+		Session decoded = SessionCodec.decode(output.toByteArray());
+		assertEquals("A1B2C3", decoded.getSessionId());
+		assertEquals("user@example.com", decoded.getExternalFacingUser().getEmail());
+	}
+
+	/**
+	 * This method tests a role type not known to this version is skipped
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnknownRoleTypeIsSkipped() throws Exception {
+		// the role types of the user are FINANCE and a later OWNER
+		byte[] roleTypes = concat(field(1, "FINANCE"), field(1, "OWNER"));
+		byte[] user = concat(field(3, "user@example.com"), field(10, roleTypes));
+		byte[] bytes = concat(new byte[] { (byte) 0xB5, 0x53, 1 }, field(2, "A1B2C3"), field(6, user));
+		ExternalFacingUser decoded = SessionCodec.decode(bytes).getExternalFacingUser();
+		assertEquals("user@example.com", decoded.getEmail());
+		assertEquals(Arrays.asList(UserRoleType.FINANCE), decoded.getRoleTypes());
+	}
+
+	/**
+	 * This method tests a later version of the format is not read
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnknownVersion() throws Exception {
+		byte[] bytes = SessionCodec.encode(fullSession());
+		bytes[2] = 2;
+		assertNotDecoded(bytes);
+		assertNotDecoded(new byte[] { (byte) 0xB5, 0x53 });
+	}
+
+	/**
+	 * This method tests bytes cut short are not read
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTruncatedBytes() throws Exception {
+		byte[] bytes = SessionCodec.encode(fullSession());
+		assertNotDecoded(Arrays.copyOf(bytes, bytes.length - 1));
+		assertNotDecoded(Arrays.copyOf(bytes, 4));
+	}
+
+	/**
+	 * This method tests a session saved as XML before this format is read
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testLegacyXmlSession() throws Exception {
+		Session session = new Session();
+		session.setSessionId("A1B2C3");
+		session.setUserId("7");
+		ExternalFacingUser user = new ExternalFacingUser("user@example.com", "user@example.com", "Test", "User",
+				new ArrayList<UserRoleEntity>(), true, "3", "Google");
+		user.setId("7");
+		session.setExternalFacingUser(user);
+		byte[] bytes = Base.toXML(session).getBytes(StandardCharsets.UTF_8);
+		assertFalse(SessionCodec.isEncoded(bytes));
+		Session decoded = SessionCodec.decode(bytes);
+		assertEquals("A1B2C3", decoded.getSessionId());
+		assertEquals("7", decoded.getUserId());
+		assertEquals("user@example.com", decoded.getExternalFacingUser().getEmail());
+		assertEquals("3", decoded.getExternalFacingUser().getApproverId());
+	}
+
+	/**
+	 * This method tests bytes which are neither format are not read
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testNotASession() throws Exception {
+		assertNull(SessionCodec.decode(null));
+		assertNotDecoded("not a session".getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * This method checks bytes can not be read as a session
+	 *
+	 * @param bytes
+	 *            The bytes
+	 */
+	private static void assertNotDecoded(byte[] bytes) {
+		try {
+			SessionCodec.decode(bytes);
+			fail("The bytes were read as a session");
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+
+	/**
+	 * This method gets a session with every field set
+	 *
+	 * @return The session
+	 */
+	private static Session fullSession() {
+		List<UserRoleEntity> roles = new ArrayList<>();
+		UserRoleEntity employeeRole = new UserRoleEntity("1", "7");
+		employeeRole.setId("21");
+		roles.add(employeeRole);
+		UserRoleEntity approverRole = new UserRoleEntity("4", "7");
+		approverRole.setId("22");
+		roles.add(approverRole);
+		ExternalFacingUser user = new ExternalFacingUser("user@example.com", "user@example.com", "Zo\u00eb", "O'Brien",
+				roles, true, "3", "Google");
+		user.setId("7");
+		user.setRoleTypes(Arrays.asList(UserRoleType.EMPLOYEE, UserRoleType.APPROVER));
+		user.setCreationDate(new Date(-1000L));
+		user.setUpdationDate(new Date(Long.MAX_VALUE));
+		Session session = new Session(user);
+		session.setId("11");
+		session.setSessionId("A1B2C3");
+		session.setCreationDate(new Date(1500000000123L));
+		session.setUpdationDate(new Date(1500000999456L));
+		return session;
+	}
+
+	/**
+	 * This method writes a field with a tag below 128 and a value shorter
+	 * than 128 bytes
+	 *
+	 * @param tag
+	 *            The tag
+	 * @param value
+	 *            The value
+	 * @return The bytes of the field
+	 */
+	private static byte[] field(int tag, String value) {
+		return field(tag, value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * This method writes a field with a tag below 128 and a value shorter
+	 * than 128 bytes
+	 *
+	 * @param tag
+	 *            The tag
+	 * @param value
+	 *            The bytes of the value
+	 * @return The bytes of the field
+	 */
+	private static byte[] field(int tag, byte[] value) {
+		return concat(new byte[] { (byte) tag, (byte) value.length }, value);
+	}
+
+	/**
+	 * This method joins arrays of bytes
+	 *
+	 * @param parts
+	 *            The arrays
+	 * @return The joined bytes
+	 */
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			output.write(part, 0, part.length);
+		}
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,117 @@
+package com.boilerplate.sessions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.boilerplate.java.entities.ExternalFacingUser;
+import com.boilerplate.java.entities.UserRoleEntity;
+
+/**
+ * This class tests the sessions kept in memory are given to each request as
+ * its own copy
+ *
+ * @author ruchi
+ *
+ */
+public class SessionNearCacheTest {
+
+	/**
+	 * This method tests each get gives a copy of the session which is the same
+	 * as the saved one, and changing a copy changes neither the others nor the
+	 * session kept
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testGetGivesCopies() throws Exception {
+		SessionNearCache sessionNearCache = newCache();
+		sessionNearCache.put(newSession(), sessionNearCache.getGeneration());
+
+		Session first = sessionNearCache.get("A1B2C3");
+		Session second = sessionNearCache.get("A1B2C3");
+		assertNotSame(first, second);
+		assertFalse(first.hasChanged());
+		assertFalse(second.hasChanged());
+
+		// one request changes its copy
+		first.setUserId("8");
+		first.addSessionAttribute("Key", "Value");
+		assertEquals("7", second.getUserId());
+		assertNull(second.getSessionAttribute("Key"));
+		assertNull(sessionNearCache.get("A1B2C3").getSessionAttribute("Key"));
+
+		// the other request saves its copy
+		second.markSaved();
+		assertEquals("8", first.getUserId());
+		assertEquals("7", sessionNearCache.get("A1B2C3").getUserId());
+		assertEquals("user@example.com", sessionNearCache.get("A1B2C3").getExternalFacingUser().getEmail());
+	}
+
+	/**
+	 * This method tests a session changed after it was put is read as it was
+	 * put
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testPutKeepsTheSessionAsItWas() throws Exception {
+		SessionNearCache sessionNearCache = newCache();
+		Session session = newSession();
+		sessionNearCache.put(session, sessionNearCache.getGeneration());
+		session.setUserId("8");
+		assertEquals("7", sessionNearCache.get("A1B2C3").getUserId());
+	}
+
+	/**
+	 * This method tests a session read while a session was dropped is not
+	 * kept, and a dropped session is not found
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidation() throws Exception {
+		SessionNearCache sessionNearCache = newCache();
+		long generation = sessionNearCache.getGeneration();
+		sessionNearCache.invalidate("OTHER");
+		sessionNearCache.put(newSession(), generation);
+		assertNull(sessionNearCache.get("A1B2C3"));
+
+		sessionNearCache.put(newSession(), sessionNearCache.getGeneration());
+		assertTrue(sessionNearCache.get("A1B2C3") != null);
+		sessionNearCache.invalidate("A1B2C3");
+		assertNull(sessionNearCache.get("A1B2C3"));
+	}
+
+	/**
+	 * This method gets an enabled cache
+	 *
+	 * @return The cache
+	 */
+	private static SessionNearCache newCache() {
+		SessionNearCache sessionNearCache = new SessionNearCache(100, 60000);
+		sessionNearCache.setEnabled(true);
+		return sessionNearCache;
+	}
+
+	/**
+	 * This method gets a session of user 7
+	 *
+	 * @return The session
+	 */
+	private static Session newSession() {
+		ExternalFacingUser user = new ExternalFacingUser("user@example.com", "user@example.com", "Test", "User",
+				new ArrayList<UserRoleEntity>(), true, "3", "Google");
+		user.setId("7");
+		Session session = new Session(user);
+		session.setSessionId("A1B2C3");
+		session.setUserId("7");
+		return session;
+	}
+}